@@ -0,0 +1,167 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.benchmarks;
+
+import java.util.Collections;
+
+import java.util.concurrent.TimeUnit;
+
+import freemarker.template.Configuration;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateModelIterator;
+
+import org.microbean.freemarker.ClassModel;
+import org.microbean.freemarker.ClassModelFactory;
+import org.microbean.freemarker.FlexibleObjectWrapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of {@linkplain ClassModel#get(String) looking
+ * up} each of the keys a template typically reads from a {@link
+ * ClassModel}, for {@link Class}es of several shapes.
+ *
+ * <p>Members are reflected upon once per {@link Class} and then
+ * cached, so after warmup these benchmarks measure the steady state
+ * that a build processing many templates reaches.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ClassModelBenchmark {
+
+  /**
+   * The name of the {@link Class} to model.
+   */
+  @Param({ "java.lang.Object", "java.lang.String", "java.util.concurrent.ConcurrentHashMap", "freemarker.template.Configuration" })
+  public String className;
+
+  /**
+   * The key to look up.
+   */
+  @Param({ "name", "simpleName", "annotations", "declaredFields", "declaredMethods", "fields", "methods" })
+  public String key;
+
+  /**
+   * The {@link Class} to model.
+   */
+  private Class<?> c;
+
+  /**
+   * The {@link FlexibleObjectWrapper} used by the {@link
+   * ClassModel}s under test.
+   */
+  private FlexibleObjectWrapper objectWrapper;
+
+  /**
+   * A {@link ClassModel} reused across invocations.
+   */
+  private ClassModel classModel;
+
+  /**
+   * Creates a new {@link ClassModelBenchmark}.
+   */
+  public ClassModelBenchmark() {
+    super();
+  }
+
+  /**
+   * Loads the {@link Class} to model and creates the {@link
+   * ClassModel} under test.
+   *
+   * @exception ClassNotFoundException if the {@link Class} to model
+   * could not be loaded
+   */
+  @Setup
+  public void setUp() throws ClassNotFoundException {
+    this.c = Class.forName(this.className);
+    this.objectWrapper = new FlexibleObjectWrapper(Configuration.VERSION_2_3_27,
+                                                   Collections.singletonMap(Class.class, new ClassModelFactory()));
+    this.classModel = new ClassModel(this.c, this.objectWrapper);
+  }
+
+  /**
+   * Looks up the {@linkplain #key key} in a {@link ClassModel} that
+   * is reused across invocations.
+   *
+   * @return the value of the key
+   *
+   * @exception TemplateModelException if the lookup fails
+   */
+  @Benchmark
+  public TemplateModel get() throws TemplateModelException {
+    return this.classModel.get(this.key);
+  }
+
+  /**
+   * Creates a new {@link ClassModel}, as happens each time a template
+   * retrieves a {@link Class}, and looks up the {@linkplain #key key}
+   * in it.
+   *
+   * @return the value of the key
+   *
+   * @exception TemplateModelException if the lookup fails
+   */
+  @Benchmark
+  public TemplateModel newModelAndGet() throws TemplateModelException {
+    return new ClassModel(this.c, this.objectWrapper).get(this.key);
+  }
+
+  /**
+   * Looks up the {@linkplain #key key} and, if its value is a hash,
+   * retrieves every value in it, as a template listing members does.
+   *
+   * @param blackhole the {@link Blackhole} consuming the values
+   *
+   * @exception TemplateModelException if the lookup fails
+   */
+  @Benchmark
+  public void getAndIterate(final Blackhole blackhole) throws TemplateModelException {
+    final TemplateModel value = this.classModel.get(this.key);
+    if (value instanceof TemplateHashModelEx) {
+      final TemplateCollectionModel values = ((TemplateHashModelEx)value).values();
+      final TemplateModelIterator iterator = values.iterator();
+      while (iterator.hasNext()) {
+        blackhole.consume(iterator.next());
+      }
+    } else {
+      blackhole.consume(value);
+    }
+  }
+
+}
@@ -0,0 +1,152 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.benchmarks;
+
+import java.util.Collections;
+
+import java.util.concurrent.TimeUnit;
+
+import freemarker.template.Configuration;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+
+import org.microbean.freemarker.ClassModelFactory;
+import org.microbean.freemarker.FlexibleObjectWrapper;
+import org.microbean.freemarker.LoadableClassesTemplateHashModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of {@linkplain
+ * LoadableClassesTemplateHashModel#get(String) looking up} classes in
+ * a {@link LoadableClassesTemplateHashModel}, for classes that can be
+ * loaded (hits) and for classes that cannot (misses).
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class LoadableClassesBenchmark {
+
+  /**
+   * The name of a class that can be loaded.
+   */
+  private static final String PRESENT = "java.util.concurrent.ConcurrentHashMap";
+
+  /**
+   * The name of a class that cannot be loaded.
+   */
+  private static final String ABSENT = "org.microbean.freemarker.benchmarks.DoesNotExist";
+
+  /**
+   * The {@link FlexibleObjectWrapper} used by the {@link
+   * LoadableClassesTemplateHashModel}s under test.
+   */
+  private FlexibleObjectWrapper objectWrapper;
+
+  /**
+   * A {@link LoadableClassesTemplateHashModel} reused across
+   * invocations, so that its caches are warm.
+   */
+  private LoadableClassesTemplateHashModel classes;
+
+  /**
+   * Creates a new {@link LoadableClassesBenchmark}.
+   */
+  public LoadableClassesBenchmark() {
+    super();
+  }
+
+  /**
+   * Creates the {@link LoadableClassesTemplateHashModel} under test.
+   */
+  @Setup
+  public void setUp() {
+    this.objectWrapper = new FlexibleObjectWrapper(Configuration.VERSION_2_3_27,
+                                                   Collections.singletonMap(Class.class, new ClassModelFactory()));
+    this.classes = new LoadableClassesTemplateHashModel(this.objectWrapper, LoadableClassesBenchmark.class.getClassLoader());
+  }
+
+  /**
+   * Looks up a class that can be loaded and that has been looked up
+   * before.
+   *
+   * @return the model of the class
+   *
+   * @exception TemplateModelException if the lookup fails
+   */
+  @Benchmark
+  public TemplateModel hit() throws TemplateModelException {
+    return this.classes.get(PRESENT);
+  }
+
+  /**
+   * Looks up a class that can be loaded using a new {@link
+   * LoadableClassesTemplateHashModel}, so that the class is loaded
+   * from its {@link ClassLoader} and wrapped.
+   *
+   * @return the model of the class
+   *
+   * @exception TemplateModelException if the lookup fails
+   */
+  @Benchmark
+  public TemplateModel uncachedHit() throws TemplateModelException {
+    return new LoadableClassesTemplateHashModel(this.objectWrapper, LoadableClassesBenchmark.class.getClassLoader()).get(PRESENT);
+  }
+
+  /**
+   * Looks up a class that cannot be loaded and that has been looked
+   * up before.
+   *
+   * @return {@code null}
+   *
+   * @exception TemplateModelException if the lookup fails
+   */
+  @Benchmark
+  public TemplateModel miss() throws TemplateModelException {
+    return this.classes.get(ABSENT);
+  }
+
+  /**
+   * Looks up a class that cannot be loaded using a new {@link
+   * LoadableClassesTemplateHashModel}, so that its {@link
+   * ClassLoader} is searched.
+   *
+   * @return {@code null}
+   *
+   * @exception TemplateModelException if the lookup fails
+   */
+  @Benchmark
+  public TemplateModel uncachedMiss() throws TemplateModelException {
+    return new LoadableClassesTemplateHashModel(this.objectWrapper, LoadableClassesBenchmark.class.getClassLoader()).get(ABSENT);
+  }
+
+}
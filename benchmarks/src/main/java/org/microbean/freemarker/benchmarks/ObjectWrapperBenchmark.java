@@ -0,0 +1,138 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.benchmarks;
+
+import java.util.Collections;
+
+import java.util.concurrent.TimeUnit;
+
+import freemarker.template.Configuration;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+
+import org.microbean.freemarker.ClassModelFactory;
+import org.microbean.freemarker.FlexibleObjectWrapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of {@linkplain FlexibleObjectWrapper#wrap(Object)
+ * wrapping} objects with a {@link FlexibleObjectWrapper}, both for
+ * objects handled by a registered {@link
+ * freemarker.ext.util.ModelFactory} and for objects that fall
+ * through to the default wrapping behavior.
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ObjectWrapperBenchmark {
+
+  /**
+   * The name of the {@link Class} to wrap.
+   */
+  @Param({ "java.lang.Object", "java.lang.String", "java.util.concurrent.ConcurrentHashMap", "freemarker.template.Configuration" })
+  public String className;
+
+  /**
+   * The {@link Class} to wrap.
+   */
+  private Class<?> c;
+
+  /**
+   * The {@link FlexibleObjectWrapper} under test, with a {@link
+   * ClassModelFactory} registered for {@link Class}.
+   */
+  private FlexibleObjectWrapper objectWrapper;
+
+  /**
+   * Creates a new {@link ObjectWrapperBenchmark}.
+   */
+  public ObjectWrapperBenchmark() {
+    super();
+  }
+
+  /**
+   * Loads the {@link Class} to wrap and creates the {@link
+   * FlexibleObjectWrapper} under test.
+   *
+   * @exception ClassNotFoundException if the {@link Class} to wrap
+   * could not be loaded
+   */
+  @Setup
+  public void setUp() throws ClassNotFoundException {
+    this.c = Class.forName(this.className);
+    this.objectWrapper = new FlexibleObjectWrapper(Configuration.VERSION_2_3_27,
+                                                   Collections.singletonMap(Class.class, new ClassModelFactory()));
+  }
+
+  /**
+   * Wraps a {@link Class}, which is handled by the registered {@link
+   * ClassModelFactory}.
+   *
+   * @return the wrapped {@link Class}
+   *
+   * @exception TemplateModelException if wrapping fails
+   */
+  @Benchmark
+  public TemplateModel wrapClass() throws TemplateModelException {
+    return this.objectWrapper.wrap(this.c);
+  }
+
+  /**
+   * Wraps an instance of the {@link Class}'s name, which has no
+   * registered {@link freemarker.ext.util.ModelFactory}.
+   *
+   * @return the wrapped {@link String}
+   *
+   * @exception TemplateModelException if wrapping fails
+   */
+  @Benchmark
+  public TemplateModel wrapString() throws TemplateModelException {
+    return this.objectWrapper.wrap(this.className);
+  }
+
+  /**
+   * Wraps the {@link FlexibleObjectWrapper} itself, an arbitrary
+   * bean with no registered {@link
+   * freemarker.ext.util.ModelFactory}.
+   *
+   * @return the wrapped bean
+   *
+   * @exception TemplateModelException if wrapping fails
+   */
+  @Benchmark
+  public TemplateModel wrapBean() throws TemplateModelException {
+    return this.objectWrapper.wrap(this.objectWrapper);
+  }
+
+}
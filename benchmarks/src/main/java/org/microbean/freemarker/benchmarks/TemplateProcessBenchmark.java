@@ -0,0 +1,187 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import java.util.concurrent.TimeUnit;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+import org.microbean.freemarker.ClassModelFactory;
+import org.microbean.freemarker.FlexibleObjectWrapper;
+import org.microbean.freemarker.LoadableClassesTemplateHashModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of {@linkplain Template#process(Object, Writer)
+ * processing} a template that, like many real ones, walks the
+ * members and annotations of a handful of classes retrieved through
+ * a {@link LoadableClassesTemplateHashModel}.
+ *
+ * <p>Output is discarded so that only the work of the template
+ * engine and the models is measured.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class TemplateProcessBenchmark {
+
+  /**
+   * The source of the template under test.
+   */
+  private static final String TEMPLATE =
+    "<#list classNames as className>\n" +
+    "<#assign c = classes[className]>\n" +
+    "class ${c.name} (${c.simpleName})\n" +
+    "<#list c.annotations?keys as annotation>  @${annotation}\n</#list>" +
+    "<#list c.declaredFields?values as field>  field ${field.name}\n</#list>" +
+    "<#list c.methods?keys as method>  method ${method}\n</#list>" +
+    "<#if c.methods.toString??>  overrides toString: ${c.methods.toString}\n</#if>" +
+    "</#list>";
+
+  /**
+   * The parsed {@link Template} under test.
+   */
+  private Template template;
+
+  /**
+   * The data model supplied to the {@link #template}.
+   */
+  private Map<String, Object> dataModel;
+
+  /**
+   * Creates a new {@link TemplateProcessBenchmark}.
+   */
+  public TemplateProcessBenchmark() {
+    super();
+  }
+
+  /**
+   * Parses the template under test and builds its data model.
+   *
+   * @exception IOException if the template could not be parsed
+   */
+  @Setup
+  public void setUp() throws IOException {
+    final Configuration configuration = new Configuration(Configuration.VERSION_2_3_27);
+    final FlexibleObjectWrapper objectWrapper =
+      new FlexibleObjectWrapper(Configuration.VERSION_2_3_27, Collections.singletonMap(Class.class, new ClassModelFactory()));
+    configuration.setObjectWrapper(objectWrapper);
+    this.template = new Template("benchmark.ftl", TEMPLATE, configuration);
+    this.dataModel = new HashMap<>();
+    this.dataModel.put("classNames", Arrays.asList("java.lang.Object",
+                                                   "java.lang.String",
+                                                   "java.util.concurrent.ConcurrentHashMap",
+                                                   "freemarker.template.Configuration"));
+    this.dataModel.put("classes", new LoadableClassesTemplateHashModel(objectWrapper, TemplateProcessBenchmark.class.getClassLoader()));
+  }
+
+  /**
+   * Processes the template under test, discarding its output.
+   *
+   * @return the number of characters of output
+   *
+   * @exception IOException if an input/output error occurs
+   *
+   * @exception TemplateException if processing fails
+   */
+  @Benchmark
+  public long process() throws IOException, TemplateException {
+    final CountingWriter writer = new CountingWriter();
+    this.template.process(this.dataModel, writer);
+    return writer.count;
+  }
+
+  /**
+   * A {@link Writer} that discards what is written to it and counts
+   * the characters.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class CountingWriter extends Writer {
+
+    /**
+     * The number of characters written.
+     */
+    private long count;
+
+    /**
+     * Creates a new {@link CountingWriter}.
+     */
+    private CountingWriter() {
+      super();
+    }
+
+    /**
+     * Counts the supplied characters.
+     *
+     * @param characters the characters; ignored
+     *
+     * @param offset the offset of the first character; ignored
+     *
+     * @param length the number of characters
+     */
+    @Override
+    public final void write(final char[] characters, final int offset, final int length) {
+      this.count += length;
+    }
+
+    /**
+     * Does nothing when invoked.
+     */
+    @Override
+    public final void flush() {
+
+    }
+
+    /**
+     * Does nothing when invoked.
+     */
+    @Override
+    public final void close() {
+
+    }
+
+  }
+
+}
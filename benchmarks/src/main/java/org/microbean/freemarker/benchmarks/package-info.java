@@ -0,0 +1,35 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+/**
+ * Provides <a href="http://openjdk.java.net/projects/code-tools/jmh/"
+ * target="_parent">JMH</a> benchmarks for the hot paths of the
+ * classes in the {@link org.microbean.freemarker} package.
+ *
+ * <p>The classes whose models are benchmarked are chosen to cover a
+ * range of realistic shapes: {@link Object} (almost no members),
+ * {@link String} (a typical final value class), {@link
+ * java.util.concurrent.ConcurrentHashMap} (many members and nested
+ * classes) and {@link freemarker.template.Configuration} (hundreds of
+ * members with many overloads).</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see org.microbean.freemarker.benchmarks.ClassModelBenchmark
+ */
+package org.microbean.freemarker.benchmarks;
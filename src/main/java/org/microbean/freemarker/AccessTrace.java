@@ -0,0 +1,279 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A record of which top-level data model entries, and which classes
+ * by way of a {@link LoadableClassesTemplateHashModel}, a template
+ * read while it was being rendered on the current {@link Thread}.
+ *
+ * <p>Tracing begins with a call to {@link #begin()} and ends when the
+ * returned {@link AccessTrace} is {@linkplain #close() closed}.  In
+ * between, every {@linkplain LazyDataModel#get(String) lookup} in a
+ * {@link LazyDataModel} and every {@linkplain
+ * LoadableClassesTemplateHashModel#get(String) lookup} in a {@link
+ * LoadableClassesTemplateHashModel} made on the same {@link Thread}
+ * is recorded, whether or not the entry or class exists.  Iterating
+ * over either model is recorded as reading all of its entries.</p>
+ *
+ * <p>When no tracing is in effect, recording costs one {@link
+ * ThreadLocal} lookup.</p>
+ *
+ * <p>Instances of this class are not safe for concurrent use by
+ * multiple threads; each is confined to the {@link Thread} that
+ * {@linkplain #begin() began} it.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #begin()
+ */
+public final class AccessTrace implements AutoCloseable {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The {@link AccessTrace} in effect on the current {@link Thread},
+   * if any.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final ThreadLocal<AccessTrace> current = new ThreadLocal<>();
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link AccessTrace} that was in effect when this one began,
+   * and that will be in effect again once this one is {@linkplain
+   * #close() closed}, or {@code null}.
+   */
+  private final AccessTrace previous;
+
+  /**
+   * The keys of the data model entries read.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Set<String> keys;
+
+  /**
+   * The names of the classes read.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Set<String> classNames;
+
+  /**
+   * Whether every data model entry was read.
+   */
+  private boolean allKeys;
+
+  /**
+   * Whether every class was read.
+   */
+  private boolean allClasses;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link AccessTrace}.
+   *
+   * @param previous the {@link AccessTrace} in effect, if any; may be
+   * {@code null}
+   *
+   * @see #begin()
+   */
+  private AccessTrace(final AccessTrace previous) {
+    super();
+    this.previous = previous;
+    this.keys = new TreeSet<>();
+    this.classNames = new TreeSet<>();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the keys of the data model entries that were read.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, sorted, unmodifiable {@link Set}
+   *
+   * @see #isAllKeys()
+   */
+  public final Set<String> getKeys() {
+    return Collections.unmodifiableSet(this.keys);
+  }
+
+  /**
+   * Returns {@code true} if every data model entry was read, such as
+   * by iterating over the data model.
+   *
+   * @return {@code true} if every data model entry was read
+   */
+  public final boolean isAllKeys() {
+    return this.allKeys;
+  }
+
+  /**
+   * Returns the names of the classes that were read.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, sorted, unmodifiable {@link Set}
+   *
+   * @see #isAllClasses()
+   */
+  public final Set<String> getClassNames() {
+    return Collections.unmodifiableSet(this.classNames);
+  }
+
+  /**
+   * Returns {@code true} if every class was read, such as by
+   * iterating over a {@link LoadableClassesTemplateHashModel}.
+   *
+   * @return {@code true} if every class was read
+   */
+  public final boolean isAllClasses() {
+    return this.allClasses;
+  }
+
+  /**
+   * Ends this {@link AccessTrace}, reinstating whichever {@link
+   * AccessTrace} was in effect when it {@linkplain #begin() began}.
+   *
+   * <p>Closing an {@link AccessTrace} more than once, or from a
+   * {@link Thread} other than the one that began it, has no
+   * effect.</p>
+   */
+  @Override
+  public final void close() {
+    if (current.get() == this) {
+      if (this.previous == null) {
+        current.remove();
+      } else {
+        current.set(this.previous);
+      }
+    }
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * AccessTrace}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    return "AccessTrace[keys=" + (this.allKeys ? "*" : this.keys) + ", classNames=" + (this.allClasses ? "*" : this.classNames) + "]";
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Begins tracing on the current {@link Thread} and returns the new
+   * {@link AccessTrace}, which should be {@linkplain #close() closed}
+   * on the same {@link Thread}, typically with a
+   * <code>try</code>-with-resources statement.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link AccessTrace}
+   */
+  public static final AccessTrace begin() {
+    final AccessTrace returnValue = new AccessTrace(current.get());
+    current.set(returnValue);
+    return returnValue;
+  }
+
+  /**
+   * Records that the data model entry with the supplied key was read.
+   *
+   * @param key the key; may be {@code null} in which case no action
+   * is taken
+   */
+  static final void keyRead(final String key) {
+    if (key != null) {
+      final AccessTrace trace = current.get();
+      if (trace != null) {
+        trace.keys.add(key);
+      }
+    }
+  }
+
+  /**
+   * Records that every data model entry was read.
+   */
+  static final void allKeysRead() {
+    final AccessTrace trace = current.get();
+    if (trace != null) {
+      trace.allKeys = true;
+    }
+  }
+
+  /**
+   * Records that the class with the supplied name was read.
+   *
+   * @param className the name of the class; may be {@code null} in
+   * which case no action is taken
+   */
+  static final void classRead(final String className) {
+    if (className != null) {
+      final AccessTrace trace = current.get();
+      if (trace != null) {
+        trace.classNames.add(className);
+      }
+    }
+  }
+
+  /**
+   * Records that every class was read.
+   */
+  static final void allClassesRead() {
+    final AccessTrace trace = current.get();
+    if (trace != null) {
+      trace.allClasses = true;
+    }
+  }
+
+}
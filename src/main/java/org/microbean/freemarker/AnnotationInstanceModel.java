@@ -0,0 +1,228 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import freemarker.ext.beans.BeanModel;
+import freemarker.ext.beans.BeansWrapper;
+
+import freemarker.template.DefaultMapAdapter;
+import freemarker.template.TemplateHashModel; // for javadoc only
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+
+import freemarker.template.utility.ObjectWrapperWithAPISupport;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.AnnotationValue;
+
+/**
+ * A {@link BeanModel} and a {@link TemplateScalarModel} representing
+ * a Jandex {@link AnnotationInstance}.
+ *
+ * <p>In addition to the keys {@linkplain BeanModel#get(String)
+ * handled by the superclass}, an {@link AnnotationInstanceModel}
+ * answers the {@code elements} key with a hash of the annotation's
+ * explicitly specified element values indexed by element name.  The
+ * values are unpacked from their {@link AnnotationValue} wrappers:
+ * arrays become sequences, class values become the names of their
+ * erasures, enum constants become their names, nested annotations
+ * remain {@link AnnotationInstance}s, and all other values are
+ * exposed as the strings, numbers and booleans they are.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see AnnotationInstanceModelFactory
+ */
+public class AnnotationInstanceModel extends BeanModel implements TemplateScalarModel {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link AnnotationInstance} to model.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final AnnotationInstance annotationInstance;
+
+  /**
+   * The unpacked element values of {@link #annotationInstance},
+   * indexed by element name, or {@code null} if they have not yet
+   * been computed.
+   */
+  private volatile Map<String, Object> elements;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link AnnotationInstanceModel}.
+   *
+   * @param annotationInstance the {@link AnnotationInstance} to
+   * model; must not be {@code null}
+   *
+   * @param beansWrapper a {@link BeansWrapper} that will be used by
+   * the {@linkplain BeanModel superclass}; see its documentation for
+   * details; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  public AnnotationInstanceModel(final AnnotationInstance annotationInstance, final BeansWrapper beansWrapper) {
+    super(annotationInstance, beansWrapper);
+    Objects.requireNonNull(annotationInstance);
+    this.annotationInstance = annotationInstance;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns {@code false} when invoked because an {@link
+   * AnnotationInstance} is never "empty" of its attributes.
+   *
+   * @return {@code false} when invoked
+   */
+  @Override
+  public final boolean isEmpty() {
+    return false;
+  }
+
+  /**
+   * Returns various {@link TemplateModel} implementations depending
+   * on the {@code key} passed.
+   *
+   * @param key the name of some conceptual attribute of an
+   * annotation, such as {@code elements}; if not directly handled by
+   * this class, it may be {@linkplain BeanModel#get(String) handled
+   * by the superclass}; must not be {@code null}
+   *
+   * @return a {@link TemplateModel} in accordance with the general
+   * contract of {@link TemplateHashModel#get(String)}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   *
+   * @exception TemplateModelException if any other error occurs
+   */
+  @Override
+  public final TemplateModel get(final String key) throws TemplateModelException {
+    TemplateModel returnValue = null;
+    if ("elements".equals(key)) {
+      returnValue = DefaultMapAdapter.adapt(this.getElements(), (ObjectWrapperWithAPISupport)this.wrapper);
+    } else {
+      returnValue = super.get(key);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the {@linkplain AnnotationInstance#toString() string
+   * representation} of the {@link AnnotationInstance} supplied
+   * {@linkplain #AnnotationInstanceModel(AnnotationInstance,
+   * BeansWrapper) at construction time}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String getAsString() {
+    return this.annotationInstance.toString();
+  }
+
+  /**
+   * Returns an unmodifiable {@link Map} of the unpacked element
+   * values of the modeled annotation, indexed by element name.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link Map}
+   */
+  private final Map<String, Object> getElements() {
+    Map<String, Object> returnValue = this.elements;
+    if (returnValue == null) {
+      final Map<String, Object> map = new LinkedHashMap<>();
+      for (final AnnotationValue value : this.annotationInstance.values()) {
+        if (value != null) {
+          map.put(value.name(), unpack(value));
+        }
+      }
+      returnValue = Collections.unmodifiableMap(map);
+      this.elements = returnValue;
+    }
+    return returnValue;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the value held by the supplied {@link AnnotationValue}
+   * in a form convenient for templates.
+   *
+   * @param value the {@link AnnotationValue}; must not be {@code
+   * null}
+   *
+   * @return the unpacked value; never {@code null}
+   *
+   * @exception NullPointerException if {@code value} is {@code null}
+   */
+  private static final Object unpack(final AnnotationValue value) {
+    final Object returnValue;
+    final AnnotationValue.Kind kind = value.kind();
+    if (kind == AnnotationValue.Kind.ARRAY) {
+      final AnnotationValue[] values = (AnnotationValue[])value.value();
+      final List<Object> list = new ArrayList<>(values.length);
+      for (final AnnotationValue v : values) {
+        list.add(unpack(v));
+      }
+      returnValue = Collections.unmodifiableList(list);
+    } else if (kind == AnnotationValue.Kind.CLASS) {
+      returnValue = ClassInfoModel.erasure(value.asClass());
+    } else if (kind == AnnotationValue.Kind.ENUM) {
+      returnValue = value.asEnum();
+    } else {
+      returnValue = value.value();
+    }
+    return returnValue;
+  }
+
+}
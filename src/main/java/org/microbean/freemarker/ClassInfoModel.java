@@ -0,0 +1,496 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.lang.reflect.Modifier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import freemarker.ext.beans.BeanModel;
+import freemarker.ext.beans.BeansWrapper;
+
+import freemarker.template.DefaultMapAdapter;
+import freemarker.template.TemplateHashModel; // for javadoc only
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+
+import freemarker.template.utility.ObjectWrapperWithAPISupport;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.ArrayType;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.FieldInfo;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.MethodInfo;
+import org.jboss.jandex.Type;
+
+/**
+ * A {@link BeanModel} that permits the same operations from within a
+ * Freemarker template on Jandex {@link ClassInfo} objects as {@link
+ * ClassModel} permits on {@link Class} objects, without ever loading
+ * the class being described.
+ *
+ * <p>The {@code annotations}, {@code declaredFields}, {@code
+ * declaredMethods}, {@code fields} and {@code methods} keys behave as
+ * they do for a {@link ClassModel}, but yield {@link
+ * AnnotationInstance}s, {@link FieldInfo}s and {@link MethodInfo}s.
+ * The public members reported by the {@code fields} and {@code
+ * methods} keys include those inherited from supertypes only if those
+ * supertypes are present in the {@link IndexView} supplied at
+ * construction time.</p>
+ *
+ * <p>So that templates written against {@link ClassInfo} itself
+ * continue to work, the {@code annotations}, {@code fields} and
+ * {@code methods} keys may also be invoked without arguments, as in
+ * {@code classInfo.methods()}, in which case they yield exactly what
+ * the corresponding {@link ClassInfo} method returns.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ClassModel
+ *
+ * @see IndexedClassesTemplateHashModel
+ */
+public class ClassInfoModel extends BeanModel implements TemplateScalarModel {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link ClassInfo} to model.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ClassInfo classInfo;
+
+  /**
+   * The {@link IndexView} used to find supertypes.
+   *
+   * <p>This field may be {@code null}.</p>
+   */
+  private final IndexView indexView;
+
+  /**
+   * The annotations on the modeled class, indexed by the names of
+   * their types, or {@code null} if they have not yet been computed.
+   */
+  private volatile Map<String, AnnotationInstance> annotations;
+
+  /**
+   * The fields declared by the modeled class, or {@code null} if they
+   * have not yet been computed.
+   */
+  private volatile MemberIndex<FieldInfo> declaredFields;
+
+  /**
+   * The methods declared by the modeled class, or {@code null} if
+   * they have not yet been computed.
+   */
+  private volatile MemberIndex<MethodInfo> declaredMethods;
+
+  /**
+   * The public fields of the modeled class and its indexed
+   * supertypes, or {@code null} if they have not yet been computed.
+   */
+  private volatile MemberIndex<FieldInfo> fields;
+
+  /**
+   * The public methods of the modeled class and its indexed
+   * supertypes, or {@code null} if they have not yet been computed.
+   */
+  private volatile MemberIndex<MethodInfo> methods;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ClassInfoModel} that does not consider
+   * supertypes.
+   *
+   * @param classInfo the {@link ClassInfo} to model; must not be
+   * {@code null}
+   *
+   * @param beansWrapper a {@link BeansWrapper} that will be used by
+   * the {@linkplain BeanModel superclass}; see its documentation for
+   * details; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code classInfo} or {@code
+   * beansWrapper} is {@code null}
+   *
+   * @see #ClassInfoModel(ClassInfo, IndexView, BeansWrapper)
+   */
+  public ClassInfoModel(final ClassInfo classInfo, final BeansWrapper beansWrapper) {
+    this(classInfo, null, beansWrapper);
+  }
+
+  /**
+   * Creates a new {@link ClassInfoModel}.
+   *
+   * @param classInfo the {@link ClassInfo} to model; must not be
+   * {@code null}
+   *
+   * @param indexView the {@link IndexView} in which supertypes will
+   * be sought; may be {@code null}
+   *
+   * @param beansWrapper a {@link BeansWrapper} that will be used by
+   * the {@linkplain BeanModel superclass}; see its documentation for
+   * details; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code classInfo} or {@code
+   * beansWrapper} is {@code null}
+   */
+  public ClassInfoModel(final ClassInfo classInfo, final IndexView indexView, final BeansWrapper beansWrapper) {
+    super(classInfo, beansWrapper);
+    Objects.requireNonNull(classInfo);
+    this.classInfo = classInfo;
+    this.indexView = indexView;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns {@code false} when invoked because a {@link ClassInfo}
+   * as modeled here is never "empty" of its attributes.
+   *
+   * @return {@code false} when invoked
+   */
+  @Override
+  public final boolean isEmpty() {
+    return false;
+  }
+
+  /**
+   * Returns various {@link TemplateModel} implementations depending
+   * on the {@code key} passed.
+   *
+   * @param key the name of some conceptual attribute of a class, such
+   * as {@code annotations}, {@code declaredFields}, {@code
+   * declaredMethods}, {@code fields} and {@code methods}; if not
+   * directly handled by this class, it may be {@linkplain
+   * BeanModel#get(String) handled by the superclass}; must not be
+   * {@code null}
+   *
+   * @return a {@link TemplateModel} in accordance with the general
+   * contract of {@link TemplateHashModel#get(String)}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   *
+   * @exception TemplateModelException if any other error occurs
+   *
+   * @see ClassModel#get(String)
+   */
+  @Override
+  public final TemplateModel get(final String key) throws TemplateModelException {
+    TemplateModel returnValue = null;
+    if ("annotations".equals(key)) {
+      returnValue = new HashMethodModel(DefaultMapAdapter.adapt(this.getAnnotations(), (ObjectWrapperWithAPISupport)this.wrapper),
+                                        this.classInfo.annotations(),
+                                        this.wrapper);
+    } else if ("declaredFields".equals(key)) {
+      returnValue = new MembersTemplateHashModel(this.getDeclaredFields(), this.wrapper);
+    } else if ("declaredMethods".equals(key)) {
+      returnValue = new MembersTemplateHashModel(this.getDeclaredMethods(), this.wrapper);
+    } else if ("fields".equals(key)) {
+      returnValue = new HashMethodModel(new MembersTemplateHashModel(this.getFields(), this.wrapper), this.classInfo.fields(), this.wrapper);
+    } else if ("methods".equals(key)) {
+      returnValue = new HashMethodModel(new MembersTemplateHashModel(this.getMethods(), this.wrapper), this.classInfo.methods(), this.wrapper);
+    } else {
+      returnValue = super.get(key);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the name of the class described by the {@link ClassInfo}
+   * supplied {@linkplain #ClassInfoModel(ClassInfo, IndexView,
+   * BeansWrapper) at construction time}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the name of the class being modeled; never {@code null}
+   */
+  @Override
+  public final String getAsString() {
+    return this.classInfo.name().toString();
+  }
+
+  /**
+   * Returns an unmodifiable {@link Map} of the annotations on the
+   * modeled class, indexed by the names of their types.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link Map}
+   */
+  private final Map<String, AnnotationInstance> getAnnotations() {
+    Map<String, AnnotationInstance> returnValue = this.annotations;
+    if (returnValue == null) {
+      final Map<String, AnnotationInstance> map = new LinkedHashMap<>();
+      for (final AnnotationInstance annotation : this.classInfo.classAnnotations()) {
+        if (annotation != null) {
+          map.put(annotation.name().toString(), annotation);
+        }
+      }
+      returnValue = Collections.unmodifiableMap(map);
+      this.annotations = returnValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link MemberIndex} of the fields declared by the
+   * modeled class.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link MemberIndex}
+   */
+  private final MemberIndex<FieldInfo> getDeclaredFields() {
+    MemberIndex<FieldInfo> returnValue = this.declaredFields;
+    if (returnValue == null) {
+      returnValue = index(this.classInfo.fields());
+      this.declaredFields = returnValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link MemberIndex} of the methods, but not the
+   * constructors or static initializers, declared by the modeled
+   * class.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link MemberIndex}
+   */
+  private final MemberIndex<MethodInfo> getDeclaredMethods() {
+    MemberIndex<MethodInfo> returnValue = this.declaredMethods;
+    if (returnValue == null) {
+      final List<MethodInfo> methods = new ArrayList<>();
+      for (final MethodInfo method : this.classInfo.methods()) {
+        if (isMethod(method)) {
+          methods.add(method);
+        }
+      }
+      returnValue = new MemberIndex<>(methods, MethodInfo::name, ClassInfoModel::signature);
+      this.declaredMethods = returnValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link MemberIndex} of the public fields of the modeled
+   * class and of its supertypes that are present in the {@link
+   * IndexView} supplied at construction time.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link MemberIndex}
+   */
+  private final MemberIndex<FieldInfo> getFields() {
+    MemberIndex<FieldInfo> returnValue = this.fields;
+    if (returnValue == null) {
+      final List<FieldInfo> fields = new ArrayList<>();
+      for (final ClassInfo type : this.getTypes()) {
+        for (final FieldInfo field : type.fields()) {
+          if (Modifier.isPublic(field.flags())) {
+            fields.add(field);
+          }
+        }
+      }
+      returnValue = index(fields);
+      this.fields = returnValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link MemberIndex} of the public methods of the
+   * modeled class and of its supertypes that are present in the
+   * {@link IndexView} supplied at construction time.
+   *
+   * <p>As with {@link Class#getMethods()}, static methods declared
+   * by superinterfaces are not included, and a method overridden by
+   * a subtype is reported only once.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link MemberIndex}
+   */
+  private final MemberIndex<MethodInfo> getMethods() {
+    MemberIndex<MethodInfo> returnValue = this.methods;
+    if (returnValue == null) {
+      final Map<String, MethodInfo> methods = new LinkedHashMap<>();
+      for (final ClassInfo type : this.getTypes()) {
+        final boolean superinterface = type != this.classInfo && Modifier.isInterface(type.flags());
+        for (final MethodInfo method : type.methods()) {
+          final short flags = method.flags();
+          if (isMethod(method) && Modifier.isPublic(flags) && !(superinterface && Modifier.isStatic(flags))) {
+            methods.putIfAbsent(signature(method), method);
+          }
+        }
+      }
+      returnValue = new MemberIndex<>(methods.values(), MethodInfo::name, ClassInfoModel::signature);
+      this.methods = returnValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the modeled class followed by all of its supertypes that
+   * are present in the {@link IndexView} supplied at construction
+   * time, subtypes before supertypes.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link List} of {@link ClassInfo}s
+   */
+  private final List<ClassInfo> getTypes() {
+    final List<ClassInfo> returnValue = new ArrayList<>();
+    returnValue.add(this.classInfo);
+    if (this.indexView != null) {
+      final Set<DotName> seen = new HashSet<>();
+      seen.add(this.classInfo.name());
+      for (int i = 0; i < returnValue.size(); i++) {
+        final ClassInfo type = returnValue.get(i);
+        final Collection<DotName> supertypeNames = new ArrayList<>(type.interfaceNames());
+        if (type.superName() != null) {
+          supertypeNames.add(type.superName());
+        }
+        for (final DotName supertypeName : supertypeNames) {
+          if (seen.add(supertypeName)) {
+            final ClassInfo supertype = this.indexView.getClassByName(supertypeName);
+            if (supertype != null) {
+              returnValue.add(supertype);
+            }
+          }
+        }
+      }
+    }
+    return returnValue;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns a new {@link MemberIndex} of the supplied {@link
+   * FieldInfo}s.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param fields the {@link FieldInfo}s to index; must not be {@code
+   * null}
+   *
+   * @return a new {@link MemberIndex}; never {@code null}
+   */
+  private static final MemberIndex<FieldInfo> index(final Collection<? extends FieldInfo> fields) {
+    return new MemberIndex<>(fields, FieldInfo::name, FieldInfo::name);
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link MethodInfo} describes
+   * a method, as opposed to a constructor or a static initializer.
+   *
+   * @param method the {@link MethodInfo} in question; may be {@code
+   * null}
+   *
+   * @return {@code true} if {@code method} describes a method
+   */
+  private static final boolean isMethod(final MethodInfo method) {
+    return method != null && !method.name().startsWith("<");
+  }
+
+  /**
+   * Returns the signature of the supplied {@link MethodInfo} in the
+   * same form as the signatures used by {@link ClassModel}, such as
+   * {@code indexOf(java.lang.String,int)}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param method the {@link MethodInfo}; must not be {@code null}
+   *
+   * @return the signature of {@code method}; never {@code null}
+   *
+   * @exception NullPointerException if {@code method} is {@code null}
+   */
+  static final String signature(final MethodInfo method) {
+    final StringBuilder sb = new StringBuilder(method.name()).append('(');
+    final List<Type> parameters = method.parameters();
+    for (int i = 0; i < parameters.size(); i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(erasure(parameters.get(i)));
+    }
+    return sb.append(')').toString();
+  }
+
+  /**
+   * Returns the name of the erasure of the supplied {@link Type} in
+   * the form produced by {@link Class#getTypeName()}, such as {@code
+   * java.lang.String[]}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param type the {@link Type}; must not be {@code null}
+   *
+   * @return the name of the erasure of {@code type}; never {@code
+   * null}
+   *
+   * @exception NullPointerException if {@code type} is {@code null}
+   */
+  static final String erasure(final Type type) {
+    if (type.kind() == Type.Kind.ARRAY) {
+      final ArrayType arrayType = type.asArrayType();
+      final StringBuilder sb = new StringBuilder(erasure(arrayType.component()));
+      for (int i = 0; i < arrayType.dimensions(); i++) {
+        sb.append("[]");
+      }
+      return sb.toString();
+    }
+    return type.name().toString();
+  }
+
+}
@@ -0,0 +1,263 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.lang.annotation.Annotation;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An immutable, lazily populated record of the members of a {@link
+ * Class} that is computed at most once per {@link
+ * Class} and shared by all threads.
+ *
+ * <p>Reflecting over a {@link Class} is expensive, and templates that
+ * introspect classes tend to do so repeatedly, often inside loops.
+ * Instances of this class are therefore cached in a {@link
+ * ClassValue}, which ties their lifetime to that of the {@link Class}
+ * they describe, and each kind of member is reflected upon only the
+ * first time it is requested.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #of(Class)
+ *
+ * @see ClassModel
+ */
+final class ClassMembers {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The {@link ClassValue} caching {@link ClassMembers} instances.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final ClassValue<ClassMembers> cache = new ClassValue<ClassMembers>() {
+      @Override
+      protected final ClassMembers computeValue(final Class<?> c) {
+        return new ClassMembers(c);
+      }
+    };
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link Class} whose members are described.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Class<?> c;
+
+  /**
+   * The {@linkplain Class#getAnnotations() annotations} of {@link
+   * #c}, indexed by the names of their types, or {@code null} if they
+   * have not yet been computed.
+   */
+  private volatile Map<String, Annotation> annotations;
+
+  /**
+   * The {@linkplain Class#getDeclaredFields() declared fields} of
+   * {@link #c}, indexed by name, or {@code null} if they have not yet
+   * been computed.
+   */
+  private volatile MemberIndex<Field> declaredFields;
+
+  /**
+   * The {@linkplain Class#getDeclaredMethods() declared methods} of
+   * {@link #c}, indexed by name, or {@code null} if they have not yet
+   * been computed.
+   */
+  private volatile MemberIndex<Method> declaredMethods;
+
+  /**
+   * The {@linkplain Class#getFields() public fields} of {@link #c},
+   * or {@code null} if they have not yet been computed.
+   */
+  private volatile MemberIndex<Field> fields;
+
+  /**
+   * The {@linkplain Class#getMethods() public methods} of {@link #c},
+   * or {@code null} if they have not yet been computed.
+   */
+  private volatile MemberIndex<Method> methods;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ClassMembers}.
+   *
+   * @param c the {@link Class} whose members will be described; must
+   * not be {@code null}
+   *
+   * @exception NullPointerException if {@code c} is {@code null}
+   *
+   * @see #of(Class)
+   */
+  private ClassMembers(final Class<?> c) {
+    super();
+    this.c = Objects.requireNonNull(c);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns an unmodifiable {@link Map} of the {@linkplain
+   * Class#getAnnotations() annotations} of the {@link Class} this
+   * {@link ClassMembers} describes, indexed by the names of their
+   * {@linkplain Annotation#annotationType() types}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link Map}
+   */
+  final Map<String, Annotation> getAnnotations() {
+    Map<String, Annotation> returnValue = this.annotations;
+    if (returnValue == null) {
+      final Map<String, Annotation> map = new LinkedHashMap<>();
+      for (final Annotation annotation : this.c.getAnnotations()) {
+        if (annotation != null) {
+          map.put(annotation.annotationType().getName(), annotation);
+        }
+      }
+      returnValue = Collections.unmodifiableMap(map);
+      this.annotations = returnValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link MemberIndex} of the {@linkplain
+   * Class#getDeclaredFields() declared fields} of the {@link Class}
+   * this {@link ClassMembers} describes.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link MemberIndex}
+   */
+  final MemberIndex<Field> getDeclaredFields() {
+    MemberIndex<Field> returnValue = this.declaredFields;
+    if (returnValue == null) {
+      returnValue = MemberIndex.of(this.c.getDeclaredFields());
+      this.declaredFields = returnValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link MemberIndex} of the {@linkplain
+   * Class#getDeclaredMethods() declared methods} of the {@link Class}
+   * this {@link ClassMembers} describes.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link MemberIndex}
+   */
+  final MemberIndex<Method> getDeclaredMethods() {
+    MemberIndex<Method> returnValue = this.declaredMethods;
+    if (returnValue == null) {
+      returnValue = MemberIndex.of(this.c.getDeclaredMethods());
+      this.declaredMethods = returnValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link MemberIndex} of the {@linkplain
+   * Class#getFields() public fields} of the {@link Class} this {@link
+   * ClassMembers} describes.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link MemberIndex}
+   */
+  final MemberIndex<Field> getFields() {
+    MemberIndex<Field> returnValue = this.fields;
+    if (returnValue == null) {
+      returnValue = MemberIndex.of(this.c.getFields());
+      this.fields = returnValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link MemberIndex} of the {@linkplain
+   * Class#getMethods() public methods} of the {@link Class} this {@link
+   * ClassMembers} describes.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link MemberIndex}
+   */
+  final MemberIndex<Method> getMethods() {
+    MemberIndex<Method> returnValue = this.methods;
+    if (returnValue == null) {
+      returnValue = MemberIndex.of(this.c.getMethods());
+      this.methods = returnValue;
+    }
+    return returnValue;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the {@link ClassMembers} describing the supplied {@link
+   * Class}, creating it if necessary.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param c the {@link Class} in question; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link ClassMembers}
+   *
+   * @exception NullPointerException if {@code c} is {@code null}
+   */
+  static final ClassMembers of(final Class<?> c) {
+    return cache.get(Objects.requireNonNull(c));
+  }
+
+}
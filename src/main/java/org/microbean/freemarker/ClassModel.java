@@ -16,24 +16,22 @@
  */
 package org.microbean.freemarker;
 
-import java.lang.annotation.Annotation;
-
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-
+import java.util.Map;
 import java.util.Objects;
 
 import freemarker.ext.beans.ArrayModel;
 import freemarker.ext.beans.BeanModel;
 import freemarker.ext.beans.BeansWrapper;
 
-import freemarker.template.ObjectWrapper;
-import freemarker.template.SimpleHash;
+import freemarker.template.DefaultMapAdapter;
 import freemarker.template.TemplateHashModel; // for javadoc only
+import freemarker.template.TemplateHashModelEx;
 import freemarker.template.TemplateModel;
 import freemarker.template.TemplateModelException;
 import freemarker.template.TemplateScalarModel;
 
+import freemarker.template.utility.ObjectWrapperWithAPISupport;
+
 /**
  * A {@link BeanModel} that permits additional operations from within
  * a Freemarker template on {@link Class} objects.
@@ -105,6 +103,13 @@ public class ClassModel extends BeanModel implements TemplateScalarModel {
    * Returns various {@link TemplateModel} implementations depending
    * on the {@code key} passed.
    *
+   * <p>The {@code declaredFields}, {@code declaredMethods}, {@code
+   * fields} and {@code methods} keys yield hashes in which a member's
+   * name maps to a sequence of all of its overloads, and a member's
+   * signature, such as {@code indexOf(java.lang.String,int)}, maps to
+   * that member alone.  A sequence with just one element may also be
+   * used as if it were that element.</p>
+   *
    * @param key the name of some conceptual attribute of a {@link
    * Class} that might be useful in a Freemarker template, such as
    * {@code annotations}, {@code declaredFields}, {@code
@@ -128,64 +133,38 @@ public class ClassModel extends BeanModel implements TemplateScalarModel {
   public final TemplateModel get(final String key) throws TemplateModelException {
     TemplateModel returnValue = null;
     if ("annotations".equals(key)) {
-      final Annotation[] annotations = this.c.getAnnotations();
-      assert annotations != null;
-      final SimpleHash annotationMap = new SimpleHash(this.wrapper);
-      for (final Annotation annotation : annotations) {
-        if (annotation != null) {
-          final Class<?> annotationType = annotation.annotationType();
-          annotationMap.put(annotationType.getName(), annotation);
-        }
-      }
-      returnValue = annotationMap;
+      returnValue = this.adapt(ClassMembers.of(this.c).getAnnotations());
     } else if ("declaredFields".equals(key)) {
-      final Field[] fields = this.c.getDeclaredFields();
-      assert fields != null;
-      final SimpleHash fieldMap = new SimpleHash(this.wrapper);
-      for (final Field field : fields) {
-        if (field != null) {
-          fieldMap.put(field.getName(), field);
-        }
-      }
-      returnValue = fieldMap;
+      returnValue = new MembersTemplateHashModel(ClassMembers.of(this.c).getDeclaredFields(), this.wrapper);
     } else if ("declaredMethods".equals(key)) {
-      final Method[] methods = this.c.getDeclaredMethods();
-      assert methods != null;
-      final SimpleHash methodMap = new SimpleHash(this.wrapper);
-      for (final Method method : methods) {
-        if (method != null) {
-          // XXX TODO FIXME: you can have overloaded methods of course; name is not sufficiently unique
-          methodMap.put(method.getName(), method);
-        }
-      }
-      returnValue = methodMap;
+      returnValue = new MembersTemplateHashModel(ClassMembers.of(this.c).getDeclaredMethods(), this.wrapper);
     } else if ("fields".equals(key)) {
-      final Field[] fields = this.c.getFields();
-      assert fields != null;
-      final SimpleHash fieldMap = new SimpleHash(this.wrapper);
-      for (final Field field : fields) {
-        if (field != null) {
-          fieldMap.put(field.getName(), field);
-        }
-      }
-      returnValue = fieldMap;
+      returnValue = new MembersTemplateHashModel(ClassMembers.of(this.c).getFields(), this.wrapper);
     } else if ("methods".equals(key)) {
-      final Method[] methods = this.c.getMethods();
-      assert methods != null;
-      final SimpleHash methodMap = new SimpleHash(this.wrapper);
-      for (final Method method : methods) {
-        if (method != null) {
-          // XXX TODO FIXME: you can have overloaded methods of course; name is not sufficiently unique
-          methodMap.put(method.getName(), method);
-        }
-      }
-      returnValue = methodMap;
+      returnValue = new MembersTemplateHashModel(ClassMembers.of(this.c).getMethods(), this.wrapper);
     } else {
       returnValue = super.get(key);
     }
     return returnValue;
   }
 
+  /**
+   * Returns a {@link TemplateHashModelEx} view of the supplied
+   * (cached, unmodifiable) {@link Map} whose values are wrapped only
+   * when they are actually retrieved.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param map the {@link Map} to adapt; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link TemplateHashModelEx}
+   *
+   * @see ClassMembers
+   */
+  private final TemplateHashModelEx adapt(final Map<?, ?> map) {
+    return DefaultMapAdapter.adapt(map, (ObjectWrapperWithAPISupport)this.wrapper);
+  }
+
   /**
    * Returns the {@linkplain Class#getName() name} of the {@link
    * Class} supplied {@linkplain #ClassModel(Class, BeansWrapper) at
@@ -0,0 +1,158 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.Objects;
+
+import freemarker.ext.beans.BeanModel;
+import freemarker.ext.beans.BeansWrapper;
+
+import freemarker.template.TemplateHashModel; // for javadoc only
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+
+import org.jboss.jandex.DotName;
+
+/**
+ * A {@link BeanModel} and a {@link TemplateScalarModel} representing
+ * a Jandex {@link DotName}.
+ *
+ * <p>A {@link DotNameModel} renders as the {@linkplain
+ * DotName#toString() name it represents}, and answers the {@code
+ * local} key without reflection.  All other keys are {@linkplain
+ * BeanModel#get(String) handled by the superclass}.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see DotNameModelFactory
+ */
+public class DotNameModel extends BeanModel implements TemplateScalarModel {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link DotName} to model.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final DotName dotName;
+
+  /**
+   * The {@linkplain DotName#toString() string representation} of
+   * {@link #dotName}, or {@code null} if it has not yet been
+   * computed.
+   */
+  private volatile String string;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link DotNameModel}.
+   *
+   * @param dotName the {@link DotName} to model; must not be {@code
+   * null}
+   *
+   * @param beansWrapper a {@link BeansWrapper} that will be used by
+   * the {@linkplain BeanModel superclass}; see its documentation for
+   * details; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  public DotNameModel(final DotName dotName, final BeansWrapper beansWrapper) {
+    super(dotName, beansWrapper);
+    Objects.requireNonNull(dotName);
+    this.dotName = dotName;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns {@code false} when invoked because a {@link DotName} is
+   * never "empty" of its attributes.
+   *
+   * @return {@code false} when invoked
+   */
+  @Override
+  public final boolean isEmpty() {
+    return false;
+  }
+
+  /**
+   * Returns various {@link TemplateModel} implementations depending
+   * on the {@code key} passed.
+   *
+   * @param key the name of some conceptual attribute of a {@link
+   * DotName}, such as {@code local}; if not directly handled by this
+   * class, it may be {@linkplain BeanModel#get(String) handled by the
+   * superclass}; must not be {@code null}
+   *
+   * @return a {@link TemplateModel} in accordance with the general
+   * contract of {@link TemplateHashModel#get(String)}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   *
+   * @exception TemplateModelException if any other error occurs
+   */
+  @Override
+  public final TemplateModel get(final String key) throws TemplateModelException {
+    TemplateModel returnValue = null;
+    if ("local".equals(key)) {
+      returnValue = new ScalarMethodModel(this.dotName.local());
+    } else {
+      returnValue = super.get(key);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the {@linkplain DotName#toString() name} represented by
+   * the {@link DotName} supplied {@linkplain #DotNameModel(DotName,
+   * BeansWrapper) at construction time}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the name being modeled; never {@code null}
+   */
+  @Override
+  public final String getAsString() {
+    String returnValue = this.string;
+    if (returnValue == null) {
+      returnValue = this.dotName.toString();
+      this.string = returnValue;
+    }
+    return returnValue;
+  }
+
+}
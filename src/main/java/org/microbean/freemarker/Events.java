@@ -0,0 +1,564 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A source of <a
+ * href="https://docs.oracle.com/en/java/javase/11/docs/api/jdk.jfr/jdk/jfr/package-summary.html"
+ * target="_parent">Java Flight Recorder</a> events describing the
+ * work done on behalf of templates, so that a recording of a build
+ * can attribute time and allocation to particular templates, classes
+ * and indexes.
+ *
+ * <p>Each method in this class begins an event and returns it as a
+ * {@link Span}; {@linkplain Span#close() closing} the {@link Span}
+ * ends the event and commits it if the recording in effect asks for
+ * it.  When the {@code jdk.jfr} API is not present at runtime, as is
+ * the case on Java 8 releases before 8u262, every method returns an
+ * inert {@link Span} and no class of that API is ever loaded.</p>
+ *
+ * <p>All events belong to the {@code MicroBean/FreeMarker} category
+ * and have names beginning with {@code org.microbean.freemarker.}.</p>
+ *
+ * <p>This class is safe for concurrent use by multiple threads.
+ * {@link Span}s are not.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Span
+ */
+public final class Events {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * Whether the {@code jdk.jfr} API is present.
+   */
+  private static final boolean FLIGHT_RECORDER_PRESENT = isFlightRecorderPresent();
+
+  /**
+   * A {@link Span} that does nothing.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final Span NO_OP = new Span() {
+      /**
+       * Does nothing when invoked because this event does not carry
+       * a number of bytes.
+       *
+       * @param bytes ignored
+       */
+      @Override
+      public final void setBytes(final long bytes) {
+
+      }
+
+      @Override
+      public final void close() {
+
+      }
+    };
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link Events}.
+   */
+  private Events() {
+    super();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Begins an event describing the reading or computation of a Jandex
+   * index.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param source a description of where the index comes from, such
+   * as the path of an index file; may be {@code null}
+   *
+   * @return a non-{@code null} {@link Span} whose {@linkplain
+   * Span#setBytes(long) bytes} are the size of the index
+   */
+  public static final Span indexRead(final String source) {
+    return FLIGHT_RECORDER_PRESENT ? FlightRecorderEvents.indexRead(source) : NO_OP;
+  }
+
+  /**
+   * Begins an event describing the loading and parsing of a template.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param templateName the name of the template; may be {@code
+   * null}
+   *
+   * @return a non-{@code null} {@link Span}
+   */
+  public static final Span templateLoad(final String templateName) {
+    return FLIGHT_RECORDER_PRESENT ? FlightRecorderEvents.templateLoad(templateName) : NO_OP;
+  }
+
+  /**
+   * Begins an event describing the processing of a template.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param templateName the name of the template; may be {@code
+   * null}
+   *
+   * @param outputFile the path of the file the template is written
+   * to; may be {@code null}
+   *
+   * @return a non-{@code null} {@link Span} whose {@linkplain
+   * Span#setBytes(long) bytes} are the size of the output
+   */
+  public static final Span templateProcess(final String templateName, final String outputFile) {
+    return FLIGHT_RECORDER_PRESENT ? FlightRecorderEvents.templateProcess(templateName, outputFile) : NO_OP;
+  }
+
+  /**
+   * Begins an event describing the writing of a chunk of a
+   * template's output.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param templateName the name of the template; may be {@code
+   * null}
+   *
+   * @return a non-{@code null} {@link Span} whose {@linkplain
+   * Span#setBytes(long) bytes} are the size of the chunk
+   */
+  public static final Span outputWrite(final String templateName) {
+    return FLIGHT_RECORDER_PRESENT ? FlightRecorderEvents.outputWrite(templateName) : NO_OP;
+  }
+
+  /**
+   * Begins an event describing the loading of a class on behalf of a
+   * template.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param className the name of the class; may be {@code null}
+   *
+   * @return a non-{@code null} {@link Span}
+   */
+  public static final Span classLoad(final String className) {
+    return FLIGHT_RECORDER_PRESENT ? FlightRecorderEvents.classLoad(className) : NO_OP;
+  }
+
+  /**
+   * Returns {@code true} if the {@code jdk.jfr} API is present.
+   *
+   * @return {@code true} if the {@code jdk.jfr} API is present
+   */
+  private static final boolean isFlightRecorderPresent() {
+    try {
+      Class.forName("jdk.jfr.Event");
+      return true;
+    } catch (final ClassNotFoundException | LinkageError notPresent) {
+      return false;
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An event that has begun and that ends when it is {@linkplain
+   * #close() closed}.
+   *
+   * <p>Implementations of this interface are not safe for concurrent
+   * use by multiple threads.</p>
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  public static interface Span extends AutoCloseable {
+
+    /**
+     * Records a number of bytes in this {@link Span}, if it carries
+     * one.
+     *
+     * @param bytes the number of bytes
+     */
+    public void setBytes(final long bytes);
+
+    /**
+     * Ends this {@link Span}, committing its event if the recording
+     * in effect asks for it.
+     */
+    @Override
+    public void close();
+
+  }
+
+  /**
+   * The factory of {@link Span}s backed by {@code jdk.jfr} events.
+   *
+   * <p>This class, and the event classes nested within it, are only
+   * loaded if the {@code jdk.jfr} API is present.</p>
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class FlightRecorderEvents {
+
+
+    /*
+     * Constructors.
+     */
+
+
+    /**
+     * Creates a new {@link FlightRecorderEvents}.
+     */
+    private FlightRecorderEvents() {
+      super();
+    }
+
+
+    /*
+     * Static methods.
+     */
+
+
+    /**
+     * Begins and returns an {@link IndexReadEvent}.
+     *
+     * @param source the source of the index; may be {@code null}
+     *
+     * @return a new, begun {@link IndexReadEvent}; never {@code null}
+     */
+    private static final Span indexRead(final String source) {
+      final IndexReadEvent event = new IndexReadEvent();
+      event.source = source;
+      event.begin();
+      return event;
+    }
+
+    /**
+     * Begins and returns a {@link TemplateLoadEvent}.
+     *
+     * @param templateName the name of the template; may be {@code null}
+     *
+     * @return a new, begun {@link TemplateLoadEvent}; never {@code null}
+     */
+    private static final Span templateLoad(final String templateName) {
+      final TemplateLoadEvent event = new TemplateLoadEvent();
+      event.templateName = templateName;
+      event.begin();
+      return event;
+    }
+
+    /**
+     * Begins and returns a {@link TemplateProcessEvent}.
+     *
+     * @param templateName the name of the template; may be {@code null}
+     *
+     * @param outputFile the path of the output file; may be {@code null}
+     *
+     * @return a new, begun {@link TemplateProcessEvent}; never {@code null}
+     */
+    private static final Span templateProcess(final String templateName, final String outputFile) {
+      final TemplateProcessEvent event = new TemplateProcessEvent();
+      event.templateName = templateName;
+      event.outputFile = outputFile;
+      event.begin();
+      return event;
+    }
+
+    /**
+     * Begins and returns an {@link OutputWriteEvent}.
+     *
+     * @param templateName the name of the template; may be {@code null}
+     *
+     * @return a new, begun {@link OutputWriteEvent}; never {@code null}
+     */
+    private static final Span outputWrite(final String templateName) {
+      final OutputWriteEvent event = new OutputWriteEvent();
+      event.templateName = templateName;
+      event.begin();
+      return event;
+    }
+
+    /**
+     * Begins and returns a {@link ClassLoadEvent}.
+     *
+     * @param className the name of the class; may be {@code null}
+     *
+     * @return a new, begun {@link ClassLoadEvent}; never {@code null}
+     */
+    private static final Span classLoad(final String className) {
+      final ClassLoadEvent event = new ClassLoadEvent();
+      event.className = className;
+      event.begin();
+      return event;
+    }
+
+
+    /*
+     * Inner and nested classes.
+     */
+
+
+    /**
+     * The event recorded while a Jandex index is read or computed.
+     *
+     * @author <a href="https://about.me/lairdnelson"
+     * target="_parent">Laird Nelson</a>
+     */
+    @Name("org.microbean.freemarker.IndexRead")
+    @Label("Jandex Index Read")
+    @Description("Reading or computing a Jandex index")
+    @Category({ "MicroBean", "FreeMarker" })
+    static final class IndexReadEvent extends Event implements Span {
+
+      /**
+       * The source of the index.
+       */
+      @Label("Source")
+      String source;
+
+      /**
+       * The number of bytes.
+       */
+      @Label("Bytes")
+      @DataAmount
+      long bytes;
+
+      /**
+       * Records the supplied number of bytes in this event.
+       *
+       * @param bytes the number of bytes
+       */
+      @Override
+      public final void setBytes(final long bytes) {
+        this.bytes = bytes;
+      }
+
+      /**
+       * {@linkplain #commit() Commits} this event.
+       */
+      @Override
+      public final void close() {
+        this.commit();
+      }
+
+    }
+
+    /**
+     * The event recorded while a template is loaded and parsed.
+     *
+     * @author <a href="https://about.me/lairdnelson"
+     * target="_parent">Laird Nelson</a>
+     */
+    @Name("org.microbean.freemarker.TemplateLoad")
+    @Label("Template Load")
+    @Description("Loading and parsing a template")
+    @Category({ "MicroBean", "FreeMarker" })
+    static final class TemplateLoadEvent extends Event implements Span {
+
+      /**
+       * The name of the template.
+       */
+      @Label("Template Name")
+      String templateName;
+
+      /**
+       * Does nothing when invoked because this event does not carry
+       * a number of bytes.
+       *
+       * @param bytes ignored
+       */
+      @Override
+      public final void setBytes(final long bytes) {
+
+      }
+
+      /**
+       * {@linkplain #commit() Commits} this event.
+       */
+      @Override
+      public final void close() {
+        this.commit();
+      }
+
+    }
+
+    /**
+     * The event recorded while a template is rendered and its output written.
+     *
+     * @author <a href="https://about.me/lairdnelson"
+     * target="_parent">Laird Nelson</a>
+     */
+    @Name("org.microbean.freemarker.TemplateProcess")
+    @Label("Template Process")
+    @Description("Rendering a template and writing its output")
+    @Category({ "MicroBean", "FreeMarker" })
+    static final class TemplateProcessEvent extends Event implements Span {
+
+      /**
+       * The name of the template.
+       */
+      @Label("Template Name")
+      String templateName;
+
+      /**
+       * The path of the output file.
+       */
+      @Label("Output File")
+      String outputFile;
+
+      /**
+       * The number of bytes.
+       */
+      @Label("Bytes")
+      @DataAmount
+      long bytes;
+
+      /**
+       * Records the supplied number of bytes in this event.
+       *
+       * @param bytes the number of bytes
+       */
+      @Override
+      public final void setBytes(final long bytes) {
+        this.bytes = bytes;
+      }
+
+      /**
+       * {@linkplain #commit() Commits} this event.
+       */
+      @Override
+      public final void close() {
+        this.commit();
+      }
+
+    }
+
+    /**
+     * The event recorded while a chunk of a template's output is written.
+     *
+     * @author <a href="https://about.me/lairdnelson"
+     * target="_parent">Laird Nelson</a>
+     */
+    @Name("org.microbean.freemarker.OutputWrite")
+    @Label("Output Write")
+    @Description("Writing a chunk of a template's output")
+    @Category({ "MicroBean", "FreeMarker" })
+    static final class OutputWriteEvent extends Event implements Span {
+
+      /**
+       * The name of the template.
+       */
+      @Label("Template Name")
+      String templateName;
+
+      /**
+       * The number of bytes.
+       */
+      @Label("Bytes")
+      @DataAmount
+      long bytes;
+
+      /**
+       * Records the supplied number of bytes in this event.
+       *
+       * @param bytes the number of bytes
+       */
+      @Override
+      public final void setBytes(final long bytes) {
+        this.bytes = bytes;
+      }
+
+      /**
+       * {@linkplain #commit() Commits} this event.
+       */
+      @Override
+      public final void close() {
+        this.commit();
+      }
+
+    }
+
+    /**
+     * The event recorded while a class is loaded on behalf of a template.
+     *
+     * @author <a href="https://about.me/lairdnelson"
+     * target="_parent">Laird Nelson</a>
+     */
+    @Name("org.microbean.freemarker.ClassLoad")
+    @Label("Class Load")
+    @Description("Loading a class on behalf of a template")
+    @Category({ "MicroBean", "FreeMarker" })
+    static final class ClassLoadEvent extends Event implements Span {
+
+      /**
+       * The name of the class.
+       */
+      @Label("Class Name")
+      String className;
+
+      /**
+       * Does nothing when invoked because this event does not carry
+       * a number of bytes.
+       *
+       * @param bytes ignored
+       */
+      @Override
+      public final void setBytes(final long bytes) {
+
+      }
+
+      /**
+       * {@linkplain #commit() Commits} this event.
+       */
+      @Override
+      public final void close() {
+        this.commit();
+      }
+
+    }
+
+  }
+
+}
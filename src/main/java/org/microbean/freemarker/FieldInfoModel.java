@@ -0,0 +1,162 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.Objects;
+
+import freemarker.ext.beans.BeanModel;
+import freemarker.ext.beans.BeansWrapper;
+
+import freemarker.template.SimpleScalar;
+import freemarker.template.TemplateHashModel; // for javadoc only
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+
+import org.jboss.jandex.FieldInfo;
+
+/**
+ * A {@link BeanModel} and a {@link TemplateScalarModel} representing
+ * a Jandex {@link FieldInfo}.
+ *
+ * <p>In addition to the keys {@linkplain BeanModel#get(String)
+ * handled by the superclass}, a {@link FieldInfoModel} answers the
+ * following keys directly:</p>
+ *
+ * <dl>
+ *
+ * <dt>{@code name}</dt>
+ *
+ * <dd>The name of the field.  Both {@code name} and {@code name()}
+ * work.</dd>
+ *
+ * <dt>{@code typeName}</dt>
+ *
+ * <dd>The name of the erasure of the field's type, such as {@code
+ * java.lang.String[]}.</dd>
+ *
+ * </dl>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see FieldInfoModelFactory
+ */
+public class FieldInfoModel extends BeanModel implements TemplateScalarModel {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link FieldInfo} to model.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final FieldInfo fieldInfo;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link FieldInfoModel}.
+   *
+   * @param fieldInfo the {@link FieldInfo} to model; must not be
+   * {@code null}
+   *
+   * @param beansWrapper a {@link BeansWrapper} that will be used by
+   * the {@linkplain BeanModel superclass}; see its documentation for
+   * details; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  public FieldInfoModel(final FieldInfo fieldInfo, final BeansWrapper beansWrapper) {
+    super(fieldInfo, beansWrapper);
+    Objects.requireNonNull(fieldInfo);
+    this.fieldInfo = fieldInfo;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns {@code false} when invoked because a {@link FieldInfo}
+   * is never "empty" of its attributes.
+   *
+   * @return {@code false} when invoked
+   */
+  @Override
+  public final boolean isEmpty() {
+    return false;
+  }
+
+  /**
+   * Returns various {@link TemplateModel} implementations depending
+   * on the {@code key} passed.
+   *
+   * @param key the name of some conceptual attribute of a field, such
+   * as {@code name} or {@code typeName}; if not directly handled by
+   * this class, it may be {@linkplain BeanModel#get(String) handled
+   * by the superclass}; must not be {@code null}
+   *
+   * @return a {@link TemplateModel} in accordance with the general
+   * contract of {@link TemplateHashModel#get(String)}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   *
+   * @exception TemplateModelException if any other error occurs
+   */
+  @Override
+  public final TemplateModel get(final String key) throws TemplateModelException {
+    TemplateModel returnValue = null;
+    if ("name".equals(key)) {
+      returnValue = new ScalarMethodModel(this.fieldInfo.name());
+    } else if ("typeName".equals(key)) {
+      returnValue = new SimpleScalar(ClassInfoModel.erasure(this.fieldInfo.type()));
+    } else {
+      returnValue = super.get(key);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the {@linkplain FieldInfo#toString() string
+   * representation} of the {@link FieldInfo} supplied {@linkplain
+   * #FieldInfoModel(FieldInfo, BeansWrapper) at construction time}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String getAsString() {
+    return this.fieldInfo.toString();
+  }
+
+}
@@ -16,6 +16,11 @@
  */
 package org.microbean.freemarker;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import freemarker.ext.beans.BeansWrapperConfiguration;
@@ -32,6 +37,10 @@ import freemarker.template.Version;
  * assist in {@linkplain DefaultObjectWrapper#wrap(Object) wrapping
  * <code>Object</code>s}.
  *
+ * <p>A {@link ModelFactory} registered for a class or interface also
+ * applies to its subclasses and implementations; see {@link
+ * #getModelFactory(Class)}.</p>
+ *
  * @author <a href="https://about.me/lairdnelson"
  * target="_parent">Laird Nelson</a>
  *
@@ -40,6 +49,23 @@ import freemarker.template.Version;
 public class FlexibleObjectWrapper extends DefaultObjectWrapper {
 
 
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * A {@link ModelFactory} that is never used to create models, but
+   * is cached to record that no {@link ModelFactory} was registered
+   * for a given {@link Class} or any of its supertypes.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final ModelFactory NO_MODEL_FACTORY = (object, objectWrapper) -> {
+    throw new IllegalStateException();
+  };
+
+
   /*
    * Instance fields.
    */
@@ -53,6 +79,16 @@ public class FlexibleObjectWrapper extends DefaultObjectWrapper {
    */
   private final Map<? extends Class<?>, ? extends ModelFactory> modelFactories;
 
+  /**
+   * A {@link ClassValue} memoizing, for each {@link Class} that is
+   * {@linkplain #getModelFactory(Class) asked about}, the {@link
+   * ModelFactory} resolved from {@link #modelFactories}, or {@link
+   * #NO_MODEL_FACTORY} if there is none.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ClassValue<ModelFactory> resolvedModelFactories;
+
 
   /*
    * Constructors.
@@ -72,7 +108,8 @@ public class FlexibleObjectWrapper extends DefaultObjectWrapper {
    * @param modelFactories a {@link Map} of {@link
    * ModelFactory} instances indexed by {@link Class} instances to
    * assist in {@linkplain DefaultObjectWrapper#wrap(Object) wrapping
-   * <code>Object</code>s}; may be {@code null}
+   * <code>Object</code>s}; may be {@code null}; copied, so later
+   * changes to it have no effect
    *
    * @see
    * DefaultObjectWrapper#DefaultObjectWrapper(BeansWrapperConfiguration,
@@ -82,7 +119,8 @@ public class FlexibleObjectWrapper extends DefaultObjectWrapper {
                                final boolean writeProtected,
                                final Map<? extends Class<?>, ? extends ModelFactory> modelFactories) {
     super(configuration, writeProtected);
-    this.modelFactories = modelFactories;
+    this.modelFactories = copy(modelFactories);
+    this.resolvedModelFactories = new ResolvedModelFactories();
   }
 
   /**
@@ -98,7 +136,8 @@ public class FlexibleObjectWrapper extends DefaultObjectWrapper {
    * @param modelFactories a {@link Map} of {@link
    * ModelFactory} instances indexed by {@link Class} instances to
    * assist in {@linkplain DefaultObjectWrapper#wrap(Object) wrapping
-   * <code>Object</code>s}; may be {@code null}
+   * <code>Object</code>s}; may be {@code null}; copied, so later
+   * changes to it have no effect
    *
    * @see
    * DefaultObjectWrapper#DefaultObjectWrapper(BeansWrapperConfiguration,
@@ -108,7 +147,8 @@ public class FlexibleObjectWrapper extends DefaultObjectWrapper {
                                final boolean writeProtected,
                                final Map<? extends Class<?>, ? extends ModelFactory> modelFactories) {
     super(configuration, writeProtected);
-    this.modelFactories = modelFactories;
+    this.modelFactories = copy(modelFactories);
+    this.resolvedModelFactories = new ResolvedModelFactories();
   }
   
   /**
@@ -120,7 +160,8 @@ public class FlexibleObjectWrapper extends DefaultObjectWrapper {
    * @param modelFactories a {@link Map} of {@link
    * ModelFactory} instances indexed by {@link Class} instances to
    * assist in {@linkplain DefaultObjectWrapper#wrap(Object) wrapping
-   * <code>Object</code>s}; may be {@code null}
+   * <code>Object</code>s}; may be {@code null}; copied, so later
+   * changes to it have no effect
    *
    * @see
    * DefaultObjectWrapper#DefaultObjectWrapper(BeansWrapperConfiguration,
@@ -129,7 +170,8 @@ public class FlexibleObjectWrapper extends DefaultObjectWrapper {
   public FlexibleObjectWrapper(final Version version,
                                final Map<? extends Class<?>, ? extends ModelFactory> modelFactories) {
     super(version);
-    this.modelFactories = modelFactories;
+    this.modelFactories = copy(modelFactories);
+    this.resolvedModelFactories = new ResolvedModelFactories();
   }
 
 
@@ -149,11 +191,19 @@ public class FlexibleObjectWrapper extends DefaultObjectWrapper {
    * <p>This implementation tries to return a {@link ModelFactory} as
    * found in the {@linkplain #FlexibleObjectWrapper(Version, Map)
    * <code>Map</code> of such <code>ModelFactory</code> instances
-   * provided at construction time}.  If there is no such {@link
-   * ModelFactory}, then the return value of invoking the {@link
-   * DefaultObjectWrapper#getModelFactory(Class)
+   * provided at construction time}.  A {@link ModelFactory}
+   * registered for {@code c} itself is preferred; failing that, the
+   * one registered for the most specific supertype of {@code c} is
+   * used.  If the most specific registered supertypes are unrelated,
+   * classes are preferred to interfaces, and then names are compared,
+   * so that the choice is always the same.  If there is no such
+   * {@link ModelFactory}, then the return value of invoking the
+   * {@link DefaultObjectWrapper#getModelFactory(Class)
    * super.getModelFactory(Class)} is returned instead.</p>
    *
+   * <p>The outcome of this search is memoized per {@link Class} in a
+   * {@link ClassValue}, so repeated calls cost a single lookup.</p>
+   *
    * @param c the {@link Class} for which a {@link ModelFactory} is
    * desired; must not be {@code null}
    *
@@ -165,13 +215,116 @@ public class FlexibleObjectWrapper extends DefaultObjectWrapper {
   @SuppressWarnings("rawtypes")
   protected ModelFactory getModelFactory(final Class c) {
     ModelFactory returnValue = null;
-    if (c != null && this.modelFactories != null && !this.modelFactories.isEmpty()) {
-      returnValue = this.modelFactories.get(c);
+    if (c != null && this.modelFactories != null) {
+      returnValue = this.resolvedModelFactories.get(c);
     }
-    if (returnValue == null) {
+    if (returnValue == null || returnValue == NO_MODEL_FACTORY) {
       returnValue = super.getModelFactory(c);
     }
     return returnValue;
+  }
+
+  /**
+   * Returns the {@link ModelFactory} registered for the supplied
+   * {@link Class} or its most specific supertype, or {@link
+   * #NO_MODEL_FACTORY} if there is none.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param c the {@link Class} in question; must not be {@code null}
+   *
+   * @return a {@link ModelFactory}, or {@link #NO_MODEL_FACTORY};
+   * never {@code null}
+   *
+   * @see #getModelFactory(Class)
+   */
+  private final ModelFactory resolveModelFactory(final Class<?> c) {
+    ModelFactory returnValue = this.modelFactories.get(c);
+    if (returnValue == null) {
+      final List<Class<?>> candidates = new ArrayList<>();
+      for (final Class<?> registeredClass : this.modelFactories.keySet()) {
+        if (registeredClass != null && registeredClass.isAssignableFrom(c)) {
+          candidates.add(registeredClass);
+        }
+      }
+      // Discard any candidate that is a supertype of another.
+      final List<Class<?>> mostSpecificCandidates = new ArrayList<>(candidates);
+      for (final Class<?> candidate : candidates) {
+        for (final Class<?> other : candidates) {
+          if (candidate != other && candidate.isAssignableFrom(other)) {
+            mostSpecificCandidates.remove(candidate);
+            break;
+          }
+        }
+      }
+      if (!mostSpecificCandidates.isEmpty()) {
+        mostSpecificCandidates.sort(Comparator.<Class<?>, Boolean>comparing(Class::isInterface).thenComparing(Class::getName));
+        returnValue = this.modelFactories.get(mostSpecificCandidates.get(0));
+      }
+    }
+    return returnValue == null ? NO_MODEL_FACTORY : returnValue;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns an unmodifiable copy of the supplied {@link Map}, or
+   * {@code null} if it is {@code null} or empty.
+   *
+   * @param modelFactories the {@link Map} to copy; may be {@code
+   * null}
+   *
+   * @return an unmodifiable copy of {@code modelFactories}, or {@code
+   * null}
+   */
+  private static final Map<? extends Class<?>, ? extends ModelFactory> copy(final Map<? extends Class<?>, ? extends ModelFactory> modelFactories) {
+    if (modelFactories == null || modelFactories.isEmpty()) {
+      return null;
+    }
+    return Collections.unmodifiableMap(new LinkedHashMap<>(modelFactories));
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A {@link ClassValue} that {@linkplain
+   * FlexibleObjectWrapper#resolveModelFactory(Class) resolves} the
+   * {@link ModelFactory} for a {@link Class} the first time it is
+   * requested.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private final class ResolvedModelFactories extends ClassValue<ModelFactory> {
+
+    /**
+     * Creates a new {@link ResolvedModelFactories}.
+     */
+    private ResolvedModelFactories() {
+      super();
+    }
+
+    /**
+     * {@linkplain FlexibleObjectWrapper#resolveModelFactory(Class)
+     * Resolves} the {@link ModelFactory} for the supplied {@link
+     * Class}.
+     *
+     * @param c the {@link Class} in question; must not be {@code null}
+     *
+     * @return a {@link ModelFactory}; never {@code null}
+     */
+    @Override
+    protected final ModelFactory computeValue(final Class<?> c) {
+      return resolveModelFactory(c);
+    }
 
   }
   
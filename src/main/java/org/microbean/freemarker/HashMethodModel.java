@@ -0,0 +1,195 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.List;
+import java.util.Objects;
+
+import freemarker.template.ObjectWrapper;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateMethodModelEx;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+
+/**
+ * A {@link TemplateHashModelEx} that delegates to another {@link
+ * TemplateHashModelEx} and that, so that templates may use either
+ * form, is also a {@link TemplateMethodModelEx} that returns the
+ * wrapped result of a Java method that takes no arguments when
+ * invoked without arguments.
+ *
+ * <p>This permits {@link ClassInfoModel} to answer keys such as
+ * {@code methods} with a hash of members, while templates that call
+ * {@link org.jboss.jandex.ClassInfo#methods() methods()} continue to
+ * receive what Jandex returns.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ScalarMethodModel
+ */
+final class HashMethodModel implements TemplateHashModelEx, TemplateMethodModelEx {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link TemplateHashModelEx} to which hash operations are
+   * delegated.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final TemplateHashModelEx delegate;
+
+  /**
+   * The result of the Java method, wrapped by {@link #exec(List)}.
+   *
+   * <p>This field may be {@code null}.</p>
+   */
+  private final Object value;
+
+  /**
+   * The {@link ObjectWrapper} that wraps {@link #value}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ObjectWrapper objectWrapper;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link HashMethodModel}.
+   *
+   * @param delegate the {@link TemplateHashModelEx} to which hash
+   * operations will be delegated; must not be {@code null}
+   *
+   * @param value the result of the Java method, which will be
+   * wrapped and returned by {@link #exec(List)}; may be {@code null}
+   *
+   * @param objectWrapper the {@link ObjectWrapper} that will wrap
+   * {@code value}; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code delegate} or {@code
+   * objectWrapper} is {@code null}
+   */
+  HashMethodModel(final TemplateHashModelEx delegate, final Object value, final ObjectWrapper objectWrapper) {
+    super();
+    this.delegate = Objects.requireNonNull(delegate);
+    this.value = value;
+    this.objectWrapper = Objects.requireNonNull(objectWrapper);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the wrapped result of the Java method when invoked with
+   * no arguments.
+   *
+   * @param arguments the arguments; must be {@code null} or empty
+   *
+   * @return a {@link TemplateModel}, or {@code null}
+   *
+   * @exception TemplateModelException if there are arguments or if
+   * wrapping fails
+   */
+  @Override
+  public final Object exec(@SuppressWarnings("rawtypes") final List arguments) throws TemplateModelException {
+    if (arguments != null && !arguments.isEmpty()) {
+      throw new TemplateModelException("Unexpected arguments: " + arguments);
+    }
+    return this.objectWrapper.wrap(this.value);
+  }
+
+  /**
+   * Returns the result of {@linkplain TemplateHashModelEx#get(String)
+   * looking up} {@code key} in the delegate.
+   *
+   * @param key the key to look up; may be {@code null}
+   *
+   * @return a {@link TemplateModel}, or {@code null}
+   *
+   * @exception TemplateModelException if an error occurs
+   */
+  @Override
+  public final TemplateModel get(final String key) throws TemplateModelException {
+    return this.delegate.get(key);
+  }
+
+  /**
+   * Returns the size of the delegate.
+   *
+   * @return the size of the delegate
+   *
+   * @exception TemplateModelException if an error occurs
+   */
+  @Override
+  public final int size() throws TemplateModelException {
+    return this.delegate.size();
+  }
+
+  /**
+   * Returns {@code true} if the delegate is empty.
+   *
+   * @return {@code true} if the delegate is empty
+   *
+   * @exception TemplateModelException if an error occurs
+   */
+  @Override
+  public final boolean isEmpty() throws TemplateModelException {
+    return this.delegate.isEmpty();
+  }
+
+  /**
+   * Returns the keys of the delegate.
+   *
+   * @return a {@link TemplateCollectionModel}
+   *
+   * @exception TemplateModelException if an error occurs
+   */
+  @Override
+  public final TemplateCollectionModel keys() throws TemplateModelException {
+    return this.delegate.keys();
+  }
+
+  /**
+   * Returns the values of the delegate.
+   *
+   * @return a {@link TemplateCollectionModel}
+   *
+   * @exception TemplateModelException if an error occurs
+   */
+  @Override
+  public final TemplateCollectionModel values() throws TemplateModelException {
+    return this.delegate.values();
+  }
+
+}
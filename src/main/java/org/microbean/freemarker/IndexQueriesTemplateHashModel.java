@@ -0,0 +1,386 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import java.util.function.Function;
+
+import freemarker.ext.beans.BeansWrapper;
+
+import freemarker.template.ObjectWrapper;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.WrappingTemplateModel;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.AnnotationTarget;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.IndexView;
+
+/**
+ * A {@link WrappingTemplateModel} and a {@link TemplateHashModel}
+ * that answers common questions about the classes in a Jandex {@link
+ * IndexView} without requiring templates to iterate over every known
+ * class.
+ *
+ * <p>The following keys are supported, each yielding a hash whose
+ * keys are names and whose values are sequences of {@link ClassInfo}s
+ * sorted by class name:</p>
+ *
+ * <dl>
+ *
+ * <dt>{@code annotatedWith}</dt>
+ *
+ * <dd>Classes bearing the annotation with the given name, e.g. {@code
+ * annotatedWith["javax.inject.Singleton"]}.</dd>
+ *
+ * <dt>{@code subclassesOf}</dt>
+ *
+ * <dd>All known subclasses of the class with the given name.</dd>
+ *
+ * <dt>{@code implementorsOf}</dt>
+ *
+ * <dd>All known implementors of the interface with the given
+ * name.</dd>
+ *
+ * <dt>{@code inPackage}</dt>
+ *
+ * <dd>Classes in the package with the given name, not including
+ * subpackages; the unnamed package's name is the empty string.</dd>
+ *
+ * </dl>
+ *
+ * <p>The answer to each query is computed once and then remembered
+ * for the life of the {@link IndexQueriesTemplateHashModel}, so
+ * repeating a query from another template or another thread costs
+ * only a map lookup.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #get(String)
+ *
+ * @see IndexedClassesTemplateHashModel
+ */
+public class IndexQueriesTemplateHashModel extends WrappingTemplateModel implements TemplateHashModel {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * A {@link Comparator} ordering {@link ClassInfo}s by class name.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final Comparator<ClassInfo> byName = Comparator.comparing(classInfo -> classInfo.name().toString());
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link IndexView} to query.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final IndexView indexView;
+
+  /**
+   * {@link QueryModel}s indexed by the keys that select them.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, QueryModel> queries;
+
+  /**
+   * Unmodifiable {@link List}s of {@link ClassInfo}s indexed by
+   * package name, or {@code null} if they have not yet been computed.
+   */
+  private volatile Map<String, List<ClassInfo>> packages;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link IndexQueriesTemplateHashModel}.
+   *
+   * @param beansWrapper a {@link BeansWrapper} used to wrap query
+   * results; must not be {@code null}
+   *
+   * @param indexView the {@link IndexView} to query; must not be
+   * {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  public IndexQueriesTemplateHashModel(final BeansWrapper beansWrapper, final IndexView indexView) {
+    super(Objects.requireNonNull(beansWrapper));
+    Objects.requireNonNull(indexView);
+    this.indexView = indexView;
+    final Map<String, QueryModel> queries = new HashMap<>();
+    queries.put("annotatedWith", new QueryModel(this::annotatedWith, beansWrapper));
+    queries.put("subclassesOf", new QueryModel(name -> sorted(indexView.getAllKnownSubclasses(DotName.createSimple(name))), beansWrapper));
+    queries.put("implementorsOf", new QueryModel(name -> sorted(indexView.getAllKnownImplementors(DotName.createSimple(name))), beansWrapper));
+    queries.put("inPackage", new QueryModel(this::inPackage, beansWrapper));
+    this.queries = Collections.unmodifiableMap(queries);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns {@code false} when invoked because there are always
+   * queries available.
+   *
+   * @return {@code false} when invoked
+   */
+  @Override
+  public final boolean isEmpty() {
+    return false;
+  }
+
+  /**
+   * Returns a hash representing the query with the supplied name, or
+   * {@code null} if there is no such query.
+   *
+   * @param key one of {@code annotatedWith}, {@code subclassesOf},
+   * {@code implementorsOf} or {@code inPackage}; may be {@code null}
+   *
+   * @return a {@link TemplateHashModel}, or {@code null}
+   */
+  @Override
+  public final TemplateModel get(final String key) {
+    return key == null ? null : this.queries.get(key);
+  }
+
+  /**
+   * Returns an unmodifiable, sorted {@link List} of the classes
+   * bearing the annotation with the supplied name.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param annotationName the name of the annotation; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null}, unmodifiable {@link List}
+   */
+  private final List<ClassInfo> annotatedWith(final String annotationName) {
+    final Collection<AnnotationInstance> annotations = this.indexView.getAnnotations(DotName.createSimple(annotationName));
+    final Map<DotName, ClassInfo> classes = new LinkedHashMap<>();
+    if (annotations != null) {
+      for (final AnnotationInstance annotation : annotations) {
+        final AnnotationTarget target = annotation.target();
+        if (target != null && target.kind() == AnnotationTarget.Kind.CLASS) {
+          final ClassInfo classInfo = target.asClass();
+          classes.put(classInfo.name(), classInfo);
+        }
+      }
+    }
+    return sorted(classes.values());
+  }
+
+  /**
+   * Returns an unmodifiable, sorted {@link List} of the classes in the
+   * package with the supplied name.
+   *
+   * <p>The first invocation of this method groups all known classes
+   * by package; subsequent invocations simply look up the result.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param packageName the name of the package; must not be {@code
+   * null}
+   *
+   * @return a non-{@code null}, unmodifiable {@link List}
+   */
+  private final List<ClassInfo> inPackage(final String packageName) {
+    Map<String, List<ClassInfo>> packages = this.packages;
+    if (packages == null) {
+      final Map<String, List<ClassInfo>> map = new HashMap<>();
+      for (final ClassInfo classInfo : this.indexView.getKnownClasses()) {
+        if (classInfo != null) {
+          final String className = classInfo.name().toString();
+          final int lastDot = className.lastIndexOf('.');
+          map.computeIfAbsent(lastDot < 0 ? "" : className.substring(0, lastDot), n -> new ArrayList<>()).add(classInfo);
+        }
+      }
+      for (final Map.Entry<String, List<ClassInfo>> entry : map.entrySet()) {
+        entry.setValue(sorted(entry.getValue()));
+      }
+      packages = Collections.unmodifiableMap(map);
+      this.packages = packages;
+    }
+    final List<ClassInfo> returnValue = packages.get(packageName);
+    return returnValue == null ? Collections.emptyList() : returnValue;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns an unmodifiable {@link List} of the supplied {@link
+   * ClassInfo}s sorted by class name.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param classes the {@link ClassInfo}s to sort; may be {@code
+   * null}
+   *
+   * @return a non-{@code null}, unmodifiable {@link List}
+   */
+  private static final List<ClassInfo> sorted(final Collection<? extends ClassInfo> classes) {
+    if (classes == null || classes.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final List<ClassInfo> returnValue = new ArrayList<>(classes);
+    returnValue.sort(byName);
+    return Collections.unmodifiableList(returnValue);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A {@link TemplateHashModel} that answers a single kind of query,
+   * remembering each answer.
+   *
+   * <p>Instances of this class are safe for concurrent use by
+   * multiple threads.</p>
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class QueryModel extends WrappingTemplateModel implements TemplateHashModel {
+
+
+    /*
+     * Instance fields.
+     */
+
+
+    /**
+     * The {@link Function} that answers a query given its argument.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Function<? super String, ? extends List<ClassInfo>> query;
+
+    /**
+     * Answers previously computed by {@link #query}, indexed by
+     * argument.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final ConcurrentMap<String, List<ClassInfo>> results;
+
+
+    /*
+     * Constructors.
+     */
+
+
+    /**
+     * Creates a new {@link QueryModel}.
+     *
+     * @param query the {@link Function} that answers a query given
+     * its argument; must not be {@code null}
+     *
+     * @param objectWrapper the {@link ObjectWrapper} used to wrap
+     * answers; must not be {@code null}
+     *
+     * @exception NullPointerException if either parameter is {@code
+     * null}
+     */
+    private QueryModel(final Function<? super String, ? extends List<ClassInfo>> query, final ObjectWrapper objectWrapper) {
+      super(Objects.requireNonNull(objectWrapper));
+      this.query = Objects.requireNonNull(query);
+      this.results = new ConcurrentHashMap<>();
+    }
+
+
+    /*
+     * Instance methods.
+     */
+
+
+    /**
+     * Returns {@code false} when invoked because any name may be
+     * queried.
+     *
+     * @return {@code false} when invoked
+     */
+    @Override
+    public final boolean isEmpty() {
+      return false;
+    }
+
+    /**
+     * Returns a sequence of the {@link ClassInfo}s that answer the
+     * query for the supplied name.
+     *
+     * @param name the argument to the query; may be {@code null}
+     *
+     * @return a {@link TemplateModel}, or {@code null} if {@code name}
+     * is {@code null}
+     *
+     * @exception TemplateModelException if wrapping fails
+     */
+    @Override
+    public final TemplateModel get(final String name) throws TemplateModelException {
+      if (name == null) {
+        return null;
+      }
+      return this.wrap(this.results.computeIfAbsent(name, this.query));
+    }
+
+  }
+
+}
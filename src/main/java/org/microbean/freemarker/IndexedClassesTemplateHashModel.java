@@ -0,0 +1,153 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.Objects;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import freemarker.ext.beans.BeansWrapper;
+
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.WrappingTemplateModel;
+
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.IndexView;
+
+/**
+ * A {@link WrappingTemplateModel} and a {@link TemplateHashModel}
+ * that makes the classes described by a Jandex {@link IndexView}
+ * look like a map of {@link ClassInfoModel}s indexed by class name.
+ *
+ * <p>Unlike a {@link LoadableClassesTemplateHashModel}, an {@link
+ * IndexedClassesTemplateHashModel} never loads a class.  Looking up
+ * the name of a class that is not in the index yields {@code null}
+ * rather than an error.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #get(String)
+ *
+ * @see ClassInfoModel
+ */
+public class IndexedClassesTemplateHashModel extends WrappingTemplateModel implements TemplateHashModel {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link IndexView} describing the available classes.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final IndexView indexView;
+
+  /**
+   * {@link ClassInfoModel}s indexed by class name.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConcurrentMap<String, ClassInfoModel> models;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link IndexedClassesTemplateHashModel}.
+   *
+   * @param beansWrapper a {@link BeansWrapper} used by the
+   * {@linkplain WrappingTemplateModel superclass} and by the {@link
+   * ClassInfoModel}s this {@link IndexedClassesTemplateHashModel}
+   * creates; must not be {@code null}
+   *
+   * @param indexView the {@link IndexView} describing the available
+   * classes; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  public IndexedClassesTemplateHashModel(final BeansWrapper beansWrapper, final IndexView indexView) {
+    super(Objects.requireNonNull(beansWrapper));
+    Objects.requireNonNull(indexView);
+    this.indexView = indexView;
+    this.models = new ConcurrentHashMap<>();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns {@code true} if the {@link IndexView} supplied at
+   * construction time describes no classes.
+   *
+   * @return {@code true} if there are no indexed classes
+   */
+  @Override
+  public final boolean isEmpty() {
+    return this.indexView.getKnownClasses().isEmpty();
+  }
+
+  /**
+   * Returns a {@link ClassInfoModel} representing the indexed class
+   * with the supplied name, or {@code null} if there is no such class.
+   *
+   * @param className the name of the class; may be {@code null}
+   *
+   * @return a {@link TemplateModel} representing the indexed class,
+   * or {@code null}
+   *
+   * @exception TemplateModelException if an error occurs
+   *
+   * @see ClassInfoModel
+   */
+  @Override
+  public final TemplateModel get(final String className) throws TemplateModelException {
+    if (className == null) {
+      return TemplateModel.NOTHING;
+    }
+    ClassInfoModel returnValue = this.models.get(className);
+    if (returnValue == null) {
+      final ClassInfo classInfo = this.indexView.getClassByName(DotName.createSimple(className));
+      if (classInfo != null) {
+        returnValue = new ClassInfoModel(classInfo, this.indexView, (BeansWrapper)this.getObjectWrapper());
+        final ClassInfoModel existingModel = this.models.putIfAbsent(className, returnValue);
+        if (existingModel != null) {
+          returnValue = existingModel;
+        }
+      }
+    }
+    return returnValue;
+  }
+
+}
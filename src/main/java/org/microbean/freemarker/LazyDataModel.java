@@ -0,0 +1,196 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import freemarker.template.ObjectWrapper;
+import freemarker.template.SimpleCollection;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.WrappingTemplateModel;
+
+/**
+ * A {@link TemplateHashModelEx} suitable for use as the root of a
+ * Freemarker data model whose entries may be computed only when a
+ * template first reads them.
+ *
+ * <p>Any value that is a {@link MemoizedSupplier} is treated as a
+ * lazy entry: the first {@linkplain #get(String) lookup} of its key
+ * from any template invokes it, and every lookup, from any template
+ * sharing the same {@link MemoizedSupplier}, wraps its result.  All
+ * other values are simply {@linkplain WrappingTemplateModel#wrap(Object)
+ * wrapped}.</p>
+ *
+ * <p>Reads are recorded in any {@link AccessTrace} in effect.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MemoizedSupplier
+ *
+ * @see AccessTrace
+ */
+public class LazyDataModel extends WrappingTemplateModel implements TemplateHashModelEx {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The entries of this {@link LazyDataModel}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, Object> map;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link LazyDataModel}.
+   *
+   * @param map the entries of the data model, some of which may be
+   * {@link MemoizedSupplier}s; must not be {@code null}; copied
+   *
+   * @param objectWrapper an {@link ObjectWrapper} used to wrap
+   * values; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  public LazyDataModel(final Map<? extends String, ?> map, final ObjectWrapper objectWrapper) {
+    super(Objects.requireNonNull(objectWrapper));
+    this.map = Collections.unmodifiableMap(new HashMap<>(map));
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the number of entries in this {@link LazyDataModel}.
+   *
+   * @return the number of entries
+   */
+  @Override
+  public final int size() {
+    return this.map.size();
+  }
+
+  /**
+   * Returns {@code true} if this {@link LazyDataModel} has no entries.
+   *
+   * @return {@code true} if this {@link LazyDataModel} has no entries
+   */
+  @Override
+  public final boolean isEmpty() {
+    return this.map.isEmpty();
+  }
+
+  /**
+   * Returns the wrapped value indexed under the supplied key,
+   * computing it first if it is a {@link MemoizedSupplier} that has
+   * not yet been invoked.
+   *
+   * @param key the key; may be {@code null}
+   *
+   * @return a {@link TemplateModel}, or {@code null}
+   *
+   * @exception TemplateModelException if computing or wrapping the
+   * value fails
+   */
+  @Override
+  public final TemplateModel get(final String key) throws TemplateModelException {
+    AccessTrace.keyRead(key);
+    Object value = this.map.get(key);
+    if (value instanceof MemoizedSupplier) {
+      try {
+        value = ((MemoizedSupplier<?>)value).get();
+      } catch (final RuntimeException runtimeException) {
+        throw new TemplateModelException("Could not compute the data model entry " + key + ": " + runtimeException.getMessage(), runtimeException);
+      }
+    }
+    return this.wrap(value);
+  }
+
+  /**
+   * Returns the keys of this {@link LazyDataModel}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link TemplateCollectionModel}
+   */
+  @Override
+  public final TemplateCollectionModel keys() {
+    AccessTrace.allKeysRead();
+    return new SimpleCollection(this.map.keySet(), this.getObjectWrapper());
+  }
+
+  /**
+   * Returns the values of this {@link LazyDataModel}, computing any
+   * lazy entries that have not yet been computed.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link TemplateCollectionModel}
+   *
+   * @exception TemplateModelException if computing or wrapping a
+   * value fails
+   */
+  @Override
+  public final TemplateCollectionModel values() throws TemplateModelException {
+    AccessTrace.allKeysRead();
+    final Collection<TemplateModel> values = new ArrayList<>(this.map.size());
+    for (final String key : this.map.keySet()) {
+      values.add(this.get(key));
+    }
+    return new SimpleCollection(values, this.getObjectWrapper());
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * LazyDataModel} that does not cause any lazy entries to be
+   * computed.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public String toString() {
+    return this.map.toString();
+  }
+
+}
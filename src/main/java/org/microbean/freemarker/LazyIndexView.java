@@ -0,0 +1,187 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.Collection;
+import java.util.Objects;
+
+import java.util.function.Supplier;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.IndexView;
+
+/**
+ * An {@link IndexView} that obtains the {@link IndexView} to which
+ * it delegates only when it is first queried.
+ *
+ * <p>Reading a large Jandex index is expensive.  A {@link
+ * LazyIndexView} may be handed to the models in this package, such
+ * as {@link IndexedClassesTemplateHashModel} and {@link
+ * ClassInfoModelFactory}, without the index being read unless a
+ * template actually uses one of them.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads if the {@link IndexView} they supply is.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #getIndexView()
+ */
+public final class LazyIndexView implements IndexView {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link MemoizedSupplier} of the {@link IndexView} to which
+   * this {@link LazyIndexView} delegates.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final MemoizedSupplier<IndexView> indexView;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link LazyIndexView}.
+   *
+   * @param indexViewSupplier a {@link Supplier} of the {@link
+   * IndexView} to which this {@link LazyIndexView} will delegate;
+   * must not be {@code null}; must not return {@code null}; will be
+   * invoked successfully at most once
+   *
+   * @exception NullPointerException if {@code indexViewSupplier} is
+   * {@code null}
+   */
+  public LazyIndexView(final Supplier<? extends IndexView> indexViewSupplier) {
+    super();
+    this.indexView = new MemoizedSupplier<>(indexViewSupplier);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@link IndexView} to which this {@link LazyIndexView}
+   * delegates, obtaining it if necessary.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link IndexView} to which this
+   * {@link LazyIndexView} delegates
+   *
+   * @exception NullPointerException if the {@link Supplier} supplied
+   * at construction time returned {@code null}
+   */
+  public final IndexView getIndexView() {
+    return Objects.requireNonNull(this.indexView.get());
+  }
+
+  /**
+   * Returns {@code true} if the {@link IndexView} to which this
+   * {@link LazyIndexView} delegates has already been obtained.
+   *
+   * @return {@code true} if the delegate has already been obtained
+   */
+  public final boolean isLoaded() {
+    return this.indexView.isComputed();
+  }
+
+  /**
+   * Returns the result of invoking
+   * {@link IndexView#getKnownClasses()} on the
+   * {@linkplain #getIndexView() delegate}, obtaining it if necessary.
+   */
+  @Override
+  public final Collection<ClassInfo> getKnownClasses() {
+    return this.getIndexView().getKnownClasses();
+  }
+
+  /**
+   * Returns the result of invoking
+   * {@link IndexView#getClassByName(DotName)} on the
+   * {@linkplain #getIndexView() delegate}, obtaining it if necessary.
+   */
+  @Override
+  public final ClassInfo getClassByName(final DotName className) {
+    return this.getIndexView().getClassByName(className);
+  }
+
+  /**
+   * Returns the result of invoking
+   * {@link IndexView#getKnownDirectSubclasses(DotName)} on the
+   * {@linkplain #getIndexView() delegate}, obtaining it if necessary.
+   */
+  @Override
+  public final Collection<ClassInfo> getKnownDirectSubclasses(final DotName className) {
+    return this.getIndexView().getKnownDirectSubclasses(className);
+  }
+
+  /**
+   * Returns the result of invoking
+   * {@link IndexView#getAllKnownSubclasses(DotName)} on the
+   * {@linkplain #getIndexView() delegate}, obtaining it if necessary.
+   */
+  @Override
+  public final Collection<ClassInfo> getAllKnownSubclasses(final DotName className) {
+    return this.getIndexView().getAllKnownSubclasses(className);
+  }
+
+  /**
+   * Returns the result of invoking
+   * {@link IndexView#getKnownDirectImplementors(DotName)} on the
+   * {@linkplain #getIndexView() delegate}, obtaining it if necessary.
+   */
+  @Override
+  public final Collection<ClassInfo> getKnownDirectImplementors(final DotName className) {
+    return this.getIndexView().getKnownDirectImplementors(className);
+  }
+
+  /**
+   * Returns the result of invoking
+   * {@link IndexView#getAllKnownImplementors(DotName)} on the
+   * {@linkplain #getIndexView() delegate}, obtaining it if necessary.
+   */
+  @Override
+  public final Collection<ClassInfo> getAllKnownImplementors(final DotName interfaceName) {
+    return this.getIndexView().getAllKnownImplementors(interfaceName);
+  }
+
+  /**
+   * Returns the result of invoking
+   * {@link IndexView#getAnnotations(DotName)} on the
+   * {@linkplain #getIndexView() delegate}, obtaining it if necessary.
+   */
+  @Override
+  public final Collection<AnnotationInstance> getAnnotations(final DotName annotationName) {
+    return this.getIndexView().getAnnotations(annotationName);
+  }
+
+}
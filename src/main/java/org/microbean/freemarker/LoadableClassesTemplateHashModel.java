@@ -16,25 +16,65 @@
  */
 package org.microbean.freemarker;
 
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.Objects;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import freemarker.template.ObjectWrapper;
-import freemarker.template.TemplateHashModel;
+import freemarker.template.SimpleScalar;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateHashModelEx;
 import freemarker.template.TemplateModel;
 import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateModelIterator;
 import freemarker.template.WrappingTemplateModel;
 
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.IndexView;
+
 /**
- * A {@link WrappingTemplateModel} and a {@link TemplateHashModel}
+ * A {@link WrappingTemplateModel} and a {@link TemplateHashModelEx}
  * that makes the universe of {@link Class} instances that are
  * loadable by a given {@link ClassLoader} look like a map.
  *
+ * <p>Each {@link Class} is loaded and wrapped at most once per
+ * instance; the resulting {@link TemplateModel} is cached and
+ * returned by subsequent lookups of the same name.  Looking up a
+ * name that cannot be loaded yields {@code null}, so templates can
+ * probe for optional classes with {@code classes["com.example.Foo"]??}.
+ * Such names are cached as well, so that repeatedly probing for an
+ * absent class neither asks the {@link ClassLoader} to search for it
+ * again nor creates a new exception.</p>
+ *
+ * <p>A {@link ClassLoader} cannot list the classes it can load, so
+ * the {@linkplain #keys() keys} and {@linkplain #values() values} of
+ * a {@link LoadableClassesTemplateHashModel} are the classes
+ * described by the Jandex {@link IndexView} supplied at construction
+ * time, if any, in no particular order.  They are produced one at a
+ * time as a template iterates over them: nothing is loaded or
+ * wrapped up front, and iterating over keys never loads a class.
+ * Enumeration therefore requires an index: {@link #size()}, {@link
+ * #keys()} and {@link #values()} cover only indexed classes, so
+ * without an index {@link #size()} is {@code 0} and nothing is
+ * enumerated.  {@link #isEmpty()}, by contrast, is always {@code
+ * false}, since classes can always be looked up by name.</p>
+ *
+ * <p>Lookups and iterations are recorded in any {@link AccessTrace}
+ * in effect.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
  * @author <a href="https://about.me/lairdnelson"
  * target="_parent">Laird Nelson</a>
  *
  * @see #get(String)
  */
-public class LoadableClassesTemplateHashModel extends WrappingTemplateModel implements TemplateHashModel {
+public class LoadableClassesTemplateHashModel extends WrappingTemplateModel implements TemplateHashModelEx {
 
 
   /*
@@ -50,6 +90,35 @@ public class LoadableClassesTemplateHashModel extends WrappingTemplateModel impl
    */
   private final ClassLoader classLoader;
 
+  /**
+   * Whether loading a {@link Class} also {@linkplain
+   * Class#forName(String, boolean, ClassLoader) initializes} it.
+   */
+  private final boolean initialize;
+
+  /**
+   * The {@link IndexView} describing the classes that are enumerated
+   * by {@link #keys()} and {@link #values()}.
+   *
+   * <p>This field may be {@code null}.</p>
+   */
+  private final IndexView indexView;
+
+  /**
+   * {@link TemplateModel}s representing loaded {@link Class}es,
+   * indexed by {@linkplain Class#getName() class name}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConcurrentMap<String, TemplateModel> models;
+
+  /**
+   * The names of classes that could not be loaded.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Set<String> absentClasses;
+
 
   /*
    * Constructors.
@@ -69,11 +138,69 @@ public class LoadableClassesTemplateHashModel extends WrappingTemplateModel impl
    *
    * @exception NullPointerException if {@code classLoader} is {@code
    * null}
+   *
+   * @see #LoadableClassesTemplateHashModel(ObjectWrapper, ClassLoader,
+   * boolean)
    */
   public LoadableClassesTemplateHashModel(final ObjectWrapper objectWrapper, final ClassLoader classLoader) {
+    this(objectWrapper, classLoader, false);
+  }
+
+  /**
+   * Creates a new {@link LoadableClassesTemplateHashModel}.
+   *
+   * @param objectWrapper an {@link ObjectWrapper} used by the
+   * {@linkplain WrappingTemplateModel superclass}; must not be {@code
+   * null}
+   *
+   * @param classLoader the {@link ClassLoader} to use to {@linkplain
+   * Class#forName(String, boolean, ClassLoader) load classes}; must
+   * not be {@code null}
+   *
+   * @param initialize whether loading a {@link Class} should also run
+   * its static initializers; templates that merely introspect classes
+   * should pass {@code false}
+   *
+   * @exception NullPointerException if {@code classLoader} is {@code
+   * null}
+   *
+   * @see #LoadableClassesTemplateHashModel(ObjectWrapper, ClassLoader,
+   * boolean, IndexView)
+   */
+  public LoadableClassesTemplateHashModel(final ObjectWrapper objectWrapper, final ClassLoader classLoader, final boolean initialize) {
+    this(objectWrapper, classLoader, initialize, null);
+  }
+
+  /**
+   * Creates a new {@link LoadableClassesTemplateHashModel}.
+   *
+   * @param objectWrapper an {@link ObjectWrapper} used by the
+   * {@linkplain WrappingTemplateModel superclass}; must not be {@code
+   * null}
+   *
+   * @param classLoader the {@link ClassLoader} to use to {@linkplain
+   * Class#forName(String, boolean, ClassLoader) load classes}; must
+   * not be {@code null}
+   *
+   * @param initialize whether loading a {@link Class} should also run
+   * its static initializers; templates that merely introspect classes
+   * should pass {@code false}
+   *
+   * @param indexView an {@link IndexView} describing the classes that
+   * will be enumerated by {@link #keys()} and {@link #values()}; may
+   * be {@code null} in which case nothing will be enumerated
+   *
+   * @exception NullPointerException if {@code classLoader} is {@code
+   * null}
+   */
+  public LoadableClassesTemplateHashModel(final ObjectWrapper objectWrapper, final ClassLoader classLoader, final boolean initialize, final IndexView indexView) {
     super(objectWrapper);
     Objects.requireNonNull(classLoader);
     this.classLoader = classLoader;
+    this.initialize = initialize;
+    this.indexView = indexView;
+    this.models = new ConcurrentHashMap<>();
+    this.absentClasses = ConcurrentHashMap.newKeySet();
   }
 
 
@@ -85,9 +212,17 @@ public class LoadableClassesTemplateHashModel extends WrappingTemplateModel impl
   /**
    * Returns {@code false} when invoked to indicate that there are
    * always {@link Class} instances that can be {@linkplain
-   * ClassLoader#loadClass(String) loaded}.
+   * ClassLoader#loadClass(String) loaded}, so that {@code
+   * classes?has_content} is always {@code true}.
+   *
+   * <p>This method does not agree with {@link #size()}, {@link
+   * #keys()} and {@link #values()}, which cover only the classes
+   * described by the {@link IndexView} supplied at construction time,
+   * if any.</p>
    *
    * @return {@code false} when invoked
+   *
+   * @see #size()
    */
   @Override
   public final boolean isEmpty() {
@@ -96,19 +231,20 @@ public class LoadableClassesTemplateHashModel extends WrappingTemplateModel impl
 
   /**
    * Returns a {@link TemplateModel} representing a {@linkplain
-   * ClassLoader#loadClass(String) loaded <code>Class</code>}.
+   * ClassLoader#loadClass(String) loaded <code>Class</code>}, or
+   * {@code null} if the class could not be found.
    *
-   * <p>This method never returns {@code null}.</p>
+   * <p>This method may return {@code null}.</p>
    *
-   * @param className the name of the {@link Class} to load; must not
-   * be {@code null}
+   * @param className the name of the {@link Class} to load; may be
+   * {@code null}
    *
    * @return a {@link TemplateModel} representing a {@linkplain
-   * ClassLoader#loadClass(String) loaded <code>Class</code>}; never
+   * ClassLoader#loadClass(String) loaded <code>Class</code>}, or
    * {@code null}
    *
-   * @exception TemplateModelException if the given class could not be
-   * found
+   * @exception TemplateModelException if the {@link Class} could not
+   * be wrapped
    *
    * @see ClassModel
    */
@@ -116,13 +252,189 @@ public class LoadableClassesTemplateHashModel extends WrappingTemplateModel impl
   public final TemplateModel get(final String className) throws TemplateModelException {
     TemplateModel returnValue = TemplateModel.NOTHING;
     if (className != null) {
-      try {
-        returnValue = this.wrap(this.classLoader.loadClass(className));
-      } catch (final ClassNotFoundException classNotFoundException) {
-        throw new TemplateModelException(classNotFoundException.getMessage(), classNotFoundException);
+      AccessTrace.classRead(className);
+      returnValue = this.models.get(className);
+      if (returnValue == null && !this.absentClasses.contains(className)) {
+        try {
+          returnValue = this.wrap(this.loadClass(className));
+        } catch (final ClassNotFoundException classNotFoundException) {
+          this.absentClasses.add(className);
+        }
+        if (returnValue != null) {
+          final TemplateModel existingModel = this.models.putIfAbsent(className, returnValue);
+          if (existingModel != null) {
+            returnValue = existingModel;
+          }
+        }
       }
     }
     return returnValue;
   }
+
+  /**
+   * Returns the number of classes described by the {@link IndexView}
+   * supplied at construction time, or {@code 0} if there is no such
+   * {@link IndexView}.
+   *
+   * @return the number of enumerable classes
+   */
+  @Override
+  public final int size() {
+    return this.indexView == null ? 0 : this.indexView.getKnownClasses().size();
+  }
+
+  /**
+   * Returns a {@link TemplateCollectionModel} of the names of the
+   * classes described by the {@link IndexView} supplied at
+   * construction time.
+   *
+   * <p>No class is loaded by this method or by iterating over the
+   * returned {@link TemplateCollectionModel}.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link TemplateCollectionModel}
+   */
+  @Override
+  public final TemplateCollectionModel keys() {
+    AccessTrace.allClassesRead();
+    return new ClassesCollectionModel(false);
+  }
+
+  /**
+   * Returns a {@link TemplateCollectionModel} of {@link
+   * TemplateModel}s representing the classes described by the {@link
+   * IndexView} supplied at construction time, each of which is
+   * loaded and wrapped only when iteration reaches it.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link TemplateCollectionModel}
+   *
+   * @see #get(String)
+   */
+  @Override
+  public final TemplateCollectionModel values() {
+    AccessTrace.allClassesRead();
+    return new ClassesCollectionModel(true);
+  }
+
+  /**
+   * Loads the {@link Class} with the supplied name using the {@link
+   * ClassLoader} supplied at construction time, initializing it only
+   * if this {@link LoadableClassesTemplateHashModel} was so
+   * configured.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param className the name of the {@link Class} to load; must not
+   * be {@code null}
+   *
+   * @return the loaded {@link Class}; never {@code null}
+   *
+   * @exception ClassNotFoundException if the {@link Class} could not
+   * be found
+   */
+  private final Class<?> loadClass(final String className) throws ClassNotFoundException {
+    final Events.Span span = Events.classLoad(className);
+    try {
+      if (this.initialize) {
+        return Class.forName(className, true, this.classLoader);
+      }
+      return this.classLoader.loadClass(className);
+    } finally {
+      span.close();
+    }
+  }
   
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A {@link TemplateCollectionModel} that iterates over the classes
+   * described by the {@link IndexView} supplied at construction time
+   * to its enclosing {@link LoadableClassesTemplateHashModel},
+   * producing either their names or their {@linkplain
+   * LoadableClassesTemplateHashModel#get(String) models} as it goes.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private final class ClassesCollectionModel implements TemplateCollectionModel {
+
+
+    /*
+     * Instance fields.
+     */
+
+
+    /**
+     * Whether this {@link ClassesCollectionModel} produces models
+     * rather than names.
+     */
+    private final boolean values;
+
+
+    /*
+     * Constructors.
+     */
+
+
+    /**
+     * Creates a new {@link ClassesCollectionModel}.
+     *
+     * @param values whether the new {@link ClassesCollectionModel}
+     * should produce models rather than names
+     */
+    private ClassesCollectionModel(final boolean values) {
+      super();
+      this.values = values;
+    }
+
+
+    /*
+     * Instance methods.
+     */
+
+
+    /**
+     * Returns a new {@link TemplateModelIterator} over the names or
+     * models of the enumerable classes.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a new, non-{@code null} {@link TemplateModelIterator}
+     */
+    @Override
+    public final TemplateModelIterator iterator() {
+      final IndexView indexView = LoadableClassesTemplateHashModel.this.indexView;
+      final Iterator<ClassInfo> iterator;
+      if (indexView == null) {
+        iterator = Collections.emptyIterator();
+      } else {
+        iterator = indexView.getKnownClasses().iterator();
+      }
+      return new TemplateModelIterator() {
+        @Override
+        public final boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public final TemplateModel next() throws TemplateModelException {
+          final String className = iterator.next().name().toString();
+          if (values) {
+            return LoadableClassesTemplateHashModel.this.get(className);
+          }
+          return new SimpleScalar(className);
+        }
+      };
+    }
+
+  }
+
 }
@@ -0,0 +1,219 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.lang.reflect.Executable;
+import java.lang.reflect.Member;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import java.util.function.Function;
+
+/**
+ * An immutable index of the members of a class, such as its methods
+ * or fields, by name, preserving overloads, and by signature.
+ *
+ * <p>A member's signature is its name for a field, and its name
+ * followed by the parenthesized, comma-separated {@linkplain
+ * Class#getTypeName() names} of its erased parameter types for a
+ * method, e.g. {@code indexOf(java.lang.String,int)}.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @param <T> the type of member indexed, such as {@link Member} or
+ * {@link org.jboss.jandex.MethodInfo}
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ClassMembers
+ *
+ * @see MembersTemplateHashModel
+ */
+final class MemberIndex<T> {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * Unmodifiable {@link List}s of members indexed by name, in
+   * the order in which names were first encountered.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, List<T>> byName;
+
+  /**
+   * Members indexed by signature.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, T> bySignature;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link MemberIndex}.
+   *
+   * @param members the members to index; must not be {@code null};
+   * {@code null} elements are ignored
+   *
+   * @param nameFunction a {@link Function} returning the name of a
+   * member; must not be {@code null}
+   *
+   * @param signatureFunction a {@link Function} returning the
+   * signature of a member; must not be {@code null}
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   *
+   * @see #of(Member[])
+   */
+  MemberIndex(final Iterable<? extends T> members,
+              final Function<? super T, ? extends String> nameFunction,
+              final Function<? super T, ? extends String> signatureFunction) {
+    super();
+    Objects.requireNonNull(members);
+    Objects.requireNonNull(nameFunction);
+    Objects.requireNonNull(signatureFunction);
+    final Map<String, List<T>> byName = new LinkedHashMap<>();
+    final Map<String, T> bySignature = new HashMap<>();
+    for (final T member : members) {
+      if (member != null) {
+        byName.computeIfAbsent(nameFunction.apply(member), name -> new ArrayList<>(1)).add(member);
+        bySignature.put(signatureFunction.apply(member), member);
+      }
+    }
+    for (final Map.Entry<String, List<T>> entry : byName.entrySet()) {
+      entry.setValue(Collections.unmodifiableList(entry.getValue()));
+    }
+    this.byName = Collections.unmodifiableMap(byName);
+    this.bySignature = Collections.unmodifiableMap(bySignature);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns an unmodifiable {@link List} of the members with the
+   * supplied name, or {@code null} if there are none.
+   *
+   * @param name the name in question; may be {@code null}
+   *
+   * @return an unmodifiable, non-empty {@link List} of members, or
+   * {@code null}
+   */
+  final List<T> get(final String name) {
+    return this.byName.get(name);
+  }
+
+  /**
+   * Returns the member with the supplied signature, or {@code null}
+   * if there is none.
+   *
+   * @param signature the signature in question; may be {@code null}
+   *
+   * @return a member, or {@code null}
+   */
+  final T getBySignature(final String signature) {
+    return this.bySignature.get(signature);
+  }
+
+  /**
+   * Returns an unmodifiable {@link Set} of the distinct names of the
+   * indexed members.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link Set}
+   */
+  final Set<String> getNames() {
+    return this.byName.keySet();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns a new {@link MemberIndex} indexing the supplied {@link
+   * Member}s.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type of {@link Member}
+   *
+   * @param members the {@link Member}s to index; must not be {@code
+   * null}; {@code null} elements are ignored
+   *
+   * @return a new {@link MemberIndex}; never {@code null}
+   *
+   * @exception NullPointerException if {@code members} is {@code
+   * null}
+   */
+  static final <T extends Member> MemberIndex<T> of(final T[] members) {
+    return new MemberIndex<>(Arrays.asList(members), Member::getName, MemberIndex::signature);
+  }
+
+  /**
+   * Returns the signature of the supplied {@link Member}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param member the {@link Member}; must not be {@code null}
+   *
+   * @return the signature of {@code member}; never {@code null}
+   *
+   * @exception NullPointerException if {@code member} is {@code null}
+   */
+  static final String signature(final Member member) {
+    final String name = member.getName();
+    if (!(member instanceof Executable)) {
+      return name;
+    }
+    final StringBuilder sb = new StringBuilder(name).append('(');
+    final Class<?>[] parameterTypes = ((Executable)member).getParameterTypes();
+    for (int i = 0; i < parameterTypes.length; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(parameterTypes[i].getTypeName());
+    }
+    return sb.append(')').toString();
+  }
+
+}
@@ -0,0 +1,327 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import freemarker.template.ObjectWrapper;
+import freemarker.template.SimpleCollection;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
+import freemarker.template.WrappingTemplateModel;
+
+/**
+ * A {@link TemplateHashModelEx} exposing the members in a {@link
+ * MemberIndex} without copying or wrapping them up front.
+ *
+ * <p>Looking up a member's name yields an {@link OverloadsModel}, a
+ * sequence of all the members with that name that also behaves like
+ * the member itself when there is just one of them.  Looking up a
+ * member's signature, such as {@code indexOf(java.lang.String,int)},
+ * yields that member alone.  Only names are reported by {@link
+ * #keys()}.</p>
+ *
+ * <p>Members are wrapped only when a template actually retrieves
+ * them.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ClassModel
+ *
+ * @see MemberIndex
+ */
+final class MembersTemplateHashModel extends WrappingTemplateModel implements TemplateHashModelEx {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link MemberIndex} being exposed.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final MemberIndex<?> index;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link MembersTemplateHashModel}.
+   *
+   * @param index the {@link MemberIndex} to expose; must not be
+   * {@code null}
+   *
+   * @param objectWrapper the {@link ObjectWrapper} that will wrap
+   * members as they are retrieved; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  MembersTemplateHashModel(final MemberIndex<?> index, final ObjectWrapper objectWrapper) {
+    super(Objects.requireNonNull(objectWrapper));
+    this.index = Objects.requireNonNull(index);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns an {@link OverloadsModel} if {@code key} is the name of
+   * at least one member, the wrapped member if {@code key} is the
+   * signature of a member, or {@code null}.
+   *
+   * @param key the name or signature of a member; may be {@code null}
+   *
+   * @return a {@link TemplateModel}, or {@code null}
+   *
+   * @exception TemplateModelException if wrapping fails
+   */
+  @Override
+  public final TemplateModel get(final String key) throws TemplateModelException {
+    final List<?> members = this.index.get(key);
+    if (members != null) {
+      return new OverloadsModel(members, this.getObjectWrapper());
+    }
+    final Object member = this.index.getBySignature(key);
+    if (member != null) {
+      return this.wrap(member);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the number of distinct member names.
+   *
+   * @return the number of distinct member names
+   */
+  @Override
+  public final int size() {
+    return this.index.getNames().size();
+  }
+
+  /**
+   * Returns {@code true} if there are no members.
+   *
+   * @return {@code true} if there are no members
+   */
+  @Override
+  public final boolean isEmpty() {
+    return this.index.getNames().isEmpty();
+  }
+
+  /**
+   * Returns the distinct member names.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link TemplateCollectionModel}
+   */
+  @Override
+  public final TemplateCollectionModel keys() {
+    return new SimpleCollection(this.index.getNames(), this.getObjectWrapper());
+  }
+
+  /**
+   * Returns an {@link OverloadsModel} for each distinct member name.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link TemplateCollectionModel}
+   */
+  @Override
+  public final TemplateCollectionModel values() {
+    final Collection<String> names = this.index.getNames();
+    final Collection<TemplateModel> values = new ArrayList<>(names.size());
+    for (final String name : names) {
+      values.add(new OverloadsModel(this.index.get(name), this.getObjectWrapper()));
+    }
+    return new SimpleCollection(values, this.getObjectWrapper());
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A {@link TemplateSequenceModel} of members sharing a name.
+   *
+   * <p>So that templates written against earlier versions of {@link
+   * ClassModel}, which exposed only one member per name, continue to
+   * work, an {@link OverloadsModel} is also a {@link
+   * TemplateScalarModel} and a {@link TemplateHashModel} that behaves
+   * like the last of its members.</p>
+   *
+   * <p>Instances of this class are safe for concurrent use by
+   * multiple threads.</p>
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  static final class OverloadsModel extends WrappingTemplateModel implements TemplateHashModel, TemplateScalarModel, TemplateSequenceModel {
+
+
+    /*
+     * Instance fields.
+     */
+
+
+    /**
+     * The members sharing a name.
+     *
+     * <p>This field is never {@code null} and is never empty.</p>
+     */
+    private final List<?> members;
+
+
+    /*
+     * Constructors.
+     */
+
+
+    /**
+     * Creates a new {@link OverloadsModel}.
+     *
+     * @param members the members sharing a name; must not be {@code
+     * null} or empty
+     *
+     * @param objectWrapper the {@link ObjectWrapper} that will wrap
+     * members as they are retrieved; must not be {@code null}
+     *
+     * @exception NullPointerException if either parameter is {@code
+     * null}
+     *
+     * @exception IllegalArgumentException if {@code members} is empty
+     */
+    private OverloadsModel(final List<?> members, final ObjectWrapper objectWrapper) {
+      super(Objects.requireNonNull(objectWrapper));
+      if (members.isEmpty()) {
+        throw new IllegalArgumentException("members.isEmpty()");
+      }
+      this.members = members;
+    }
+
+
+    /*
+     * Instance methods.
+     */
+
+
+    /**
+     * Returns the wrapped member at the supplied index, or {@code
+     * null} if the index is out of range.
+     *
+     * @param index the index of the member
+     *
+     * @return a {@link TemplateModel}, or {@code null}
+     *
+     * @exception TemplateModelException if wrapping fails
+     */
+    @Override
+    public final TemplateModel get(final int index) throws TemplateModelException {
+      if (index < 0 || index >= this.members.size()) {
+        return null;
+      }
+      return this.wrap(this.members.get(index));
+    }
+
+    /**
+     * Returns the number of members sharing the name.
+     *
+     * @return the number of members; always greater than zero
+     */
+    @Override
+    public final int size() {
+      return this.members.size();
+    }
+
+    /**
+     * Returns the result of {@linkplain TemplateHashModel#get(String)
+     * looking up} {@code key} in the last member.
+     *
+     * @param key the key to look up; may be {@code null}
+     *
+     * @return a {@link TemplateModel}, or {@code null}
+     *
+     * @exception TemplateModelException if the wrapped member is not
+     * a {@link TemplateHashModel} or if any other error occurs
+     */
+    @Override
+    public final TemplateModel get(final String key) throws TemplateModelException {
+      final TemplateModel member = this.wrap(this.members.get(this.members.size() - 1));
+      if (!(member instanceof TemplateHashModel)) {
+        throw new TemplateModelException("Not a hash: " + member);
+      }
+      return ((TemplateHashModel)member).get(key);
+    }
+
+    /**
+     * Returns {@code false} when invoked because an {@link
+     * OverloadsModel} always has at least one member.
+     *
+     * @return {@code false} when invoked
+     */
+    @Override
+    public final boolean isEmpty() {
+      return false;
+    }
+
+    /**
+     * Returns the {@linkplain Object#toString() string
+     * representations} of the members, separated by {@code ", "}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null} {@link String}
+     */
+    @Override
+    public final String getAsString() {
+      final StringBuilder sb = new StringBuilder();
+      for (final Object member : this.members) {
+        if (sb.length() > 0) {
+          sb.append(", ");
+        }
+        sb.append(member);
+      }
+      return sb.toString();
+    }
+
+  }
+
+}
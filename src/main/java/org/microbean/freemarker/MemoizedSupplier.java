@@ -0,0 +1,143 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.Objects;
+
+import java.util.function.Supplier;
+
+/**
+ * A {@link Supplier} that invokes another {@link Supplier} at most
+ * once, the first time its {@link #get()} method is called, and
+ * thereafter returns the same result.
+ *
+ * <p>If the underlying {@link Supplier} throws an exception, nothing
+ * is remembered and the next invocation of {@link #get()} will try
+ * again.</p>
+ *
+ * <p>{@link LazyDataModel} treats values that are instances of this
+ * class as data model entries to be computed on first access.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @param <T> the type of the supplied value
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see LazyDataModel
+ */
+public final class MemoizedSupplier<T> implements Supplier<T> {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link Supplier} whose result is remembered.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Supplier<? extends T> supplier;
+
+  /**
+   * Whether {@link #value} has been computed.
+   */
+  private volatile boolean computed;
+
+  /**
+   * The remembered result of {@link #supplier}.
+   *
+   * <p>This field may be {@code null}.  It is only meaningful once
+   * {@link #computed} is {@code true}.</p>
+   */
+  private T value;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link MemoizedSupplier}.
+   *
+   * @param supplier the {@link Supplier} whose result will be
+   * remembered; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code supplier} is {@code
+   * null}
+   */
+  public MemoizedSupplier(final Supplier<? extends T> supplier) {
+    super();
+    this.supplier = Objects.requireNonNull(supplier);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the result of invoking the {@link Supplier} supplied at
+   * construction time, invoking it only if it has not yet
+   * successfully been invoked.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the supplied value, which may be {@code null}
+   */
+  @Override
+  public final T get() {
+    if (!this.computed) {
+      synchronized (this) {
+        if (!this.computed) {
+          this.value = this.supplier.get();
+          this.computed = true;
+        }
+      }
+    }
+    return this.value;
+  }
+
+  /**
+   * Returns {@code true} if the value has already been computed.
+   *
+   * @return {@code true} if the value has already been computed
+   */
+  public final boolean isComputed() {
+    return this.computed;
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * MemoizedSupplier} that does not cause its value to be computed.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    return this.computed ? String.valueOf(this.value) : "(not yet computed)";
+  }
+
+}
@@ -0,0 +1,185 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import freemarker.ext.beans.BeanModel;
+import freemarker.ext.beans.BeansWrapper;
+
+import freemarker.template.SimpleScalar;
+import freemarker.template.SimpleSequence;
+import freemarker.template.TemplateHashModel; // for javadoc only
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+
+import org.jboss.jandex.MethodInfo;
+import org.jboss.jandex.Type;
+
+/**
+ * A {@link BeanModel} and a {@link TemplateScalarModel} representing
+ * a Jandex {@link MethodInfo}.
+ *
+ * <p>In addition to the keys {@linkplain BeanModel#get(String)
+ * handled by the superclass}, a {@link MethodInfoModel} answers the
+ * following keys directly:</p>
+ *
+ * <dl>
+ *
+ * <dt>{@code name}</dt>
+ *
+ * <dd>The name of the method.  Both {@code name} and {@code name()}
+ * work.</dd>
+ *
+ * <dt>{@code signature}</dt>
+ *
+ * <dd>The signature of the method in the form used by {@link
+ * ClassModel}, such as {@code indexOf(java.lang.String,int)}.</dd>
+ *
+ * <dt>{@code parameterTypes}</dt>
+ *
+ * <dd>A sequence of the names of the erasures of the method's
+ * parameter types, such as {@code java.lang.String[]}.</dd>
+ *
+ * <dt>{@code returnTypeName}</dt>
+ *
+ * <dd>The name of the erasure of the method's return type.</dd>
+ *
+ * </dl>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MethodInfoModelFactory
+ */
+public class MethodInfoModel extends BeanModel implements TemplateScalarModel {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link MethodInfo} to model.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final MethodInfo methodInfo;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link MethodInfoModel}.
+   *
+   * @param methodInfo the {@link MethodInfo} to model; must not be
+   * {@code null}
+   *
+   * @param beansWrapper a {@link BeansWrapper} that will be used by
+   * the {@linkplain BeanModel superclass}; see its documentation for
+   * details; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  public MethodInfoModel(final MethodInfo methodInfo, final BeansWrapper beansWrapper) {
+    super(methodInfo, beansWrapper);
+    Objects.requireNonNull(methodInfo);
+    this.methodInfo = methodInfo;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns {@code false} when invoked because a {@link MethodInfo}
+   * is never "empty" of its attributes.
+   *
+   * @return {@code false} when invoked
+   */
+  @Override
+  public final boolean isEmpty() {
+    return false;
+  }
+
+  /**
+   * Returns various {@link TemplateModel} implementations depending
+   * on the {@code key} passed.
+   *
+   * @param key the name of some conceptual attribute of a method,
+   * such as {@code name}, {@code signature}, {@code parameterTypes}
+   * or {@code returnTypeName}; if not directly handled by this class,
+   * it may be {@linkplain BeanModel#get(String) handled by the
+   * superclass}; must not be {@code null}
+   *
+   * @return a {@link TemplateModel} in accordance with the general
+   * contract of {@link TemplateHashModel#get(String)}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   *
+   * @exception TemplateModelException if any other error occurs
+   */
+  @Override
+  public final TemplateModel get(final String key) throws TemplateModelException {
+    TemplateModel returnValue = null;
+    if ("name".equals(key)) {
+      returnValue = new ScalarMethodModel(this.methodInfo.name());
+    } else if ("signature".equals(key)) {
+      returnValue = new SimpleScalar(ClassInfoModel.signature(this.methodInfo));
+    } else if ("parameterTypes".equals(key)) {
+      final List<Type> parameters = this.methodInfo.parameters();
+      final List<String> parameterTypes = new ArrayList<>(parameters.size());
+      for (final Type parameter : parameters) {
+        parameterTypes.add(ClassInfoModel.erasure(parameter));
+      }
+      returnValue = new SimpleSequence(parameterTypes, this.wrapper);
+    } else if ("returnTypeName".equals(key)) {
+      returnValue = new SimpleScalar(ClassInfoModel.erasure(this.methodInfo.returnType()));
+    } else {
+      returnValue = super.get(key);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the {@linkplain MethodInfo#toString() string
+   * representation} of the {@link MethodInfo} supplied {@linkplain
+   * #MethodInfoModel(MethodInfo, BeansWrapper) at construction time}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String getAsString() {
+    return this.methodInfo.toString();
+  }
+
+}
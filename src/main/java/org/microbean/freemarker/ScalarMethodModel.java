@@ -0,0 +1,127 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.List;
+import java.util.Objects;
+
+import freemarker.template.TemplateMethodModelEx;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+
+/**
+ * A {@link TemplateScalarModel} holding the result of a Java method
+ * that takes no arguments and returns a {@link String}, which, so
+ * that templates may use either form, is also a {@link
+ * TemplateMethodModelEx} that returns itself when invoked without
+ * arguments.
+ *
+ * <p>This permits the models in this package to answer keys such as
+ * {@code name} directly, without reflection, while templates that
+ * call {@code name()} continue to work.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+final class ScalarMethodModel implements TemplateMethodModelEx, TemplateScalarModel {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link String} returned by {@link #getAsString()}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final String value;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ScalarMethodModel}.
+   *
+   * @param value the {@link String} to return from {@link
+   * #getAsString()}; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code value} is {@code null}
+   */
+  ScalarMethodModel(final String value) {
+    super();
+    this.value = Objects.requireNonNull(value);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns this {@link ScalarMethodModel} when invoked with no
+   * arguments.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param arguments the arguments; must be {@code null} or empty
+   *
+   * @return this {@link ScalarMethodModel}; never {@code null}
+   *
+   * @exception TemplateModelException if there are arguments
+   */
+  @Override
+  public final Object exec(@SuppressWarnings("rawtypes") final List arguments) throws TemplateModelException {
+    if (arguments != null && !arguments.isEmpty()) {
+      throw new TemplateModelException("Unexpected arguments: " + arguments);
+    }
+    return this;
+  }
+
+  /**
+   * Returns the {@link String} supplied at construction time.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String getAsString() {
+    return this.value;
+  }
+
+  /**
+   * Returns the {@link String} supplied at construction time.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    return this.value;
+  }
+
+}
@@ -0,0 +1,111 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.Objects;
+
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+
+/**
+ * A {@link TemplateHashModel} whose keys are class names and that
+ * delegates to another such {@link TemplateHashModel}, such as
+ * those returned by {@link
+ * freemarker.ext.beans.BeansWrapper#getStaticModels()} and {@link
+ * freemarker.ext.beans.BeansWrapper#getEnumModels()}, recording each
+ * class read in any {@link AccessTrace} in effect.
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads if their delegates are.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see AccessTrace
+ */
+public final class TracedClassesTemplateHashModel implements TemplateHashModel {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link TemplateHashModel} to which lookups are delegated.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final TemplateHashModel delegate;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link TracedClassesTemplateHashModel}.
+   *
+   * @param delegate the {@link TemplateHashModel} to which lookups
+   * will be delegated; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code delegate} is {@code
+   * null}
+   */
+  public TracedClassesTemplateHashModel(final TemplateHashModel delegate) {
+    super();
+    this.delegate = Objects.requireNonNull(delegate);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Records that the class named by the supplied key was read and
+   * returns the result of {@linkplain TemplateHashModel#get(String)
+   * looking it up} in the delegate.
+   *
+   * @param className the name of the class; may be {@code null}
+   *
+   * @return a {@link TemplateModel}, or {@code null}
+   *
+   * @exception TemplateModelException if an error occurs
+   */
+  @Override
+  public final TemplateModel get(final String className) throws TemplateModelException {
+    AccessTrace.classRead(className);
+    return this.delegate.get(className);
+  }
+
+  /**
+   * Returns {@code true} if the delegate is empty.
+   *
+   * @return {@code true} if the delegate is empty
+   *
+   * @exception TemplateModelException if an error occurs
+   */
+  @Override
+  public final boolean isEmpty() throws TemplateModelException {
+    return this.delegate.isEmpty();
+  }
+
+}
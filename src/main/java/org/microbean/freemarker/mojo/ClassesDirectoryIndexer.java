@@ -0,0 +1,440 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.microbean.freemarker.Events;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.IndexWriter;
+import org.jboss.jandex.Indexer;
+
+/**
+ * Builds a Jandex index of a directory of class files in-process,
+ * re-indexing only those class files that have changed since the
+ * last time the same directory was indexed.
+ *
+ * <p>The index and a record of the SHA-256 hash of each class file
+ * it describes are kept in a cache directory.  On each run, every
+ * class file is hashed; the {@link ClassInfo} of a class file whose
+ * hash is unchanged is taken from the cached index, and only new or
+ * changed class files are parsed.  Hashing and parsing are done in
+ * parallel.  If nothing has changed, the cached index is returned as
+ * is.</p>
+ *
+ * <p>This class is safe for concurrent use by multiple threads, but
+ * concurrent executions must not share a cache directory.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #index(File, File)
+ *
+ * @see IndexCache
+ */
+final class ClassesDirectoryIndexer {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The name of the index file within a cache directory.
+   */
+  private static final String INDEX_FILE_NAME = "jandex.idx";
+
+  /**
+   * The name of the file, within a cache directory, recording the
+   * hash and class name of each indexed class file.
+   */
+  private static final String HASHES_FILE_NAME = "hashes.properties";
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ClassesDirectoryIndexer}.
+   */
+  private ClassesDirectoryIndexer() {
+    super();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns an {@link IndexView} describing the class files in the
+   * supplied directory and its subdirectories, reusing as much of
+   * the index cached in {@code cacheDirectory} as possible and
+   * updating that cache.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param classesDirectory the directory containing class files;
+   * must not be {@code null}
+   *
+   * @param cacheDirectory the directory in which the index is cached;
+   * must not be {@code null}; will be created if necessary
+   *
+   * @return a non-{@code null} {@link IndexView}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception UncheckedIOException if an input/output error occurs
+   */
+  static final IndexView index(final File classesDirectory, final File cacheDirectory) {
+    Objects.requireNonNull(classesDirectory);
+    Objects.requireNonNull(cacheDirectory);
+    try (final Events.Span span = Events.indexRead(classesDirectory.getPath())) {
+      final IndexView returnValue = update(classesDirectory, cacheDirectory);
+      span.setBytes(new File(cacheDirectory, INDEX_FILE_NAME).length());
+      return returnValue;
+    }
+  }
+
+  /**
+   * Returns an {@link IndexView} describing the class files in the
+   * supplied directory and its subdirectories, reusing as much of
+   * the index cached in {@code cacheDirectory} as possible and
+   * updating that cache.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param classesDirectory the directory containing class files;
+   * must not be {@code null}
+   *
+   * @param cacheDirectory the directory in which the index is cached;
+   * must not be {@code null}
+   *
+   * @return a non-{@code null} {@link IndexView}
+   *
+   * @exception UncheckedIOException if an input/output error occurs
+   *
+   * @see #index(File, File)
+   */
+  private static final IndexView update(final File classesDirectory, final File cacheDirectory) {
+    final Path root = classesDirectory.toPath();
+    final List<Path> classFiles = findClassFiles(root);
+
+    final File indexFile = new File(cacheDirectory, INDEX_FILE_NAME);
+    final File hashesFile = new File(cacheDirectory, HASHES_FILE_NAME);
+    final Properties previousHashes = new Properties();
+    IndexView previousIndex = null;
+    if (indexFile.isFile() && hashesFile.isFile()) {
+      try (final InputStream inputStream = new BufferedInputStream(new FileInputStream(hashesFile))) {
+        previousHashes.load(inputStream);
+        previousIndex = IndexCache.get(indexFile);
+      } catch (final IOException | UncheckedIOException | IllegalArgumentException exception) {
+        // The cache is damaged; start over.
+        previousHashes.clear();
+        previousIndex = null;
+      }
+    }
+    final IndexView previous = previousIndex;
+
+    final AtomicBoolean changed = new AtomicBoolean(previous == null || previousHashes.size() != classFiles.size());
+    final List<Fragment> fragments = classFiles.parallelStream()
+      .map(classFile -> fragment(root, classFile, previousHashes, previous, changed))
+      .collect(Collectors.toList());
+    if (!changed.get()) {
+      return previous;
+    }
+
+    final Index returnValue = merge(fragments);
+    write(returnValue, fragments, indexFile, hashesFile);
+    return returnValue;
+  }
+
+  /**
+   * Returns a fingerprint of the class files in the supplied
+   * directory based on their paths, sizes and last modification
+   * times, without reading them.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param classesDirectory the directory containing class files;
+   * must not be {@code null}
+   *
+   * @return a non-{@code null} fingerprint
+   *
+   * @exception UncheckedIOException if an input/output error occurs
+   */
+  static final String fingerprint(final File classesDirectory) {
+    final Path root = classesDirectory.toPath();
+    final List<String> strings = new ArrayList<>();
+    for (final Path classFile : findClassFiles(root)) {
+      final File file = classFile.toFile();
+      strings.add(root.relativize(classFile).toString());
+      strings.add(String.valueOf(file.length()));
+      strings.add(String.valueOf(file.lastModified()));
+    }
+    return StalenessManifest.hash(strings.toArray(new String[strings.size()]));
+  }
+
+  /**
+   * Returns a sorted {@link List} of the class files beneath the
+   * supplied directory, excluding module descriptors.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param root the directory to search; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link List} of {@link Path}s
+   *
+   * @exception UncheckedIOException if an input/output error occurs
+   */
+  private static final List<Path> findClassFiles(final Path root) {
+    if (!Files.isDirectory(root)) {
+      return new ArrayList<>();
+    }
+    try (final Stream<Path> paths = Files.walk(root)) {
+      return paths
+        .filter(path -> {
+            final String fileName = path.getFileName().toString();
+            return fileName.endsWith(".class") && !fileName.equals("module-info.class") && Files.isRegularFile(path);
+          })
+        .sorted()
+        .collect(Collectors.toList());
+    } catch (final IOException ioException) {
+      throw new UncheckedIOException(ioException);
+    }
+  }
+
+  /**
+   * Returns a {@link Fragment} describing the supplied class file,
+   * taking its {@link ClassInfo} from the previous index if the class
+   * file is unchanged, and parsing it otherwise.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param root the directory being indexed; must not be {@code
+   * null}
+   *
+   * @param classFile the class file; must not be {@code null}
+   *
+   * @param previousHashes the hashes and class names recorded by the
+   * previous run, indexed by relative path; must not be {@code null}
+   *
+   * @param previousIndex the index produced by the previous run; may
+   * be {@code null}
+   *
+   * @param changed set to {@code true} if the class file had to be
+   * parsed; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link Fragment}
+   *
+   * @exception UncheckedIOException if an input/output error occurs
+   */
+  private static final Fragment fragment(final Path root,
+                                         final Path classFile,
+                                         final Properties previousHashes,
+                                         final IndexView previousIndex,
+                                         final AtomicBoolean changed) {
+    final String relativePath = root.relativize(classFile).toString().replace(File.separatorChar, '/');
+    final byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(classFile);
+    } catch (final IOException ioException) {
+      throw new UncheckedIOException(ioException);
+    }
+    final String hash = StalenessManifest.hash(bytes);
+    if (previousIndex != null) {
+      final String previous = previousHashes.getProperty(relativePath);
+      if (previous != null) {
+        final int space = previous.indexOf(' ');
+        if (space > 0 && hash.equals(previous.substring(0, space))) {
+          final ClassInfo classInfo = previousIndex.getClassByName(DotName.createSimple(previous.substring(space + 1)));
+          if (classInfo != null) {
+            return new Fragment(relativePath, hash, classInfo);
+          }
+        }
+      }
+    }
+    changed.set(true);
+    final Indexer indexer = new Indexer();
+    final ClassInfo classInfo;
+    try {
+      classInfo = indexer.index(new ByteArrayInputStream(bytes));
+    } catch (final IOException | RuntimeException exception) {
+      throw new UncheckedIOException(new IOException("Could not index " + classFile + ": " + exception.getMessage(), exception));
+    }
+    return new Fragment(relativePath, hash, indexer.complete().getClassByName(classInfo.name()));
+  }
+
+  /**
+   * Combines the {@link ClassInfo}s of the supplied {@link
+   * Fragment}s into an {@link Index}, just as a single {@link Indexer}
+   * that had indexed every class file would have.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param fragments the {@link Fragment}s; must not be {@code null}
+   *
+   * @return a new, non-{@code null} {@link Index}
+   */
+  private static final Index merge(final List<? extends Fragment> fragments) {
+    final Map<DotName, List<AnnotationInstance>> annotations = new HashMap<>();
+    final Map<DotName, List<ClassInfo>> subclasses = new HashMap<>();
+    final Map<DotName, List<ClassInfo>> implementors = new HashMap<>();
+    final Map<DotName, ClassInfo> classes = new HashMap<>();
+    for (final Fragment fragment : fragments) {
+      final ClassInfo classInfo = fragment.classInfo;
+      classes.put(classInfo.name(), classInfo);
+      final DotName superName = classInfo.superName();
+      if (superName != null) {
+        subclasses.computeIfAbsent(superName, n -> new ArrayList<>()).add(classInfo);
+      }
+      for (final DotName interfaceName : classInfo.interfaceNames()) {
+        implementors.computeIfAbsent(interfaceName, n -> new ArrayList<>()).add(classInfo);
+      }
+      for (final Map.Entry<DotName, List<AnnotationInstance>> entry : classInfo.annotations().entrySet()) {
+        annotations.computeIfAbsent(entry.getKey(), n -> new ArrayList<>()).addAll(entry.getValue());
+      }
+    }
+    return Index.create(annotations, subclasses, implementors, classes);
+  }
+
+  /**
+   * Writes the supplied {@link Index} and the hashes of the supplied
+   * {@link Fragment}s to the cache.
+   *
+   * @param index the {@link Index} to write; must not be {@code null}
+   *
+   * @param fragments the {@link Fragment}s whose hashes should be
+   * recorded; must not be {@code null}
+   *
+   * @param indexFile the file to which the {@link Index} will be
+   * written; must not be {@code null}
+   *
+   * @param hashesFile the file to which hashes will be written; must
+   * not be {@code null}
+   *
+   * @exception UncheckedIOException if an input/output error occurs
+   */
+  private static final void write(final Index index, final List<? extends Fragment> fragments, final File indexFile, final File hashesFile) {
+    final Properties hashes = new Properties();
+    for (final Fragment fragment : fragments) {
+      hashes.setProperty(fragment.relativePath, fragment.hash + " " + fragment.classInfo.name());
+    }
+    indexFile.getAbsoluteFile().getParentFile().mkdirs();
+    try {
+      try (final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(indexFile))) {
+        new IndexWriter(outputStream).write(index);
+      }
+      try (final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(hashesFile))) {
+        hashes.store(outputStream, "Class file hashes");
+      }
+    } catch (final IOException ioException) {
+      throw new UncheckedIOException(ioException);
+    }
+    // The rewritten file may have the same size and, to the
+    // granularity of File#lastModified(), the same modification time
+    // as the one IndexCache last read.
+    IndexCache.evict(indexFile);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * The {@link ClassInfo} describing a single class file, together
+   * with that file's relative path and hash.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Fragment {
+
+    /**
+     * The path of the class file relative to the indexed directory,
+     * using {@code /} as the separator.
+     */
+    private final String relativePath;
+
+    /**
+     * The hexadecimal SHA-256 hash of the class file's contents.
+     */
+    private final String hash;
+
+    /**
+     * The {@link ClassInfo} describing the class file.
+     */
+    private final ClassInfo classInfo;
+
+    /**
+     * Creates a new {@link Fragment}.
+     *
+     * @param relativePath the path of the class file relative to the
+     * indexed directory; must not be {@code null}
+     *
+     * @param hash the hash of the class file's contents; must not be
+     * {@code null}
+     *
+     * @param classInfo the {@link ClassInfo} describing the class
+     * file; must not be {@code null}
+     */
+    private Fragment(final String relativePath, final String hash, final ClassInfo classInfo) {
+      super();
+      this.relativePath = Objects.requireNonNull(relativePath);
+      this.hash = Objects.requireNonNull(hash);
+      this.classInfo = Objects.requireNonNull(classInfo);
+    }
+
+  }
+
+}
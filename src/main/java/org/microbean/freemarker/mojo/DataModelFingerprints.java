@@ -0,0 +1,425 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import java.util.function.Supplier;
+
+import org.microbean.freemarker.AccessTrace;
+
+/**
+ * Fingerprints of the individual entries of a {@link
+ * FreemarkerMojo}'s data model, and of the classes templates can read
+ * through its {@code classes} entry, so that a template's output
+ * need only be regenerated when something it actually read has
+ * changed.
+ *
+ * <p>What a template read is described by a <em>read set</em>, a
+ * {@link Set} of {@link String}s {@linkplain #reads(AccessTrace)
+ * derived from} an {@link AccessTrace}: data model keys appear as
+ * themselves, classes as {@code classes[}<em>name</em>{@code ]}, and
+ * reading every entry or every class as {@code *} or {@code
+ * classes[*]} respectively.</p>
+ *
+ * <p>Entries that expose the Jandex index, or arbitrary classes, are
+ * fingerprinted by the index as a whole.  Classes read by name,
+ * whether through the {@code classes}, {@code statics} or {@code
+ * enums} entry, are fingerprinted by the bytes of their class files
+ * and those of their supertypes.  Reads of the {@code
+ * contextClassLoader} entry, through which any class or resource can
+ * be reached, are always considered stale.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #fingerprint(Collection)
+ */
+final class DataModelFingerprints {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The read set entry indicating that every data model entry was
+   * read.
+   */
+  static final String ALL_KEYS = "*";
+
+  /**
+   * The prefix of read set entries naming classes.
+   */
+  private static final String CLASSES_PREFIX = "classes[";
+
+  /**
+   * The read set entry indicating that every class was read.
+   */
+  static final String ALL_CLASSES = CLASSES_PREFIX + "*]";
+
+  /**
+   * The fingerprint of a data model entry or class that does not
+   * exist.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final String ABSENT = StalenessManifest.hash("absent");
+
+  /**
+   * A marker, compared by identity, standing in for the fingerprint
+   * of a data model entry that must be considered changed on every
+   * build.
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * @see #fingerprint(Collection)
+   */
+  private static final String ALWAYS_STALE = new String("alwaysStale");
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * Fingerprints of data model entries indexed by key.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, String> keyFingerprints;
+
+  /**
+   * The fingerprint used when every data model entry was read.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final String allKeysFingerprint;
+
+  /**
+   * The fingerprint of the Jandex index.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final String indexFingerprint;
+
+  /**
+   * The {@link ClassLoader} from which classes read by name are
+   * loaded.
+   *
+   * <p>This field may be {@code null}.</p>
+   */
+  private final ClassLoader classLoader;
+
+  /**
+   * Fingerprints of classes computed so far, indexed by class name.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConcurrentMap<String, String> classFingerprints;
+
+  /**
+   * Hashes of class files computed so far, indexed by class name, so
+   * that common supertypes are read only once.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConcurrentMap<String, String> classFileHashes;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link DataModelFingerprints}.
+   *
+   * @param dataModel the user-supplied data model; may be {@code
+   * null}
+   *
+   * @param lazyDataModel the user-supplied lazy data model, whose
+   * entries, unless overridden by {@code dataModel}, are always
+   * considered stale, since what a {@link Supplier} will return
+   * cannot be known without invoking it; may be {@code null}
+   *
+   * @param dataModelFingerprint a fingerprint of the whole
+   * user-supplied data model; may be {@code null}
+   *
+   * @param projectFingerprint a fingerprint of what templates can
+   * read through the built-in {@code project} entry; may be {@code
+   * null}
+   *
+   * @param sessionFingerprint a fingerprint of what templates can
+   * read through the built-in {@code session} entry; may be {@code
+   * null}
+   *
+   * @param indexFingerprint a fingerprint of the Jandex index; may be
+   * {@code null}
+   *
+   * @param classLoader the {@link ClassLoader} from which the {@code
+   * classes} entry loads classes; may be {@code null}
+   *
+   * @param initializeClasses whether the {@code classes} entry
+   * initializes the classes it loads
+   */
+  DataModelFingerprints(final Map<? extends String, ?> dataModel,
+                        final Map<? extends String, ? extends Supplier<?>> lazyDataModel,
+                        final String dataModelFingerprint,
+                        final String projectFingerprint,
+                        final String sessionFingerprint,
+                        final String indexFingerprint,
+                        final ClassLoader classLoader,
+                        final boolean initializeClasses) {
+    super();
+    this.indexFingerprint = StalenessManifest.hash("index", indexFingerprint);
+    this.allKeysFingerprint = StalenessManifest.hash(dataModelFingerprint, this.indexFingerprint);
+    this.classLoader = classLoader;
+    this.classFingerprints = new ConcurrentHashMap<>();
+    this.classFileHashes = new ConcurrentHashMap<>();
+    final Map<String, String> keyFingerprints = new HashMap<>();
+    if (dataModel != null) {
+      for (final Map.Entry<? extends String, ?> entry : dataModel.entrySet()) {
+        keyFingerprints.put(entry.getKey(), StalenessManifest.hash(String.valueOf(entry.getValue())));
+      }
+    }
+    if (lazyDataModel != null) {
+      for (final Map.Entry<? extends String, ? extends Supplier<?>> entry : lazyDataModel.entrySet()) {
+        if (entry.getValue() != null) {
+          keyFingerprints.putIfAbsent(entry.getKey(), ALWAYS_STALE);
+        }
+      }
+    }
+    // These mirror the built-in entries FreemarkerMojo adds.
+    // The classes read through enums and statics are traced and
+    // fingerprinted individually.
+    keyFingerprints.put("enums", StalenessManifest.hash("enums"));
+    keyFingerprints.put("statics", StalenessManifest.hash("statics"));
+    keyFingerprints.putIfAbsent("classIndex", this.indexFingerprint);
+    keyFingerprints.putIfAbsent("project", StalenessManifest.hash("project", projectFingerprint));
+    keyFingerprints.putIfAbsent("session", StalenessManifest.hash("session", sessionFingerprint));
+    keyFingerprints.putIfAbsent("classes", StalenessManifest.hash("classes", String.valueOf(initializeClasses)));
+    keyFingerprints.putIfAbsent("contextClassLoader", ALWAYS_STALE);
+    keyFingerprints.putIfAbsent("indexedClasses", this.indexFingerprint);
+    keyFingerprints.putIfAbsent("indexQueries", this.indexFingerprint);
+    // A fanned-out output's key already names its class, but its
+    // ClassInfo comes from the index.
+    keyFingerprints.put("classInfo", StalenessManifest.hash(this.indexFingerprint, keyFingerprints.get("classInfo")));
+    keyFingerprints.put("className", StalenessManifest.hash("className", keyFingerprints.get("className")));
+    this.keyFingerprints = Collections.unmodifiableMap(keyFingerprints);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns a fingerprint of everything named by the supplied read
+   * set.
+   *
+   * <p>If the read set names an entry that is always considered
+   * stale, this method returns a different fingerprint every time it
+   * is invoked.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param reads a read set; must not be {@code null}
+   *
+   * @return a non-{@code null} fingerprint
+   *
+   * @exception NullPointerException if {@code reads} is {@code null}
+   *
+   * @exception UncheckedIOException if a class file could not be
+   * read
+   */
+  final String fingerprint(final Collection<? extends String> reads) {
+    final List<String> strings = new ArrayList<>(2 * reads.size());
+    for (final String read : new TreeSet<>(reads)) {
+      strings.add(read);
+      if (ALL_KEYS.equals(read)) {
+        strings.add(this.allKeysFingerprint);
+      } else if (ALL_CLASSES.equals(read)) {
+        strings.add(this.indexFingerprint);
+      } else if (read.startsWith(CLASSES_PREFIX) && read.endsWith("]")) {
+        strings.add(this.classFingerprint(read.substring(CLASSES_PREFIX.length(), read.length() - 1)));
+      } else {
+        final String keyFingerprint = this.keyFingerprints.get(read);
+        if (keyFingerprint == null) {
+          strings.add(ABSENT);
+        } else if (keyFingerprint == ALWAYS_STALE) {
+          strings.add(UUID.randomUUID().toString());
+        } else {
+          strings.add(keyFingerprint);
+        }
+      }
+    }
+    return StalenessManifest.hash(strings.toArray(new String[strings.size()]));
+  }
+
+  /**
+   * Returns a fingerprint of the class file of the class with the
+   * supplied name and of the class files of all of its supertypes,
+   * or a fixed fingerprint if the class cannot be loaded.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param className the name of the class; must not be {@code null}
+   *
+   * @return a non-{@code null} fingerprint
+   *
+   * @exception UncheckedIOException if a class file could not be
+   * read
+   */
+  private final String classFingerprint(final String className) {
+    String returnValue = this.classFingerprints.get(className);
+    if (returnValue == null) {
+      if (this.classLoader == null) {
+        returnValue = ABSENT;
+      } else {
+        Class<?> c;
+        try {
+          c = Class.forName(className, false, this.classLoader);
+        } catch (final ClassNotFoundException | LinkageError error) {
+          c = null;
+        }
+        if (c == null) {
+          returnValue = ABSENT;
+        } else {
+          final List<String> strings = new ArrayList<>();
+          final Set<Class<?>> seen = new HashSet<>();
+          final Deque<Class<?>> classes = new ArrayDeque<>();
+          classes.add(c);
+          while (!classes.isEmpty()) {
+            final Class<?> type = classes.remove();
+            if (seen.add(type)) {
+              strings.add(type.getName());
+              strings.add(this.classFileHashes.computeIfAbsent(type.getName(), name -> hash(type)));
+              final Class<?> superclass = type.getSuperclass();
+              if (superclass != null) {
+                classes.add(superclass);
+              }
+              Collections.addAll(classes, type.getInterfaces());
+            }
+          }
+          returnValue = StalenessManifest.hash(strings.toArray(new String[strings.size()]));
+        }
+      }
+      final String existing = this.classFingerprints.putIfAbsent(className, returnValue);
+      if (existing != null) {
+        returnValue = existing;
+      }
+    }
+    return returnValue;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the read set described by the supplied {@link
+   * AccessTrace}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param accessTrace the {@link AccessTrace} to convert; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null}, sorted, unmodifiable {@link Set}
+   *
+   * @exception NullPointerException if {@code accessTrace} is {@code
+   * null}
+   */
+  static final Set<String> reads(final AccessTrace accessTrace) {
+    final Set<String> returnValue = new TreeSet<>();
+    if (accessTrace.isAllKeys()) {
+      returnValue.add(ALL_KEYS);
+    } else {
+      returnValue.addAll(accessTrace.getKeys());
+    }
+    if (accessTrace.isAllClasses()) {
+      returnValue.add(ALL_CLASSES);
+    } else {
+      for (final String className : accessTrace.getClassNames()) {
+        returnValue.add(CLASSES_PREFIX + className + "]");
+      }
+    }
+    return Collections.unmodifiableSet(returnValue);
+  }
+
+  /**
+   * Returns a hash of the bytes of the class file that defined the
+   * supplied {@link Class}, or a fixed fingerprint if it cannot be
+   * found, as is the case for array and primitive types.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param c the {@link Class}; must not be {@code null}
+   *
+   * @return a non-{@code null} hash
+   *
+   * @exception UncheckedIOException if the class file could not be
+   * read
+   */
+  private static final String hash(final Class<?> c) {
+    final String name = c.getName();
+    final int lastDot = name.lastIndexOf('.');
+    try (final InputStream inputStream = c.getResourceAsStream((lastDot < 0 ? name : name.substring(lastDot + 1)) + ".class")) {
+      if (inputStream == null) {
+        return ABSENT;
+      }
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[8192];
+      int bytesRead;
+      while ((bytesRead = inputStream.read(buffer)) >= 0) {
+        bytes.write(buffer, 0, bytesRead);
+      }
+      return StalenessManifest.hash(bytes.toByteArray());
+    } catch (final IOException ioException) {
+      throw new UncheckedIOException(ioException);
+    }
+  }
+
+}
@@ -0,0 +1,315 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Objects;
+
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import java.util.stream.Collectors;
+
+import org.microbean.freemarker.Events;
+
+import org.apache.maven.artifact.Artifact;
+
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexReader;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.IndexWriter;
+import org.jboss.jandex.Indexer;
+import org.jboss.jandex.UnsupportedVersion;
+
+/**
+ * Produces Jandex indexes of the classes in a project's dependency
+ * {@link Artifact}s.
+ *
+ * <p>A jar that contains its own {@code META-INF/jandex.idx} is not
+ * scanned; that index is used instead, unless it is damaged or is in
+ * a format newer than this version of Jandex can read.  Any other jar is indexed, and
+ * the result is written to a cache directory under a name derived
+ * from the artifact's coordinates and the checksum of the jar, so
+ * that later builds read the cached index instead of scanning the
+ * jar again.  The checksum is taken from the {@code .sha1} file that
+ * the local repository keeps next to the jar if there is one, and
+ * computed otherwise.  Within a JVM, the indexes of unchanged jars
+ * are additionally shared through the {@link IndexCache}.  A
+ * dependency that is a directory of classes, as happens within a
+ * reactor build, is indexed by a {@link ClassesDirectoryIndexer}.</p>
+ *
+ * <p>Dependencies are processed in parallel.</p>
+ *
+ * <p>This class is safe for concurrent use by multiple threads, but
+ * concurrent executions must not share a cache directory.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #index(Collection, File)
+ */
+final class DependencyIndexer {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The name of the entry within a jar file that contains a Jandex
+   * index of that jar file.
+   */
+  private static final String EMBEDDED_INDEX_NAME = "META-INF/jandex.idx";
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link DependencyIndexer}.
+   */
+  private DependencyIndexer() {
+    super();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns a {@link List} of {@link IndexView}s, one for each of the
+   * supplied {@link Artifact}s that has a {@linkplain
+   * Artifact#getFile() file}, in iteration order.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param artifacts the {@link Artifact}s to index; must not be
+   * {@code null}
+   *
+   * @param cacheDirectory the directory in which computed indexes are
+   * cached; must not be {@code null}; will be created if necessary
+   *
+   * @return a non-{@code null} {@link List} of {@link IndexView}s
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception UncheckedIOException if an input/output error occurs
+   */
+  static final List<IndexView> index(final Collection<? extends Artifact> artifacts, final File cacheDirectory) {
+    Objects.requireNonNull(artifacts);
+    Objects.requireNonNull(cacheDirectory);
+    final List<Artifact> indexableArtifacts = new ArrayList<>();
+    for (final Artifact artifact : artifacts) {
+      if (artifact != null && artifact.getFile() != null && artifact.getFile().exists()) {
+        indexableArtifacts.add(artifact);
+      }
+    }
+    return indexableArtifacts.parallelStream()
+      .map(artifact -> index(artifact, cacheDirectory))
+      .collect(Collectors.toList());
+  }
+
+  /**
+   * Returns a fingerprint of the files of the supplied {@link
+   * Artifact}s based on their coordinates, sizes and last
+   * modification times.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param artifacts the {@link Artifact}s; must not be {@code null}
+   *
+   * @return a non-{@code null} fingerprint
+   */
+  static final String fingerprint(final Collection<? extends Artifact> artifacts) {
+    final List<String> strings = new ArrayList<>();
+    for (final Artifact artifact : artifacts) {
+      if (artifact != null) {
+        final File file = artifact.getFile();
+        strings.add(artifact.getId());
+        strings.add(file == null ? null : String.valueOf(file.length()));
+        strings.add(file == null ? null : String.valueOf(file.lastModified()));
+      }
+    }
+    return StalenessManifest.hash(strings.toArray(new String[strings.size()]));
+  }
+
+  /**
+   * Returns an {@link IndexView} of the classes in the supplied
+   * {@link Artifact}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param artifact the {@link Artifact}; must not be {@code null}
+   * and must have a file
+   *
+   * @param cacheDirectory the directory in which computed indexes are
+   * cached; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link IndexView}
+   *
+   * @exception UncheckedIOException if an input/output error occurs
+   */
+  private static final IndexView index(final Artifact artifact, final File cacheDirectory) {
+    final File file = artifact.getFile();
+    final File artifactCacheDirectory = new File(cacheDirectory, artifact.getGroupId() + "/" + artifact.getArtifactId());
+    if (file.isDirectory()) {
+      return ClassesDirectoryIndexer.index(file, new File(artifactCacheDirectory, "classes"));
+    }
+    return IndexCache.get(file, jarFile -> readJar(artifact, jarFile, artifactCacheDirectory));
+  }
+
+  /**
+   * Reads the index embedded in the supplied jar file, or the cached
+   * index of the jar file, or, failing both, indexes the jar file and
+   * caches the result.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param artifact the {@link Artifact} whose file is {@code
+   * jarFile}; must not be {@code null}
+   *
+   * @param jarFile the jar file; must not be {@code null}
+   *
+   * @param artifactCacheDirectory the directory in which an index
+   * computed for {@code artifact} is cached; must not be {@code
+   * null}
+   *
+   * @return a non-{@code null} {@link IndexView}
+   *
+   * @exception UncheckedIOException if an input/output error occurs
+   */
+  private static final IndexView readJar(final Artifact artifact, final File jarFile, final File artifactCacheDirectory) {
+    try (final Events.Span span = Events.indexRead(jarFile.getPath());
+         final JarFile jar = new JarFile(jarFile)) {
+      span.setBytes(jarFile.length());
+      final JarEntry embeddedIndex = jar.getJarEntry(EMBEDDED_INDEX_NAME);
+      if (embeddedIndex != null) {
+        try (final InputStream inputStream = new BufferedInputStream(jar.getInputStream(embeddedIndex))) {
+          return new IndexReader(inputStream).read();
+        } catch (final IOException | UnsupportedVersion unreadableEmbeddedIndex) {
+          // The embedded index is damaged or was written by a newer
+          // Jandex; fall through and index the jar instead.
+        }
+      }
+
+      final StringBuilder cachedIndexName = new StringBuilder(artifact.getArtifactId()).append('-').append(artifact.getVersion());
+      if (artifact.getClassifier() != null && !artifact.getClassifier().isEmpty()) {
+        cachedIndexName.append('-').append(artifact.getClassifier());
+      }
+      cachedIndexName.append('-').append(checksum(jarFile)).append(".idx");
+      final File cachedIndexFile = new File(artifactCacheDirectory, cachedIndexName.toString());
+      if (cachedIndexFile.isFile()) {
+        try {
+          return IndexCache.read(cachedIndexFile);
+        } catch (final UncheckedIOException damagedCacheEntry) {
+          // Fall through and index the jar again.
+        }
+      }
+
+      final Indexer indexer = new Indexer();
+      final Enumeration<JarEntry> entries = jar.entries();
+      while (entries.hasMoreElements()) {
+        final JarEntry entry = entries.nextElement();
+        final String name = entry.getName();
+        if (!entry.isDirectory() && name.endsWith(".class") && !name.endsWith("module-info.class") && !name.startsWith("META-INF/versions/")) {
+          try (final InputStream inputStream = jar.getInputStream(entry)) {
+            indexer.index(inputStream);
+          }
+        }
+      }
+      final Index index = indexer.complete();
+
+      // Write to a temporary file first so that a partially written
+      // index is never mistaken for a complete one.
+      artifactCacheDirectory.mkdirs();
+      final File temporaryFile = File.createTempFile(cachedIndexName.toString(), ".tmp", artifactCacheDirectory);
+      try {
+        try (final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(temporaryFile))) {
+          new IndexWriter(outputStream).write(index);
+        }
+        Files.move(temporaryFile.toPath(), cachedIndexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(temporaryFile.toPath());
+      }
+      return index;
+    } catch (final IOException ioException) {
+      throw new UncheckedIOException(new IOException("Could not index " + artifact + ": " + ioException.getMessage(), ioException));
+    }
+  }
+
+  /**
+   * Returns a checksum of the supplied jar file, preferring the SHA-1
+   * checksum that a Maven repository stores alongside it.  Otherwise
+   * the jar file is streamed through a SHA-256 digest, so that it is
+   * never held in memory as a whole.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param jarFile the jar file; must not be {@code null}
+   *
+   * @return a non-{@code null} hexadecimal checksum
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  private static final String checksum(final File jarFile) throws IOException {
+    final File sha1File = new File(jarFile.getPath() + ".sha1");
+    if (sha1File.isFile()) {
+      final String contents = new String(Files.readAllBytes(sha1File.toPath()), StandardCharsets.US_ASCII).trim();
+      final int space = contents.indexOf(' ');
+      final String sha1 = (space < 0 ? contents : contents.substring(0, space)).toLowerCase();
+      if (sha1.length() == 40 && sha1.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+        return sha1;
+      }
+    }
+    final MessageDigest digest = StalenessManifest.newDigest();
+    try (final InputStream inputStream = new DigestInputStream(new FileInputStream(jarFile), digest)) {
+      final byte[] buffer = new byte[8192];
+      while (inputStream.read(buffer) >= 0) {
+        // Reading updates the digest.
+      }
+    }
+    return StalenessManifest.hex(digest.digest());
+  }
+
+}
@@ -0,0 +1,413 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.File;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.AnnotationTarget;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.IndexView;
+
+/**
+ * A description of a <a href="http://freemarker.org/">Freemarker</a>
+ * template that is to be processed once for every class in a <a
+ * href="https://github.com/wildfly/jandex"
+ * target="_parent">Jandex</a> index that matches a simple query,
+ * producing one output file per matching class.
+ *
+ * <p>A class matches if it is {@linkplain #getAnnotatedWith()
+ * annotated with} a given annotation, {@linkplain #getSubclassOf()
+ * extends} a given class and {@linkplain #getImplementationOf()
+ * implements} a given interface.  Criteria that are not set are
+ * ignored; if none is set, every class in the index matches.</p>
+ *
+ * <p>Each time the template is processed, its data model contains,
+ * in addition to the usual entries, a {@code classInfo} entry
+ * holding the matching {@link ClassInfo} and a {@code className}
+ * entry holding its fully-qualified name.  The same data model is
+ * used to evaluate the {@linkplain #getOutputPath() output path}
+ * expression.</p>
+ *
+ * <p>Instances of this class are typically created by Maven from a
+ * {@code <fanOut>} element in a plugin configuration:</p>
+ *
+ * <blockquote><pre>&lt;fanOuts&gt;
+ *  &lt;fanOut&gt;
+ *    &lt;templateName&gt;builder.java.ftl&lt;/templateName&gt;
+ *    &lt;annotatedWith&gt;com.example.Generated&lt;/annotatedWith&gt;
+ *    &lt;outputPath&gt;${className?replace('.', '/')}Builder.java&lt;/outputPath&gt;
+ *  &lt;/fanOut&gt;
+ *&lt;/fanOuts&gt;</pre></blockquote>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see FreemarkerMojo#getFanOuts()
+ */
+public class FanOut {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The name of the template to process once per matching class.
+   */
+  private String templateName;
+
+  /**
+   * The fully-qualified name of an annotation that matching classes
+   * must bear.
+   */
+  private String annotatedWith;
+
+  /**
+   * The fully-qualified name of a class that matching classes must
+   * extend, directly or indirectly.
+   */
+  private String subclassOf;
+
+  /**
+   * The fully-qualified name of an interface that matching classes
+   * must implement, directly or indirectly.
+   */
+  private String implementationOf;
+
+  /**
+   * A Freemarker template fragment that, when processed against the
+   * data model for a matching class, yields the path of the output
+   * file for that class.
+   */
+  private String outputPath;
+
+  /**
+   * The directory against which relative {@linkplain #outputPath
+   * output paths} are resolved.
+   */
+  private File outputDirectory;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link FanOut}.
+   */
+  public FanOut() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the name of the template to process once per matching
+   * class.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the name of the template, or {@code null}
+   *
+   * @see #setTemplateName(String)
+   */
+  public String getTemplateName() {
+    return this.templateName;
+  }
+
+  /**
+   * Sets the name of the template to process once per matching
+   * class.
+   *
+   * @param templateName the name of the template; may be {@code null}
+   * but then this {@link FanOut} will be rejected at execution time
+   *
+   * @see #getTemplateName()
+   */
+  public void setTemplateName(final String templateName) {
+    this.templateName = templateName;
+  }
+
+  /**
+   * Returns the fully-qualified name of an annotation that matching
+   * classes must bear.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the name of an annotation, or {@code null}
+   *
+   * @see #setAnnotatedWith(String)
+   */
+  public String getAnnotatedWith() {
+    return this.annotatedWith;
+  }
+
+  /**
+   * Sets the fully-qualified name of an annotation that matching
+   * classes must bear.
+   *
+   * @param annotatedWith the name of an annotation; may be {@code
+   * null}
+   *
+   * @see #getAnnotatedWith()
+   */
+  public void setAnnotatedWith(final String annotatedWith) {
+    this.annotatedWith = annotatedWith;
+  }
+
+  /**
+   * Returns the fully-qualified name of a class that matching classes
+   * must extend, directly or indirectly.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the name of a class, or {@code null}
+   *
+   * @see #setSubclassOf(String)
+   */
+  public String getSubclassOf() {
+    return this.subclassOf;
+  }
+
+  /**
+   * Sets the fully-qualified name of a class that matching classes
+   * must extend, directly or indirectly.
+   *
+   * @param subclassOf the name of a class; may be {@code null}
+   *
+   * @see #getSubclassOf()
+   */
+  public void setSubclassOf(final String subclassOf) {
+    this.subclassOf = subclassOf;
+  }
+
+  /**
+   * Returns the fully-qualified name of an interface that matching
+   * classes must implement, directly or indirectly.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the name of an interface, or {@code null}
+   *
+   * @see #setImplementationOf(String)
+   */
+  public String getImplementationOf() {
+    return this.implementationOf;
+  }
+
+  /**
+   * Sets the fully-qualified name of an interface that matching
+   * classes must implement, directly or indirectly.
+   *
+   * @param implementationOf the name of an interface; may be {@code
+   * null}
+   *
+   * @see #getImplementationOf()
+   */
+  public void setImplementationOf(final String implementationOf) {
+    this.implementationOf = implementationOf;
+  }
+
+  /**
+   * Returns the Freemarker template fragment that, when processed
+   * against the data model for a matching class, yields the path of
+   * the output file for that class.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the output path expression, or {@code null}
+   *
+   * @see #setOutputPath(String)
+   */
+  public String getOutputPath() {
+    return this.outputPath;
+  }
+
+  /**
+   * Sets the Freemarker template fragment that, when processed
+   * against the data model for a matching class, yields the path of
+   * the output file for that class.
+   *
+   * <p>Relative paths are resolved against the {@linkplain
+   * #getOutputDirectory() output directory}.</p>
+   *
+   * @param outputPath the output path expression; may be {@code null}
+   * but then this {@link FanOut} will be rejected at execution time
+   *
+   * @see #getOutputPath()
+   */
+  public void setOutputPath(final String outputPath) {
+    this.outputPath = outputPath;
+  }
+
+  /**
+   * Returns the directory against which relative {@linkplain
+   * #getOutputPath() output paths} are resolved.
+   *
+   * <p>This method may return {@code null}, in which case the
+   * {@linkplain FreemarkerMojo#getOutputFile() <code>outputFile</code>
+   * parameter} of the plugin, if it denotes a directory, or the
+   * project build directory will be used.</p>
+   *
+   * @return the output directory, or {@code null}
+   *
+   * @see #setOutputDirectory(File)
+   */
+  public File getOutputDirectory() {
+    return this.outputDirectory;
+  }
+
+  /**
+   * Sets the directory against which relative {@linkplain
+   * #getOutputPath() output paths} are resolved.
+   *
+   * @param outputDirectory the output directory; may be {@code null}
+   *
+   * @see #getOutputDirectory()
+   */
+  public void setOutputDirectory(final File outputDirectory) {
+    this.outputDirectory = outputDirectory;
+  }
+
+  /**
+   * Returns the classes in the supplied {@link IndexView} that match
+   * the criteria represented by this {@link FanOut}, sorted by name.
+   *
+   * <p>Each criterion is answered by a single lookup in the supplied
+   * {@link IndexView}; the results are then intersected.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param indexView the {@link IndexView} to query; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null}, unmodifiable {@link List} of matching
+   * {@link ClassInfo}s
+   *
+   * @exception NullPointerException if {@code indexView} is {@code
+   * null}
+   */
+  final List<ClassInfo> getClasses(final IndexView indexView) {
+    Objects.requireNonNull(indexView);
+    Map<DotName, ClassInfo> matches = null;
+
+    final String annotatedWith = this.getAnnotatedWith();
+    if (annotatedWith != null) {
+      final Collection<AnnotationInstance> annotations = indexView.getAnnotations(DotName.createSimple(annotatedWith));
+      final Collection<ClassInfo> annotatedClasses = new ArrayList<>();
+      if (annotations != null) {
+        for (final AnnotationInstance annotation : annotations) {
+          final AnnotationTarget target = annotation.target();
+          if (target != null && target.kind() == AnnotationTarget.Kind.CLASS) {
+            annotatedClasses.add(target.asClass());
+          }
+        }
+      }
+      matches = intersect(matches, annotatedClasses);
+    }
+
+    final String subclassOf = this.getSubclassOf();
+    if (subclassOf != null) {
+      matches = intersect(matches, indexView.getAllKnownSubclasses(DotName.createSimple(subclassOf)));
+    }
+
+    final String implementationOf = this.getImplementationOf();
+    if (implementationOf != null) {
+      matches = intersect(matches, indexView.getAllKnownImplementors(DotName.createSimple(implementationOf)));
+    }
+
+    if (matches == null) {
+      matches = intersect(null, indexView.getKnownClasses());
+    }
+    final List<ClassInfo> returnValue = new ArrayList<>(matches.values());
+    returnValue.sort(Comparator.comparing(classInfo -> classInfo.name().toString()));
+    return Collections.unmodifiableList(returnValue);
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link FanOut}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link String} representation of this
+   * {@link FanOut}
+   */
+  @Override
+  public String toString() {
+    return "FanOut[templateName=" + this.getTemplateName() +
+      ", annotatedWith=" + this.getAnnotatedWith() +
+      ", subclassOf=" + this.getSubclassOf() +
+      ", implementationOf=" + this.getImplementationOf() +
+      ", outputPath=" + this.getOutputPath() + "]";
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns a {@link Map} of the {@link ClassInfo}s in {@code
+   * classes}, indexed by name, that are also present in {@code
+   * matches}, or all of them if {@code matches} is {@code null}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param matches the classes matched so far; may be {@code null} if
+   * no criterion has been applied yet
+   *
+   * @param classes the classes matching the current criterion; may be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link Map} of {@link ClassInfo}s
+   * indexed by name
+   */
+  private static final Map<DotName, ClassInfo> intersect(final Map<DotName, ClassInfo> matches,
+                                                         final Collection<? extends ClassInfo> classes) {
+    final Map<DotName, ClassInfo> returnValue = new LinkedHashMap<>();
+    if (classes != null) {
+      for (final ClassInfo classInfo : classes) {
+        if (classInfo != null) {
+          final DotName name = classInfo.name();
+          if (matches == null || matches.containsKey(name)) {
+            returnValue.put(name, classInfo);
+          }
+        }
+      }
+    }
+    return returnValue;
+  }
+
+}
@@ -16,29 +16,65 @@
  */
 package org.microbean.freemarker.mojo;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java.util.function.Supplier;
 
 import java.util.stream.Collectors;
 
+import org.microbean.freemarker.AccessTrace;
+import org.microbean.freemarker.Events;
+import org.microbean.freemarker.IndexedClassesTemplateHashModel;
+import org.microbean.freemarker.IndexQueriesTemplateHashModel;
+import org.microbean.freemarker.LazyDataModel;
+import org.microbean.freemarker.LazyIndexView;
 import org.microbean.freemarker.LoadableClassesTemplateHashModel;
+import org.microbean.freemarker.MemoizedSupplier;
+import org.microbean.freemarker.TracedClassesTemplateHashModel;
 import org.microbean.freemarker.FlexibleObjectWrapper;
 import org.microbean.freemarker.ClassModelFactory;
+import org.microbean.freemarker.AnnotationInstanceModelFactory;
+import org.microbean.freemarker.ClassInfoModelFactory;
+import org.microbean.freemarker.DotNameModelFactory;
+import org.microbean.freemarker.FieldInfoModelFactory;
+import org.microbean.freemarker.MethodInfoModelFactory;
 
 import freemarker.cache.FileTemplateLoader;
 import freemarker.cache.TemplateLoader;
@@ -54,9 +90,15 @@ import freemarker.template.TemplateException;
 import freemarker.template.TemplateExceptionHandler;
 import freemarker.template.Version;
 
+import org.apache.maven.RepositoryUtils;
+
+import org.apache.maven.artifact.Artifact;
+
+import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenSession;
 
 import org.apache.maven.model.Build;
+import org.apache.maven.model.Dependency;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -64,22 +106,43 @@ import org.apache.maven.plugin.MojoFailureException;
 
 import org.apache.maven.plugin.logging.Log;
 
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import org.apache.maven.project.DefaultDependencyResolutionRequest;
+import org.apache.maven.project.DependencyResolutionException;
+import org.apache.maven.project.DependencyResolutionRequest;
+import org.apache.maven.project.DependencyResolutionResult;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectDependenciesResolver;
+
+import org.eclipse.aether.util.artifact.JavaScopes;
 
+import org.eclipse.aether.util.filter.ScopeDependencyFilter;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.CompositeIndex;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.FieldInfo;
 import org.jboss.jandex.IndexView;
-import org.jboss.jandex.IndexReader;
+import org.jboss.jandex.MethodInfo;
 
 /**
  * Generates a document from a <a
  * href="http://freemarker.org/">Freemarker</a> template.
  *
+ * <p>This goal is safe for use in parallel builds.  Each execution
+ * works with its own copies of the supplied {@linkplain
+ * #getConfiguration() <code>Configuration</code>}, {@linkplain
+ * #getModelFactories() model factories} and {@linkplain
+ * #getDataModel() data model}, none of which is ever modified.</p>
+ *
  * @author <a href="https://about.me/lairdnelson"
  * target="_parent">Laird Nelson</a>
  */
-@Mojo(name = "freemarker")
+@Mojo(name = "freemarker", threadSafe = true)
 public class FreemarkerMojo extends AbstractMojo {
 
 
@@ -96,6 +159,17 @@ public class FreemarkerMojo extends AbstractMojo {
    */
   static final Version FREEMARKER_VERSION = new Version(Configuration.class.getPackage().getImplementationVersion());
 
+  /**
+   * The glob pattern used to find templates when no {@link
+   * #includes} are specified.
+   *
+   * <p>Like earlier versions of this plugin, it matches the {@code
+   * .ftl} extension without regard to case.</p>
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final String DEFAULT_INCLUDE = "*.[fF][tT][lL]";
+
 
   /*
    * Instance fields.
@@ -113,6 +187,12 @@ public class FreemarkerMojo extends AbstractMojo {
    * href="http://freemarker.org/docs/api/freemarker/ext/util/ModelFactory.html">{@code
    * ModelFactory}</a> instances indexed by the names of classes for
    * which they are suitable.
+   *
+   * <p>Unless overridden here, {@link Class}, and the Jandex {@link
+   * ClassInfo}, {@link MethodInfo}, {@link FieldInfo}, {@link
+   * AnnotationInstance} and {@link DotName} classes are handled by
+   * the corresponding factories in the {@code
+   * org.microbean.freemarker} package.</p>
    */
   @Parameter
   private Map<String, ModelFactory> modelFactories;
@@ -129,6 +209,14 @@ public class FreemarkerMojo extends AbstractMojo {
   @Parameter(defaultValue = "${session}", readonly = true, required = true)
   private MavenSession session;
 
+  /**
+   * The {@link ProjectDependenciesResolver} used to resolve the
+   * project's compile-scoped dependencies, which happens only if
+   * {@link #indexDependencies} is {@code true}.
+   */
+  @Component
+  private ProjectDependenciesResolver projectDependenciesResolver;
+
   /**
    * The name of the <a href="http://freemarker.org/">Freemarker</a>
    * template to process.  If set, this parameter should be set to a
@@ -146,6 +234,50 @@ public class FreemarkerMojo extends AbstractMojo {
   @Parameter(property = "freemarker.templateName")
   private String templateName;
 
+  /**
+   * Glob patterns identifying the templates to process when the
+   * {@link #templateName} parameter is not set.  Patterns are matched
+   * against template names, which are paths relative to the root of
+   * the <a
+   * href="http://freemarker.org/docs/api/freemarker/cache/TemplateLoader.html">{@code
+   * TemplateLoader}</a> in effect, using {@code /} as a separator.
+   * As in Ant and Maven, {@code **} matches any number of
+   * directories, so <code>**&#47;*.ftl</code> matches every {@code .ftl}
+   * file in every subdirectory.  If not set, {@code *.ftl} is used,
+   * which matches only the {@code .ftl} files in the root directory,
+   * ignoring the case of the extension.
+   * Output files mirror the directory structure of their templates.
+   *
+   * @see #excludes
+   */
+  @Parameter
+  private List<String> includes;
+
+  /**
+   * Glob patterns identifying templates that should not be processed
+   * even though they match one of the {@link #includes} patterns.
+   * Typically these identify libraries of macros that are only
+   * included or imported by other templates.
+   *
+   * @see #includes
+   */
+  @Parameter
+  private List<String> excludes;
+
+  /**
+   * Templates to process once for every class in the <a
+   * href="https://github.com/wildfly/jandex"
+   * target="_parent">Jandex</a> index that matches a query, producing
+   * one output file per matching class.  Templates named here are
+   * not otherwise processed.  Requires a {@link #jandexIndexFile}.
+   * Matching classes are processed concurrently when the {@link
+   * #parallel} parameter is {@code true}.
+   *
+   * @see FanOut
+   */
+  @Parameter
+  private List<FanOut> fanOuts;
+
   /**
    * The <a
    * href="http://freemarker.org/docs/api/freemarker/template/Configuration.html">{@code
@@ -168,6 +300,61 @@ public class FreemarkerMojo extends AbstractMojo {
    */
   @Parameter(defaultValue = "${project.build.outputDirectory}/META-INF/jandex.idx", property = "freemarker.jandexIndexFile")
   private File jandexIndexFile;
+
+  /**
+   * Whether to build a <a href="https://github.com/wildfly/jandex"
+   * target="_parent">Jandex</a> index of the {@link
+   * #classesDirectory} in-process if the {@link #jandexIndexFile}
+   * cannot be read.
+   *
+   * <p>The index is built only if a template or fan-out needs it.
+   * It is cached beneath the project build directory, and on
+   * subsequent builds only class files whose contents have changed
+   * are re-indexed.</p>
+   */
+  @Parameter(defaultValue = "false", property = "freemarker.indexClasses")
+  private boolean indexClasses;
+
+  /**
+   * The directory of class files to index in-process if {@link
+   * #indexClasses} is {@code true} and the {@link #jandexIndexFile}
+   * cannot be read.
+   */
+  @Parameter(defaultValue = "${project.build.outputDirectory}", property = "freemarker.classesDirectory")
+  private File classesDirectory;
+
+  /**
+   * Whether to include the classes of the project's compile-scoped
+   * dependencies in the <a href="https://github.com/wildfly/jandex"
+   * target="_parent">Jandex</a> index.
+   *
+   * <p>Dependencies are resolved only if this parameter is {@code
+   * true}, so that executions that do not index them do not pay for
+   * resolution.  A dependency that contains its own {@code
+   * META-INF/jandex.idx} contributes that index.  Any other dependency is indexed
+   * in-process, and the result is cached beneath the project build
+   * directory under a name that includes the checksum of the
+   * dependency, so that it is only indexed again when it
+   * changes.</p>
+   */
+  @Parameter(defaultValue = "false", property = "freemarker.indexDependencies")
+  private boolean indexDependencies;
+
+  /**
+   * The file to which the time spent loading, rendering and writing
+   * each template, and the size of each template's output, is
+   * written.
+   *
+   * <p>The report is written as CSV if the name of the file ends with
+   * {@code .csv}, and as JSON otherwise.  If this parameter is {@code
+   * null}, no report is written, but a summary is still logged.  By
+   * default each execution of this goal writes its own report, named
+   * after its execution identifier, so that several executions in the
+   * same project do not overwrite one another's reports.</p>
+   */
+  @Parameter(defaultValue = "${project.build.directory}/freemarker-maven-plugin/${mojoExecution.executionId}-timings.json",
+             property = "freemarker.timingReportFile")
+  private File timingReportFile;
   
   /**
    * A {@link Map} of {@link String}s to arbitrary {@link Object}s
@@ -179,7 +366,10 @@ public class FreemarkerMojo extends AbstractMojo {
    * href="http://freemarker.org/docs/pgui_datamodel.html">data
    * model</a> will contain the following "top-level"
    * template-accessible variables by default, unless the
-   * user-supplied data model has values indexed under these keys:</p>
+   * user-supplied data model has values indexed under these keys.
+   * Except for {@code session} and {@code contextClassLoader}, each
+   * is computed only when a template first reads it; in particular,
+   * the Jandex index is not read unless it is needed.</p>
    *
    * <dl>
    *
@@ -213,7 +403,21 @@ public class FreemarkerMojo extends AbstractMojo {
    * <dt>{@code classes}</dt>
    *
    * <dd>A load-on-demand map of {@link Class} instances loadable from
-   * the context classloader.</dd>
+   * the context classloader.  If there is a Jandex index, the classes
+   * it describes may also be listed, lazily, with {@code ?keys} and
+   * {@code ?values}.</dd>
+   *
+   * <dt>{@code indexedClasses}</dt>
+   *
+   * <dd>A map of the classes in the Jandex index, if there is one,
+   * offering the same keys as {@code classes} without loading any
+   * class; see {@link IndexedClassesTemplateHashModel}.</dd>
+   *
+   * <dt>{@code indexQueries}</dt>
+   *
+   * <dd>Memoized queries over the Jandex index, if there is one, for
+   * classes by annotation, superclass, interface or package; see
+   * {@link IndexQueriesTemplateHashModel}.</dd>
    *
    * <dt>{@code contextClassLoader}</dt>
    *
@@ -236,6 +440,29 @@ public class FreemarkerMojo extends AbstractMojo {
   @Parameter
   private Map<String, Object> dataModel;
 
+  /**
+   * A {@link Map} of {@link String}s to {@link Supplier}s of
+   * arbitrary {@link Object}s that will be made available in the <a
+   * href="http://freemarker.org/">Freemarker</a> template's <a
+   * href="http://freemarker.org/docs/pgui_datamodel.html">context</a>
+   * as though they were part of the {@linkplain #dataModel data
+   * model}.
+   *
+   * <p>Each {@link Supplier} is invoked at most once per execution,
+   * and only if a template reads its key.  An entry in the {@link
+   * #dataModel} with the same key takes precedence.</p>
+   *
+   * <p>For the purposes of {@linkplain #incremental incremental
+   * processing}, an entry is always considered changed, since what a
+   * {@link Supplier} will return cannot be known without invoking
+   * it.  A template that reads such an entry, or that reads every
+   * entry, is therefore processed on every build.  Values that are
+   * cheap to compute and that should not defeat incremental
+   * processing belong in the {@link #dataModel} instead.</p>
+   */
+  @Parameter
+  private Map<String, Supplier<?>> lazyDataModel;
+
   /**
    * The character encoding to use when reading <a
    * href="http://freemarker.org/">Freemarker</a> templates.
@@ -262,6 +489,85 @@ public class FreemarkerMojo extends AbstractMojo {
   @Parameter(property = "freemarker.outputFile")
   private File outputFile;
 
+  /**
+   * Whether templates should be processed concurrently.  If {@code
+   * true}, and if there is more than one template to process, then
+   * templates will be processed by a pool of worker threads whose
+   * size is governed by the {@link #threads} parameter.  All
+   * templates share the same <a
+   * href="http://freemarker.org/docs/api/freemarker/template/Configuration.html">{@code
+   * Configuration}</a> and data model, and so must not depend on
+   * side effects produced by one another.
+   *
+   * @see #threads
+   */
+  @Parameter(defaultValue = "false", property = "freemarker.parallel")
+  private boolean parallel;
+
+  /**
+   * The number of worker threads to use when the {@link #parallel}
+   * parameter is {@code true}.  If this parameter is less than or
+   * equal to zero, then the number of {@linkplain
+   * Runtime#availableProcessors() available processors} will be used
+   * instead.
+   *
+   * @see #parallel
+   */
+  @Parameter(defaultValue = "0", property = "freemarker.threads")
+  private int threads;
+
+  /**
+   * Whether output files should be left untouched when the output of
+   * processing their templates is identical to their existing
+   * contents.  If {@code true}, output is collected in memory (or, for
+   * large outputs, in a temporary file), compared with the existing
+   * output file, and moved into place atomically only if it differs.
+   * Output files that are left untouched retain their last
+   * modification times, so downstream plugins do not treat them as
+   * changed.
+   */
+  @Parameter(defaultValue = "false", property = "freemarker.writeIfChanged")
+  private boolean writeIfChanged;
+
+  /**
+   * Whether templates whose inputs have not changed since the last
+   * execution should be skipped.  If {@code true}, a fingerprint of
+   * each template's inputs (the template source, the data model, the
+   * Jandex index file, the <a
+   * href="http://freemarker.org/docs/api/freemarker/template/Configuration.html">{@code
+   * Configuration}</a> settings and the version of this plugin) is
+   * recorded in the file designated by the {@link #manifestFile}
+   * parameter, and a template is processed only if its fingerprint
+   * differs from the one previously recorded or its output file no
+   * longer exists.  Output files belonging to templates that no
+   * longer exist are deleted.
+   *
+   * @see #manifestFile
+   */
+  @Parameter(defaultValue = "false", property = "freemarker.incremental")
+  private boolean incremental;
+
+  /**
+   * The file in which fingerprints of template inputs are recorded
+   * when the {@link #incremental} parameter is {@code true}.  Each
+   * execution of this goal should use a distinct file.
+   *
+   * @see #incremental
+   */
+  @Parameter(defaultValue = "${project.build.directory}/freemarker-maven-plugin/${mojoExecution.executionId}.properties",
+             property = "freemarker.manifestFile")
+  private File manifestFile;
+
+  /**
+   * Whether classes loaded through the {@code classes} data model
+   * entry should have their static initializers run.  Templates that
+   * merely introspect classes do not need this.
+   *
+   * @see LoadableClassesTemplateHashModel
+   */
+  @Parameter(defaultValue = "false", property = "freemarker.initializeClasses")
+  private boolean initializeClasses;
+
 
   /*
    * Constructors.
@@ -318,6 +624,10 @@ public class FreemarkerMojo extends AbstractMojo {
    * Executes the {@code freemarker} goal.
    *
    * @exception MojoExecutionException if a fatal error occured
+   *
+   * @see #prepare()
+   *
+   * @see #render(Execution, Collection, Collection, boolean)
    */
   @Override
   public void execute() throws MojoExecutionException {
@@ -329,16 +639,107 @@ public class FreemarkerMojo extends AbstractMojo {
       }
       return;
     }
+
+    final Execution execution = this.prepare();
+    this.render(execution, execution.getTemplateNames(), execution.getFanOuts(), true);
+  }
+
+  /**
+   * Builds everything that processing templates requires&mdash;the
+   * Jandex index, the {@link Configuration} and its {@link
+   * FlexibleObjectWrapper}, the data model and the {@link
+   * StalenessManifest}&mdash;and returns it as an {@link Execution}
+   * that can be {@linkplain #render(Execution, Collection,
+   * Collection, boolean) rendered} any number of times.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link Execution}
+   *
+   * @exception MojoExecutionException if a fatal error occured
+   */
+  final Execution prepare() throws MojoExecutionException {
+    final Log log = this.getLog();
     
     //
-    // Determine ModelFactory instances in use.
+    // Find the Jandex index if we can get it.  This happens first
+    // because the default ModelFactory for ClassInfo consults it.
+    // The index itself is not read until something uses it.
     //
     
-    Map<String, ModelFactory> modelFactoriesByClassName = this.getModelFactories();
-    if (modelFactoriesByClassName == null) {
-      modelFactoriesByClassName = new HashMap<>();
+    final File jandexIndexFile = this.getJandexIndexFile();
+    final File classesDirectory = this.getClassesDirectory();
+    final Supplier<IndexView> projectIndexSupplier;
+    String indexFingerprint;
+    if (jandexIndexFile != null && jandexIndexFile.isFile() && jandexIndexFile.canRead()) {
+      projectIndexSupplier = () -> IndexCache.get(jandexIndexFile);
+      indexFingerprint = fingerprint(jandexIndexFile);
+      if (log != null && log.isDebugEnabled()) {
+        log.debug("Using Jandex index file: " + jandexIndexFile);
+      }
+    } else if (this.isIndexClasses() && classesDirectory != null && classesDirectory.isDirectory()) {
+      final File indexCacheDirectory = new File(this.getProjectBuildDirectory(), "freemarker-maven-plugin/index");
+      projectIndexSupplier = () -> ClassesDirectoryIndexer.index(classesDirectory, indexCacheDirectory);
+      try {
+        indexFingerprint = this.isIncremental() ? ClassesDirectoryIndexer.fingerprint(classesDirectory) : null;
+      } catch (final UncheckedIOException uncheckedIOException) {
+        throw new MojoExecutionException(uncheckedIOException.getMessage(), uncheckedIOException.getCause());
+      }
+      if (log != null && log.isDebugEnabled()) {
+        log.debug("Indexing classes in-process: " + classesDirectory);
+      }
+    } else {
+      projectIndexSupplier = null;
+      indexFingerprint = fingerprint(jandexIndexFile);
+      if (log != null && log.isDebugEnabled()) {
+        log.debug("No Jandex index available: " + jandexIndexFile);
+      }
+    }
+
+    final MavenProject project = this.getProject();
+    final Set<Artifact> resolvedDependencies = this.isIndexDependencies() ? this.resolveDependencies(project) : null;
+    final Set<Artifact> dependencies;
+    if (resolvedDependencies != null && !resolvedDependencies.isEmpty()) {
+      dependencies = resolvedDependencies;
+      if (this.isIncremental()) {
+        indexFingerprint = StalenessManifest.hash(indexFingerprint, DependencyIndexer.fingerprint(dependencies));
+      }
+      if (log != null && log.isDebugEnabled()) {
+        log.debug("Indexing dependencies: " + dependencies);
+      }
+    } else {
+      dependencies = null;
+    }
+
+    final LazyIndexView indexView;
+    if (dependencies == null) {
+      indexView = projectIndexSupplier == null ? null : new LazyIndexView(projectIndexSupplier);
+    } else {
+      final File dependencyIndexCacheDirectory = new File(this.getProjectBuildDirectory(), "freemarker-maven-plugin/dependency-indexes");
+      indexView = new LazyIndexView(() -> {
+          final List<IndexView> indexViews = new ArrayList<>();
+          if (projectIndexSupplier != null) {
+            indexViews.add(projectIndexSupplier.get());
+          }
+          indexViews.addAll(DependencyIndexer.index(dependencies, dependencyIndexCacheDirectory));
+          return CompositeIndex.create(indexViews);
+        });
     }
+
+    //
+    // Determine ModelFactory instances in use.
+    //
+    
+    // Copy the user-supplied Map so that it is never modified.
+    final Map<String, ModelFactory> userModelFactories = this.getModelFactories();
+    final Map<String, ModelFactory> modelFactoriesByClassName =
+      userModelFactories == null ? new HashMap<>() : new HashMap<>(userModelFactories);
     modelFactoriesByClassName.putIfAbsent("java.lang.Class", new ClassModelFactory());
+    modelFactoriesByClassName.putIfAbsent(ClassInfo.class.getName(), new ClassInfoModelFactory(indexView));
+    modelFactoriesByClassName.putIfAbsent(MethodInfo.class.getName(), new MethodInfoModelFactory());
+    modelFactoriesByClassName.putIfAbsent(FieldInfo.class.getName(), new FieldInfoModelFactory());
+    modelFactoriesByClassName.putIfAbsent(AnnotationInstance.class.getName(), new AnnotationInstanceModelFactory());
+    modelFactoriesByClassName.putIfAbsent(DotName.class.getName(), new DotNameModelFactory());
     
     Map<? extends Class<?>, ? extends ModelFactory> modelFactories = null;
     try {
@@ -356,11 +757,17 @@ public class FreemarkerMojo extends AbstractMojo {
     // Determine Configuration in use.
     //
     
-    Configuration configuration = this.getConfiguration();
-    if (configuration == null) {
+    final Configuration userConfiguration = this.getConfiguration();
+    final Configuration configuration;
+    if (userConfiguration == null) {
       configuration = new Configuration(FREEMARKER_VERSION);
       configuration.setDefaultEncoding("UTF-8");
       configuration.setAPIBuiltinEnabled(true);
+    } else {
+      // Work on a copy (which also gets its own template cache) so
+      // that the user-supplied Configuration, which may be shared by
+      // concurrent executions, is never modified.
+      configuration = (Configuration)userConfiguration.clone();
     }
     configuration.setIncompatibleImprovements(FREEMARKER_VERSION);
     final DefaultObjectWrapper beansWrapper = new FlexibleObjectWrapper(FREEMARKER_VERSION, modelFactories);
@@ -377,194 +784,1086 @@ public class FreemarkerMojo extends AbstractMojo {
     
     //
     // Determine what template names to use.  There may be just one,
-    // and there must be at least one.
+    // and there must be at least one, unless there are fan-outs.
+    // Templates that are fanned out are not otherwise processed.
     //
-    
-    final Set<String> templateNames = this.getTemplateNames(configuration);
-    if (templateNames == null || templateNames.isEmpty()) {
-      throw new MojoExecutionException("No templates to process");
-    } else if (templateNames.size() > 1) {
-      // If there are lots of templates to process, then treat
-      // outputFile as a directory, not a regular file.
-      final File outputFile = this.getOutputFile();
-      if (outputFile != null) {
-        if (outputFile.exists() && !outputFile.isDirectory()) {
-          throw new MojoExecutionException("outputFile was an existing non-directory: " + outputFile);
-        } else {
-          outputFile.mkdirs();
-        }
+
+    final List<FanOut> fanOuts = this.getFanOuts() == null ? Collections.emptyList() : this.getFanOuts();
+    for (final FanOut fanOut : fanOuts) {
+      if (fanOut == null) {
+        throw new MojoExecutionException("Encountered null fanOut in fanOuts");
+      } else if (fanOut.getTemplateName() == null) {
+        throw new MojoExecutionException("No templateName specified for " + fanOut);
+      } else if (fanOut.getOutputPath() == null) {
+        throw new MojoExecutionException("No outputPath specified for " + fanOut);
       }
     }
-    if (log != null && log.isDebugEnabled()) {
-      log.debug("Using templateNames: " + templateNames);
-    }
-
+    final Set<String> templateNames = this.findTemplateNames(configuration, fanOuts);
 
-    //
-    // Find the Jandex index if we can get it.
-    //
-    
-    IndexView indexView = null;
-    File jandexIndexFile = this.getJandexIndexFile();
-    if (jandexIndexFile != null && jandexIndexFile.isFile() && jandexIndexFile.canRead()) {
-      IndexReader reader = null;
-      try (final InputStream inputStream = new BufferedInputStream(new FileInputStream(jandexIndexFile))) {
-        indexView = new IndexReader(inputStream).read();
-      } catch (final IOException ioException) {
-        throw new MojoExecutionException(ioException.getMessage(), ioException);
+    if (!fanOuts.isEmpty()) {
+      if (indexView == null) {
+        throw new MojoExecutionException("fanOuts require a Jandex index, but none could be read from " + jandexIndexFile + ", and neither the classes directory nor any dependencies could be indexed instead");
+      }
+      try {
+        indexView.getIndexView();
+      } catch (final UncheckedIOException uncheckedIOException) {
+        throw new MojoExecutionException(uncheckedIOException.getMessage(), uncheckedIOException.getCause());
       }
-      assert indexView != null;
-    } else {
-      // TODO: index on the fly
-    }
-    if (log != null && log.isDebugEnabled()) {
-      log.debug("Using Jandex index file: " + jandexIndexFile);
     }
 
     //
     // Set up the data model for the Freemarker template engine.
     //
     
-    Map<String, Object> dataModel = this.getDataModel();
-    if (dataModel == null) {
-      dataModel = new HashMap<>();
-    }
-    dataModel.put("enums", beansWrapper.getEnumModels()); // note: not putIfAbsent
-    dataModel.put("statics", beansWrapper.getStaticModels()); // note: not putIfAbsent
-    dataModel.putIfAbsent("classIndex", indexView);
-    dataModel.putIfAbsent("project", this.getProject());
+    final Map<String, Object> userDataModel = this.getDataModel();
+    final Map<String, Supplier<?>> userLazyDataModel = this.getLazyDataModel();
+    // The effective data model includes the built-in project and
+    // session entries, so they contribute too.
+    final String projectFingerprint;
+    final String sessionFingerprint;
+    final String dataModelFingerprint;
+    if (this.isIncremental()) {
+      projectFingerprint = fingerprint(project);
+      sessionFingerprint = fingerprint(this.getSession());
+      dataModelFingerprint = StalenessManifest.hash(fingerprint(userDataModel, userLazyDataModel), projectFingerprint, sessionFingerprint);
+    } else {
+      projectFingerprint = null;
+      sessionFingerprint = null;
+      dataModelFingerprint = null;
+    }
+    // Copy the user-supplied data model so that repeated executions
+    // do not see one another's built-in entries.  Entries that are
+    // MemoizedSuppliers are computed only when a template first reads
+    // them, and then only once.
+    final Map<String, Object> dataModel = userDataModel == null ? new HashMap<>() : new HashMap<>(userDataModel);
+    if (userLazyDataModel != null) {
+      for (final Entry<String, Supplier<?>> entry : userLazyDataModel.entrySet()) {
+        final Supplier<?> supplier = entry.getValue();
+        if (supplier != null) {
+          dataModel.putIfAbsent(entry.getKey(), new MemoizedSupplier<>(supplier));
+        }
+      }
+    }
+    dataModel.put("enums", new MemoizedSupplier<>(() -> new TracedClassesTemplateHashModel(beansWrapper.getEnumModels()))); // note: not putIfAbsent
+    dataModel.put("statics", new MemoizedSupplier<>(() -> new TracedClassesTemplateHashModel(beansWrapper.getStaticModels()))); // note: not putIfAbsent
+    dataModel.putIfAbsent("classIndex", indexView == null ? null : new MemoizedSupplier<>(indexView::getIndexView));
+    dataModel.putIfAbsent("project", new MemoizedSupplier<>(this::getProject));
     dataModel.putIfAbsent("session", this.getSession());
     final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
-    dataModel.putIfAbsent("classes", new LoadableClassesTemplateHashModel(beansWrapper, contextClassLoader));
+    final boolean initializeClasses = this.isInitializeClasses();
+    dataModel.putIfAbsent("classes", new MemoizedSupplier<>(() -> new LoadableClassesTemplateHashModel(beansWrapper, contextClassLoader, initializeClasses, indexView)));
     dataModel.putIfAbsent("contextClassLoader", contextClassLoader);
+    if (indexView != null) {
+      dataModel.putIfAbsent("indexedClasses", new MemoizedSupplier<>(() -> new IndexedClassesTemplateHashModel(beansWrapper, indexView)));
+      dataModel.putIfAbsent("indexQueries", new MemoizedSupplier<>(() -> new IndexQueriesTemplateHashModel(beansWrapper, indexView)));
+    }
+    final LazyDataModel templateDataModel = new LazyDataModel(dataModel, beansWrapper);
     if (log != null && log.isDebugEnabled()) {
-      log.debug("Using dataModel: " + dataModel);
+      log.debug("Using dataModel: " + templateDataModel);
     }
 
     //
     // Determine what output encoding to use.
     //
 
-    String outputEncoding = this.getOutputEncoding();
-    if (outputEncoding == null) {
-      outputEncoding = "UTF-8";
-    }
+    final String outputEncoding = this.getOutputEncoding() == null ? "UTF-8" : this.getOutputEncoding();
     if (log != null && log.isDebugEnabled()) {
       log.debug("Using outputEncoding: " + outputEncoding);
     }
     
     //
-    // Process templates.
+    // Load the record of what was processed last time, if needed.
     //
-    
-    for (final String templateName : templateNames) {
-      if (templateName == null) {
-        throw new MojoExecutionException("Encountered null template name in templateNames; check the getTemplateNames() method");
-      }
 
-      final File outputFile = this.getOutputFile(templateName);
-      if (outputFile == null) {
-        if (log != null && log.isDebugEnabled()) {
-          log.debug("No suitable outputFile found for a template with the name " + templateName + "; skipping processing");
-        }   
-      } else {
-        if (log != null && log.isDebugEnabled()) {
-          log.debug("Loading template: " + templateName);
-          log.debug("Output file: " + outputFile);
-        }
-        Template template = null;
-        try {
-          template = configuration.getTemplate(templateName);
-        } catch (final IOException exception) {
-          throw new MojoExecutionException(exception.getMessage(), exception);
-        }
-        if (log != null && log.isDebugEnabled()) {
-          log.debug("Compiled template: " + template);
-          log.debug("Processing...");
-        }        
-        try (final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), outputEncoding))) {
-          template.process(dataModel, out);
-          if (log != null && log.isDebugEnabled()) {
-            log.debug("...processing complete.");
-          }
-        } catch (final IOException | TemplateException exception) {
-          throw new MojoExecutionException(exception.getMessage(), exception);
-        }
+    final StalenessManifest manifest;
+    if (this.isIncremental()) {
+      File manifestFile = this.getManifestFile();
+      if (manifestFile == null) {
+        manifestFile = new File(this.getProjectBuildDirectory(), "freemarker-maven-plugin/manifest.properties");
       }
+      final String inputsFingerprint =
+        StalenessManifest.hash(getPluginVersion(),
+                               fingerprint(configuration),
+                               outputEncoding,
+                               String.valueOf(modelFactoriesByClassName.keySet()));
+      try {
+        manifest = StalenessManifest.load(manifestFile, inputsFingerprint);
+      } catch (final IOException ioException) {
+        throw new MojoExecutionException(ioException.getMessage(), ioException);
+      }
+      if (log != null && log.isDebugEnabled()) {
+        log.debug("Using manifestFile: " + manifestFile);
+      }
+    } else {
+      manifest = null;
     }
 
-    if (log != null && log.isDebugEnabled()) {
-      log.debug("All template processing complete.");
+    // The data model and the index no longer invalidate every
+    // template; each template is checked against what it read.
+    final DataModelFingerprints dataModelFingerprints;
+    if (manifest == null) {
+      dataModelFingerprints = null;
+    } else {
+      dataModelFingerprints =
+        new DataModelFingerprints(userDataModel,
+                                  userLazyDataModel,
+                                  dataModelFingerprint,
+                                  projectFingerprint,
+                                  sessionFingerprint,
+                                  indexFingerprint,
+                                  contextClassLoader,
+                                  initializeClasses);
     }
+
+    //
+    // Observe which templates each template includes or imports.
+    //
+
+    final TemplateDependencies templateDependencies = new TemplateDependencies();
+    templateDependencies.install(configuration);
+
+    return new Execution(configuration, indexView, fanOuts, templateNames, dataModel, templateDataModel, outputEncoding, manifest, templateDependencies, dataModelFingerprints);
   }
 
   /**
-   * Returns a {@link File} representing the path where the output of
-   * processing a Freemarker template with the supplied {@code
-   * templateName} should be deposited.
+   * Resolves the compile-scoped dependencies of the supplied {@link
+   * MavenProject} and returns them.
+   *
+   * <p>This goal does not require Maven to resolve dependencies
+   * before it runs, because most executions do not {@linkplain
+   * #isIndexDependencies() index them}; this method resolves them on
+   * demand instead.</p>
    *
    * <p>This method never returns {@code null}.</p>
    *
-   * <p>Overrides of this method must not return {@code null}.</p>
+   * @param project the {@link MavenProject} whose dependencies should
+   * be resolved; may be {@code null} in which case an {@linkplain
+   * Set#isEmpty() empty} {@link Set} is returned
    *
-   * @param templateName the name of a Freemarker template; must not
-   * be {@code null}
+   * @return a non-{@code null} {@link Set} of resolved {@link
+   * Artifact}s
    *
-   * @return a non-{@code null} {@link File} representing the path
-   * where the output of processing a Freemarker template with the
-   * supplied {@code templateName} should be deposited
+   * @exception MojoExecutionException if the dependencies could not
+   * be resolved
+   */
+  private final Set<Artifact> resolveDependencies(final MavenProject project) throws MojoExecutionException {
+    final Set<Artifact> returnValue = new LinkedHashSet<>();
+    final MavenSession session = this.getSession();
+    if (project != null && session != null && this.projectDependenciesResolver != null) {
+      final DependencyResolutionRequest request = new DefaultDependencyResolutionRequest(project, session.getRepositorySession());
+      request.setResolutionFilter(new ScopeDependencyFilter(Arrays.asList(JavaScopes.COMPILE, JavaScopes.PROVIDED, JavaScopes.SYSTEM), null));
+      final DependencyResolutionResult result;
+      try {
+        result = this.projectDependenciesResolver.resolve(request);
+      } catch (final DependencyResolutionException dependencyResolutionException) {
+        throw new MojoExecutionException(dependencyResolutionException.getMessage(), dependencyResolutionException);
+      }
+      for (final org.eclipse.aether.graph.Dependency dependency : result.getDependencies()) {
+        if (dependency != null && dependency.getArtifact() != null && dependency.getArtifact().getFile() != null) {
+          final Artifact artifact = RepositoryUtils.toArtifact(dependency.getArtifact());
+          artifact.setScope(dependency.getScope());
+          returnValue.add(artifact);
+        }
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the names of the templates that should be processed
+   * once each, which are all the {@linkplain
+   * #getTemplateNames(Configuration) discovered templates} except
+   * those that are fanned out.
    *
-   * @exception NullPointerException if {@code templateName} is {@code
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param configuration the {@link Configuration} whose {@link
+   * Configuration#getTemplateLoader() TemplateLoader} is used to
+   * discover templates; must not be {@code null}
+   *
+   * @param fanOuts the {@link FanOut}s in effect; must not be {@code
    * null}
    *
-   * @see #getDefaultOutputFile(String)
+   * @return a non-{@code null}, mutable {@link Set} of template names
    *
-   * @see #getOutputFile()
+   * @exception MojoExecutionException if there are no templates to
+   * process or they could not be discovered
    */
-  protected File getOutputFile(final String templateName) {
-    Objects.requireNonNull(templateName);
-    File returnValue = null;
-    if (templateName.equals(this.getTemplateName())) {
-      // If we are being asked for the outputFile for the
-      // user-specified templateName, then use the user-specified
-      // outputFile if there is one.
-      returnValue = this.getOutputFile();
-    } else {
-      File outputFile = this.getOutputFile();
-      if (outputFile == null) {
-        outputFile = this.getProjectBuildDirectory();
+  final Set<String> findTemplateNames(final Configuration configuration, final Collection<? extends FanOut> fanOuts) throws MojoExecutionException {
+    final Log log = this.getLog();
+    final Set<String> templateNames;
+    try {
+      final Set<String> allTemplateNames = this.getTemplateNames(configuration);
+      templateNames = allTemplateNames == null ? new LinkedHashSet<>() : new LinkedHashSet<>(allTemplateNames);
+    } catch (final UncheckedIOException uncheckedIOException) {
+      throw new MojoExecutionException(uncheckedIOException.getMessage(), uncheckedIOException.getCause());
+    }
+    for (final FanOut fanOut : fanOuts) {
+      templateNames.remove(fanOut.getTemplateName());
+    }
+    if (templateNames.isEmpty() && fanOuts.isEmpty()) {
+      throw new MojoExecutionException("No templates to process");
+    } else if (templateNames.size() > 1 || (this.getTemplateName() == null && !fanOuts.isEmpty())) {
+      // If there are lots of templates to process, then treat
+      // outputFile as a directory, not a regular file.
+      final File outputFile = this.getOutputFile();
+      if (outputFile != null) {
+        if (outputFile.exists() && !outputFile.isDirectory()) {
+          throw new MojoExecutionException("outputFile was an existing non-directory: " + outputFile);
+        } else {
+          outputFile.mkdirs();
+        }
       }
-      assert outputFile != null;
-      returnValue = new File(outputFile, stripFtlSuffix(templateName));
     }
-    if (returnValue == null) {
-      returnValue = this.getDefaultOutputFile(templateName);
+    if (log != null && log.isDebugEnabled()) {
+      log.debug("Using templateNames: " + templateNames);
     }
-    assert returnValue != null;
-    final File directory = returnValue.getParentFile();
-    assert directory != null;
-    directory.mkdirs();
-    return returnValue;
+    return templateNames;
   }
 
   /**
-   * Returns a {@link File} representing the <em>default location</em> for the
-   * output from the processing of a Freemarker template with the
-   * supplied {@code templateName}.
+   * Processes the supplied templates and fan-outs using the
+   * Configuration, data model and other state held by the supplied
+   * {@link Execution}.
    *
-   * <p>This method never returns {@code null}.</p>
+   * @param execution the {@link Execution} {@linkplain #prepare()
+   * prepared} earlier; must not be {@code null}
    *
-   * <p>Overrides of this method must not return {@code null}.</p>
+   * @param templateNames the names of the templates to process once
+   * each; must not be {@code null}
    *
-   * <p>This implementation returns a new {@link File} formed from a
-   * concatenation of the {@linkplain #getProjectBuildDirectory()
-   * default Maven project build directory} and the supplied {@code
-   * templateName}, minus its {@code .ftl} suffix (if it has one).</p>
+   * @param fanOuts the {@link FanOut}s to process; must not be {@code
+   * null}
    *
-   * @param templateName the name of the template for which an output
-   * file should be returned; must not be {@code null}
+   * @param complete whether {@code templateNames} and {@code fanOuts}
+   * describe everything there is to process, in which case output
+   * produced by templates that no longer exist is removed
    *
-   * @return a non-{@code null} {@link File} representing the
+   * @exception MojoExecutionException if a template could not be
+   * processed
+   */
+  final void render(final Execution execution,
+                    final Collection<? extends String> templateNames,
+                    final Collection<? extends FanOut> fanOuts,
+                    final boolean complete)
+    throws MojoExecutionException {
+    final Log log = this.getLog();
+    final Configuration configuration = execution.configuration;
+    final LazyIndexView indexView = execution.indexView;
+    final Map<String, Object> dataModel = execution.dataModel;
+    final LazyDataModel templateDataModel = execution.templateDataModel;
+    final String outputEncoding = execution.outputEncoding;
+    final StalenessManifest manifest = execution.manifest;
+    final TemplateDependencies templateDependencies = execution.templateDependencies;
+    final DataModelFingerprints dataModelFingerprints = execution.dataModelFingerprints;
+    templateDependencies.clearFingerprints();
+
+    //
+    // Work out what needs to be rendered: each template once, and
+    // each fanned-out template once per matching class.
+    //
+
+    final TimingReport timingReport = new TimingReport();
+    final List<Callable<ProcessingResult>> tasks = new ArrayList<>(templateNames.size());
+    for (final String templateName : templateNames) {
+      tasks.add(() -> this.process(configuration, templateName, templateDataModel, outputEncoding, manifest, templateDependencies, dataModelFingerprints, timingReport));
+    }
+    final Set<String> fanOutKeys = ConcurrentHashMap.newKeySet();
+    for (final FanOut fanOut : fanOuts) {
+      tasks.addAll(this.fanOut(configuration, fanOut, indexView, dataModel, outputEncoding, manifest, templateDependencies, dataModelFingerprints, timingReport, fanOutKeys));
+    }
+    
+    //
+    // Process templates.
+    //
+
+    final List<ProcessingResult> results;
+    try {
+      final int threadCount = this.isParallel() ? Math.min(this.getEffectiveThreads(), tasks.size()) : 1;
+      if (threadCount <= 1) {
+        results = new ArrayList<>(tasks.size());
+        for (final Callable<ProcessingResult> task : tasks) {
+          try {
+            results.add(task.call());
+          } catch (final MojoExecutionException mojoExecutionException) {
+            throw mojoExecutionException;
+          } catch (final Exception exception) {
+            throw new MojoExecutionException(exception.getMessage(), exception);
+          }
+        }
+      } else {
+        if (log != null && log.isDebugEnabled()) {
+          log.debug("Processing " + tasks.size() + " templates using " + threadCount + " threads");
+        }
+        results = this.processInParallel(tasks, threadCount);
+      }
+    } finally {
+      if (manifest != null) {
+        try {
+          manifest.store();
+        } catch (final IOException ioException) {
+          if (log != null && log.isWarnEnabled()) {
+            log.warn("Could not store manifest: " + ioException.getMessage(), ioException);
+          }
+        }
+      }
+    }
+
+    //
+    // Remove output produced by templates that no longer exist.
+    //
+
+    if (complete && manifest != null) {
+      final Set<String> currentKeys = new HashSet<>(templateNames);
+      currentKeys.addAll(fanOutKeys);
+      this.deleteOrphanedOutputFiles(manifest.getOrphanedOutputFiles(currentKeys));
+    }
+
+    //
+    // Report how long everything took.
+    //
+
+    timingReport.complete();
+    if (log != null && log.isInfoEnabled()) {
+      final String summary = timingReport.getSummary();
+      if (summary != null) {
+        log.info(summary);
+      }
+    }
+    final File timingReportFile = this.getTimingReportFile();
+    if (timingReportFile != null) {
+      try {
+        timingReport.write(timingReportFile);
+        if (log != null && log.isDebugEnabled()) {
+          log.debug("Wrote timing report: " + timingReportFile);
+        }
+      } catch (final IOException ioException) {
+        if (log != null && log.isWarnEnabled()) {
+          log.warn("Could not write timing report " + timingReportFile + ": " + ioException.getMessage(), ioException);
+        }
+      }
+    }
+
+    if (log != null && log.isInfoEnabled() && (manifest != null || this.isWriteIfChanged())) {
+      final int writtenCount = Collections.frequency(results, ProcessingResult.WRITTEN);
+      final int unchangedCount = Collections.frequency(results, ProcessingResult.UNCHANGED);
+      log.info("Processed " + (writtenCount + unchangedCount) + " of " + tasks.size() + " templates; " +
+               writtenCount + " output files written, " + unchangedCount + " unchanged");
+    }
+    if (log != null && log.isDebugEnabled()) {
+      log.debug("All template processing complete.");
+    }
+  }
+
+  /**
+   * Removes the output produced by the templates with the supplied
+   * names, which no longer exist, and forgets them in the {@link
+   * StalenessManifest} of the supplied {@link Execution}, if there is
+   * one.
+   *
+   * <p>This is the counterpart, for a partial {@linkplain
+   * #render(Execution, Collection, Collection, boolean) rendering},
+   * of the removal of orphaned output that a complete rendering
+   * performs.</p>
+   *
+   * @param execution the {@link Execution} in effect; must not be
+   * {@code null}
+   *
+   * @param templateNames the names of templates that were removed;
+   * must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  final void removeOutputs(final Execution execution, final Collection<? extends String> templateNames) {
+    final StalenessManifest manifest = execution.manifest;
+    if (manifest != null && !templateNames.isEmpty()) {
+      final Map<String, File> orphanedOutputFiles = new HashMap<>();
+      for (final String templateName : templateNames) {
+        final File outputFile = manifest.forget(templateName);
+        if (outputFile != null) {
+          orphanedOutputFiles.put(templateName, outputFile);
+        }
+      }
+      this.deleteOrphanedOutputFiles(orphanedOutputFiles);
+      try {
+        manifest.store();
+      } catch (final IOException ioException) {
+        final Log log = this.getLog();
+        if (log != null && log.isWarnEnabled()) {
+          log.warn("Could not store manifest: " + ioException.getMessage(), ioException);
+        }
+      }
+    }
+  }
+
+  /**
+   * Deletes the supplied output {@link File}s of templates that no
+   * longer exist.
+   *
+   * @param orphanedOutputFiles the output {@link File}s to delete,
+   * indexed by the names of the templates that produced them; must
+   * not be {@code null}
+   *
+   * @exception NullPointerException if {@code orphanedOutputFiles}
+   * is {@code null}
+   */
+  private final void deleteOrphanedOutputFiles(final Map<? extends String, ? extends File> orphanedOutputFiles) {
+    final Log log = this.getLog();
+    for (final Entry<? extends String, ? extends File> entry : orphanedOutputFiles.entrySet()) {
+      final File orphanedOutputFile = entry.getValue();
+      if (orphanedOutputFile.isFile()) {
+        if (log != null && log.isDebugEnabled()) {
+          log.debug("Deleting output of removed template " + entry.getKey() + ": " + orphanedOutputFile);
+        }
+        if (!orphanedOutputFile.delete() && log != null && log.isWarnEnabled()) {
+          log.warn("Could not delete output of removed template " + entry.getKey() + ": " + orphanedOutputFile);
+        }
+      }
+    }
+  }
+
+  /**
+   * Processes the Freemarker template identified by the supplied
+   * {@code templateName} against the supplied data model, writing the
+   * results to the {@linkplain #getOutputFile(String) appropriate
+   * output <code>File</code>}.
+   *
+   * <p>This method may be invoked concurrently by multiple threads
+   * when the {@link #isParallel() parallel} parameter is {@code
+   * true}.</p>
+   *
+   * @param configuration the {@link Configuration} to use to
+   * {@linkplain Configuration#getTemplate(String) load the template};
+   * must not be {@code null}
+   *
+   * @param templateName the name of the template to process; must not
+   * be {@code null}
+   *
+   * @param dataModel the data model to use; may be {@code null}
+   *
+   * @param outputEncoding the character encoding to use when writing
+   * output; must not be {@code null}
+   *
+   * @param manifest the {@link StalenessManifest} used to skip the
+   * template if its inputs have not changed; may be {@code null} in
+   * which case the template will always be processed
+   *
+   * @param templateDependencies the {@link TemplateDependencies}
+   * recording which templates are included or imported; must not be
+   * {@code null}
+   *
+   * @param dataModelFingerprints the {@link DataModelFingerprints}
+   * used to fingerprint what templates read; must not be {@code null}
+   * if {@code manifest} is not {@code null}
+   *
+   * @param timingReport the {@link TimingReport} in which the time
+   * spent loading, rendering and writing the template is recorded;
+   * may be {@code null}
+   *
+   * @return a {@link ProcessingResult} describing what happened;
+   * never {@code null}
+   *
+   * @exception MojoExecutionException if the template could not be
+   * loaded, processed or written
+   *
+   * @see #getOutputFile(String)
+   */
+  private final ProcessingResult process(final Configuration configuration,
+                                         final String templateName,
+                                         final Object dataModel,
+                                         final String outputEncoding,
+                                         final StalenessManifest manifest,
+                                         final TemplateDependencies templateDependencies,
+                                         final DataModelFingerprints dataModelFingerprints,
+                                         final TimingReport timingReport)
+    throws MojoExecutionException {
+    final Log log = this.getLog();
+    if (templateName == null) {
+      throw new MojoExecutionException("Encountered null template name in templateNames; check the getTemplateNames() method");
+    }
+
+    final File outputFile = this.getOutputFile(templateName);
+    if (outputFile == null) {
+      if (log != null && log.isDebugEnabled()) {
+        log.debug("No suitable outputFile found for a template with the name " + templateName + "; skipping processing");
+      }
+      return ProcessingResult.SKIPPED;
+    }
+    return this.process(configuration, templateName, templateName, outputFile, dataModel, outputEncoding, manifest, templateDependencies, dataModelFingerprints, timingReport);
+  }
+
+  /**
+   * Processes the Freemarker template identified by the supplied
+   * {@code templateName} against the supplied data model, writing the
+   * results to the supplied {@code outputFile}.
+   *
+   * <p>This method may be invoked concurrently by multiple threads
+   * when the {@link #isParallel() parallel} parameter is {@code
+   * true}.</p>
+   *
+   * @param configuration the {@link Configuration} to use to
+   * {@linkplain Configuration#getTemplate(String) load the template};
+   * must not be {@code null}
+   *
+   * @param templateName the name of the template to process; must not
+   * be {@code null}
+   *
+   * @param key the name under which the output is recorded in the
+   * supplied {@link StalenessManifest}; must not be {@code null}; for
+   * ordinary templates this is the same as {@code templateName}
+   *
+   * @param outputFile the {@link File} to write; must not be {@code
+   * null}
+   *
+   * @param dataModel the data model to use; may be {@code null}
+   *
+   * @param outputEncoding the character encoding to use when writing
+   * output; must not be {@code null}
+   *
+   * @param manifest the {@link StalenessManifest} used to skip the
+   * template if its inputs have not changed; may be {@code null} in
+   * which case the template will always be processed
+   *
+   * @param templateDependencies the {@link TemplateDependencies}
+   * recording which templates are included or imported; must not be
+   * {@code null}
+   *
+   * @param dataModelFingerprints the {@link DataModelFingerprints}
+   * used to fingerprint what templates read; must not be {@code null}
+   * if {@code manifest} is not {@code null}
+   *
+   * @param timingReport the {@link TimingReport} in which the time
+   * spent loading, rendering and writing the template is recorded;
+   * may be {@code null}
+   *
+   * @return a {@link ProcessingResult} describing what happened;
+   * never {@code null}
+   *
+   * @exception MojoExecutionException if the template could not be
+   * loaded, processed or written
+   */
+  private final ProcessingResult process(final Configuration configuration,
+                                         final String templateName,
+                                         final String key,
+                                         final File outputFile,
+                                         final Object dataModel,
+                                         final String outputEncoding,
+                                         final StalenessManifest manifest,
+                                         final TemplateDependencies templateDependencies,
+                                         final DataModelFingerprints dataModelFingerprints,
+                                         final TimingReport timingReport)
+    throws MojoExecutionException {
+    final Log log = this.getLog();
+    String fingerprint = null;
+    if (manifest != null) {
+      fingerprint = fingerprint(configuration,
+                                manifest,
+                                templateDependencies,
+                                dataModelFingerprints,
+                                key,
+                                templateName,
+                                outputFile,
+                                manifest.getPriorDependencies(key),
+                                manifest.getPriorReads(key));
+      if (manifest.isUpToDate(key, fingerprint, outputFile)) {
+        if (log != null && log.isDebugEnabled()) {
+          log.debug("Output file " + outputFile + " is up to date; skipping processing of template: " + templateName);
+        }
+        final Set<String> priorDependencies = manifest.getPriorDependencies(key);
+        templateDependencies.record(key, templateName, priorDependencies);
+        manifest.record(key, fingerprint, outputFile, priorDependencies, manifest.getPriorReads(key));
+        if (timingReport != null) {
+          timingReport.record(key, templateName, outputFile, ProcessingResult.SKIPPED.name(), 0L, 0L, 0L, 0L);
+        }
+        return ProcessingResult.SKIPPED;
+      }
+    }
+    if (log != null && log.isDebugEnabled()) {
+      log.debug("Loading template: " + templateName);
+      log.debug("Output file: " + outputFile);
+    }
+    final long loadStart = System.nanoTime();
+    Template template = null;
+    final Events.Span loadSpan = Events.templateLoad(templateName);
+    try {
+      template = configuration.getTemplate(templateName);
+    } catch (final IOException exception) {
+      throw new MojoExecutionException(exception.getMessage(), exception);
+    } finally {
+      loadSpan.close();
+    }
+    final long loadNanos = System.nanoTime() - loadStart;
+    if (log != null && log.isDebugEnabled()) {
+      log.debug("Compiled template: " + template);
+      log.debug("Processing...");
+    }
+    final ProcessingResult returnValue;
+    final Events.Span processSpan = Events.templateProcess(templateName, outputFile.getPath());
+    final long processStart = System.nanoTime();
+    final long renderNanos;
+    final long writeNanos;
+    final TimingReport.MeasuringOutputStream measuringOutputStream;
+    final Set<String> dependencies;
+    final Set<String> reads;
+    templateDependencies.begin();
+    final AccessTrace accessTrace = AccessTrace.begin();
+    try {
+      if (this.isWriteIfChanged()) {
+        final WriteIfChangedOutputStream outputStream = new WriteIfChangedOutputStream(outputFile);
+        measuringOutputStream = new TimingReport.MeasuringOutputStream(outputStream, templateName);
+        try {
+          try (final Writer out = new BufferedWriter(new OutputStreamWriter(measuringOutputStream, outputEncoding))) {
+            template.process(dataModel, out);
+          }
+          final long commitStart = System.nanoTime();
+          returnValue = outputStream.commit() ? ProcessingResult.WRITTEN : ProcessingResult.UNCHANGED;
+          renderNanos = commitStart - processStart - measuringOutputStream.getNanos();
+          writeNanos = System.nanoTime() - commitStart + measuringOutputStream.getNanos();
+        } catch (final IOException | TemplateException exception) {
+          throw new MojoExecutionException(exception.getMessage(), exception);
+        } finally {
+          try {
+            outputStream.discard();
+          } catch (final IOException ioException) {
+            if (log != null && log.isWarnEnabled()) {
+              log.warn("Could not discard temporary output for " + outputFile + ": " + ioException.getMessage(), ioException);
+            }
+          }
+        }
+      } else {
+        try {
+          measuringOutputStream = new TimingReport.MeasuringOutputStream(new FileOutputStream(outputFile), templateName);
+        } catch (final IOException exception) {
+          throw new MojoExecutionException(exception.getMessage(), exception);
+        }
+        try (final Writer out = new BufferedWriter(new OutputStreamWriter(measuringOutputStream, outputEncoding))) {
+          template.process(dataModel, out);
+        } catch (final IOException | TemplateException exception) {
+          throw new MojoExecutionException(exception.getMessage(), exception);
+        }
+        returnValue = ProcessingResult.WRITTEN;
+        renderNanos = System.nanoTime() - processStart - measuringOutputStream.getNanos();
+        writeNanos = measuringOutputStream.getNanos();
+      }
+      processSpan.setBytes(measuringOutputStream.getBytes());
+    } finally {
+      processSpan.close();
+      accessTrace.close();
+      reads = DataModelFingerprints.reads(accessTrace);
+      dependencies = templateDependencies.end(key, templateName);
+    }
+    if (timingReport != null) {
+      timingReport.record(key, templateName, outputFile, returnValue.name(), loadNanos, renderNanos, writeNanos, measuringOutputStream.getBytes());
+    }
+    if (log != null && log.isDebugEnabled()) {
+      log.debug("...processing complete." + (returnValue == ProcessingResult.UNCHANGED ? " Output unchanged." : ""));
+    }
+    if (manifest != null) {
+      if (fingerprint != null &&
+          (!dependencies.equals(manifest.getPriorDependencies(key)) || !reads.equals(manifest.getPriorReads(key)))) {
+        // What the template includes, imports or reads changed, so
+        // the fingerprint must cover the new sets.
+        fingerprint = fingerprint(configuration,
+                                  manifest,
+                                  templateDependencies,
+                                  dataModelFingerprints,
+                                  key,
+                                  templateName,
+                                  outputFile,
+                                  dependencies,
+                                  reads);
+      }
+      manifest.record(key, fingerprint, outputFile, dependencies, reads);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a fingerprint of everything that contributes to the
+   * output recorded under the supplied {@code key}: the template's
+   * source, the sources of the templates it includes or imports, and
+   * whatever it reads from the data model.
+   *
+   * @param configuration the {@link Configuration} in effect; must not
+   * be {@code null}
+   *
+   * @param manifest the {@link StalenessManifest} in effect; must not
+   * be {@code null}
+   *
+   * @param templateDependencies the {@link TemplateDependencies} used
+   * to fingerprint template sources; must not be {@code null}
+   *
+   * @param dataModelFingerprints the {@link DataModelFingerprints}
+   * used to fingerprint the read set; must not be {@code null}
+   *
+   * @param key the {@link StalenessManifest} key of the output; must
+   * not be {@code null}
+   *
+   * @param templateName the name of the template; must not be {@code
+   * null}
+   *
+   * @param outputFile the output {@link File}; must not be {@code
+   * null}
+   *
+   * @param dependencies the names of the templates the template
+   * includes or imports; must not be {@code null}
+   *
+   * @param reads the template's read set; must not be {@code null}
+   *
+   * @return a fingerprint, or {@code null} if the template's source
+   * could not be found
+   *
+   * @exception MojoExecutionException if a template source or class
+   * file could not be read
+   */
+  private static final String fingerprint(final Configuration configuration,
+                                          final StalenessManifest manifest,
+                                          final TemplateDependencies templateDependencies,
+                                          final DataModelFingerprints dataModelFingerprints,
+                                          final String key,
+                                          final String templateName,
+                                          final File outputFile,
+                                          final Collection<? extends String> dependencies,
+                                          final Collection<? extends String> reads)
+    throws MojoExecutionException {
+    final String templateSourceFingerprint;
+    final String readsFingerprint;
+    try {
+      templateSourceFingerprint =
+        templateDependencies.fingerprint(templateName, dependencies, configuration.getEncoding(configuration.getLocale()));
+      readsFingerprint = dataModelFingerprints.fingerprint(reads);
+    } catch (final IOException exception) {
+      throw new MojoExecutionException(exception.getMessage(), exception);
+    } catch (final UncheckedIOException uncheckedIOException) {
+      throw new MojoExecutionException(uncheckedIOException.getMessage(), uncheckedIOException.getCause());
+    }
+    if (templateSourceFingerprint == null) {
+      return null;
+    }
+    return manifest.fingerprint(key, StalenessManifest.hash(templateSourceFingerprint, readsFingerprint), outputFile);
+  }
+
+  /**
+   * Returns a {@link List} of {@link Callable}s, one per class in the
+   * supplied {@link IndexView} matching the supplied {@link FanOut},
+   * each of which processes the {@link FanOut}'s template for its
+   * class.
+   *
+   * <p>Each {@link Callable} adds a {@code classInfo} entry and a
+   * {@code className} entry to a copy of the supplied data model,
+   * evaluates the {@linkplain FanOut#getOutputPath() output path
+   * expression} against it, and then processes the template.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param configuration the {@link Configuration} to use; must not
+   * be {@code null}
+   *
+   * @param fanOut the {@link FanOut} to expand; must not be {@code
+   * null}
+   *
+   * @param indexView the {@link IndexView} to query; must not be
+   * {@code null}
+   *
+   * @param dataModel the data model shared by all templates; must not
+   * be {@code null}; will not be modified
+   *
+   * @param outputEncoding the character encoding to use when writing
+   * output; must not be {@code null}
+   *
+   * @param manifest the {@link StalenessManifest} used to skip
+   * classes whose inputs have not changed; may be {@code null}
+   *
+   * @param templateDependencies the {@link TemplateDependencies}
+   * recording which templates are included or imported; must not be
+   * {@code null}
+   *
+   * @param dataModelFingerprints the {@link DataModelFingerprints}
+   * used to fingerprint what templates read; must not be {@code null}
+   * if {@code manifest} is not {@code null}
+   *
+   * @param timingReport the {@link TimingReport} in which the
+   * processing of each class is recorded; may be {@code null}
+   *
+   * @param keys a thread-safe {@link Set} to which the {@link
+   * StalenessManifest} key of every output is added as it is
+   * produced; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link List} of {@link Callable}s
+   *
+   * @exception MojoExecutionException if the output path expression
+   * could not be parsed
+   */
+  private final List<Callable<ProcessingResult>> fanOut(final Configuration configuration,
+                                                        final FanOut fanOut,
+                                                        final IndexView indexView,
+                                                        final Map<String, Object> dataModel,
+                                                        final String outputEncoding,
+                                                        final StalenessManifest manifest,
+                                                        final TemplateDependencies templateDependencies,
+                                                        final DataModelFingerprints dataModelFingerprints,
+                                                        final TimingReport timingReport,
+                                                        final Set<String> keys)
+    throws MojoExecutionException {
+    final Log log = this.getLog();
+    final String templateName = fanOut.getTemplateName();
+    final Template outputPathTemplate;
+    try {
+      outputPathTemplate = new Template(templateName + "#outputPath", fanOut.getOutputPath(), configuration);
+    } catch (final IOException ioException) {
+      throw new MojoExecutionException(ioException.getMessage(), ioException);
+    }
+    File outputDirectory = fanOut.getOutputDirectory();
+    if (outputDirectory == null && this.getTemplateName() == null) {
+      outputDirectory = this.getOutputFile();
+    }
+    if (outputDirectory == null) {
+      outputDirectory = this.getProjectBuildDirectory();
+    }
+    final File baseDirectory = outputDirectory;
+    final List<ClassInfo> classes = fanOut.getClasses(indexView);
+    if (log != null && log.isDebugEnabled()) {
+      log.debug(classes.size() + " classes match " + fanOut);
+    }
+    final List<Callable<ProcessingResult>> returnValue = new ArrayList<>(classes.size());
+    for (final ClassInfo classInfo : classes) {
+      returnValue.add(() -> {
+          final String className = classInfo.name().toString();
+          final Map<String, Object> classDataModel = new HashMap<>(dataModel);
+          classDataModel.put("classInfo", classInfo); // note: not putIfAbsent
+          classDataModel.put("className", className); // note: not putIfAbsent
+          final LazyDataModel classTemplateDataModel = new LazyDataModel(classDataModel, configuration.getObjectWrapper());
+          final StringWriter writer = new StringWriter();
+          try {
+            outputPathTemplate.process(classTemplateDataModel, writer);
+          } catch (final IOException | TemplateException exception) {
+            throw new MojoExecutionException(exception.getMessage(), exception);
+          }
+          final String outputPath = writer.toString().trim();
+          if (outputPath.isEmpty()) {
+            throw new MojoExecutionException("The outputPath of " + fanOut + " is empty for class " + className);
+          }
+          final String key = templateName + "#" + outputPath;
+          if (!keys.add(key)) {
+            throw new MojoExecutionException("More than one class, including " + className + ", would cause " + templateName + " to be written to " + outputPath);
+          }
+          File outputFile = new File(outputPath);
+          if (!outputFile.isAbsolute()) {
+            outputFile = new File(baseDirectory, outputPath);
+          }
+          final File directory = outputFile.getAbsoluteFile().getParentFile();
+          if (directory != null) {
+            directory.mkdirs();
+          }
+          return this.process(configuration, templateName, key, outputFile, classTemplateDataModel, outputEncoding, manifest, templateDependencies, dataModelFingerprints, timingReport);
+        });
+    }
+    return returnValue;
+  }
+
+  /**
+   * Runs the supplied {@link Callable}s, each of which processes a
+   * Freemarker template, concurrently using a pool of {@code
+   * threadCount} worker threads.
+   *
+   * <p>As soon as the processing of any template fails, processing of
+   * all remaining templates is {@linkplain Future#cancel(boolean)
+   * cancelled}.  Templates already in progress are permitted to
+   * finish.  Once all work has stopped, the failure belonging to the
+   * {@link Callable} that comes first in the supplied {@link List} is
+   * thrown, and the failures of any others are {@linkplain
+   * Throwable#addSuppressed(Throwable) added to it as suppressed
+   * exceptions}, so that error reporting does not depend on thread
+   * scheduling.</p>
+   *
+   * @param tasks the {@link Callable}s to run; must not be {@code
+   * null}
+   *
+   * @param threadCount the number of worker threads to use; must be
+   * greater than zero
+   *
+   * @return a non-{@code null} {@link List} of {@link
+   * ProcessingResult}s, one per {@link Callable}, in the order of the
+   * supplied {@code tasks}
+   *
+   * @exception MojoExecutionException if any template could not be
+   * processed or if the calling thread was interrupted
+   *
+   * @see #process(Configuration, String, Object, String,
+   * StalenessManifest, TemplateDependencies, DataModelFingerprints,
+   * TimingReport)
+   */
+  private final List<ProcessingResult> processInParallel(final List<? extends Callable<ProcessingResult>> tasks,
+                                                         final int threadCount)
+    throws MojoExecutionException {
+    final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+    final AtomicInteger threadNumber = new AtomicInteger();
+    final ExecutorService executorService = Executors.newFixedThreadPool(threadCount, r -> {
+        final Thread thread = new Thread(r, "freemarker-maven-plugin-" + threadNumber.incrementAndGet());
+        thread.setContextClassLoader(contextClassLoader);
+        thread.setDaemon(true);
+        return thread;
+      });
+    final CompletionService<ProcessingResult> completionService = new ExecutorCompletionService<>(executorService);
+    final List<Future<ProcessingResult>> futures = new ArrayList<>(tasks.size());
+    boolean interrupted = false;
+    try {
+      for (final Callable<ProcessingResult> task : tasks) {
+        futures.add(completionService.submit(task));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        final Future<ProcessingResult> future = completionService.take();
+        try {
+          future.get();
+        } catch (final ExecutionException executionException) {
+          // Fail fast: stop anything that hasn't started yet.
+          break;
+        }
+      }
+    } catch (final InterruptedException interruptedException) {
+      interrupted = true;
+    } finally {
+      for (final Future<ProcessingResult> future : futures) {
+        future.cancel(false);
+      }
+      executorService.shutdown();
+      try {
+        while (!executorService.awaitTermination(1L, TimeUnit.SECONDS)) {
+          // Templates already in progress cannot be interrupted, so
+          // wait for them to finish.
+        }
+      } catch (final InterruptedException interruptedException) {
+        interrupted = true;
+        executorService.shutdownNow();
+      }
+    }
+
+    final List<ProcessingResult> results = new ArrayList<>(futures.size());
+    MojoExecutionException failure = null;
+    for (final Future<ProcessingResult> future : futures) {
+      if (future.isDone() && !future.isCancelled()) {
+        try {
+          results.add(future.get());
+        } catch (final ExecutionException executionException) {
+          final Throwable cause = executionException.getCause();
+          final MojoExecutionException exception;
+          if (cause instanceof MojoExecutionException) {
+            exception = (MojoExecutionException)cause;
+          } else {
+            exception = new MojoExecutionException(cause == null ? null : cause.getMessage(), cause);
+          }
+          if (failure == null) {
+            failure = exception;
+          } else {
+            failure.addSuppressed(exception);
+          }
+        } catch (final InterruptedException interruptedException) {
+          // Can't happen because the future is done.
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+      if (failure == null) {
+        failure = new MojoExecutionException("Interrupted while processing templates");
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return results;
+  }
+
+  /**
+   * Returns the number of worker threads that will be used when the
+   * {@link #isParallel() parallel} parameter is {@code true}.
+   *
+   * <p>This method always returns a number greater than zero.</p>
+   *
+   * @return the number of worker threads to use; always greater than
+   * zero
+   *
+   * @see #getThreads()
+   *
+   * @see Runtime#availableProcessors()
+   */
+  private final int getEffectiveThreads() {
+    final int threads = this.getThreads();
+    if (threads <= 0) {
+      return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+    return threads;
+  }
+
+  /**
+   * Returns a {@link File} representing the path where the output of
+   * processing a Freemarker template with the supplied {@code
+   * templateName} should be deposited.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>Overrides of this method must not return {@code null}.</p>
+   *
+   * @param templateName the name of a Freemarker template; must not
+   * be {@code null}
+   *
+   * @return a non-{@code null} {@link File} representing the path
+   * where the output of processing a Freemarker template with the
+   * supplied {@code templateName} should be deposited
+   *
+   * @exception NullPointerException if {@code templateName} is {@code
+   * null}
+   *
+   * @see #getDefaultOutputFile(String)
+   *
+   * @see #getOutputFile()
+   */
+  protected File getOutputFile(final String templateName) {
+    Objects.requireNonNull(templateName);
+    File returnValue = null;
+    if (templateName.equals(this.getTemplateName())) {
+      // If we are being asked for the outputFile for the
+      // user-specified templateName, then use the user-specified
+      // outputFile if there is one.
+      returnValue = this.getOutputFile();
+    } else {
+      File outputFile = this.getOutputFile();
+      if (outputFile == null) {
+        outputFile = this.getProjectBuildDirectory();
+      }
+      assert outputFile != null;
+      returnValue = new File(outputFile, stripFtlSuffix(templateName));
+    }
+    if (returnValue == null) {
+      returnValue = this.getDefaultOutputFile(templateName);
+    }
+    assert returnValue != null;
+    final File directory = returnValue.getParentFile();
+    assert directory != null;
+    directory.mkdirs();
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link File} representing the <em>default location</em> for the
+   * output from the processing of a Freemarker template with the
+   * supplied {@code templateName}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>Overrides of this method must not return {@code null}.</p>
+   *
+   * <p>This implementation returns a new {@link File} formed from a
+   * concatenation of the {@linkplain #getProjectBuildDirectory()
+   * default Maven project build directory} and the supplied {@code
+   * templateName}, minus its {@code .ftl} suffix (if it has one).</p>
+   *
+   * @param templateName the name of the template for which an output
+   * file should be returned; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link File} representing the
    * <em>default location</em> for the output from the processing of a
    * Freemarker template with the supplied {@code templateName}
    *
@@ -659,12 +1958,189 @@ public class FreemarkerMojo extends AbstractMojo {
    * @param skip if {@code true}, an invocation of the {@link #execute()}
    * method should do nothing
    *
-   * @see #isSkip()
+   * @see #isSkip()
+   *
+   * @see #execute()
+   */
+  public void setSkip(final boolean skip) {
+    this.skip = skip;
+  }
+
+  /**
+   * Returns {@code true} if templates should be processed
+   * concurrently.
+   *
+   * @return {@code true} if templates should be processed
+   * concurrently; {@code false} otherwise
+   *
+   * @see #setParallel(boolean)
+   *
+   * @see #getThreads()
+   */
+  public boolean isParallel() {
+    return this.parallel;
+  }
+
+  /**
+   * Sets whether templates should be processed concurrently.
+   *
+   * @param parallel if {@code true}, templates will be processed
+   * concurrently
+   *
+   * @see #isParallel()
+   *
+   * @see #setThreads(int)
+   */
+  public void setParallel(final boolean parallel) {
+    this.parallel = parallel;
+  }
+
+  /**
+   * Returns {@code true} if output files should be left untouched
+   * when their contents would not change.
+   *
+   * @return {@code true} if output files should be left untouched
+   * when their contents would not change; {@code false} otherwise
+   *
+   * @see #setWriteIfChanged(boolean)
+   */
+  public boolean isWriteIfChanged() {
+    return this.writeIfChanged;
+  }
+
+  /**
+   * Sets whether output files should be left untouched when their
+   * contents would not change.
+   *
+   * @param writeIfChanged if {@code true}, output files will be left
+   * untouched when their contents would not change
+   *
+   * @see #isWriteIfChanged()
+   */
+  public void setWriteIfChanged(final boolean writeIfChanged) {
+    this.writeIfChanged = writeIfChanged;
+  }
+
+  /**
+   * Returns {@code true} if templates whose inputs have not changed
+   * since the last execution should be skipped.
+   *
+   * @return {@code true} if templates whose inputs have not changed
+   * should be skipped; {@code false} otherwise
+   *
+   * @see #setIncremental(boolean)
+   *
+   * @see #getManifestFile()
+   */
+  public boolean isIncremental() {
+    return this.incremental;
+  }
+
+  /**
+   * Sets whether templates whose inputs have not changed since the
+   * last execution should be skipped.
+   *
+   * @param incremental if {@code true}, templates whose inputs have
+   * not changed will be skipped
+   *
+   * @see #isIncremental()
+   *
+   * @see #setManifestFile(File)
+   */
+  public void setIncremental(final boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  /**
+   * Returns the {@link File} in which fingerprints of template inputs
+   * are recorded when {@linkplain #isIncremental() incremental
+   * processing} is enabled.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the {@link File} in which fingerprints of template inputs
+   * are recorded, or {@code null}
+   *
+   * @see #setManifestFile(File)
+   *
+   * @see #isIncremental()
+   */
+  public File getManifestFile() {
+    return this.manifestFile;
+  }
+
+  /**
+   * Sets the {@link File} in which fingerprints of template inputs
+   * are recorded when {@linkplain #isIncremental() incremental
+   * processing} is enabled.
+   *
+   * @param manifestFile the {@link File} to use; may be {@code null}
+   * in which case a default location beneath the {@linkplain
+   * #getProjectBuildDirectory() project build directory} will be used
+   *
+   * @see #getManifestFile()
+   */
+  public void setManifestFile(final File manifestFile) {
+    this.manifestFile = manifestFile;
+  }
+
+  /**
+   * Returns whether classes loaded through the {@code classes} data
+   * model entry should have their static initializers run.
+   *
+   * @return {@code true} if loaded classes should be initialized
+   *
+   * @see #setInitializeClasses(boolean)
+   */
+  public boolean isInitializeClasses() {
+    return this.initializeClasses;
+  }
+
+  /**
+   * Sets whether classes loaded through the {@code classes} data
+   * model entry should have their static initializers run.
+   *
+   * @param initializeClasses whether loaded classes should be
+   * initialized
+   *
+   * @see #isInitializeClasses()
+   */
+  public void setInitializeClasses(final boolean initializeClasses) {
+    this.initializeClasses = initializeClasses;
+  }
+
+  /**
+   * Returns the number of worker threads to use when templates are
+   * {@linkplain #isParallel() processed concurrently}.
+   *
+   * <p>A return value less than or equal to zero means that the
+   * number of {@linkplain Runtime#availableProcessors() available
+   * processors} will be used.</p>
+   *
+   * @return the number of worker threads to use
+   *
+   * @see #setThreads(int)
+   *
+   * @see #isParallel()
+   */
+  public int getThreads() {
+    return this.threads;
+  }
+
+  /**
+   * Sets the number of worker threads to use when templates are
+   * {@linkplain #isParallel() processed concurrently}.
+   *
+   * @param threads the number of worker threads to use; if less than
+   * or equal to zero, the number of {@linkplain
+   * Runtime#availableProcessors() available processors} will be used
    *
-   * @see #execute()
+   * @see #getThreads()
+   *
+   * @see #setParallel(boolean)
    */
-  public void setSkip(final boolean skip) {
-    this.skip = skip;
+  public void setThreads(final int threads) {
+    this.threads = threads;
   }
 
   /**
@@ -754,6 +2230,118 @@ public class FreemarkerMojo extends AbstractMojo {
   public void setJandexIndexFile(final File jandexIndexFile) {
     this.jandexIndexFile = jandexIndexFile;
   }
+
+  /**
+   * Returns {@code true} if a Jandex index of the {@linkplain
+   * #getClassesDirectory() classes directory} should be built
+   * in-process when the {@linkplain #getJandexIndexFile() Jandex index
+   * file} cannot be read.
+   *
+   * @return {@code true} if classes should be indexed in-process
+   *
+   * @see #setIndexClasses(boolean)
+   */
+  public boolean isIndexClasses() {
+    return this.indexClasses;
+  }
+
+  /**
+   * Sets whether a Jandex index of the {@linkplain
+   * #getClassesDirectory() classes directory} should be built
+   * in-process when the {@linkplain #getJandexIndexFile() Jandex index
+   * file} cannot be read.
+   *
+   * @param indexClasses whether classes should be indexed in-process
+   *
+   * @see #isIndexClasses()
+   */
+  public void setIndexClasses(final boolean indexClasses) {
+    this.indexClasses = indexClasses;
+  }
+
+  /**
+   * Returns the directory of class files to index in-process.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the directory of class files to index, or {@code null}
+   *
+   * @see #setClassesDirectory(File)
+   *
+   * @see #isIndexClasses()
+   */
+  public File getClassesDirectory() {
+    return this.classesDirectory;
+  }
+
+  /**
+   * Sets the directory of class files to index in-process.
+   *
+   * @param classesDirectory the directory of class files to index;
+   * may be {@code null}
+   *
+   * @see #getClassesDirectory()
+   *
+   * @see #setIndexClasses(boolean)
+   */
+  public void setClassesDirectory(final File classesDirectory) {
+    this.classesDirectory = classesDirectory;
+  }
+
+  /**
+   * Returns {@code true} if the classes of the {@linkplain
+   * #getProject() project}'s compile-scoped dependencies should be
+   * included in the Jandex index.
+   *
+   * @return {@code true} if dependencies should be indexed
+   *
+   * @see #setIndexDependencies(boolean)
+   */
+  public boolean isIndexDependencies() {
+    return this.indexDependencies;
+  }
+
+  /**
+   * Sets whether the classes of the {@linkplain #getProject()
+   * project}'s compile-scoped dependencies should be included in the
+   * Jandex index.
+   *
+   * @param indexDependencies whether dependencies should be indexed
+   *
+   * @see #isIndexDependencies()
+   */
+  public void setIndexDependencies(final boolean indexDependencies) {
+    this.indexDependencies = indexDependencies;
+  }
+
+  /**
+   * Returns the file to which a report of the time spent on each
+   * template is written.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the file to which a timing report is written, or {@code
+   * null} if no report should be written
+   *
+   * @see #setTimingReportFile(File)
+   */
+  public File getTimingReportFile() {
+    return this.timingReportFile;
+  }
+
+  /**
+   * Sets the file to which a report of the time spent on each
+   * template is written.
+   *
+   * @param timingReportFile the file to which a timing report is
+   * written; may be {@code null} in which case no report will be
+   * written
+   *
+   * @see #getTimingReportFile()
+   */
+  public void setTimingReportFile(final File timingReportFile) {
+    this.timingReportFile = timingReportFile;
+  }
   
   /**
    * Returns a {@link File} representing the full path to the file
@@ -841,6 +2429,19 @@ public class FreemarkerMojo extends AbstractMojo {
    *
    * <p>Overrides of this method must not return {@code null}.</p>
    *
+   * <p>If a {@linkplain #getTemplateName() template name} has been
+   * explicitly set, this implementation returns a {@link Set}
+   * containing only that name.  Otherwise, the directories and class
+   * path locations backing the supplied {@link Configuration}'s
+   * {@link Configuration#getTemplateLoader() TemplateLoader} are
+   * walked recursively, and the relative paths of all files that
+   * match at least one of the {@linkplain #getIncludes() include
+   * patterns} and none of the {@linkplain #getExcludes() exclude
+   * patterns} are returned in sorted order.  {@link
+   * FileTemplateLoader}, {@link freemarker.cache.ClassTemplateLoader}
+   * and {@link freemarker.cache.MultiTemplateLoader} instances are
+   * supported.</p>
+   *
    * @param configuration a {@link Configuration} that might be
    * inspected for its {@link Configuration#getTemplateLoader()
    * TemplateLoader}; may be {@code null}
@@ -849,26 +2450,29 @@ public class FreemarkerMojo extends AbstractMojo {
    * Collections#unmodifiableSet(Set) unmodifiable <code>Set</code>}
    * of template names
    *
+   * @exception UncheckedIOException if an input/output error occurs
+   * while discovering templates
+   *
    * @see #getTemplateName()
+   *
+   * @see #getIncludes()
+   *
+   * @see #getExcludes()
    */
   protected Set<String> getTemplateNames(final Configuration configuration) {
     final Set<String> templateNames = new LinkedHashSet<>();
     final String templateName = this.getTemplateName();
     if (templateName == null) {
       if (configuration != null) {
-        final TemplateLoader templateLoader = configuration.getTemplateLoader();
-        if (templateLoader instanceof FileTemplateLoader) {
-          final File templateLoaderDirectory = ((FileTemplateLoader)templateLoader).getBaseDirectory();
-          if (templateLoaderDirectory != null && templateLoaderDirectory.isDirectory()) {
-            final String[] ftlFilenames = templateLoaderDirectory.list((d, n) -> n != null && n.toLowerCase().endsWith(".ftl"));
-            if (ftlFilenames != null && ftlFilenames.length > 0) {
-              for (final String ftlFilename : ftlFilenames) {
-                if (ftlFilename != null) {
-                  templateNames.add(ftlFilename);
-                }
-              }
-            }
-          }
+        List<String> includes = this.getIncludes();
+        if (includes == null || includes.isEmpty()) {
+          includes = Collections.singletonList(DEFAULT_INCLUDE);
+        }
+        final TemplateFinder templateFinder = new TemplateFinder(includes, this.getExcludes());
+        try {
+          templateNames.addAll(templateFinder.find(TemplateDependencies.unwrap(configuration.getTemplateLoader())));
+        } catch (final IOException ioException) {
+          throw new UncheckedIOException(ioException);
         }
       }
     } else {
@@ -881,6 +2485,88 @@ public class FreemarkerMojo extends AbstractMojo {
     }
   }
 
+  /**
+   * Returns the glob patterns identifying the templates to process
+   * when no {@linkplain #getTemplateName() template name} is set.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the include patterns, or {@code null}
+   *
+   * @see #setIncludes(List)
+   *
+   * @see #getTemplateNames(Configuration)
+   */
+  public List<String> getIncludes() {
+    return this.includes;
+  }
+
+  /**
+   * Sets the glob patterns identifying the templates to process when
+   * no {@linkplain #getTemplateName() template name} is set.
+   *
+   * @param includes the include patterns; may be {@code null}
+   *
+   * @see #getIncludes()
+   */
+  public void setIncludes(final List<String> includes) {
+    this.includes = includes;
+  }
+
+  /**
+   * Returns the glob patterns identifying templates that should not
+   * be processed.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the exclude patterns, or {@code null}
+   *
+   * @see #setExcludes(List)
+   *
+   * @see #getTemplateNames(Configuration)
+   */
+  public List<String> getExcludes() {
+    return this.excludes;
+  }
+
+  /**
+   * Sets the glob patterns identifying templates that should not be
+   * processed.
+   *
+   * @param excludes the exclude patterns; may be {@code null}
+   *
+   * @see #getExcludes()
+   */
+  public void setExcludes(final List<String> excludes) {
+    this.excludes = excludes;
+  }
+
+  /**
+   * Returns the {@link FanOut}s describing templates to process once
+   * per matching indexed class.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the {@link FanOut}s, or {@code null}
+   *
+   * @see #setFanOuts(List)
+   */
+  public List<FanOut> getFanOuts() {
+    return this.fanOuts;
+  }
+
+  /**
+   * Sets the {@link FanOut}s describing templates to process once per
+   * matching indexed class.
+   *
+   * @param fanOuts the {@link FanOut}s; may be {@code null}
+   *
+   * @see #getFanOuts()
+   */
+  public void setFanOuts(final List<FanOut> fanOuts) {
+    this.fanOuts = fanOuts;
+  }
+
   /**
    * Sets the name of the Freemarker template to process.
    *
@@ -961,6 +2647,32 @@ public class FreemarkerMojo extends AbstractMojo {
   public void setDataModel(final Map<String, Object> dataModel) {
     this.dataModel = dataModel;
   }
+
+  /**
+   * Returns a {@link Map} of {@link Supplier}s of lazily computed
+   * data model entries, indexed by key.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return a {@link Map} of {@link Supplier}s, or {@code null}
+   *
+   * @see #setLazyDataModel(Map)
+   */
+  public Map<String, Supplier<?>> getLazyDataModel() {
+    return this.lazyDataModel;
+  }
+
+  /**
+   * Installs a {@link Map} of {@link Supplier}s of lazily computed
+   * data model entries, indexed by key.
+   *
+   * @param lazyDataModel the {@link Map} to use; may be {@code null}
+   *
+   * @see #getLazyDataModel()
+   */
+  public void setLazyDataModel(final Map<String, Supplier<?>> lazyDataModel) {
+    this.lazyDataModel = lazyDataModel;
+  }
   
 
   /*
@@ -1014,5 +2726,460 @@ public class FreemarkerMojo extends AbstractMojo {
     }
     return returnValue;
   }
+
+  /**
+   * Returns a fingerprint of the supplied data model based on the
+   * {@linkplain String#valueOf(Object) string representations} of its
+   * entries.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param dataModel the data model to fingerprint; may be {@code
+   * null}
+   *
+   * @return a non-{@code null} fingerprint
+   */
+  private static final String fingerprint(final Map<? extends String, ?> dataModel) {
+    final String returnValue;
+    if (dataModel == null || dataModel.isEmpty()) {
+      returnValue = StalenessManifest.hash();
+    } else {
+      final List<String> strings = new ArrayList<>();
+      for (final Entry<? extends String, ?> entry : new TreeMap<>(dataModel).entrySet()) {
+        strings.add(entry.getKey());
+        strings.add(String.valueOf(entry.getValue()));
+      }
+      returnValue = StalenessManifest.hash(strings.toArray(new String[strings.size()]));
+    }
+    return returnValue;
+  }
+  /**
+   * Returns a fingerprint of the supplied data model and lazy data
+   * model.
+   *
+   * <p>Since what a {@link Supplier} will return cannot be known
+   * without invoking it, if the lazy data model contributes any entry
+   * this method returns a different fingerprint every time it is
+   * invoked.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param dataModel the data model to fingerprint; may be {@code
+   * null}
+   *
+   * @param lazyDataModel the lazy data model to fingerprint; may be
+   * {@code null}
+   *
+   * @return a non-{@code null} fingerprint
+   *
+   * @see #fingerprint(Map)
+   */
+  private static final String fingerprint(final Map<? extends String, ?> dataModel, final Map<? extends String, ? extends Supplier<?>> lazyDataModel) {
+    if (lazyDataModel != null) {
+      for (final Entry<? extends String, ? extends Supplier<?>> entry : lazyDataModel.entrySet()) {
+        if (entry.getValue() != null && (dataModel == null || !dataModel.containsKey(entry.getKey()))) {
+          return StalenessManifest.hash(fingerprint(dataModel), UUID.randomUUID().toString());
+        }
+      }
+    }
+    return fingerprint(dataModel);
+  }
+
+
+  /**
+   * Returns a fingerprint of those parts of the supplied {@link
+   * MavenProject} that templates can see through the {@code project}
+   * data model entry: its coordinates, descriptive elements,
+   * properties, declared dependencies and resolved artifacts.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param project the {@link MavenProject} to fingerprint; may be
+   * {@code null}
+   *
+   * @return a non-{@code null} fingerprint
+   */
+  static final String fingerprint(final MavenProject project) {
+    if (project == null) {
+      return StalenessManifest.hash();
+    }
+    final List<String> strings = new ArrayList<>();
+    strings.add(project.getGroupId());
+    strings.add(project.getArtifactId());
+    strings.add(project.getVersion());
+    strings.add(project.getPackaging());
+    strings.add(project.getName());
+    strings.add(project.getDescription());
+    strings.add(project.getUrl());
+    addAll(strings, project.getProperties());
+    final List<Dependency> dependencies = project.getDependencies();
+    if (dependencies != null) {
+      for (final Dependency dependency : dependencies) {
+        strings.add(dependency == null ? null : dependency.getManagementKey() + ":" + dependency.getVersion() + ":" + dependency.getScope());
+      }
+    }
+    final Set<Artifact> artifacts = project.getArtifacts();
+    if (artifacts != null) {
+      final Set<String> artifactIds = new TreeSet<>();
+      for (final Artifact artifact : artifacts) {
+        if (artifact != null) {
+          artifactIds.add(artifact.getId() + ":" + artifact.getScope());
+        }
+      }
+      strings.addAll(artifactIds);
+    }
+    return StalenessManifest.hash(strings.toArray(new String[strings.size()]));
+  }
+
+  /**
+   * Returns a fingerprint of those parts of the supplied {@link
+   * MavenSession} that stay the same from one build to the next
+   * unless the build is invoked differently: its user and system
+   * properties, its active profiles and its goals.
+   *
+   * <p>Volatile state, such as the session's start time, is
+   * deliberately left out, since covering it would make every
+   * template that reads the {@code session} data model entry stale
+   * on every build.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param session the {@link MavenSession} to fingerprint; may be
+   * {@code null}
+   *
+   * @return a non-{@code null} fingerprint
+   */
+  static final String fingerprint(final MavenSession session) {
+    if (session == null) {
+      return StalenessManifest.hash();
+    }
+    final List<String> strings = new ArrayList<>();
+    strings.add("userProperties");
+    addAll(strings, session.getUserProperties());
+    strings.add("systemProperties");
+    addAll(strings, session.getSystemProperties());
+    strings.add("activeProfiles");
+    final MavenExecutionRequest request = session.getRequest();
+    if (request != null && request.getActiveProfiles() != null) {
+      strings.addAll(request.getActiveProfiles());
+    }
+    strings.add("goals");
+    if (session.getGoals() != null) {
+      strings.addAll(session.getGoals());
+    }
+    return StalenessManifest.hash(strings.toArray(new String[strings.size()]));
+  }
+
+  /**
+   * Adds the names and values of the supplied {@link Properties},
+   * sorted by name, to the supplied {@link List}.
+   *
+   * @param strings the {@link List} to add to; must not be {@code
+   * null}
+   *
+   * @param properties the {@link Properties} to add; may be {@code
+   * null}
+   *
+   * @exception NullPointerException if {@code strings} is {@code
+   * null}
+   */
+  private static final void addAll(final List<String> strings, final Properties properties) {
+    if (properties != null) {
+      for (final String name : new TreeSet<>(properties.stringPropertyNames())) {
+        strings.add(name);
+        strings.add(properties.getProperty(name));
+      }
+    }
+  }
+
+  /**
+   * Returns a fingerprint of those settings of the supplied {@link
+   * Configuration} that can affect the output of a template.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param configuration the {@link Configuration} to fingerprint;
+   * must not be {@code null}
+   *
+   * @return a non-{@code null} fingerprint
+   *
+   * @exception NullPointerException if {@code configuration} is
+   * {@code null}
+   */
+  private static final String fingerprint(final Configuration configuration) {
+    return StalenessManifest.hash(String.valueOf(configuration.getIncompatibleImprovements()),
+                                  configuration.getDefaultEncoding(),
+                                  String.valueOf(configuration.getLocale()),
+                                  String.valueOf(configuration.getTimeZone()),
+                                  configuration.getNumberFormat(),
+                                  configuration.getBooleanFormat(),
+                                  configuration.getDateFormat(),
+                                  configuration.getTimeFormat(),
+                                  configuration.getDateTimeFormat(),
+                                  configuration.getOutputFormat().getName(),
+                                  String.valueOf(configuration.getAutoEscapingPolicy()),
+                                  String.valueOf(configuration.getTagSyntax()),
+                                  String.valueOf(configuration.getNamingConvention()),
+                                  String.valueOf(configuration.getWhitespaceStripping()),
+                                  String.valueOf(configuration.getAutoImports()),
+                                  String.valueOf(configuration.getAutoIncludes()),
+                                  String.valueOf(configuration.getTemplateLoader()));
+  }
+
+  /**
+   * Returns a fingerprint of the supplied {@link File} based on its
+   * path, length and last modification time.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param file the {@link File} to fingerprint; may be {@code null}
+   *
+   * @return a non-{@code null} fingerprint
+   */
+  private static final String fingerprint(final File file) {
+    if (file == null || !file.isFile()) {
+      return StalenessManifest.hash(file == null ? null : file.getAbsolutePath());
+    }
+    return StalenessManifest.hash(file.getAbsolutePath(), Long.toString(file.length()), Long.toString(file.lastModified()));
+  }
+
+  /**
+   * Returns the version of this plugin, or {@code null} if it cannot
+   * be determined.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the version of this plugin, or {@code null}
+   */
+  private static final String getPluginVersion() {
+    String returnValue = null;
+    try (final InputStream inputStream =
+         FreemarkerMojo.class.getResourceAsStream("/META-INF/maven/org.microbean/freemarker-maven-plugin/pom.properties")) {
+      if (inputStream != null) {
+        final Properties properties = new Properties();
+        properties.load(inputStream);
+        returnValue = properties.getProperty("version");
+      }
+    } catch (final IOException ioException) {
+      returnValue = null;
+    }
+    if (returnValue == null) {
+      returnValue = FreemarkerMojo.class.getPackage().getImplementationVersion();
+    }
+    return returnValue;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * Everything needed to process templates that is built once by
+   * {@link #prepare()} and may then be {@linkplain #render(Execution,
+   * Collection, Collection, boolean) rendered} repeatedly, such as by
+   * the {@code watch} goal.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   *
+   * @see #prepare()
+   */
+  static final class Execution {
+
+
+    /*
+     * Instance fields.
+     */
+
+
+    /**
+     * The {@link Configuration} used to load templates.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Configuration configuration;
+
+    /**
+     * The Jandex index, if any.
+     *
+     * <p>This field may be {@code null}.</p>
+     */
+    private final LazyIndexView indexView;
+
+    /**
+     * The {@link FanOut}s in effect.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final List<FanOut> fanOuts;
+
+    /**
+     * The names of the templates processed once each.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Set<String> templateNames;
+
+    /**
+     * The data model from which {@link #templateDataModel} was
+     * built, used as the basis of each fanned-out data model.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Map<String, Object> dataModel;
+
+    /**
+     * The data model handed to templates.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final LazyDataModel templateDataModel;
+
+    /**
+     * The character encoding used when writing output.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final String outputEncoding;
+
+    /**
+     * The {@link StalenessManifest} in effect.
+     *
+     * <p>This field may be {@code null}.</p>
+     */
+    private final StalenessManifest manifest;
+
+    /**
+     * The {@link TemplateDependencies} installed into {@link
+     * #configuration}.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final TemplateDependencies templateDependencies;
+
+    /**
+     * The {@link DataModelFingerprints} used to fingerprint what
+     * templates read.
+     *
+     * <p>This field is {@code null} if and only if {@link #manifest}
+     * is {@code null}.</p>
+     */
+    private final DataModelFingerprints dataModelFingerprints;
+
+
+    /*
+     * Constructors.
+     */
+
+
+    private Execution(final Configuration configuration,
+                      final LazyIndexView indexView,
+                      final List<FanOut> fanOuts,
+                      final Set<String> templateNames,
+                      final Map<String, Object> dataModel,
+                      final LazyDataModel templateDataModel,
+                      final String outputEncoding,
+                      final StalenessManifest manifest,
+                      final TemplateDependencies templateDependencies,
+                      final DataModelFingerprints dataModelFingerprints) {
+      super();
+      this.configuration = Objects.requireNonNull(configuration);
+      this.indexView = indexView;
+      this.fanOuts = Collections.unmodifiableList(Objects.requireNonNull(fanOuts));
+      this.templateNames = Collections.unmodifiableSet(Objects.requireNonNull(templateNames));
+      this.dataModel = Objects.requireNonNull(dataModel);
+      this.templateDataModel = Objects.requireNonNull(templateDataModel);
+      this.outputEncoding = Objects.requireNonNull(outputEncoding);
+      this.manifest = manifest;
+      this.templateDependencies = Objects.requireNonNull(templateDependencies);
+      this.dataModelFingerprints = dataModelFingerprints;
+    }
+
+
+    /*
+     * Instance methods.
+     */
+
+
+    /**
+     * Returns the {@link Configuration} used to load templates.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null} {@link Configuration}
+     */
+    final Configuration getConfiguration() {
+      return this.configuration;
+    }
+
+    /**
+     * Returns the {@link FanOut}s in effect.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null}, unmodifiable {@link List}
+     */
+    final List<FanOut> getFanOuts() {
+      return this.fanOuts;
+    }
+
+    /**
+     * Returns the names of the templates that were found when this
+     * {@link Execution} was prepared and that are processed once
+     * each.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null}, unmodifiable {@link Set}
+     */
+    final Set<String> getTemplateNames() {
+      return this.templateNames;
+    }
+
+    /**
+     * Returns the {@link TemplateDependencies} recording which
+     * templates each rendered template includes or imports.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null} {@link TemplateDependencies}
+     */
+    final TemplateDependencies getTemplateDependencies() {
+      return this.templateDependencies;
+    }
+
+  }
+
+  /**
+   * The possible outcomes of processing a single template.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static enum ProcessingResult {
+
+    /**
+     * Indicates that the template was not processed, either because
+     * there was no suitable output file or because its inputs had not
+     * changed.
+     */
+    SKIPPED,
+
+    /**
+     * Indicates that the template was processed but that its output
+     * was identical to the existing output file, which was left
+     * untouched.
+     */
+    UNCHANGED,
+
+    /**
+     * Indicates that the template was processed and its output file
+     * was written.
+     */
+    WRITTEN;
+
+  }
   
 }
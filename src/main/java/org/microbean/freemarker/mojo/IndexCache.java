@@ -0,0 +1,481 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+
+import java.lang.ref.SoftReference;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.file.StandardOpenOption;
+
+import java.util.Objects;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import java.util.function.Function;
+
+import org.microbean.freemarker.Events;
+
+import org.jboss.jandex.IndexReader;
+import org.jboss.jandex.IndexView;
+
+/**
+ * A JVM-wide cache of parsed Jandex indexes, so that executions of a
+ * {@link FreemarkerMojo} that share a JVM, such as those of several
+ * modules in one reactor build or of successive builds in a
+ * long-lived Maven daemon, parse a given index file only once.
+ *
+ * <p>An index file is identified by its canonical path, and a cached
+ * index is reused only while the file's size and last modification
+ * time are unchanged.  Cached indexes are held through {@link
+ * SoftReference}s, so the garbage collector may reclaim them when
+ * memory is short, in which case they will simply be read again.</p>
+ *
+ * <p>Concurrent requests for the same file share a single read,
+ * which happens outside of any lock held by the underlying map, so
+ * that reading one large index or jar never delays requests for
+ * other files.</p>
+ *
+ * <p>Index files are read through a memory-mapped {@link
+ * FileChannel} rather than a buffered stream.</p>
+ *
+ * <p>This class is safe for concurrent use by multiple threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #get(File)
+ */
+final class IndexCache {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * {@link Entry} instances indexed by the canonical paths of the
+   * index files they describe.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link IndexCache}.
+   */
+  private IndexCache() {
+    super();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the {@link IndexView} stored in the supplied {@link
+   * File}, reading it only if it is not already cached or if the file
+   * has changed since it was cached.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param indexFile the Jandex index file to read; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link IndexView}
+   *
+   * @exception NullPointerException if {@code indexFile} is {@code
+   * null}
+   *
+   * @exception UncheckedIOException if the index could not be read
+   */
+  static final IndexView get(final File indexFile) {
+    return get(indexFile, IndexCache::read);
+  }
+
+  /**
+   * Returns the {@link IndexView} that the supplied {@link Function}
+   * produces from the supplied {@link File}, invoking the {@link
+   * Function} only if its result for that file is not already cached
+   * or if the file has changed since it was cached.
+   *
+   * <p>This is useful for files that are not themselves index files
+   * but from which an index can be derived, such as jar files.  A
+   * given file should always be read with the same {@link
+   * Function}.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param file the file from which an {@link IndexView} is derived;
+   * must not be {@code null}
+   *
+   * @param reader a {@link Function} deriving an {@link IndexView}
+   * from {@code file}; must not be {@code null} and must not return
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link IndexView}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception UncheckedIOException if the index could not be read
+   */
+  static final IndexView get(final File file, final Function<? super File, ? extends IndexView> reader) {
+    Objects.requireNonNull(file);
+    Objects.requireNonNull(reader);
+    final String path;
+    try {
+      path = file.getCanonicalPath();
+    } catch (final IOException ioException) {
+      throw new UncheckedIOException(ioException);
+    }
+    final long size = file.length();
+    final long lastModified = file.lastModified();
+    final Entry existingEntry = cache.get(path);
+    if (existingEntry != null && existingEntry.isUsable(size, lastModified)) {
+      final IndexView returnValue = existingEntry.get();
+      if (returnValue != null) {
+        return returnValue;
+      }
+    }
+    // Only the cheap choice of entry happens under the map's lock;
+    // whichever caller installs a new entry reads the file
+    // afterwards, and concurrent callers wait for that one read.
+    final Entry newEntry = new Entry(path, size, lastModified, () -> reader.apply(file));
+    final Entry entry = cache.compute(path, (p, e) -> e != null && e.isUsable(size, lastModified) ? e : newEntry);
+    if (entry == newEntry) {
+      newEntry.run();
+    }
+    IndexView returnValue = entry.get();
+    if (returnValue == null) {
+      // Reclaimed already; very unlikely, but possible.
+      returnValue = reader.apply(file);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Removes any index cached for the supplied {@link File}.
+   *
+   * <p>Cached indexes are validated only by the size and last
+   * modification time of their files, and the latter may have a
+   * granularity as coarse as one second, so code that rewrites a file
+   * it later reads through this class must call this method after
+   * each rewrite.</p>
+   *
+   * @param file the file whose cached index should be removed; must
+   * not be {@code null}
+   *
+   * @exception NullPointerException if {@code file} is {@code null}
+   *
+   * @exception UncheckedIOException if the canonical path of {@code
+   * file} could not be determined
+   */
+  static final void evict(final File file) {
+    Objects.requireNonNull(file);
+    try {
+      cache.remove(file.getCanonicalPath());
+    } catch (final IOException ioException) {
+      throw new UncheckedIOException(ioException);
+    }
+  }
+
+  /**
+   * Removes all cached indexes.
+   */
+  static final void clear() {
+    cache.clear();
+  }
+
+  /**
+   * Reads the Jandex index stored in the supplied {@link File}
+   * through a memory-mapped {@link FileChannel}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param indexFile the file to read; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link IndexView}
+   *
+   * @exception UncheckedIOException if the index could not be read
+   */
+  static final IndexView read(final File indexFile) {
+    try (final Events.Span span = Events.indexRead(indexFile.getPath());
+         final FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+      final long size = channel.size();
+      span.setBytes(size);
+      final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+      return new IndexReader(new ByteBufferInputStream(buffer)).read();
+    } catch (final IOException ioException) {
+      throw new UncheckedIOException(ioException);
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A cached {@link IndexView}, or the pending read of one, together
+   * with the size and last modification time of the file from which
+   * it is read.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Entry {
+
+
+    /*
+     * Instance fields.
+     */
+
+
+    /**
+     * The canonical path of the file, under which this {@link Entry}
+     * is cached.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final String path;
+
+    /**
+     * The size of the file when it was read.
+     */
+    private final long size;
+
+    /**
+     * The last modification time of the file when it was read.
+     */
+    private final long lastModified;
+
+    /**
+     * The read of the {@link IndexView}, or {@code null} once it has
+     * completed successfully, at which point {@link #indexView} is
+     * set.
+     */
+    private volatile FutureTask<IndexView> task;
+
+    /**
+     * A {@link SoftReference} to the {@link IndexView} that was
+     * read, or {@code null} if it has not yet been read.
+     */
+    private volatile SoftReference<IndexView> indexView;
+
+
+    /*
+     * Constructors.
+     */
+
+
+    /**
+     * Creates a new {@link Entry}.
+     *
+     * @param path the canonical path of the file; must not be {@code
+     * null}
+     *
+     * @param size the size of the file when it is read
+     *
+     * @param lastModified the last modification time of the file when
+     * it is read
+     *
+     * @param reader a {@link Callable} that reads the {@link
+     * IndexView} when this {@link Entry} is {@linkplain #run() run};
+     * must not be {@code null} and must not return {@code null}
+     */
+    private Entry(final String path, final long size, final long lastModified, final Callable<IndexView> reader) {
+      super();
+      this.path = Objects.requireNonNull(path);
+      this.size = size;
+      this.lastModified = lastModified;
+      this.task = new FutureTask<>(Objects.requireNonNull(reader));
+    }
+
+
+    /*
+     * Instance methods.
+     */
+
+
+    /**
+     * Reads the {@link IndexView} on the current thread, holding it
+     * only {@linkplain SoftReference softly} afterwards, or removes
+     * this {@link Entry} from the cache if reading it fails so that a
+     * later request tries again.
+     */
+    private final void run() {
+      final FutureTask<IndexView> task = this.task;
+      if (task != null) {
+        task.run();
+        try {
+          this.indexView = new SoftReference<>(task.get());
+          this.task = null;
+        } catch (final ExecutionException | InterruptedException failure) {
+          cache.remove(this.path, this);
+        }
+      }
+    }
+
+    /**
+     * Returns {@code true} if this {@link Entry} describes a file with
+     * the supplied size and last modification time, and its {@link
+     * IndexView} is either still to be read or has not been
+     * reclaimed.
+     *
+     * @param size the current size of the file
+     *
+     * @param lastModified the current last modification time of the
+     * file
+     *
+     * @return {@code true} if this {@link Entry} may be used
+     */
+    private final boolean isUsable(final long size, final long lastModified) {
+      if (this.size != size || this.lastModified != lastModified) {
+        return false;
+      }
+      final SoftReference<IndexView> indexView = this.indexView;
+      return indexView == null || indexView.get() != null;
+    }
+
+    /**
+     * Returns the {@link IndexView}, waiting for it to be read if
+     * necessary, or {@code null} if it has been reclaimed.
+     *
+     * @return the {@link IndexView}, or {@code null}
+     *
+     * @exception UncheckedIOException if the {@link IndexView} could
+     * not be read, or if the current thread was interrupted while
+     * waiting for it
+     */
+    private final IndexView get() {
+      final FutureTask<IndexView> task = this.task;
+      if (task == null) {
+        return this.indexView.get();
+      }
+      try {
+        return task.get();
+      } catch (final ExecutionException executionException) {
+        final Throwable cause = executionException.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException)cause;
+        } else if (cause instanceof Error) {
+          throw (Error)cause;
+        } else {
+          throw new IllegalStateException(cause.getMessage(), cause);
+        }
+      } catch (final InterruptedException interruptedException) {
+        Thread.currentThread().interrupt();
+        throw new UncheckedIOException(new InterruptedIOException(interruptedException.getMessage()));
+      }
+    }
+
+  }
+
+  /**
+   * An {@link InputStream} that reads from a {@link ByteBuffer}.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class ByteBufferInputStream extends InputStream {
+
+
+    /*
+     * Instance fields.
+     */
+
+
+    /**
+     * The {@link ByteBuffer} to read from.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final ByteBuffer buffer;
+
+
+    /*
+     * Constructors.
+     */
+
+
+    /**
+     * Creates a new {@link ByteBufferInputStream}.
+     *
+     * @param buffer the {@link ByteBuffer} to read from; must not be
+     * {@code null}
+     */
+    private ByteBufferInputStream(final ByteBuffer buffer) {
+      super();
+      this.buffer = Objects.requireNonNull(buffer);
+    }
+
+
+    /*
+     * Instance methods.
+     */
+
+
+    @Override
+    public final int read() {
+      return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public final int read(final byte[] bytes, final int offset, final int length) {
+      if (length == 0) {
+        return 0;
+      }
+      final int remaining = this.buffer.remaining();
+      if (remaining <= 0) {
+        return -1;
+      }
+      final int count = Math.min(length, remaining);
+      this.buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public final int available() {
+      return this.buffer.remaining();
+    }
+
+  }
+
+}
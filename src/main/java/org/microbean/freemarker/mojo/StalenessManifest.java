@@ -0,0 +1,690 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+
+import java.nio.charset.StandardCharsets;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import freemarker.cache.TemplateLoader;
+
+/**
+ * A persistent record of the <em>fingerprints</em> of the inputs
+ * that produced each template's output during a prior execution of
+ * a {@link FreemarkerMojo}, used to decide whether a template needs
+ * to be processed again.
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #fingerprint(String, String, File)
+ *
+ * @see #isUpToDate(String, String, File)
+ *
+ * @see #record(String, String, File, Collection, Collection)
+ */
+final class StalenessManifest {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The prefix of keys in the persisted form of a {@link
+   * StalenessManifest} whose values are fingerprints.
+   */
+  private static final String FINGERPRINT_PREFIX = "fingerprint.";
+
+  /**
+   * The prefix of keys in the persisted form of a {@link
+   * StalenessManifest} whose values are output file paths.
+   */
+  private static final String OUTPUT_PREFIX = "output.";
+
+  /**
+   * The prefix of keys in the persisted form of a {@link
+   * StalenessManifest} whose values are the names of the templates,
+   * separated by newlines, that a template included or imported.
+   */
+  private static final String DEPENDENCIES_PREFIX = "dependencies.";
+
+  /**
+   * The prefix of keys in the persisted form of a {@link
+   * StalenessManifest} whose values are the entries, separated by
+   * newlines, of the {@linkplain DataModelFingerprints read set} of a
+   * template.
+   */
+  private static final String READS_PREFIX = "reads.";
+
+  /**
+   * An array of hexadecimal digits used by the {@link #hash(String...)}
+   * method.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link File} this {@link StalenessManifest} is {@linkplain
+   * #load(File, String) loaded from} and {@linkplain #store() stored to}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final File file;
+
+  /**
+   * A fingerprint of the inputs that are common to all templates
+   * processed during the current execution, such as the data model
+   * and the Freemarker configuration.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final String inputsFingerprint;
+
+  /**
+   * Fingerprints recorded by a prior execution, indexed by template
+   * name.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, String> priorFingerprints;
+
+  /**
+   * Output files recorded by a prior execution, indexed by template
+   * name.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, File> priorOutputFiles;
+
+  /**
+   * The names of the templates each template included or imported
+   * during a prior execution, indexed by template name.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, Set<String>> priorDependencies;
+
+  /**
+   * The read sets of templates recorded by a prior execution, indexed
+   * by template name.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, Set<String>> priorReads;
+
+  /**
+   * Fingerprints recorded during the current execution, indexed by
+   * template name.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, String> fingerprints;
+
+  /**
+   * Output files recorded during the current execution, indexed by
+   * template name.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, File> outputFiles;
+
+  /**
+   * The names of the templates each template included or imported
+   * during the current execution, indexed by template name.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, Set<String>> dependencies;
+
+  /**
+   * The read sets of templates recorded during the current
+   * execution, indexed by template name.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, Set<String>> reads;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new, empty {@link StalenessManifest}.
+   *
+   * @param file the {@link File} to which this {@link
+   * StalenessManifest} will be {@linkplain #store() stored}; must not
+   * be {@code null}
+   *
+   * @param inputsFingerprint a fingerprint of the inputs that are
+   * common to all templates processed during the current execution;
+   * must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @see #load(File, String)
+   */
+  StalenessManifest(final File file, final String inputsFingerprint) {
+    this(file, inputsFingerprint, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+  }
+
+  /**
+   * Creates a new {@link StalenessManifest}.
+   *
+   * @param file the {@link File} to which this {@link
+   * StalenessManifest} will be {@linkplain #store() stored}; must not
+   * be {@code null}
+   *
+   * @param inputsFingerprint a fingerprint of the inputs that are
+   * common to all templates processed during the current execution;
+   * must not be {@code null}
+   *
+   * @param priorFingerprints fingerprints recorded by a prior
+   * execution; must not be {@code null}
+   *
+   * @param priorOutputFiles output files recorded by a prior
+   * execution; must not be {@code null}
+   *
+   * @param priorDependencies template dependencies recorded by a
+   * prior execution; must not be {@code null}
+   *
+   * @param priorReads read sets recorded by a prior execution; must
+   * not be {@code null}
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   */
+  private StalenessManifest(final File file,
+                            final String inputsFingerprint,
+                            final Map<? extends String, ? extends String> priorFingerprints,
+                            final Map<? extends String, ? extends File> priorOutputFiles,
+                            final Map<? extends String, ? extends Set<String>> priorDependencies,
+                            final Map<? extends String, ? extends Set<String>> priorReads) {
+    super();
+    this.file = Objects.requireNonNull(file);
+    this.inputsFingerprint = Objects.requireNonNull(inputsFingerprint);
+    this.priorFingerprints = Collections.unmodifiableMap(new HashMap<>(priorFingerprints));
+    this.priorOutputFiles = Collections.unmodifiableMap(new HashMap<>(priorOutputFiles));
+    this.priorDependencies = Collections.unmodifiableMap(new HashMap<>(priorDependencies));
+    this.priorReads = Collections.unmodifiableMap(new HashMap<>(priorReads));
+    this.fingerprints = new ConcurrentHashMap<>();
+    this.outputFiles = new ConcurrentHashMap<>();
+    this.dependencies = new ConcurrentHashMap<>();
+    this.reads = new ConcurrentHashMap<>();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns a fingerprint of all of the inputs that contribute to
+   * the output of the template with the supplied {@code
+   * templateName}, or {@code null} if no such fingerprint can be
+   * computed.
+   *
+   * @param templateName the name of the template; must not be {@code
+   * null}
+   *
+   * @param templateSourceFingerprint a fingerprint of the template's
+   * source as returned by the {@link #fingerprint(TemplateLoader,
+   * String, String)} method; may be {@code null} in which case {@code
+   * null} will be returned
+   *
+   * @param outputFile the {@link File} to which the template's output
+   * will be written; must not be {@code null}
+   *
+   * @return a fingerprint suitable for supplying to the {@link
+   * #isUpToDate(String, String, File)} and {@link #record(String,
+   * String, File, Collection, Collection)} methods, or {@code null}
+   *
+   * @exception NullPointerException if {@code templateName} or {@code
+   * outputFile} is {@code null}
+   */
+  final String fingerprint(final String templateName, final String templateSourceFingerprint, final File outputFile) {
+    Objects.requireNonNull(templateName);
+    Objects.requireNonNull(outputFile);
+    if (templateSourceFingerprint == null) {
+      return null;
+    }
+    return hash(this.inputsFingerprint, templateName, templateSourceFingerprint, outputFile.getAbsolutePath());
+  }
+
+  /**
+   * Returns {@code true} if the output of the template with the
+   * supplied {@code templateName} was produced by a prior execution
+   * from inputs with the supplied {@code fingerprint} and still
+   * exists at the supplied {@code outputFile} location.
+   *
+   * @param templateName the name of the template in question; must
+   * not be {@code null}
+   *
+   * @param fingerprint the fingerprint of the template's current
+   * inputs; may be {@code null} in which case {@code false} will be
+   * returned
+   *
+   * @param outputFile the {@link File} to which the template's output
+   * would be written; must not be {@code null}
+   *
+   * @return {@code true} if the template does not need to be
+   * processed again; {@code false} otherwise
+   *
+   * @exception NullPointerException if {@code templateName} or {@code
+   * outputFile} is {@code null}
+   */
+  final boolean isUpToDate(final String templateName, final String fingerprint, final File outputFile) {
+    Objects.requireNonNull(templateName);
+    Objects.requireNonNull(outputFile);
+    return fingerprint != null &&
+      fingerprint.equals(this.priorFingerprints.get(templateName)) &&
+      outputFile.equals(this.priorOutputFiles.get(templateName)) &&
+      outputFile.isFile();
+  }
+
+  /**
+   * Returns the names of the templates that the template with the
+   * supplied {@code templateName} included or imported when it was
+   * last processed by a prior execution.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param templateName the name of the template in question; must
+   * not be {@code null}
+   *
+   * @return a non-{@code null}, unmodifiable {@link Set} of template
+   * names
+   *
+   * @exception NullPointerException if {@code templateName} is {@code
+   * null}
+   */
+  final Set<String> getPriorDependencies(final String templateName) {
+    final Set<String> returnValue = this.priorDependencies.get(Objects.requireNonNull(templateName));
+    return returnValue == null ? Collections.emptySet() : returnValue;
+  }
+
+  /**
+   * Returns the {@linkplain DataModelFingerprints read set} of the
+   * template with the supplied {@code templateName} as recorded when
+   * it was last processed by a prior execution.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param templateName the name of the template in question; must
+   * not be {@code null}
+   *
+   * @return a non-{@code null}, unmodifiable {@link Set}
+   *
+   * @exception NullPointerException if {@code templateName} is {@code
+   * null}
+   */
+  final Set<String> getPriorReads(final String templateName) {
+    final Set<String> returnValue = this.priorReads.get(Objects.requireNonNull(templateName));
+    return returnValue == null ? Collections.emptySet() : returnValue;
+  }
+
+  /**
+   * Records that the template with the supplied {@code templateName}
+   * produced the supplied {@code outputFile} from inputs with the
+   * supplied {@code fingerprint}, having included or imported the
+   * templates named by the supplied {@code dependencies} and read
+   * what is described by the supplied {@code reads}.
+   *
+   * @param templateName the name of the template; must not be {@code
+   * null}
+   *
+   * @param fingerprint the fingerprint of the template's inputs; may
+   * be {@code null} in which case nothing will be recorded
+   *
+   * @param outputFile the {@link File} the template produced; must
+   * not be {@code null}
+   *
+   * @param dependencies the names of the templates the template
+   * included or imported; must not be {@code null}
+   *
+   * @param reads the template's {@linkplain DataModelFingerprints
+   * read set}; must not be {@code null}
+   *
+   * @exception NullPointerException if any parameter other than
+   * {@code fingerprint} is {@code null}
+   */
+  final void record(final String templateName,
+                    final String fingerprint,
+                    final File outputFile,
+                    final Collection<? extends String> dependencies,
+                    final Collection<? extends String> reads) {
+    Objects.requireNonNull(templateName);
+    Objects.requireNonNull(outputFile);
+    Objects.requireNonNull(dependencies);
+    Objects.requireNonNull(reads);
+    if (fingerprint != null) {
+      this.outputFiles.put(templateName, outputFile);
+      this.fingerprints.put(templateName, fingerprint);
+      this.dependencies.put(templateName, Collections.unmodifiableSet(new TreeSet<>(dependencies)));
+      this.reads.put(templateName, Collections.unmodifiableSet(new TreeSet<>(reads)));
+    }
+  }
+
+  /**
+   * Forgets whatever was {@linkplain #record(String, String, File,
+   * Collection, Collection) recorded} for the template with the
+   * supplied name during the current execution, so that it is not
+   * {@linkplain #store() stored}, and returns the output {@link File}
+   * it was last known to produce, if any.
+   *
+   * @param templateName the name of a template that no longer exists;
+   * must not be {@code null}
+   *
+   * @return the output {@link File} the template produced during the
+   * current or a prior execution, or {@code null}
+   *
+   * @exception NullPointerException if {@code templateName} is {@code
+   * null}
+   */
+  final File forget(final String templateName) {
+    Objects.requireNonNull(templateName);
+    this.fingerprints.remove(templateName);
+    this.dependencies.remove(templateName);
+    this.reads.remove(templateName);
+    final File returnValue = this.outputFiles.remove(templateName);
+    return returnValue == null ? this.priorOutputFiles.get(templateName) : returnValue;
+  }
+
+  /**
+   * Returns a {@link Map} of output {@link File}s produced by a prior
+   * execution, indexed by the names of the templates that produced
+   * them, for templates that are no longer present in the supplied
+   * {@link Collection} of current template names.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param currentTemplateNames the names of the templates that are
+   * current; must not be {@code null}
+   *
+   * @return a non-{@code null}, unmodifiable {@link Map} of orphaned
+   * output {@link File}s
+   *
+   * @exception NullPointerException if {@code currentTemplateNames}
+   * is {@code null}
+   */
+  final Map<String, File> getOrphanedOutputFiles(final Collection<? extends String> currentTemplateNames) {
+    Objects.requireNonNull(currentTemplateNames);
+    final Map<String, File> returnValue = new HashMap<>(this.priorOutputFiles);
+    returnValue.keySet().removeAll(currentTemplateNames);
+    // Never report a file that a current template still writes.
+    returnValue.values().removeAll(this.outputFiles.values());
+    return Collections.unmodifiableMap(returnValue);
+  }
+
+  /**
+   * Stores the fingerprints {@linkplain #record(String, String, File,
+   * Collection, Collection) recorded} during the current execution to the {@link File}
+   * supplied at construction time.
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  final void store() throws IOException {
+    final Properties properties = new Properties();
+    for (final Map.Entry<String, String> entry : this.fingerprints.entrySet()) {
+      final String templateName = entry.getKey();
+      final File outputFile = this.outputFiles.get(templateName);
+      if (outputFile != null) {
+        properties.setProperty(FINGERPRINT_PREFIX + templateName, entry.getValue());
+        properties.setProperty(OUTPUT_PREFIX + templateName, outputFile.getPath());
+        final Set<String> dependencies = this.dependencies.get(templateName);
+        if (dependencies != null && !dependencies.isEmpty()) {
+          properties.setProperty(DEPENDENCIES_PREFIX + templateName, String.join("\n", dependencies));
+        }
+        final Set<String> reads = this.reads.get(templateName);
+        if (reads != null && !reads.isEmpty()) {
+          properties.setProperty(READS_PREFIX + templateName, String.join("\n", reads));
+        }
+      }
+    }
+    final File parent = this.file.getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    try (final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(this.file))) {
+      properties.store(outputStream, "freemarker-maven-plugin staleness manifest; do not edit");
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Loads a {@link StalenessManifest} from the supplied {@link File}
+   * and returns it.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>If the supplied {@link File} does not exist, an empty {@link
+   * StalenessManifest} is returned.</p>
+   *
+   * @param file the {@link File} to read; must not be {@code null}
+   *
+   * @param inputsFingerprint a fingerprint of the inputs that are
+   * common to all templates processed during the current execution;
+   * must not be {@code null}
+   *
+   * @return a non-{@code null} {@link StalenessManifest}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  static final StalenessManifest load(final File file, final String inputsFingerprint) throws IOException {
+    Objects.requireNonNull(file);
+    Objects.requireNonNull(inputsFingerprint);
+    if (!file.isFile()) {
+      return new StalenessManifest(file, inputsFingerprint);
+    }
+    final Properties properties = new Properties();
+    try (final InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+      properties.load(inputStream);
+    }
+    final Map<String, String> priorFingerprints = new HashMap<>();
+    final Map<String, File> priorOutputFiles = new HashMap<>();
+    final Map<String, Set<String>> priorDependencies = new HashMap<>();
+    final Map<String, Set<String>> priorReads = new HashMap<>();
+    final Set<String> names = properties.stringPropertyNames();
+    for (final String name : names) {
+      if (name.startsWith(FINGERPRINT_PREFIX)) {
+        final String templateName = name.substring(FINGERPRINT_PREFIX.length());
+        final String outputFile = properties.getProperty(OUTPUT_PREFIX + templateName);
+        if (outputFile != null) {
+          priorFingerprints.put(templateName, properties.getProperty(name));
+          priorOutputFiles.put(templateName, new File(outputFile));
+          final String dependencies = properties.getProperty(DEPENDENCIES_PREFIX + templateName);
+          if (dependencies != null && !dependencies.isEmpty()) {
+            priorDependencies.put(templateName, Collections.unmodifiableSet(new TreeSet<>(Arrays.asList(dependencies.split("\n")))));
+          }
+          final String reads = properties.getProperty(READS_PREFIX + templateName);
+          if (reads != null && !reads.isEmpty()) {
+            priorReads.put(templateName, Collections.unmodifiableSet(new TreeSet<>(Arrays.asList(reads.split("\n")))));
+          }
+        }
+      }
+    }
+    return new StalenessManifest(file, inputsFingerprint, priorFingerprints, priorOutputFiles, priorDependencies, priorReads);
+  }
+
+  /**
+   * Returns a fingerprint of the source of the template with the
+   * supplied {@code templateName} as read by the supplied {@link
+   * TemplateLoader}, or {@code null} if the template source could
+   * not be found.
+   *
+   * @param templateLoader the {@link TemplateLoader} to use; may be
+   * {@code null} in which case {@code null} will be returned
+   *
+   * @param templateName the name of the template; must not be {@code
+   * null}
+   *
+   * @param encoding the character encoding to use to read the
+   * template source; must not be {@code null}
+   *
+   * @return a fingerprint of the template source, or {@code null}
+   *
+   * @exception NullPointerException if {@code templateName} or {@code
+   * encoding} is {@code null}
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  static final String fingerprint(final TemplateLoader templateLoader, final String templateName, final String encoding) throws IOException {
+    Objects.requireNonNull(templateName);
+    Objects.requireNonNull(encoding);
+    if (templateLoader == null) {
+      return null;
+    }
+    final Object templateSource = templateLoader.findTemplateSource(templateName);
+    if (templateSource == null) {
+      return null;
+    }
+    final StringBuilder sb = new StringBuilder();
+    try (final Reader reader = templateLoader.getReader(templateSource, encoding)) {
+      final char[] buffer = new char[8192];
+      int charsRead;
+      while ((charsRead = reader.read(buffer)) >= 0) {
+        sb.append(buffer, 0, charsRead);
+      }
+    } finally {
+      templateLoader.closeTemplateSource(templateSource);
+    }
+    return hash(sb.toString());
+  }
+
+  /**
+   * Returns a hexadecimal SHA-256 digest of the supplied {@link
+   * String}s.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param strings the {@link String}s to digest; {@code null}
+   * elements are permitted and are distinguished from empty {@link
+   * String}s
+   *
+   * @return a non-{@code null} hexadecimal digest
+   */
+  static final String hash(final String... strings) {
+    final MessageDigest digest = newDigest();
+    if (strings != null) {
+      for (final String string : strings) {
+        if (string == null) {
+          digest.update((byte)0);
+        } else {
+          digest.update((byte)1);
+          digest.update(string.getBytes(StandardCharsets.UTF_8));
+          digest.update((byte)0);
+        }
+      }
+    }
+    return hex(digest.digest());
+  }
+
+  /**
+   * Returns a hexadecimal SHA-256 digest of the supplied bytes.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param bytes the bytes to digest; must not be {@code null}
+   *
+   * @return a non-{@code null} hexadecimal digest
+   *
+   * @exception NullPointerException if {@code bytes} is {@code null}
+   */
+  static final String hash(final byte[] bytes) {
+    return hex(newDigest().digest(bytes));
+  }
+
+  /**
+   * Returns a new SHA-256 {@link MessageDigest}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a new, non-{@code null} {@link MessageDigest}
+   */
+  static final MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException noSuchAlgorithmException) {
+      // SHA-256 is required to be present on every Java platform.
+      throw new IllegalStateException(noSuchAlgorithmException.getMessage(), noSuchAlgorithmException);
+    }
+  }
+
+  /**
+   * Returns the hexadecimal representation of the supplied bytes.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param bytes the bytes; must not be {@code null}
+   *
+   * @return a non-{@code null} hexadecimal {@link String}
+   */
+  static final String hex(final byte[] bytes) {
+    final char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0F];
+      chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0F];
+    }
+    return new String(chars);
+  }
+
+}
@@ -0,0 +1,417 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import freemarker.cache.TemplateLoader;
+
+import freemarker.template.Configuration;
+
+/**
+ * A record of which templates each top-level template {@code
+ * <#include>}s or {@code <#import>}s, directly or indirectly,
+ * observed while it is rendered.
+ *
+ * <p>Once {@linkplain #install(Configuration) installed} into a
+ * {@link Configuration}, an instance of this class sees every
+ * template source that the {@link Configuration}'s {@link
+ * TemplateLoader} finds.  Installation sets the {@link
+ * Configuration}'s {@linkplain
+ * Configuration#setTemplateUpdateDelayMilliseconds(long) template
+ * update delay} to zero, so that the template cache checks the
+ * {@link TemplateLoader} for a newer version of a template on every
+ * request, even one for a template it has already cached.  Template
+ * sources found between a call to {@link #begin()} and a call to
+ * {@link #end(String, String)} on the same {@link Thread} are
+ * recorded as dependencies of the template being rendered.</p>
+ *
+ * <p>Dependencies are recorded by the name under which the template
+ * source was actually found, so they can be mapped back to
+ * files.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #install(Configuration)
+ *
+ * @see #getDependents(Collection)
+ */
+final class TemplateDependencies {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The names of the templates requested so far by the template
+   * being rendered on the current {@link Thread}, or {@code null}
+   * if nothing is being recorded.
+   */
+  private final ThreadLocal<Set<String>> recording;
+
+  /**
+   * The dependencies of each rendered output, indexed by the output's
+   * {@link StalenessManifest} key.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConcurrentMap<String, Set<String>> dependencies;
+
+  /**
+   * The names of the top-level templates that produced each output,
+   * indexed by the output's {@link StalenessManifest} key.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConcurrentMap<String, String> templateNames;
+
+  /**
+   * Template source fingerprints computed since the last call to
+   * {@link #clearFingerprints()}, indexed by template name.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConcurrentMap<String, String> fingerprints;
+
+  /**
+   * The {@link TemplateLoader} that was wrapped by {@link
+   * #install(Configuration)}, or {@code null}.
+   */
+  private volatile TemplateLoader templateLoader;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link TemplateDependencies}.
+   *
+   * @see #install(Configuration)
+   */
+  TemplateDependencies() {
+    super();
+    this.recording = new ThreadLocal<>();
+    this.dependencies = new ConcurrentHashMap<>();
+    this.templateNames = new ConcurrentHashMap<>();
+    this.fingerprints = new ConcurrentHashMap<>();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Wraps the {@link TemplateLoader} of the supplied {@link
+   * Configuration} so that this {@link TemplateDependencies} can
+   * observe template requests, and sets its template update delay to
+   * zero so that every request reaches the {@link TemplateLoader}.
+   *
+   * <p>Any {@link TemplateLoader} installed earlier by another {@link
+   * TemplateDependencies} is {@linkplain #unwrap(TemplateLoader)
+   * unwrapped} first, so wrappers never stack.  This replaces the
+   * {@link Configuration}'s template cache, so it should be done
+   * before any templates are loaded.</p>
+   *
+   * @param configuration the {@link Configuration} to modify; must
+   * not be {@code null}
+   *
+   * @exception NullPointerException if {@code configuration} is
+   * {@code null}
+   */
+  final void install(final Configuration configuration) {
+    final TemplateLoader templateLoader = unwrap(configuration.getTemplateLoader());
+    if (templateLoader != null) {
+      this.templateLoader = templateLoader;
+      configuration.setTemplateLoader(new RecordingTemplateLoader(templateLoader));
+    }
+    configuration.setTemplateUpdateDelayMilliseconds(0L);
+  }
+
+  /**
+   * Starts recording the templates requested on the current {@link
+   * Thread}.
+   *
+   * @see #end(String, String)
+   */
+  final void begin() {
+    this.recording.set(new TreeSet<>());
+  }
+
+  /**
+   * Stops recording the templates requested on the current {@link
+   * Thread}, records them as the dependencies of the output with the
+   * supplied {@code key}, and returns them.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param key the {@link StalenessManifest} key of the output that
+   * was rendered; must not be {@code null}
+   *
+   * @param templateName the name of the top-level template that was
+   * rendered, which is never recorded as its own dependency; must
+   * not be {@code null}
+   *
+   * @return a non-{@code null}, sorted, unmodifiable {@link Set} of
+   * template names
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @see #begin()
+   */
+  final Set<String> end(final String key, final String templateName) {
+    Set<String> returnValue = this.recording.get();
+    this.recording.remove();
+    if (returnValue == null) {
+      returnValue = Collections.emptySet();
+    } else {
+      returnValue.remove(templateName);
+    }
+    this.record(key, templateName, returnValue);
+    return this.dependencies.get(key);
+  }
+
+  /**
+   * Records the supplied template names as the dependencies of the
+   * output with the supplied {@code key}, replacing any that were
+   * recorded before.
+   *
+   * @param key the {@link StalenessManifest} key of the output; must
+   * not be {@code null}
+   *
+   * @param templateName the name of the top-level template that
+   * produced the output; must not be {@code null}
+   *
+   * @param dependencies the names of the templates it depends on;
+   * must not be {@code null}
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   */
+  final void record(final String key, final String templateName, final Collection<? extends String> dependencies) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(templateName);
+    this.templateNames.put(key, templateName);
+    this.dependencies.put(key, Collections.unmodifiableSet(new TreeSet<>(dependencies)));
+  }
+
+  /**
+   * Returns the names of the top-level templates that depend on any
+   * of the templates with the supplied names.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param templateNames the names of templates that changed; must
+   * not be {@code null}
+   *
+   * @return a non-{@code null}, sorted {@link Set} of top-level
+   * template names
+   *
+   * @exception NullPointerException if {@code templateNames} is
+   * {@code null}
+   */
+  final Set<String> getDependents(final Collection<? extends String> templateNames) {
+    Objects.requireNonNull(templateNames);
+    final Set<String> returnValue = new TreeSet<>();
+    for (final Map.Entry<String, Set<String>> entry : this.dependencies.entrySet()) {
+      if (!Collections.disjoint(entry.getValue(), templateNames)) {
+        final String templateName = this.templateNames.get(entry.getKey());
+        if (templateName != null) {
+          returnValue.add(templateName);
+        }
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a fingerprint of the sources of the template with the
+   * supplied name and of the supplied dependencies, or {@code null}
+   * if the template's source could not be found.
+   *
+   * <p>Dependency fingerprints are computed at most once between
+   * calls to {@link #clearFingerprints()}, since many templates
+   * typically share the same libraries.</p>
+   *
+   * @param templateName the name of the template; must not be {@code
+   * null}
+   *
+   * @param dependencies the names of the templates it depends on;
+   * must not be {@code null}
+   *
+   * @param encoding the character encoding used to read template
+   * sources; must not be {@code null}
+   *
+   * @return a fingerprint, or {@code null}
+   *
+   * @exception NullPointerException if any parameter is {@code null}
+   *
+   * @exception IOException if an input/output error occurs
+   *
+   * @see StalenessManifest#fingerprint(TemplateLoader, String, String)
+   */
+  final String fingerprint(final String templateName, final Collection<? extends String> dependencies, final String encoding) throws IOException {
+    final String templateSourceFingerprint = StalenessManifest.fingerprint(this.templateLoader, templateName, encoding);
+    if (templateSourceFingerprint == null || dependencies.isEmpty()) {
+      return templateSourceFingerprint;
+    }
+    final String[] strings = new String[1 + 2 * dependencies.size()];
+    strings[0] = templateSourceFingerprint;
+    int i = 1;
+    for (final String dependency : dependencies) {
+      String fingerprint = this.fingerprints.get(dependency);
+      if (fingerprint == null) {
+        fingerprint = StalenessManifest.fingerprint(this.templateLoader, dependency, encoding);
+        if (fingerprint != null) {
+          this.fingerprints.put(dependency, fingerprint);
+        }
+      }
+      strings[i++] = dependency;
+      strings[i++] = fingerprint;
+    }
+    return StalenessManifest.hash(strings);
+  }
+
+  /**
+   * Forgets all dependency fingerprints computed by the {@link
+   * #fingerprint(String, Collection, String)} method so that changed
+   * template sources are read again.
+   */
+  final void clearFingerprints() {
+    this.fingerprints.clear();
+  }
+
+  /**
+   * Records that the template source with the supplied name was
+   * requested, if the current {@link Thread} is recording.
+   *
+   * @param templateName the name of the template source; may be
+   * {@code null} in which case no action is taken
+   */
+  private final void requested(final String templateName) {
+    if (templateName != null) {
+      final Set<String> recording = this.recording.get();
+      if (recording != null) {
+        recording.add(templateName);
+      }
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the {@link TemplateLoader} wrapped by the supplied {@link
+   * TemplateLoader} if it was installed by a {@link
+   * TemplateDependencies}, or the supplied {@link TemplateLoader}
+   * itself otherwise.
+   *
+   * @param templateLoader the {@link TemplateLoader} to unwrap; may
+   * be {@code null}
+   *
+   * @return the unwrapped {@link TemplateLoader}, or {@code null} if
+   * {@code templateLoader} is {@code null}
+   */
+  static final TemplateLoader unwrap(final TemplateLoader templateLoader) {
+    if (templateLoader instanceof RecordingTemplateLoader) {
+      return ((RecordingTemplateLoader)templateLoader).delegate;
+    }
+    return templateLoader;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A {@link TemplateLoader} that records the name of each template
+   * source it finds as a request for that template source.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private final class RecordingTemplateLoader implements TemplateLoader {
+
+    /**
+     * The {@link TemplateLoader} that does the actual work.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final TemplateLoader delegate;
+
+    private RecordingTemplateLoader(final TemplateLoader delegate) {
+      super();
+      this.delegate = Objects.requireNonNull(delegate);
+    }
+
+    @Override
+    public final Object findTemplateSource(final String name) throws IOException {
+      final Object returnValue = this.delegate.findTemplateSource(name);
+      if (returnValue != null) {
+        requested(name);
+      }
+      return returnValue;
+    }
+
+    @Override
+    public final long getLastModified(final Object templateSource) {
+      return this.delegate.getLastModified(templateSource);
+    }
+
+    @Override
+    public final Reader getReader(final Object templateSource, final String encoding) throws IOException {
+      return this.delegate.getReader(templateSource, encoding);
+    }
+
+    @Override
+    public final void closeTemplateSource(final Object templateSource) throws IOException {
+      this.delegate.closeTemplateSource(templateSource);
+    }
+
+    @Override
+    public final String toString() {
+      return this.delegate.toString();
+    }
+
+  }
+
+}
@@ -0,0 +1,443 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import freemarker.cache.ClassTemplateLoader;
+import freemarker.cache.FileTemplateLoader;
+import freemarker.cache.MultiTemplateLoader;
+import freemarker.cache.TemplateLoader;
+
+/**
+ * Discovers the names of templates that a {@link TemplateLoader} can
+ * load by walking the directories or class path locations that back
+ * it and filtering the results with glob patterns.
+ *
+ * <p>{@link FileTemplateLoader}, {@link ClassTemplateLoader} and
+ * {@link MultiTemplateLoader} instances are supported.  Template
+ * names are relative to the root of their {@link TemplateLoader},
+ * use {@code /} as a separator regardless of platform, and therefore
+ * mirror the directory structure beneath that root.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #find(TemplateLoader)
+ */
+final class TemplateFinder {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * {@link PathMatcher}s, at least one of which a template name must
+   * match in order to be returned.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final List<PathMatcher> includes;
+
+  /**
+   * {@link PathMatcher}s, none of which a template name may match in
+   * order to be returned.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final List<PathMatcher> excludes;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link TemplateFinder}.
+   *
+   * @param includes glob patterns, at least one of which a template
+   * name must match in order to be found; must not be {@code null}
+   *
+   * @param excludes glob patterns, none of which a template name may
+   * match in order to be found; may be {@code null}
+   *
+   * @exception NullPointerException if {@code includes} is {@code
+   * null}
+   *
+   * @see java.nio.file.FileSystem#getPathMatcher(String)
+   */
+  TemplateFinder(final Collection<? extends String> includes, final Collection<? extends String> excludes) {
+    super();
+    this.includes = toPathMatchers(Objects.requireNonNull(includes));
+    this.excludes = toPathMatchers(excludes);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns a sorted {@link Set} of the names of templates that can
+   * be loaded by the supplied {@link TemplateLoader} and that match
+   * the include and exclude patterns supplied at construction time.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>If the supplied {@link TemplateLoader} is of an unsupported
+   * type, an {@linkplain Set#isEmpty() empty} {@link Set} is
+   * returned.</p>
+   *
+   * @param templateLoader the {@link TemplateLoader} to inspect; may
+   * be {@code null}
+   *
+   * @return a non-{@code null}, sorted, unmodifiable {@link Set} of
+   * template names
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  final Set<String> find(final TemplateLoader templateLoader) throws IOException {
+    final Set<String> returnValue = new TreeSet<>();
+    this.find(templateLoader, returnValue);
+    return Collections.unmodifiableSet(returnValue);
+  }
+
+  /**
+   * Adds the names of templates that can be loaded by the supplied
+   * {@link TemplateLoader} to the supplied {@link Set}.
+   *
+   * @param templateLoader the {@link TemplateLoader} to inspect; may
+   * be {@code null}
+   *
+   * @param templateNames the {@link Set} to add to; must not be
+   * {@code null}
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  private final void find(final TemplateLoader templateLoader, final Set<String> templateNames) throws IOException {
+    if (templateLoader instanceof FileTemplateLoader) {
+      final File baseDirectory = ((FileTemplateLoader)templateLoader).getBaseDirectory();
+      if (baseDirectory != null && baseDirectory.isDirectory()) {
+        templateNames.addAll(this.walk(baseDirectory.toPath()));
+      }
+    } else if (templateLoader instanceof MultiTemplateLoader) {
+      final MultiTemplateLoader multiTemplateLoader = (MultiTemplateLoader)templateLoader;
+      final int size = multiTemplateLoader.getTemplateLoaderCount();
+      for (int i = 0; i < size; i++) {
+        this.find(multiTemplateLoader.getTemplateLoader(i), templateNames);
+      }
+    } else if (templateLoader instanceof ClassTemplateLoader) {
+      this.find((ClassTemplateLoader)templateLoader, templateNames);
+    }
+  }
+
+  /**
+   * Adds the names of templates that can be loaded by the supplied
+   * {@link ClassTemplateLoader} to the supplied {@link Set}.
+   *
+   * <p>Class path locations that are directories are walked;
+   * locations inside jar files are enumerated.</p>
+   *
+   * @param templateLoader the {@link ClassTemplateLoader} to inspect;
+   * must not be {@code null}
+   *
+   * @param templateNames the {@link Set} to add to; must not be
+   * {@code null}
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  private final void find(final ClassTemplateLoader templateLoader, final Set<String> templateNames) throws IOException {
+    String basePackagePath = templateLoader.getBasePackagePath();
+    if (basePackagePath == null) {
+      basePackagePath = "";
+    }
+    ClassLoader classLoader = templateLoader.getClassLoader();
+    final Class<?> resourceLoaderClass = templateLoader.getResourceLoaderClass();
+    if (classLoader == null && resourceLoaderClass != null) {
+      if (!basePackagePath.startsWith("/")) {
+        // Class#getResource(String) semantics: relative to the
+        // class' package.
+        final String className = resourceLoaderClass.getName();
+        final int lastDot = className.lastIndexOf('.');
+        if (lastDot > 0) {
+          basePackagePath = className.substring(0, lastDot).replace('.', '/') + "/" + basePackagePath;
+        }
+      }
+      classLoader = resourceLoaderClass.getClassLoader();
+    }
+    if (classLoader == null) {
+      classLoader = ClassLoader.getSystemClassLoader();
+    }
+    while (basePackagePath.startsWith("/")) {
+      basePackagePath = basePackagePath.substring(1);
+    }
+    if (!basePackagePath.isEmpty() && !basePackagePath.endsWith("/")) {
+      basePackagePath = basePackagePath + "/";
+    }
+    final Enumeration<URL> urls = classLoader.getResources(basePackagePath);
+    while (urls.hasMoreElements()) {
+      final URL url = urls.nextElement();
+      if ("file".equals(url.getProtocol())) {
+        final Path directory;
+        try {
+          directory = Paths.get(url.toURI());
+        } catch (final URISyntaxException uriSyntaxException) {
+          throw new IOException(uriSyntaxException.getMessage(), uriSyntaxException);
+        }
+        if (Files.isDirectory(directory)) {
+          templateNames.addAll(this.walk(directory));
+        }
+      } else if ("jar".equals(url.getProtocol())) {
+        final URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection) {
+          connection.setUseCaches(false);
+          try (final JarFile jarFile = ((JarURLConnection)connection).getJarFile()) {
+            final Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+              final JarEntry entry = entries.nextElement();
+              final String entryName = entry.getName();
+              if (!entry.isDirectory() && entryName.startsWith(basePackagePath)) {
+                final String templateName = entryName.substring(basePackagePath.length());
+                if (this.matches(Paths.get(templateName))) {
+                  templateNames.add(templateName);
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Walks the directory tree rooted at the supplied {@link Path} in
+   * parallel and returns the names, relative to that {@link Path}, of
+   * all regular files that {@linkplain #matches(Path) match}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param baseDirectory the directory to walk; must not be {@code
+   * null}
+   *
+   * @return a non-{@code null} {@link Collection} of template names
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  private final Collection<String> walk(final Path baseDirectory) throws IOException {
+    try {
+      return ForkJoinPool.commonPool().invoke(new DirectoryWalk(baseDirectory, baseDirectory));
+    } catch (final UncheckedIOException uncheckedIOException) {
+      throw uncheckedIOException.getCause();
+    }
+  }
+
+  /**
+   * Returns {@code true} if the supplied relative {@link Path} matches
+   * at least one include pattern and no exclude patterns.
+   *
+   * @param relativePath the {@link Path} to test; must not be {@code
+   * null}
+   *
+   * @return {@code true} if the supplied {@link Path} matches
+   */
+  private final boolean matches(final Path relativePath) {
+    return matchesAny(this.includes, relativePath) && !matchesAny(this.excludes, relativePath);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns {@code true} if any of the supplied {@link PathMatcher}s
+   * matches the supplied {@link Path}.
+   *
+   * @param pathMatchers the {@link PathMatcher}s to use; must not be
+   * {@code null}
+   *
+   * @param path the {@link Path} to test; must not be {@code null}
+   *
+   * @return {@code true} if any of the supplied {@link PathMatcher}s
+   * matches
+   */
+  private static final boolean matchesAny(final Collection<? extends PathMatcher> pathMatchers, final Path path) {
+    for (final PathMatcher pathMatcher : pathMatchers) {
+      if (pathMatcher.matches(path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Converts the supplied glob patterns into {@link PathMatcher}s.
+   *
+   * <p>As in Ant and Maven, a leading <code>**&#47;</code> also
+   * matches zero directories, so that <code>**&#47;*.ftl</code>
+   * matches {@code a.ftl} as well as {@code b/a.ftl}.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param patterns the glob patterns; may be {@code null}
+   *
+   * @return a non-{@code null} {@link List} of {@link PathMatcher}s
+   */
+  private static final List<PathMatcher> toPathMatchers(final Collection<? extends String> patterns) {
+    final List<PathMatcher> returnValue = new ArrayList<>();
+    if (patterns != null) {
+      for (String pattern : patterns) {
+        if (pattern != null) {
+          pattern = pattern.trim().replace('\\', '/');
+          if (!pattern.isEmpty()) {
+            returnValue.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+            while (pattern.startsWith("**/")) {
+              pattern = pattern.substring(3);
+              returnValue.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+            }
+          }
+        }
+      }
+    }
+    return Collections.unmodifiableList(returnValue);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A {@link RecursiveTask} that lists a single directory, forking a
+   * new {@link DirectoryWalk} for each of its subdirectories.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private final class DirectoryWalk extends RecursiveTask<Collection<String>> {
+
+    /**
+     * The version of this class for serialization purposes.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The root of the walk against which template names are
+     * relativized.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Path baseDirectory;
+
+    /**
+     * The directory to list.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Path directory;
+
+    /**
+     * Creates a new {@link DirectoryWalk}.
+     *
+     * @param baseDirectory the root of the walk; must not be {@code
+     * null}
+     *
+     * @param directory the directory to list; must not be {@code
+     * null}
+     */
+    private DirectoryWalk(final Path baseDirectory, final Path directory) {
+      super();
+      this.baseDirectory = baseDirectory;
+      this.directory = directory;
+    }
+
+    /**
+     * Lists the directory supplied at construction time and returns
+     * the names of matching templates found within it and its
+     * subdirectories.
+     *
+     * @return a non-{@code null} {@link Collection} of template names
+     *
+     * @exception UncheckedIOException if an input/output error occurs
+     */
+    @Override
+    protected final Collection<String> compute() {
+      final Collection<String> returnValue = new ArrayList<>();
+      final List<DirectoryWalk> subtasks = new ArrayList<>();
+      try (final DirectoryStream<Path> entries = Files.newDirectoryStream(this.directory)) {
+        for (final Path entry : entries) {
+          if (Files.isDirectory(entry)) {
+            final DirectoryWalk subtask = new DirectoryWalk(this.baseDirectory, entry);
+            subtask.fork();
+            subtasks.add(subtask);
+          } else if (Files.isRegularFile(entry)) {
+            final Path relativePath = this.baseDirectory.relativize(entry);
+            if (matches(relativePath)) {
+              returnValue.add(relativePath.toString().replace(File.separatorChar, '/'));
+            }
+          }
+        }
+      } catch (final IOException ioException) {
+        throw new UncheckedIOException(ioException);
+      }
+      for (final DirectoryWalk subtask : subtasks) {
+        returnValue.addAll(subtask.join());
+      }
+      return returnValue;
+    }
+
+  }
+
+}
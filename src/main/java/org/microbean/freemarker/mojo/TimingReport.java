@@ -0,0 +1,664 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.microbean.freemarker.Events;
+
+/**
+ * A record of how long each template took to load, render and write,
+ * and of how much output it produced, that can be {@linkplain
+ * #write(File) written} as a JSON or CSV report and {@linkplain
+ * #getSummary() summarized} in a single line.
+ *
+ * <p>All durations are recorded in nanoseconds.  Rendering time
+ * excludes the time spent in the underlying {@link OutputStream},
+ * which is reported as writing time instead; see {@link
+ * MeasuringOutputStream}.  When templates are processed in parallel
+ * the durations of the individual phases add up to more than the
+ * {@linkplain #getTotalNanos() total}.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #record(String, String, File, String, long, long, long, long)
+ *
+ * @see #write(File)
+ */
+final class TimingReport {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The header line of a CSV report.
+   */
+  private static final String CSV_HEADER = "key,templateName,outputFile,result,loadNanos,renderNanos,writeNanos,bytes";
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@linkplain System#nanoTime() time} at which this {@link
+   * TimingReport} was created.
+   */
+  private final long startNanos;
+
+  /**
+   * The {@link Timing}s recorded so far.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Collection<Timing> timings;
+
+  /**
+   * The number of nanoseconds between the creation of this {@link
+   * TimingReport} and the invocation of the {@link #complete()}
+   * method, or {@code -1L} if it has not yet been invoked.
+   */
+  private volatile long totalNanos;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link TimingReport} whose {@linkplain
+   * #getTotalNanos() total} is measured from now.
+   */
+  TimingReport() {
+    super();
+    this.startNanos = System.nanoTime();
+    this.timings = new ConcurrentLinkedQueue<>();
+    this.totalNanos = -1L;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Records the processing of a single template.
+   *
+   * @param key the name under which the output of the template is
+   * tracked; must not be {@code null}
+   *
+   * @param templateName the name of the template; must not be {@code
+   * null}
+   *
+   * @param outputFile the output {@link File}; may be {@code null}
+   *
+   * @param result a description of the outcome, such as {@code
+   * WRITTEN}; must not be {@code null}
+   *
+   * @param loadNanos the time spent loading and parsing the template
+   *
+   * @param renderNanos the time spent rendering the template
+   *
+   * @param writeNanos the time spent writing the output
+   *
+   * @param bytes the number of bytes of output
+   *
+   * @exception NullPointerException if {@code key}, {@code
+   * templateName} or {@code result} is {@code null}
+   */
+  final void record(final String key,
+                    final String templateName,
+                    final File outputFile,
+                    final String result,
+                    final long loadNanos,
+                    final long renderNanos,
+                    final long writeNanos,
+                    final long bytes) {
+    this.timings.add(new Timing(key, templateName, outputFile, result, loadNanos, renderNanos, writeNanos, bytes));
+  }
+
+  /**
+   * Marks the end of the run, fixing the value returned by the {@link
+   * #getTotalNanos()} method.
+   *
+   * <p>Only the first invocation of this method has any effect.</p>
+   */
+  final void complete() {
+    if (this.totalNanos < 0L) {
+      this.totalNanos = System.nanoTime() - this.startNanos;
+    }
+  }
+
+  /**
+   * Returns the number of nanoseconds between the creation of this
+   * {@link TimingReport} and the first invocation of the {@link
+   * #complete()} method, or, if it has not been invoked, until now.
+   *
+   * @return the total duration of the run in nanoseconds
+   */
+  final long getTotalNanos() {
+    final long totalNanos = this.totalNanos;
+    return totalNanos < 0L ? System.nanoTime() - this.startNanos : totalNanos;
+  }
+
+  /**
+   * Returns the recorded {@link Timing}s sorted by key.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link List} of {@link Timing}s
+   */
+  final List<Timing> getTimings() {
+    final List<Timing> returnValue = new ArrayList<>(this.timings);
+    returnValue.sort(Comparator.comparing(timing -> timing.key));
+    return returnValue;
+  }
+
+  /**
+   * Returns a one-line summary of this {@link TimingReport}, or
+   * {@code null} if no template was rendered.
+   *
+   * @return a one-line summary, or {@code null}
+   */
+  final String getSummary() {
+    int renderedCount = 0;
+    long loadNanos = 0L;
+    long renderNanos = 0L;
+    long writeNanos = 0L;
+    long bytes = 0L;
+    Timing slowest = null;
+    for (final Timing timing : this.timings) {
+      if (timing.getTotalNanos() > 0L) {
+        renderedCount++;
+        loadNanos += timing.loadNanos;
+        renderNanos += timing.renderNanos;
+        writeNanos += timing.writeNanos;
+        bytes += timing.bytes;
+        if (slowest == null || timing.getTotalNanos() > slowest.getTotalNanos()) {
+          slowest = timing;
+        }
+      }
+    }
+    if (slowest == null) {
+      return null;
+    }
+    return "Rendered " + renderedCount + " templates (" + bytes + " bytes) in " + millis(this.getTotalNanos()) + " ms: " +
+      millis(loadNanos) + " ms loading, " +
+      millis(renderNanos) + " ms rendering, " +
+      millis(writeNanos) + " ms writing; slowest: " +
+      slowest.key + " (" + millis(slowest.getTotalNanos()) + " ms)";
+  }
+
+  /**
+   * Writes this {@link TimingReport} to the supplied {@link File} as
+   * CSV if its name ends with {@code .csv}, or as JSON otherwise.
+   *
+   * <p>The parent directory of the {@link File} is created if
+   * necessary.</p>
+   *
+   * @param file the {@link File} to write; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code file} is {@code null}
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  final void write(final File file) throws IOException {
+    Objects.requireNonNull(file);
+    final File directory = file.getAbsoluteFile().getParentFile();
+    if (directory != null) {
+      directory.mkdirs();
+    }
+    try (final Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      if (file.getName().endsWith(".csv")) {
+        this.writeCsv(writer);
+      } else {
+        this.writeJson(writer);
+      }
+    }
+  }
+
+  /**
+   * Writes this {@link TimingReport} as CSV to the supplied {@link
+   * Writer}.
+   *
+   * @param writer the {@link Writer} to write to; must not be {@code
+   * null}
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  private final void writeCsv(final Writer writer) throws IOException {
+    writer.write(CSV_HEADER);
+    writer.write('\n');
+    for (final Timing timing : this.getTimings()) {
+      writer.write(csv(timing.key));
+      writer.write(',');
+      writer.write(csv(timing.templateName));
+      writer.write(',');
+      writer.write(csv(timing.outputFile == null ? "" : timing.outputFile.getPath()));
+      writer.write(',');
+      writer.write(csv(timing.result));
+      writer.write(',');
+      writer.write(String.valueOf(timing.loadNanos));
+      writer.write(',');
+      writer.write(String.valueOf(timing.renderNanos));
+      writer.write(',');
+      writer.write(String.valueOf(timing.writeNanos));
+      writer.write(',');
+      writer.write(String.valueOf(timing.bytes));
+      writer.write('\n');
+    }
+  }
+
+  /**
+   * Writes this {@link TimingReport} as JSON to the supplied {@link
+   * Writer}.
+   *
+   * @param writer the {@link Writer} to write to; must not be {@code
+   * null}
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  private final void writeJson(final Writer writer) throws IOException {
+    writer.write("{\n  \"totalNanos\": ");
+    writer.write(String.valueOf(this.getTotalNanos()));
+    writer.write(",\n  \"templates\": [");
+    boolean first = true;
+    for (final Timing timing : this.getTimings()) {
+      writer.write(first ? "\n" : ",\n");
+      first = false;
+      writer.write("    {\"key\": ");
+      writer.write(json(timing.key));
+      writer.write(", \"templateName\": ");
+      writer.write(json(timing.templateName));
+      writer.write(", \"outputFile\": ");
+      writer.write(timing.outputFile == null ? "null" : json(timing.outputFile.getPath()));
+      writer.write(", \"result\": ");
+      writer.write(json(timing.result));
+      writer.write(", \"loadNanos\": ");
+      writer.write(String.valueOf(timing.loadNanos));
+      writer.write(", \"renderNanos\": ");
+      writer.write(String.valueOf(timing.renderNanos));
+      writer.write(", \"writeNanos\": ");
+      writer.write(String.valueOf(timing.writeNanos));
+      writer.write(", \"bytes\": ");
+      writer.write(String.valueOf(timing.bytes));
+      writer.write("}");
+    }
+    writer.write(first ? "]\n}\n" : "\n  ]\n}\n");
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the supplied number of nanoseconds as a whole number of
+   * milliseconds.
+   *
+   * @param nanos a number of nanoseconds
+   *
+   * @return a number of milliseconds
+   */
+  private static final long millis(final long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  /**
+   * Returns the supplied {@link String} as a CSV field, quoting it if
+   * necessary.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param s the {@link String} to quote; must not be {@code null}
+   *
+   * @return a non-{@code null} CSV field
+   */
+  private static final String csv(final String s) {
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+      return s;
+    }
+    return "\"" + s.replace("\"", "\"\"") + "\"";
+  }
+
+  /**
+   * Returns the supplied {@link String} as a quoted JSON string.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param s the {@link String} to quote; must not be {@code null}
+   *
+   * @return a non-{@code null} JSON string
+   */
+  private static final String json(final String s) {
+    final StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+    for (int i = 0; i < s.length(); i++) {
+      final char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c == '\n') {
+        sb.append("\\n");
+      } else if (c == '\r') {
+        sb.append("\\r");
+      } else if (c == '\t') {
+        sb.append("\\t");
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int)c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * The record of the processing of a single template.
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  static final class Timing {
+
+    /**
+     * The name under which the output of the template is tracked.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    final String key;
+
+    /**
+     * The name of the template.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    final String templateName;
+
+    /**
+     * The output {@link File}.
+     *
+     * <p>This field may be {@code null}.</p>
+     */
+    final File outputFile;
+
+    /**
+     * A description of the outcome.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    final String result;
+
+    /**
+     * The time spent loading and parsing the template, in
+     * nanoseconds.
+     */
+    final long loadNanos;
+
+    /**
+     * The time spent rendering the template, in nanoseconds.
+     */
+    final long renderNanos;
+
+    /**
+     * The time spent writing the output, in nanoseconds.
+     */
+    final long writeNanos;
+
+    /**
+     * The number of bytes of output.
+     */
+    final long bytes;
+
+    /**
+     * Creates a new {@link Timing}.
+     *
+     * @param key the name under which the output of the template is
+     * tracked; must not be {@code null}
+     *
+     * @param templateName the name of the template; must not be
+     * {@code null}
+     *
+     * @param outputFile the output {@link File}; may be {@code null}
+     *
+     * @param result a description of the outcome; must not be {@code
+     * null}
+     *
+     * @param loadNanos the time spent loading and parsing the
+     * template
+     *
+     * @param renderNanos the time spent rendering the template
+     *
+     * @param writeNanos the time spent writing the output
+     *
+     * @param bytes the number of bytes of output
+     *
+     * @exception NullPointerException if {@code key}, {@code
+     * templateName} or {@code result} is {@code null}
+     */
+    private Timing(final String key,
+                   final String templateName,
+                   final File outputFile,
+                   final String result,
+                   final long loadNanos,
+                   final long renderNanos,
+                   final long writeNanos,
+                   final long bytes) {
+      super();
+      this.key = Objects.requireNonNull(key);
+      this.templateName = Objects.requireNonNull(templateName);
+      this.outputFile = outputFile;
+      this.result = Objects.requireNonNull(result);
+      this.loadNanos = loadNanos;
+      this.renderNanos = renderNanos;
+      this.writeNanos = writeNanos;
+      this.bytes = bytes;
+    }
+
+    /**
+     * Returns the sum of the load, render and write times.
+     *
+     * @return the total time spent on the template, in nanoseconds
+     */
+    final long getTotalNanos() {
+      return this.loadNanos + this.renderNanos + this.writeNanos;
+    }
+
+  }
+
+  /**
+   * A {@link FilterOutputStream} that counts the bytes written
+   * through it and the time spent in the {@link OutputStream} it
+   * wraps.
+   *
+   * <p>Each array of bytes written is also reported as an {@linkplain
+   * Events#outputWrite(String) output write event}.</p>
+   *
+   * <p>Instances of this class are not safe for concurrent use by
+   * multiple threads.</p>
+   *
+   * @author <a href="https://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  static final class MeasuringOutputStream extends FilterOutputStream {
+
+    /**
+     * The name of the template whose output is written, used to
+     * label events.
+     *
+     * <p>This field may be {@code null}.</p>
+     */
+    private final String templateName;
+
+    /**
+     * The number of bytes written so far.
+     */
+    private long bytes;
+
+    /**
+     * The number of nanoseconds spent in the wrapped {@link
+     * OutputStream} so far.
+     */
+    private long nanos;
+
+    /**
+     * Creates a new {@link MeasuringOutputStream}.
+     *
+     * @param outputStream the {@link OutputStream} to wrap; must not
+     * be {@code null}
+     *
+     * @param templateName the name of the template whose output is
+     * written; may be {@code null}
+     *
+     * @exception NullPointerException if {@code outputStream} is
+     * {@code null}
+     */
+    MeasuringOutputStream(final OutputStream outputStream, final String templateName) {
+      super(Objects.requireNonNull(outputStream));
+      this.templateName = templateName;
+    }
+
+    /**
+     * Writes the supplied byte to the wrapped {@link OutputStream}.
+     *
+     * @param b the byte to write
+     *
+     * @exception IOException if an input/output error occurs
+     */
+    @Override
+    public final void write(final int b) throws IOException {
+      final long start = System.nanoTime();
+      try {
+        this.out.write(b);
+        this.bytes++;
+      } finally {
+        this.nanos += System.nanoTime() - start;
+      }
+    }
+
+    /**
+     * Writes the supplied bytes to the wrapped {@link OutputStream}.
+     *
+     * @param bytes the bytes to write; must not be {@code null}
+     *
+     * @param offset the offset within {@code bytes} of the first byte
+     * to write
+     *
+     * @param length the number of bytes to write
+     *
+     * @exception IOException if an input/output error occurs
+     */
+    @Override
+    public final void write(final byte[] bytes, final int offset, final int length) throws IOException {
+      final long start = System.nanoTime();
+      try (final Events.Span span = Events.outputWrite(this.templateName)) {
+        this.out.write(bytes, offset, length);
+        this.bytes += length;
+        span.setBytes(length);
+      } finally {
+        this.nanos += System.nanoTime() - start;
+      }
+    }
+
+    /**
+     * Flushes the wrapped {@link OutputStream}.
+     *
+     * @exception IOException if an input/output error occurs
+     */
+    @Override
+    public final void flush() throws IOException {
+      final long start = System.nanoTime();
+      try {
+        this.out.flush();
+      } finally {
+        this.nanos += System.nanoTime() - start;
+      }
+    }
+
+    /**
+     * Closes the wrapped {@link OutputStream}.
+     *
+     * @exception IOException if an input/output error occurs
+     */
+    @Override
+    public final void close() throws IOException {
+      final long start = System.nanoTime();
+      try {
+        try {
+          this.out.flush();
+        } finally {
+          this.out.close();
+        }
+      } finally {
+        this.nanos += System.nanoTime() - start;
+      }
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     *
+     * @return the number of bytes written so far
+     */
+    final long getBytes() {
+      return this.bytes;
+    }
+
+    /**
+     * Returns the number of nanoseconds spent in the wrapped {@link
+     * OutputStream} so far.
+     *
+     * @return the number of nanoseconds spent writing
+     */
+    final long getNanos() {
+      return this.nanos;
+    }
+
+  }
+
+}
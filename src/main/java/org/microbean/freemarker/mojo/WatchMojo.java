@@ -0,0 +1,494 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import java.nio.file.attribute.BasicFileAttributes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import java.util.concurrent.TimeUnit;
+
+import java.util.stream.Stream;
+
+import freemarker.cache.FileTemplateLoader;
+import freemarker.cache.MultiTemplateLoader;
+import freemarker.cache.TemplateLoader;
+
+import freemarker.template.Configuration;
+
+import org.apache.maven.execution.MavenSession;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import org.apache.maven.plugin.logging.Log;
+
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Generates documents from <a
+ * href="http://freemarker.org/">Freemarker</a> templates, as the
+ * {@code freemarker} goal does, and then keeps regenerating them as
+ * their templates change until interrupted.
+ *
+ * <p>The {@link Configuration}, object wrapper and data model are
+ * built only once.  The directories backing the {@link
+ * FileTemplateLoader}s in effect, and the directory containing the
+ * {@linkplain #getJandexIndexFile() Jandex index file}, are then
+ * watched for changes.  When a template changes, only that template
+ * and the templates that included or imported it when they were last
+ * rendered, or the fan-outs that use any of them, are processed
+ * again.  When the Jandex index file changes, everything is rebuilt
+ * and processed again.</p>
+ *
+ * <p>Templates loaded by other kinds of {@link TemplateLoader} are
+ * processed once but are not watched.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see FreemarkerMojo
+ */
+@Mojo(name = "watch", requiresDirectInvocation = true)
+public class WatchMojo extends FreemarkerMojo {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The number of milliseconds to wait for further changes after a
+   * change is noticed, so that a burst of changes, such as an editor
+   * saving a file in several steps, is handled all at once.
+   */
+  @Parameter(defaultValue = "50", property = "freemarker.watch.quietPeriod")
+  private long quietPeriod;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link WatchMojo}.
+   *
+   * @see #WatchMojo(MavenProject, MavenSession)
+   */
+  public WatchMojo() {
+    this(null, null);
+  }
+
+  /**
+   * Creates a new {@link WatchMojo}.
+   *
+   * @param project the {@link MavenProject} in effect; may be {@code
+   * null}
+   *
+   * @see #WatchMojo(MavenProject, MavenSession)
+   */
+  public WatchMojo(final MavenProject project) {
+    this(project, null);
+  }
+
+  /**
+   * Creates a new {@link WatchMojo}.
+   *
+   * @param project the {@link MavenProject} in effect; may be {@code
+   * null}
+   *
+   * @param session the {@link MavenSession} in effect; may be {@code
+   * null}
+   */
+  public WatchMojo(final MavenProject project, final MavenSession session) {
+    super(project, session);
+    this.quietPeriod = 50L;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Executes the {@code watch} goal.
+   *
+   * <p>This method does not return until the calling {@link Thread}
+   * is {@linkplain Thread#interrupt() interrupted}.</p>
+   *
+   * @exception MojoExecutionException if a fatal error occured
+   */
+  @Override
+  public void execute() throws MojoExecutionException {
+    final Log log = this.getLog();
+
+    if (this.isSkip()) {
+      if (log != null && log.isInfoEnabled()) {
+        log.info("Skipping execution by request.");
+      }
+      return;
+    }
+
+    Execution execution = this.prepare();
+    this.render(execution, execution.getTemplateNames(), execution.getFanOuts(), true);
+
+    final List<Path> templateDirectories = new ArrayList<>();
+    addTemplateDirectories(TemplateDependencies.unwrap(execution.getConfiguration().getTemplateLoader()), templateDirectories);
+    final File jandexIndexFile = this.getJandexIndexFile();
+    final Path jandexIndexPath = jandexIndexFile == null ? null : jandexIndexFile.toPath().toAbsolutePath();
+
+    try (final WatchService watchService = FileSystems.getDefault().newWatchService()) {
+      final Map<WatchKey, Path> directories = new HashMap<>();
+      for (final Path templateDirectory : templateDirectories) {
+        register(watchService, templateDirectory, true, directories);
+      }
+      if (jandexIndexPath != null && jandexIndexPath.getParent() != null && Files.isDirectory(jandexIndexPath.getParent())) {
+        register(watchService, jandexIndexPath.getParent(), false, directories);
+      }
+      if (log != null && log.isInfoEnabled()) {
+        log.info("Watching " + templateDirectories + (jandexIndexPath == null ? "" : " and " + jandexIndexPath) + " for changes");
+      }
+
+      final Set<String> templateNames = new LinkedHashSet<>(execution.getTemplateNames());
+      while (!Thread.currentThread().isInterrupted()) {
+        WatchKey watchKey = watchService.take();
+        final Set<Path> changedPaths = new LinkedHashSet<>();
+        boolean structureChanged = false;
+        boolean overflow = false;
+        while (watchKey != null) {
+          final Path directory = directories.get(watchKey);
+          for (final WatchEvent<?> event : watchKey.pollEvents()) {
+            final WatchEvent.Kind<?> kind = event.kind();
+            if (kind == StandardWatchEventKinds.OVERFLOW || directory == null) {
+              overflow = true;
+            } else {
+              final Path path = directory.resolve((Path)event.context());
+              if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+                if (!Files.isDirectory(path)) {
+                  changedPaths.add(path);
+                }
+              } else {
+                structureChanged = true;
+                if (kind == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                  if (isUnder(templateDirectories, path)) {
+                    // Pick up templates already written into the new
+                    // directory before it was registered.
+                    register(watchService, path, true, directories);
+                    try (final Stream<Path> stream = Files.walk(path)) {
+                      stream.filter(Files::isRegularFile).forEach(changedPaths::add);
+                    }
+                  }
+                } else {
+                  changedPaths.add(path);
+                }
+              }
+            }
+          }
+          if (!watchKey.reset()) {
+            directories.remove(watchKey);
+          }
+          watchKey = watchService.poll(this.getQuietPeriod(), TimeUnit.MILLISECONDS);
+        }
+
+        try {
+          if (overflow || (jandexIndexPath != null && changedPaths.contains(jandexIndexPath))) {
+            if (log != null && log.isInfoEnabled()) {
+              log.info(overflow ? "Too many changes to track; processing all templates" : "Jandex index changed; processing all templates");
+            }
+            execution = this.prepare();
+            templateNames.clear();
+            templateNames.addAll(execution.getTemplateNames());
+            this.render(execution, templateNames, execution.getFanOuts(), true);
+          } else {
+            this.update(execution, templateNames, templateDirectories, changedPaths, structureChanged);
+          }
+        } catch (final MojoExecutionException mojoExecutionException) {
+          // Keep watching; the next save will very likely fix it.
+          if (log != null && log.isErrorEnabled()) {
+            log.error(mojoExecutionException.getMessage(), mojoExecutionException.getCause());
+          }
+        }
+      }
+    } catch (final InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+    } catch (final IOException ioException) {
+      throw new MojoExecutionException(ioException.getMessage(), ioException);
+    }
+    if (log != null && log.isInfoEnabled()) {
+      log.info("Stopped watching for changes.");
+    }
+  }
+
+  /**
+   * Processes again whatever the supplied changed files affect.
+   *
+   * @param execution the {@link Execution} in effect; must not be
+   * {@code null}
+   *
+   * @param templateNames the names of the templates processed once
+   * each, which will be updated if {@code structureChanged} is {@code
+   * true}; must not be {@code null}
+   *
+   * @param templateDirectories the watched template directories; must
+   * not be {@code null}
+   *
+   * @param changedPaths the files that changed; must not be {@code
+   * null}
+   *
+   * @param structureChanged whether files were created or deleted, in
+   * which case the templates to process are discovered again, and the
+   * output of templates that were deleted is removed
+   *
+   * @exception IOException if an input/output error occurs
+   *
+   * @exception MojoExecutionException if a template could not be
+   * processed
+   */
+  private final void update(final Execution execution,
+                            final Set<String> templateNames,
+                            final Collection<? extends Path> templateDirectories,
+                            final Collection<? extends Path> changedPaths,
+                            final boolean structureChanged)
+    throws IOException, MojoExecutionException {
+    final Log log = this.getLog();
+    final Configuration configuration = execution.getConfiguration();
+
+    final Set<String> changedTemplateNames = new LinkedHashSet<>();
+    for (final Path changedPath : changedPaths) {
+      final String templateName = toTemplateName(templateDirectories, changedPath);
+      if (templateName != null) {
+        changedTemplateNames.add(templateName);
+        // The template cache only notices changes after its update
+        // delay, so make sure the new content is used right away.
+        configuration.removeTemplateFromCache(templateName);
+      }
+    }
+    if (changedTemplateNames.isEmpty()) {
+      return;
+    }
+
+    if (structureChanged) {
+      final Set<String> newTemplateNames = this.findTemplateNames(configuration, execution.getFanOuts());
+      final Set<String> removedTemplateNames = new LinkedHashSet<>(templateNames);
+      removedTemplateNames.removeAll(newTemplateNames);
+      templateNames.retainAll(newTemplateNames);
+      templateNames.addAll(newTemplateNames);
+      if (!removedTemplateNames.isEmpty()) {
+        if (log != null && log.isInfoEnabled()) {
+          log.info("Removed " + removedTemplateNames + "; deleting their output");
+        }
+        this.removeOutputs(execution, removedTemplateNames);
+      }
+    }
+
+    // A changed template affects itself and every template that
+    // included or imported it when last rendered.
+    final Set<String> affected = new LinkedHashSet<>(changedTemplateNames);
+    affected.addAll(execution.getTemplateDependencies().getDependents(changedTemplateNames));
+    final Set<String> affectedTemplateNames = new LinkedHashSet<>();
+    final List<FanOut> affectedFanOuts = new ArrayList<>();
+    for (final String templateName : affected) {
+      if (templateNames.contains(templateName)) {
+        affectedTemplateNames.add(templateName);
+      }
+      for (final FanOut fanOut : execution.getFanOuts()) {
+        if (templateName.equals(fanOut.getTemplateName()) && !affectedFanOuts.contains(fanOut)) {
+          affectedFanOuts.add(fanOut);
+        }
+      }
+    }
+
+    if (!affectedTemplateNames.isEmpty() || !affectedFanOuts.isEmpty()) {
+      if (log != null && log.isInfoEnabled()) {
+        log.info("Changed " + changedTemplateNames + "; processing " + affectedTemplateNames.size() + " templates and " + affectedFanOuts.size() + " fan-outs");
+      }
+      this.render(execution, affectedTemplateNames, affectedFanOuts, false);
+    }
+  }
+
+  /**
+   * Returns the number of milliseconds to wait for further changes
+   * after a change is noticed, so that a burst of changes is handled
+   * all at once.
+   *
+   * @return the quiet period in milliseconds
+   *
+   * @see #setQuietPeriod(long)
+   */
+  public long getQuietPeriod() {
+    return this.quietPeriod;
+  }
+
+  /**
+   * Sets the number of milliseconds to wait for further changes after
+   * a change is noticed, so that a burst of changes is handled all at
+   * once.
+   *
+   * @param quietPeriod the quiet period in milliseconds; negative
+   * values are treated as {@code 0}
+   *
+   * @see #getQuietPeriod()
+   */
+  public void setQuietPeriod(final long quietPeriod) {
+    this.quietPeriod = Math.max(0L, quietPeriod);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Adds the base directories of any {@link FileTemplateLoader}s
+   * reachable from the supplied {@link TemplateLoader} to the
+   * supplied {@link List}.
+   *
+   * @param templateLoader the {@link TemplateLoader} to inspect; may
+   * be {@code null}
+   *
+   * @param templateDirectories the {@link List} to add to; must not
+   * be {@code null}
+   */
+  private static final void addTemplateDirectories(final TemplateLoader templateLoader, final List<Path> templateDirectories) {
+    if (templateLoader instanceof FileTemplateLoader) {
+      final File baseDirectory = ((FileTemplateLoader)templateLoader).getBaseDirectory();
+      if (baseDirectory != null && baseDirectory.isDirectory()) {
+        final Path templateDirectory = baseDirectory.toPath().toAbsolutePath();
+        if (!templateDirectories.contains(templateDirectory)) {
+          templateDirectories.add(templateDirectory);
+        }
+      }
+    } else if (templateLoader instanceof MultiTemplateLoader) {
+      final MultiTemplateLoader multiTemplateLoader = (MultiTemplateLoader)templateLoader;
+      final int size = multiTemplateLoader.getTemplateLoaderCount();
+      for (int i = 0; i < size; i++) {
+        addTemplateDirectories(multiTemplateLoader.getTemplateLoader(i), templateDirectories);
+      }
+    }
+  }
+
+  /**
+   * Registers the supplied directory, and, if {@code recursive} is
+   * {@code true}, all directories beneath it, with the supplied
+   * {@link WatchService}.
+   *
+   * @param watchService the {@link WatchService} to register with;
+   * must not be {@code null}
+   *
+   * @param directory the directory to register; must not be {@code
+   * null}
+   *
+   * @param recursive whether to register subdirectories as well
+   *
+   * @param directories a {@link Map} of registered directories
+   * indexed by their {@link WatchKey}s, to which new registrations
+   * are added; must not be {@code null}
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  private static final void register(final WatchService watchService,
+                                     final Path directory,
+                                     final boolean recursive,
+                                     final Map<WatchKey, Path> directories)
+    throws IOException {
+    if (recursive) {
+      Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+          @Override
+          public final FileVisitResult preVisitDirectory(final Path d, final BasicFileAttributes attributes) throws IOException {
+            register(watchService, d, false, directories);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    } else {
+      final WatchKey watchKey = directory.register(watchService,
+                                                   StandardWatchEventKinds.ENTRY_CREATE,
+                                                   StandardWatchEventKinds.ENTRY_DELETE,
+                                                   StandardWatchEventKinds.ENTRY_MODIFY);
+      directories.put(watchKey, directory);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link Path} lies beneath
+   * one of the supplied template directories.
+   *
+   * @param templateDirectories the template directories; must not be
+   * {@code null}
+   *
+   * @param path the {@link Path} to test; must not be {@code null}
+   *
+   * @return {@code true} if {@code path} lies beneath one of the
+   * {@code templateDirectories}
+   */
+  private static final boolean isUnder(final Collection<? extends Path> templateDirectories, final Path path) {
+    for (final Path templateDirectory : templateDirectories) {
+      if (path.startsWith(templateDirectory)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the name under which a {@link FileTemplateLoader} rooted
+   * at one of the supplied template directories would load the
+   * supplied file, or {@code null} if the file does not lie beneath
+   * any of them.
+   *
+   * @param templateDirectories the template directories; must not be
+   * {@code null}
+   *
+   * @param path the file; must not be {@code null}
+   *
+   * @return a template name using {@code /} as a separator, or {@code
+   * null}
+   */
+  static final String toTemplateName(final Collection<? extends Path> templateDirectories, final Path path) {
+    for (final Path templateDirectory : templateDirectories) {
+      if (path.startsWith(templateDirectory) && !path.equals(templateDirectory)) {
+        return templateDirectory.relativize(path).toString().replace(File.separatorChar, '/');
+      }
+    }
+    return null;
+  }
+
+}
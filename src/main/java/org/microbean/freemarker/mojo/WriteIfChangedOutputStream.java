@@ -0,0 +1,376 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.security.MessageDigest;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An {@link OutputStream} that collects its output in memory (or, if
+ * the output is large, in a temporary file) and, when {@linkplain
+ * #commit() committed}, replaces a target {@link File} with it only
+ * if the target's existing contents differ.
+ *
+ * <p>Leaving a {@link File} untouched when its contents have not
+ * changed preserves its last modification time, which in turn
+ * prevents needless work by downstream build steps that compare
+ * timestamps.</p>
+ *
+ * <p>Instances of this class are not safe for concurrent use by
+ * multiple threads.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #commit()
+ */
+final class WriteIfChangedOutputStream extends OutputStream {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The number of bytes that will be buffered in memory before output
+   * is spilled to a temporary file.
+   */
+  private static final int MEMORY_THRESHOLD = 1024 * 1024;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link File} that will be replaced by the output written to
+   * this {@link WriteIfChangedOutputStream} if its contents differ.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final File target;
+
+  /**
+   * The {@link MessageDigest} updated with every byte written.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final MessageDigest digest;
+
+  /**
+   * The in-memory buffer that holds output until {@link
+   * #MEMORY_THRESHOLD} bytes have been written.
+   *
+   * <p>This field is {@code null} once output has been spilled to
+   * {@link #temporaryFile}.</p>
+   */
+  private ByteArrayOutputStream memory;
+
+  /**
+   * The temporary {@link File} that holds output once {@link
+   * #MEMORY_THRESHOLD} bytes have been written.
+   *
+   * <p>This field may be {@code null}.</p>
+   */
+  private File temporaryFile;
+
+  /**
+   * The {@link OutputStream} writing to {@link #temporaryFile}.
+   *
+   * <p>This field may be {@code null}.</p>
+   */
+  private OutputStream temporaryFileOutputStream;
+
+  /**
+   * The number of bytes written so far.
+   */
+  private long length;
+
+  /**
+   * Whether this {@link WriteIfChangedOutputStream} has been
+   * {@linkplain #close() closed}.
+   */
+  private boolean closed;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link WriteIfChangedOutputStream}.
+   *
+   * @param target the {@link File} that will be replaced by the
+   * output written to this {@link WriteIfChangedOutputStream} if its
+   * contents differ; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code target} is {@code null}
+   */
+  WriteIfChangedOutputStream(final File target) {
+    super();
+    this.target = Objects.requireNonNull(target);
+    this.digest = StalenessManifest.newDigest();
+    this.memory = new ByteArrayOutputStream(8192);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Writes the supplied byte.
+   *
+   * @param b the byte to write
+   *
+   * @exception IOException if this {@link WriteIfChangedOutputStream}
+   * has been {@linkplain #close() closed} or an input/output error
+   * occurs
+   */
+  @Override
+  public final void write(final int b) throws IOException {
+    this.ensureCapacity(1);
+    this.digest.update((byte)b);
+    if (this.memory != null) {
+      this.memory.write(b);
+    } else {
+      this.temporaryFileOutputStream.write(b);
+    }
+    this.length++;
+  }
+
+  /**
+   * Writes {@code length} bytes from the supplied byte array starting
+   * at {@code offset}.
+   *
+   * @param bytes the bytes to write; must not be {@code null}
+   *
+   * @param offset the offset within {@code bytes} at which to start
+   *
+   * @param length the number of bytes to write
+   *
+   * @exception IOException if this {@link WriteIfChangedOutputStream}
+   * has been {@linkplain #close() closed} or an input/output error
+   * occurs
+   */
+  @Override
+  public final void write(final byte[] bytes, final int offset, final int length) throws IOException {
+    this.ensureCapacity(length);
+    this.digest.update(bytes, offset, length);
+    if (this.memory != null) {
+      this.memory.write(bytes, offset, length);
+    } else {
+      this.temporaryFileOutputStream.write(bytes, offset, length);
+    }
+    this.length += length;
+  }
+
+  /**
+   * Ensures that {@code additionalBytes} more bytes can be written,
+   * spilling buffered output to a temporary file if necessary.
+   *
+   * @param additionalBytes the number of bytes about to be written
+   *
+   * @exception IOException if this {@link WriteIfChangedOutputStream}
+   * has been {@linkplain #close() closed} or an input/output error
+   * occurs
+   */
+  private final void ensureCapacity(final int additionalBytes) throws IOException {
+    if (this.closed) {
+      throw new IOException("closed");
+    }
+    if (this.memory != null && this.length + additionalBytes > MEMORY_THRESHOLD) {
+      this.temporaryFile = createTemporaryFile(this.target);
+      this.temporaryFileOutputStream = new BufferedOutputStream(new FileOutputStream(this.temporaryFile));
+      this.memory.writeTo(this.temporaryFileOutputStream);
+      this.memory = null;
+    }
+  }
+
+  /**
+   * Flushes any output spilled to a temporary file.
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  @Override
+  public final void flush() throws IOException {
+    if (this.temporaryFileOutputStream != null) {
+      this.temporaryFileOutputStream.flush();
+    }
+  }
+
+  /**
+   * Closes this {@link WriteIfChangedOutputStream}.
+   *
+   * <p>Closing a {@link WriteIfChangedOutputStream} does not affect
+   * the target {@link File}; see {@link #commit()} and {@link
+   * #discard()}.</p>
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  @Override
+  public final void close() throws IOException {
+    if (!this.closed) {
+      this.closed = true;
+      if (this.temporaryFileOutputStream != null) {
+        this.temporaryFileOutputStream.close();
+      }
+    }
+  }
+
+  /**
+   * {@linkplain #close() Closes} this {@link
+   * WriteIfChangedOutputStream} and replaces the target {@link File}
+   * supplied at construction time with the output written to it, but
+   * only if the target does not exist or its contents differ.
+   *
+   * <p>Files are compared first by length and then, only if their
+   * lengths are equal, by SHA-256 digest.  If the target is replaced,
+   * it is replaced {@linkplain StandardCopyOption#ATOMIC_MOVE
+   * atomically} where the filesystem supports it.</p>
+   *
+   * @return {@code true} if the target {@link File} was written;
+   * {@code false} if it was left untouched
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  final boolean commit() throws IOException {
+    this.close();
+    final boolean changed;
+    try {
+      changed = !this.target.isFile() || this.target.length() != this.length || !Arrays.equals(this.digest.digest(), digest(this.target));
+      if (changed) {
+        if (this.temporaryFile == null) {
+          this.temporaryFile = createTemporaryFile(this.target);
+          try (final OutputStream outputStream = new FileOutputStream(this.temporaryFile)) {
+            this.memory.writeTo(outputStream);
+          }
+        }
+        try {
+          Files.move(this.temporaryFile.toPath(), this.target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException atomicMoveNotSupportedException) {
+          Files.move(this.temporaryFile.toPath(), this.target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        this.temporaryFile = null;
+      }
+    } finally {
+      this.discard();
+    }
+    return changed;
+  }
+
+  /**
+   * {@linkplain #close() Closes} this {@link
+   * WriteIfChangedOutputStream} and discards any output written to
+   * it, leaving the target {@link File} untouched.
+   *
+   * <p>This method is idempotent.</p>
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  final void discard() throws IOException {
+    this.close();
+    this.memory = null;
+    if (this.temporaryFile != null) {
+      Files.deleteIfExists(this.temporaryFile.toPath());
+      this.temporaryFile = null;
+    }
+  }
+
+  /**
+   * Returns the number of bytes written to this {@link
+   * WriteIfChangedOutputStream} so far.
+   *
+   * @return the number of bytes written
+   */
+  final long getLength() {
+    return this.length;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Creates a new temporary {@link File} in the same directory as the
+   * supplied {@code target} so that it may later be moved over the
+   * target atomically.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param target the {@link File} that the temporary {@link File}
+   * will eventually replace; must not be {@code null}
+   *
+   * @return a new, empty temporary {@link File}; never {@code null}
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  private static final File createTemporaryFile(final File target) throws IOException {
+    final File directory = target.getAbsoluteFile().getParentFile();
+    if (directory != null) {
+      directory.mkdirs();
+    }
+    return File.createTempFile("." + target.getName() + ".", ".tmp", directory);
+  }
+
+  /**
+   * Returns the SHA-256 digest of the contents of the supplied {@link
+   * File}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param file the {@link File} to digest; must not be {@code null}
+   *
+   * @return the digest; never {@code null}
+   *
+   * @exception IOException if an input/output error occurs
+   */
+  private static final byte[] digest(final File file) throws IOException {
+    final MessageDigest digest = StalenessManifest.newDigest();
+    try (final InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+      final byte[] buffer = new byte[8192];
+      int bytesRead;
+      while ((bytesRead = inputStream.read(buffer)) >= 0) {
+        digest.update(buffer, 0, bytesRead);
+      }
+    }
+    return digest.digest();
+  }
+
+}
@@ -0,0 +1,116 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.io.StringWriter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.Template;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestAccessTrace {
+
+  public TestAccessTrace() {
+    super();
+  }
+
+  @Test
+  public void testRecordsKeysAndClassesRead() throws Exception {
+    final AccessTrace accessTrace = AccessTrace.begin();
+    try {
+      assertEquals("ab", this.render("${a}<#if b??>b</#if><#if missing??>m</#if><#if classes['java.lang.String']??></#if>"));
+    } finally {
+      accessTrace.close();
+    }
+    assertEquals(new TreeSet<>(Arrays.asList("a", "b", "classes", "missing")), accessTrace.getKeys());
+    assertFalse(accessTrace.isAllKeys());
+    assertEquals(Collections.singleton("java.lang.String"), accessTrace.getClassNames());
+    assertFalse(accessTrace.isAllClasses());
+  }
+
+  @Test
+  public void testRecordsStaticsAndEnumsRead() throws Exception {
+    final AccessTrace accessTrace = AccessTrace.begin();
+    try {
+      assertEquals("2147483647 SECONDS", this.render("${statics['java.lang.Integer'].MAX_VALUE?c} ${enums['java.util.concurrent.TimeUnit'].SECONDS}"));
+    } finally {
+      accessTrace.close();
+    }
+    assertEquals(new TreeSet<>(Arrays.asList("enums", "statics")), accessTrace.getKeys());
+    assertEquals(new TreeSet<>(Arrays.asList("java.lang.Integer", "java.util.concurrent.TimeUnit")), accessTrace.getClassNames());
+    assertFalse(accessTrace.isAllClasses());
+  }
+
+  @Test
+  public void testIterationReadsEverything() throws Exception {
+    final AccessTrace accessTrace = AccessTrace.begin();
+    try {
+      this.render("<#list .data_model?keys as key></#list>");
+    } finally {
+      accessTrace.close();
+    }
+    assertTrue(accessTrace.isAllKeys());
+    assertFalse(accessTrace.isAllClasses());
+  }
+
+  @Test
+  public void testNesting() throws Exception {
+    this.render("${a}");
+    final AccessTrace outer = AccessTrace.begin();
+    try {
+      this.render("${a}");
+      final AccessTrace inner = AccessTrace.begin();
+      try {
+        this.render("<#if b??></#if>");
+      } finally {
+        inner.close();
+      }
+      assertEquals(Collections.singleton("b"), inner.getKeys());
+      this.render("<#if c??></#if>");
+    } finally {
+      outer.close();
+    }
+    assertEquals(new TreeSet<>(Arrays.asList("a", "c")), outer.getKeys());
+  }
+
+  private final String render(final String source) throws Exception {
+    final Configuration configuration = new Configuration(Configuration.VERSION_2_3_27);
+    final DefaultObjectWrapper objectWrapper = new DefaultObjectWrapper(Configuration.VERSION_2_3_27);
+    final Map<String, Object> map = new HashMap<>();
+    map.put("a", "a");
+    map.put("b", "b");
+    map.put("classes", new LoadableClassesTemplateHashModel(objectWrapper, Thread.currentThread().getContextClassLoader()));
+    map.put("statics", new TracedClassesTemplateHashModel(objectWrapper.getStaticModels()));
+    map.put("enums", new TracedClassesTemplateHashModel(objectWrapper.getEnumModels()));
+    final StringWriter writer = new StringWriter();
+    new Template("test", source, configuration).process(new LazyDataModel(map, objectWrapper), writer);
+    return writer.toString();
+  }
+
+}
@@ -0,0 +1,107 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import freemarker.ext.beans.BeansWrapper;
+
+import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateModelIterator;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
+
+import org.jboss.jandex.Index;
+import org.jboss.jandex.Indexer;
+import org.jboss.jandex.MethodInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestClassInfoModel {
+
+  private BeansWrapper wrapper;
+
+  private IndexedClassesTemplateHashModel indexedClasses;
+  
+  public TestClassInfoModel() {
+    super();
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    this.wrapper = new DefaultObjectWrapper(Configuration.VERSION_2_3_27);
+    final Indexer indexer = new Indexer();
+    for (final Class<?> c : new Class<?>[] { Object.class, String.class, CharSequence.class, Comparable.class, Serializable.class }) {
+      try (final InputStream inputStream = c.getResourceAsStream(c.getSimpleName() + ".class")) {
+        indexer.index(inputStream);
+      }
+    }
+    final Index index = indexer.complete();
+    this.indexedClasses = new IndexedClassesTemplateHashModel(this.wrapper, index);
+  }
+
+  @Test
+  public void testSameKeysAsClassModel() throws Exception {
+    final ClassInfoModel indexedString = (ClassInfoModel)this.indexedClasses.get("java.lang.String");
+    assertNotNull(indexedString);
+    assertSame(indexedString, this.indexedClasses.get("java.lang.String"));
+    assertEquals("java.lang.String", indexedString.getAsString());
+    
+    final ClassModel string = new ClassModel(String.class, this.wrapper);
+    for (final String key : new String[] { "declaredFields", "declaredMethods", "fields", "methods" }) {
+      assertEquals(key, names((TemplateHashModelEx)string.get(key)), names((TemplateHashModelEx)indexedString.get(key)));
+    }
+
+    final TemplateHashModelEx methods = (TemplateHashModelEx)indexedString.get("methods");
+    assertEquals(((TemplateSequenceModel)((TemplateHashModelEx)string.get("methods")).get("indexOf")).size(),
+                 ((TemplateSequenceModel)methods.get("indexOf")).size());
+    final MethodInfo indexOf = (MethodInfo)this.wrapper.unwrap(methods.get("indexOf(java.lang.String,int)"));
+    assertEquals("indexOf", indexOf.name());
+    assertNotNull(methods.get("getBytes(java.lang.String)"));
+    assertNotNull(methods.get("valueOf(char[])"));
+  }
+
+  @Test
+  public void testAbsentClass() throws Exception {
+    assertNull(this.indexedClasses.get("com.example.NoSuchClass"));
+  }
+
+  private static final Set<String> names(final TemplateHashModelEx hash) throws Exception {
+    final Set<String> returnValue = new HashSet<>();
+    final TemplateCollectionModel keys = hash.keys();
+    final TemplateModelIterator iterator = keys.iterator();
+    while (iterator.hasNext()) {
+      returnValue.add(((TemplateScalarModel)iterator.next()).getAsString());
+    }
+    return returnValue;
+  }
+  
+}
@@ -0,0 +1,90 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import freemarker.ext.beans.BeansWrapper;
+
+import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestClassModel {
+
+  private BeansWrapper wrapper;
+  
+  public TestClassModel() {
+    super();
+  }
+
+  @Before
+  public void setUp() {
+    this.wrapper = new DefaultObjectWrapper(Configuration.VERSION_2_3_27);
+  }
+
+  @Test
+  public void testMembersAreComputedOnce() {
+    final ClassMembers members = ClassMembers.of(String.class);
+    assertSame(members, ClassMembers.of(String.class));
+    assertSame(members.getMethods(), members.getMethods());
+    assertSame(members.getDeclaredFields(), members.getDeclaredFields());
+  }
+
+  @Test
+  public void testMembersAreSharedAcrossModels() throws Exception {
+    final ClassModel first = new ClassModel(String.class, this.wrapper);
+    final ClassModel second = new ClassModel(String.class, this.wrapper);
+    final TemplateHashModelEx firstMethods = (TemplateHashModelEx)first.get("methods");
+    final TemplateHashModelEx secondMethods = (TemplateHashModelEx)second.get("methods");
+    assertEquals(firstMethods.size(), secondMethods.size());
+    assertNotNull(firstMethods.get("length"));
+    assertEquals(ClassMembers.of(String.class).getMethods().getNames().size(), firstMethods.size());
+  }
+
+  @Test
+  public void testOverloads() throws Exception {
+    final ClassModel model = new ClassModel(String.class, this.wrapper);
+    final TemplateHashModel methods = (TemplateHashModel)model.get("methods");
+
+    final TemplateSequenceModel indexOf = (TemplateSequenceModel)methods.get("indexOf");
+    assertTrue(indexOf.size() >= 4);
+
+    final TemplateModel bySignature = methods.get("indexOf(java.lang.String,int)");
+    assertNotNull(bySignature);
+    assertEquals(String.class.getMethod("indexOf", String.class, int.class), this.wrapper.unwrap(bySignature));
+
+    // A single method can still be used as if it were not in a sequence.
+    final TemplateModel length = methods.get("length");
+    assertEquals(String.class.getMethod("length").toString(), ((TemplateScalarModel)length).getAsString());
+    assertEquals("length", ((TemplateScalarModel)((TemplateHashModel)length).get("name")).getAsString());
+
+    assertNull(methods.get("noSuchMethod"));
+  }
+  
+}
@@ -0,0 +1,90 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.List;
+
+import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.TemplateModelException;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+public class TestEvents {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  
+  public TestEvents() {
+    super();
+  }
+
+  @Test
+  public void testEventsAreRecorded() throws IOException, TemplateModelException {
+    assumeTrue(FlightRecorder.isAvailable());
+    final File recordingFile = this.temporaryFolder.newFile("test.jfr");
+    try (final Recording recording = new Recording()) {
+      recording.enable("org.microbean.freemarker.TemplateProcess").withoutThreshold();
+      recording.enable("org.microbean.freemarker.ClassLoad").withoutThreshold();
+      recording.start();
+      try (final Events.Span span = Events.templateProcess("test.ftl", "test.txt")) {
+        span.setBytes(42L);
+      }
+      final LoadableClassesTemplateHashModel classes =
+        new LoadableClassesTemplateHashModel(new DefaultObjectWrapper(Configuration.VERSION_2_3_27), Thread.currentThread().getContextClassLoader());
+      classes.get("java.lang.String");
+      recording.stop();
+      recording.dump(recordingFile.toPath());
+    }
+    final List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile.toPath());
+    assertEquals(2, events.size());
+    for (final RecordedEvent event : events) {
+      final String name = event.getEventType().getName();
+      if (name.equals("org.microbean.freemarker.TemplateProcess")) {
+        assertEquals("test.ftl", event.getString("templateName"));
+        assertEquals("test.txt", event.getString("outputFile"));
+        assertEquals(42L, event.getLong("bytes"));
+      } else {
+        assertEquals("org.microbean.freemarker.ClassLoad", name);
+        assertEquals("java.lang.String", event.getString("className"));
+      }
+    }
+  }
+
+  @Test
+  public void testSpansCanAlwaysBeUsed() {
+    try (final Events.Span span = Events.indexRead(null)) {
+      span.setBytes(0L);
+    }
+  }
+  
+}
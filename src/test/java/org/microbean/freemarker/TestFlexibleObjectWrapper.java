@@ -0,0 +1,85 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import freemarker.ext.util.ModelFactory;
+
+import freemarker.template.Configuration;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.SimpleScalar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TestFlexibleObjectWrapper {
+
+  public TestFlexibleObjectWrapper() {
+    super();
+  }
+
+  @Test
+  public void testMostSpecificSupertypeWins() {
+    final ModelFactory objectFactory = new LabelModelFactory("Object");
+    final ModelFactory comparableFactory = new LabelModelFactory("Comparable");
+    final ModelFactory numberFactory = new LabelModelFactory("Number");
+    final ModelFactory integerFactory = new LabelModelFactory("Integer");
+    final Map<Class<?>, ModelFactory> modelFactories = new HashMap<>();
+    modelFactories.put(Object.class, objectFactory);
+    modelFactories.put(Comparable.class, comparableFactory);
+    modelFactories.put(Number.class, numberFactory);
+    final FlexibleObjectWrapper wrapper = new FlexibleObjectWrapper(Configuration.VERSION_2_3_27, modelFactories);
+
+    // Later changes to the registry have no effect.
+    modelFactories.put(Integer.class, integerFactory);
+    
+    // Integer is both a Number and a Comparable; classes beat interfaces.
+    assertSame(numberFactory, wrapper.getModelFactory(Integer.class));
+    assertSame(numberFactory, wrapper.getModelFactory(Integer.class));
+    assertSame(comparableFactory, wrapper.getModelFactory(String.class));
+    assertSame(objectFactory, wrapper.getModelFactory(Thread.class));
+  }
+
+  @Test
+  public void testFallsBackToSuperclass() {
+    final Map<Class<?>, ModelFactory> modelFactories = new HashMap<>();
+    modelFactories.put(CharSequence.class, new LabelModelFactory("CharSequence"));
+    final FlexibleObjectWrapper wrapper = new FlexibleObjectWrapper(Configuration.VERSION_2_3_27, modelFactories);
+    assertNotSame(modelFactories.get(CharSequence.class), wrapper.getModelFactory(Thread.class));
+  }
+
+  private static final class LabelModelFactory implements ModelFactory {
+
+    private final String label;
+
+    private LabelModelFactory(final String label) {
+      super();
+      this.label = label;
+    }
+
+    @Override
+    public final SimpleScalar create(final Object object, final ObjectWrapper objectWrapper) {
+      return new SimpleScalar(this.label);
+    }
+    
+  }
+  
+}
@@ -0,0 +1,97 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import freemarker.ext.beans.BeansWrapper;
+
+import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModel;
+
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.Indexer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestIndexQueriesTemplateHashModel {
+
+  private BeansWrapper wrapper;
+
+  private IndexQueriesTemplateHashModel queries;
+  
+  public TestIndexQueriesTemplateHashModel() {
+    super();
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    this.wrapper = new DefaultObjectWrapper(Configuration.VERSION_2_3_27);
+    final Indexer indexer = new Indexer();
+    for (final Class<?> c : new Class<?>[] { Documented.class, Retention.class, Target.class, Serializable.class, Object.class, Number.class, Integer.class, String.class }) {
+      try (final InputStream inputStream = c.getResourceAsStream(c.getSimpleName() + ".class")) {
+        indexer.index(inputStream);
+      }
+    }
+    this.queries = new IndexQueriesTemplateHashModel(this.wrapper, indexer.complete());
+  }
+
+  @Test
+  public void testQueries() throws Exception {
+    assertEquals(Arrays.asList("java.lang.annotation.Documented", "java.lang.annotation.Retention", "java.lang.annotation.Target"),
+                 this.query("annotatedWith", "java.lang.annotation.Documented"));
+    assertEquals(Arrays.asList("java.lang.Integer"), this.query("subclassesOf", "java.lang.Number"));
+    assertEquals(Arrays.asList("java.lang.Integer", "java.lang.Number", "java.lang.String"), this.query("implementorsOf", "java.io.Serializable"));
+    assertEquals(Arrays.asList("java.lang.Integer", "java.lang.Number", "java.lang.Object", "java.lang.String"), this.query("inPackage", "java.lang"));
+    assertEquals(Arrays.asList(), this.query("inPackage", "com.example"));
+    assertNull(this.queries.get("noSuchQuery"));
+  }
+
+  @Test
+  public void testMemoization() throws Exception {
+    final TemplateHashModel annotatedWith = (TemplateHashModel)this.queries.get("annotatedWith");
+    final Object first = this.wrapper.unwrap(annotatedWith.get("java.lang.annotation.Documented"));
+    assertSame(first, this.wrapper.unwrap(annotatedWith.get("java.lang.annotation.Documented")));
+  }
+
+  private final List<String> query(final String query, final String name) throws Exception {
+    final TemplateModel result = ((TemplateHashModel)this.queries.get(query)).get(name);
+    final List<String> returnValue = new ArrayList<>();
+    for (final Object classInfo : (List<?>)this.wrapper.unwrap(result)) {
+      returnValue.add(((ClassInfo)classInfo).name().toString());
+    }
+    return returnValue;
+  }
+  
+}
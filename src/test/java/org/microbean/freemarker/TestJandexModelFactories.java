@@ -0,0 +1,112 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+
+import java.lang.annotation.Retention;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import freemarker.ext.util.ModelFactory;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.FieldInfo;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.Indexer;
+import org.jboss.jandex.MethodInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestJandexModelFactories {
+
+  private Index index;
+
+  private FlexibleObjectWrapper wrapper;
+  
+  public TestJandexModelFactories() {
+    super();
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    final Indexer indexer = new Indexer();
+    for (final Class<?> c : new Class<?>[] { Retention.class, String.class }) {
+      try (final InputStream inputStream = c.getResourceAsStream(c.getSimpleName() + ".class")) {
+        indexer.index(inputStream);
+      }
+    }
+    this.index = indexer.complete();
+    final Map<Class<?>, ModelFactory> modelFactories = new HashMap<>();
+    modelFactories.put(ClassInfo.class, new ClassInfoModelFactory(this.index));
+    modelFactories.put(MethodInfo.class, new MethodInfoModelFactory());
+    modelFactories.put(FieldInfo.class, new FieldInfoModelFactory());
+    modelFactories.put(AnnotationInstance.class, new AnnotationInstanceModelFactory());
+    modelFactories.put(DotName.class, new DotNameModelFactory());
+    this.wrapper = new FlexibleObjectWrapper(Configuration.VERSION_2_3_27, modelFactories);
+  }
+
+  @Test
+  public void testWrapping() throws Exception {
+    final ClassInfo retention = this.index.getClassByName(DotName.createSimple(Retention.class.getName()));
+    assertTrue(this.wrapper.wrap(retention) instanceof ClassInfoModel);
+    assertTrue(this.wrapper.wrap(retention.name()) instanceof DotNameModel);
+    assertTrue(this.wrapper.wrap(retention.methods().get(0)) instanceof MethodInfoModel);
+    assertTrue(this.wrapper.wrap(retention.classAnnotations().iterator().next()) instanceof AnnotationInstanceModel);
+    assertTrue(this.wrapper.wrap(this.index.getClassByName(DotName.createSimple(String.class.getName())).fields().get(0)) instanceof FieldInfoModel);
+  }
+
+  @Test
+  public void testTemplate() throws Exception {
+    final Configuration configuration = new Configuration(Configuration.VERSION_2_3_27);
+    configuration.setObjectWrapper(this.wrapper);
+    final Template template =
+      new Template("test",
+                   "${c.name()}|${c.name().local}|${c.name().local()}" +
+                   "|<#list c.declaredMethods.value as m>${m.name}:${m.name()}:${m.returnTypeName}:${m.signature}:${m.parameterTypes?size}</#list>" +
+                   "|${c.annotations['java.lang.annotation.Target'].elements.value[0]}" +
+                   "|${c.annotations['java.lang.annotation.Retention'].elements.value}" +
+                   "|${c.annotations['java.lang.annotation.Retention'].name()}" +
+                   "|${s.declaredFields.hash.name}:${s.declaredFields.hash.typeName}",
+                   configuration);
+    final Map<String, Object> dataModel = new HashMap<>();
+    dataModel.put("c", this.index.getClassByName(DotName.createSimple(Retention.class.getName())));
+    dataModel.put("s", this.index.getClassByName(DotName.createSimple(String.class.getName())));
+    final StringWriter writer = new StringWriter();
+    template.process(dataModel, writer);
+    assertEquals("java.lang.annotation.Retention|Retention|Retention" +
+                 "|value:value:java.lang.annotation.RetentionPolicy:value():0" +
+                 "|ANNOTATION_TYPE" +
+                 "|RUNTIME" +
+                 "|java.lang.annotation.Retention" +
+                 "|hash:int",
+                 writer.toString());
+  }
+  
+}
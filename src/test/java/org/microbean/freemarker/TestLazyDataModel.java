@@ -0,0 +1,80 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.io.StringWriter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.Template;
+
+import org.jboss.jandex.Indexer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestLazyDataModel {
+  
+  public TestLazyDataModel() {
+    super();
+  }
+
+  @Test
+  public void testEntriesAreComputedOnceAndOnlyWhenRead() throws Exception {
+    final AtomicInteger readCount = new AtomicInteger();
+    final AtomicInteger unreadCount = new AtomicInteger();
+    final Map<String, Object> map = new HashMap<>();
+    map.put("eager", "e");
+    map.put("read", new MemoizedSupplier<>(() -> "r" + readCount.incrementAndGet()));
+    map.put("unread", new MemoizedSupplier<>(() -> "u" + unreadCount.incrementAndGet()));
+    final Configuration configuration = new Configuration(Configuration.VERSION_2_3_27);
+    final LazyDataModel dataModel = new LazyDataModel(map, new DefaultObjectWrapper(Configuration.VERSION_2_3_27));
+    final Template template = new Template("test", "${eager}${read}${read}", configuration);
+    for (int i = 0; i < 2; i++) {
+      final StringWriter writer = new StringWriter();
+      template.process(dataModel, writer);
+      assertEquals("er1r1", writer.toString());
+    }
+    assertEquals(1, readCount.get());
+    assertEquals(0, unreadCount.get());
+    assertEquals(3, dataModel.size());
+  }
+
+  @Test
+  public void testLazyIndexView() {
+    final AtomicInteger loadCount = new AtomicInteger();
+    final LazyIndexView indexView = new LazyIndexView(() -> {
+        loadCount.incrementAndGet();
+        return new Indexer().complete();
+      });
+    new IndexedClassesTemplateHashModel(new DefaultObjectWrapper(Configuration.VERSION_2_3_27), indexView);
+    assertFalse(indexView.isLoaded());
+    assertTrue(indexView.getKnownClasses().isEmpty());
+    assertTrue(indexView.getKnownClasses().isEmpty());
+    assertTrue(indexView.isLoaded());
+    assertEquals(1, loadCount.get());
+  }
+  
+}
@@ -0,0 +1,130 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.Template;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateModelIterator;
+import freemarker.template.TemplateScalarModel;
+
+import org.jboss.jandex.Indexer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestLoadableClassesTemplateHashModel {
+
+  private DefaultObjectWrapper wrapper;
+
+  private AtomicInteger loadCount;
+
+  private ClassLoader classLoader;
+  
+  public TestLoadableClassesTemplateHashModel() {
+    super();
+  }
+
+  @Before
+  public void setUp() {
+    this.wrapper = new DefaultObjectWrapper(Configuration.VERSION_2_3_27);
+    this.loadCount = new AtomicInteger();
+    this.classLoader = new ClassLoader(this.getClass().getClassLoader()) {
+        @Override
+        public final Class<?> loadClass(final String name) throws ClassNotFoundException {
+          loadCount.incrementAndGet();
+          return super.loadClass(name);
+        }
+      };
+  }
+
+  @Test
+  public void testLoadedClassesAreCached() throws TemplateModelException {
+    final LoadableClassesTemplateHashModel classes = new LoadableClassesTemplateHashModel(this.wrapper, this.classLoader);
+    assertSame(classes.get("java.lang.String"), classes.get("java.lang.String"));
+    assertEquals(1, this.loadCount.get());
+  }
+
+  @Test
+  public void testAbsentClassesAreCached() throws Exception {
+    final LoadableClassesTemplateHashModel classes = new LoadableClassesTemplateHashModel(this.wrapper, this.classLoader);
+    for (int i = 0; i < 3; i++) {
+      assertNull(classes.get("com.example.NoSuchClass"));
+    }
+    assertEquals(1, this.loadCount.get());
+    final Configuration configuration = new Configuration(Configuration.VERSION_2_3_27);
+    final Template template =
+      new Template("test", "<#list 1..3 as i>${classes['com.example.NoSuchClass']???c}</#list>", configuration);
+    final StringWriter writer = new StringWriter();
+    template.process(Collections.singletonMap("classes", classes), writer);
+    assertEquals("falsefalsefalse", writer.toString());
+    assertEquals(1, this.loadCount.get());
+  }
+
+  @Test
+  public void testEnumerationIsLazy() throws IOException, TemplateModelException {
+    final Indexer indexer = new Indexer();
+    for (final Class<?> c : new Class<?>[] { String.class, Integer.class }) {
+      try (final InputStream inputStream = c.getResourceAsStream(c.getSimpleName() + ".class")) {
+        indexer.index(inputStream);
+      }
+    }
+    final LoadableClassesTemplateHashModel classes = new LoadableClassesTemplateHashModel(this.wrapper, this.classLoader, false, indexer.complete());
+    assertEquals(2, classes.size());
+    assertFalse(classes.isEmpty());
+
+    final Set<String> names = new HashSet<>();
+    TemplateModelIterator iterator = classes.keys().iterator();
+    while (iterator.hasNext()) {
+      names.add(((TemplateScalarModel)iterator.next()).getAsString());
+    }
+    assertEquals(new HashSet<>(Arrays.asList("java.lang.String", "java.lang.Integer")), names);
+    assertEquals(0, this.loadCount.get());
+
+    iterator = classes.values().iterator();
+    iterator.next();
+    assertEquals(1, this.loadCount.get());
+    iterator.next();
+    assertEquals(2, this.loadCount.get());
+
+    final LoadableClassesTemplateHashModel unindexedClasses = new LoadableClassesTemplateHashModel(this.wrapper, this.classLoader);
+    assertEquals(0, unindexedClasses.size());
+    assertFalse(unindexedClasses.isEmpty());
+    assertFalse(unindexedClasses.keys().iterator().hasNext());
+    assertNotNull(unindexedClasses.get("java.lang.String"));
+  }
+  
+}
@@ -0,0 +1,160 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+
+import java.util.Arrays;
+
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.IndexView;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestClassesDirectoryIndexer {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  
+  public TestClassesDirectoryIndexer() {
+    super();
+  }
+
+  @After
+  public void tearDown() {
+    IndexCache.clear();
+  }
+
+  @Test
+  public void testOnlyChangedClassesAreReindexed() throws IOException {
+    final File classesDirectory = this.temporaryFolder.newFolder("classes");
+    final File cacheDirectory = new File(this.temporaryFolder.getRoot(), "cache");
+    copy(FanOut.class, classesDirectory);
+    copy(StalenessManifest.class, classesDirectory);
+
+    final IndexView first = ClassesDirectoryIndexer.index(classesDirectory, cacheDirectory);
+    assertEquals(2, first.getKnownClasses().size());
+    assertNotNull(first.getClassByName(DotName.createSimple(FanOut.class.getName())));
+
+    // Nothing changed, so the cached index is reused as is.
+    final IndexView second = ClassesDirectoryIndexer.index(classesDirectory, cacheDirectory);
+    assertSame(second, ClassesDirectoryIndexer.index(classesDirectory, cacheDirectory));
+    assertEquals(2, second.getKnownClasses().size());
+
+    // Add a class and remove a class; the untouched class is carried over.
+    copy(IndexCache.class, classesDirectory);
+    Files.delete(new File(classesDirectory, StalenessManifest.class.getName().replace('.', '/') + ".class").toPath());
+    final IndexView third = ClassesDirectoryIndexer.index(classesDirectory, cacheDirectory);
+    assertNotSame(second, third);
+    assertEquals(2, third.getKnownClasses().size());
+    assertNull(third.getClassByName(DotName.createSimple(StalenessManifest.class.getName())));
+    assertNotNull(third.getClassByName(DotName.createSimple(IndexCache.class.getName())));
+    assertSame(second.getClassByName(DotName.createSimple(FanOut.class.getName())),
+               third.getClassByName(DotName.createSimple(FanOut.class.getName())));
+    assertEquals(2, third.getKnownDirectSubclasses(DotName.createSimple("java.lang.Object")).size());
+  }
+
+  @Test
+  public void testRewrittenCacheIsNotReadStale() throws IOException {
+    final File classesDirectory = this.temporaryFolder.newFolder("classes");
+    final File cacheDirectory = new File(this.temporaryFolder.getRoot(), "cache");
+    final File indexFile = new File(cacheDirectory, "jandex.idx");
+    final DotName versioned = DotName.createSimple(Versioned.class.getName());
+    final File classFile = new File(classesDirectory, "Versioned.class");
+    final byte[] bytes = read(Versioned.class);
+    Files.write(classFile.toPath(), bytes);
+    ClassesDirectoryIndexer.index(classesDirectory, cacheDirectory);
+    final long length = indexFile.length();
+    final long lastModified = indexFile.lastModified();
+
+    // Reads the first index through the IndexCache, then rewrites it
+    // after the class changes in a way that keeps every size the same.
+    Files.write(classFile.toPath(), replace(bytes, "alphaMethod", "omegaMethod"));
+    ClassesDirectoryIndexer.index(classesDirectory, cacheDirectory);
+    assertEquals(length, indexFile.length());
+    assertTrue(indexFile.setLastModified(lastModified));
+
+    // The rewritten index looks unchanged to the IndexCache, but must
+    // not be mistaken for the first one.
+    final ClassInfo classInfo = ClassesDirectoryIndexer.index(classesDirectory, cacheDirectory).getClassByName(versioned);
+    assertNotNull(classInfo);
+    assertNull(classInfo.method("alphaMethod"));
+    assertNotNull(classInfo.method("omegaMethod"));
+  }
+
+  private static final void copy(final Class<?> c, final File classesDirectory) throws IOException {
+    final File classFile = new File(classesDirectory, c.getName().replace('.', '/') + ".class");
+    classFile.getParentFile().mkdirs();
+    try (final InputStream inputStream = c.getResourceAsStream(c.getSimpleName() + ".class")) {
+      Files.copy(inputStream, classFile.toPath());
+    }
+  }
+
+  private static final byte[] read(final Class<?> c) throws IOException {
+    final String name = c.getName();
+    try (final InputStream inputStream = c.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+      final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[8192];
+      int bytesRead;
+      while ((bytesRead = inputStream.read(buffer)) >= 0) {
+        outputStream.write(buffer, 0, bytesRead);
+      }
+      return outputStream.toByteArray();
+    }
+  }
+
+  private static final byte[] replace(final byte[] bytes, final String target, final String replacement) {
+    final byte[] targetBytes = target.getBytes(StandardCharsets.US_ASCII);
+    final byte[] replacementBytes = replacement.getBytes(StandardCharsets.US_ASCII);
+    assertEquals(targetBytes.length, replacementBytes.length);
+    final byte[] returnValue = bytes.clone();
+    for (int i = 0; i + targetBytes.length <= returnValue.length; i++) {
+      if (Arrays.equals(targetBytes, Arrays.copyOfRange(returnValue, i, i + targetBytes.length))) {
+        System.arraycopy(replacementBytes, 0, returnValue, i, replacementBytes.length);
+        return returnValue;
+      }
+    }
+    throw new AssertionError(target);
+  }
+
+  private static final class Versioned {
+
+    private final void alphaMethod() {
+    }
+
+  }
+  
+}
@@ -0,0 +1,135 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.File;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestDataModelFingerprints {
+
+  private static final File projectBuildDirectory = new File(System.getProperty("project.build.directory", "target"));
+
+  public TestDataModelFingerprints() {
+    super();
+  }
+
+  @Test
+  public void testOnlyReadEntriesMatter() {
+    final Map<String, Object> dataModel = new HashMap<>();
+    dataModel.put("read", "1");
+    dataModel.put("unread", "1");
+    final Set<String> reads = new TreeSet<>(Arrays.asList("read", "classes[java.lang.String]"));
+    final String before = fingerprints(dataModel, "index").fingerprint(reads);
+    assertEquals(before, fingerprints(dataModel, "index").fingerprint(reads));
+    dataModel.put("unread", "2");
+    assertEquals(before, fingerprints(dataModel, "index").fingerprint(reads));
+    assertEquals(before, fingerprints(dataModel, "changedIndex").fingerprint(reads));
+    dataModel.put("read", "2");
+    assertNotEquals(before, fingerprints(dataModel, "index").fingerprint(reads));
+  }
+
+  @Test
+  public void testWildcardsAndMissingEntries() {
+    final Map<String, Object> dataModel = Collections.singletonMap("a", "1");
+    final Set<String> all = Collections.singleton(DataModelFingerprints.ALL_KEYS);
+    assertNotEquals(fingerprints(dataModel, "index").fingerprint(all),
+                    fingerprints(dataModel, "changedIndex").fingerprint(all));
+    final Set<String> missing = Collections.singleton("missing");
+    assertEquals(fingerprints(dataModel, "index").fingerprint(missing),
+                 fingerprints(Collections.singletonMap("b", "2"), "changedIndex").fingerprint(missing));
+    // The classes read through enums and statics are fingerprinted
+    // individually, so the entries themselves do not depend on the
+    // index.
+    final Set<String> enums = Collections.singleton("enums");
+    assertEquals(fingerprints(dataModel, "index").fingerprint(enums),
+                 fingerprints(dataModel, "changedIndex").fingerprint(enums));
+    final Set<String> statics = new TreeSet<>(Arrays.asList("statics", "classes[java.lang.Integer]"));
+    assertEquals(fingerprints(dataModel, "index").fingerprint(statics),
+                 fingerprints(dataModel, "changedIndex").fingerprint(statics));
+    assertNotEquals(fingerprints(dataModel, "index").fingerprint(statics),
+                    fingerprints(dataModel, "index").fingerprint(new TreeSet<>(Arrays.asList("statics", "classes[java.lang.Long]"))));
+    final Set<String> contextClassLoader = Collections.singleton("contextClassLoader");
+    final DataModelFingerprints fingerprints = fingerprints(dataModel, "index");
+    assertNotEquals(fingerprints.fingerprint(contextClassLoader), fingerprints.fingerprint(contextClassLoader));
+  }
+
+  @Test
+  public void testLazyEntriesAreAlwaysStale() {
+    final Set<String> reads = Collections.singleton("lazy");
+    final DataModelFingerprints fingerprints = lazyFingerprints(() -> "a");
+    assertNotEquals(fingerprints.fingerprint(reads), fingerprints.fingerprint(reads));
+    final Set<String> otherReads = Collections.singleton("other");
+    assertEquals(fingerprints.fingerprint(otherReads), fingerprints.fingerprint(otherReads));
+  }
+
+  @Test
+  public void testBuiltInEntriesUseTheirFingerprints() {
+    final Set<String> project = Collections.singleton("project");
+    assertEquals(projectFingerprints("a").fingerprint(project), projectFingerprints("a").fingerprint(project));
+    assertNotEquals(projectFingerprints("a").fingerprint(project), projectFingerprints("b").fingerprint(project));
+    final Set<String> session = Collections.singleton("session");
+    assertNotEquals(new DataModelFingerprints(null, null, null, null, "a", "index", null, false).fingerprint(session),
+                    new DataModelFingerprints(null, null, null, null, "b", "index", null, false).fingerprint(session));
+  }
+
+  @Test
+  public void testManifestPersistsReads() throws Exception {
+    final File file = new File(projectBuildDirectory, "test-data-model-fingerprints/manifest.properties");
+    file.delete();
+    final StalenessManifest manifest = new StalenessManifest(file, "inputs");
+    final Set<String> reads = new TreeSet<>(Arrays.asList("a", "classes[java.lang.String]"));
+    manifest.record("main.ftl", "fingerprint", new File("main"), Collections.emptySet(), reads);
+    manifest.store();
+    final StalenessManifest loaded = StalenessManifest.load(file, "inputs");
+    assertEquals(reads, loaded.getPriorReads("main.ftl"));
+    assertTrue(loaded.getPriorReads("missing.ftl").isEmpty());
+  }
+
+  private static final DataModelFingerprints lazyFingerprints(final Supplier<?> supplier) {
+    return new DataModelFingerprints(null, Collections.singletonMap("lazy", supplier), null, null, null, "index", null, false);
+  }
+
+  private static final DataModelFingerprints projectFingerprints(final String projectFingerprint) {
+    return new DataModelFingerprints(null, null, null, projectFingerprint, null, "index", null, false);
+  }
+
+  private static final DataModelFingerprints fingerprints(final Map<String, Object> dataModel, final String indexFingerprint) {
+    return new DataModelFingerprints(dataModel,
+                                     null,
+                                     StalenessManifest.hash(String.valueOf(dataModel)),
+                                     "project",
+                                     "session",
+                                     indexFingerprint,
+                                     Thread.currentThread().getContextClassLoader(),
+                                     false);
+  }
+
+}
@@ -0,0 +1,161 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.file.Files;
+
+import java.util.Collections;
+import java.util.List;
+
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.IndexWriter;
+import org.jboss.jandex.Indexer;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestDependencyIndexer {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  
+  public TestDependencyIndexer() {
+    super();
+  }
+
+  @After
+  public void tearDown() {
+    IndexCache.clear();
+  }
+
+  @Test
+  public void testEmbeddedIndexIsPreferred() throws IOException {
+    final Indexer indexer = new Indexer();
+    try (final InputStream inputStream = FanOut.class.getResourceAsStream("FanOut.class")) {
+      indexer.index(inputStream);
+    }
+    final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+    new IndexWriter(indexBytes).write(indexer.complete());
+
+    // The jar contains an index but no classes, so the index can only
+    // have come from the embedded file.
+    final File jarFile = this.temporaryFolder.newFile("embedded-1.0.jar");
+    try (final JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile))) {
+      jar.putNextEntry(new JarEntry("META-INF/jandex.idx"));
+      jar.write(indexBytes.toByteArray());
+      jar.closeEntry();
+    }
+    final File cacheDirectory = new File(this.temporaryFolder.getRoot(), "cache");
+    final List<IndexView> indexes = DependencyIndexer.index(Collections.singleton(artifact("embedded", jarFile)), cacheDirectory);
+    assertEquals(1, indexes.size());
+    assertNotNull(indexes.get(0).getClassByName(DotName.createSimple(FanOut.class.getName())));
+    assertNull(cacheDirectory.listFiles());
+  }
+
+  @Test
+  public void testUnreadableEmbeddedIndexIsIgnored() throws IOException {
+    // A real index whose version, which follows the four-byte magic
+    // number, is one that this Jandex does not understand.
+    final ByteArrayOutputStream indexOutputStream = new ByteArrayOutputStream();
+    new IndexWriter(indexOutputStream).write(new Indexer().complete());
+    final byte[] indexBytes = indexOutputStream.toByteArray();
+    indexBytes[4] = (byte)0x7F;
+    final File jarFile = this.temporaryFolder.newFile("newer-1.0.jar");
+    try (final JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile))) {
+      jar.putNextEntry(new JarEntry("META-INF/jandex.idx"));
+      jar.write(indexBytes);
+      jar.closeEntry();
+      add(jar, FanOut.class);
+    }
+    final File cacheDirectory = new File(this.temporaryFolder.getRoot(), "cache");
+    final List<IndexView> indexes = DependencyIndexer.index(Collections.singleton(artifact("newer", jarFile)), cacheDirectory);
+    assertEquals(1, indexes.size());
+    assertNotNull(indexes.get(0).getClassByName(DotName.createSimple(FanOut.class.getName())));
+  }
+
+  @Test
+  public void testComputedIndexIsCachedOnDisk() throws IOException {
+    final File jarFile = this.temporaryFolder.newFile("plain-1.0.jar");
+    try (final JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile))) {
+      add(jar, FanOut.class);
+      add(jar, StalenessManifest.class);
+    }
+    final File cacheDirectory = new File(this.temporaryFolder.getRoot(), "cache");
+    final Artifact artifact = artifact("plain", jarFile);
+
+    final IndexView first = DependencyIndexer.index(Collections.singleton(artifact), cacheDirectory).get(0);
+    assertEquals(2, first.getKnownClasses().size());
+    assertSame(first, DependencyIndexer.index(Collections.singleton(artifact), cacheDirectory).get(0));
+
+    final File[] cachedIndexes = new File(cacheDirectory, "org.microbean.test/plain").listFiles();
+    assertNotNull(cachedIndexes);
+    assertEquals(1, cachedIndexes.length);
+    assertEquals("plain-1.0-" + StalenessManifest.hash(Files.readAllBytes(jarFile.toPath())) + ".idx", cachedIndexes[0].getName());
+    final long lastModified = cachedIndexes[0].lastModified();
+
+    // A fresh JVM-wide cache reads the index from disk rather than
+    // indexing the jar again.
+    IndexCache.clear();
+    final IndexView second = DependencyIndexer.index(Collections.singleton(artifact), cacheDirectory).get(0);
+    assertEquals(2, second.getKnownClasses().size());
+    assertNotNull(second.getClassByName(DotName.createSimple(StalenessManifest.class.getName())));
+    assertEquals(lastModified, cachedIndexes[0].lastModified());
+    assertEquals(1, new File(cacheDirectory, "org.microbean.test/plain").listFiles().length);
+  }
+
+  private static final Artifact artifact(final String artifactId, final File file) {
+    final Artifact artifact = new DefaultArtifact("org.microbean.test", artifactId, "1.0", Artifact.SCOPE_COMPILE, "jar", null, new DefaultArtifactHandler("jar"));
+    artifact.setFile(file);
+    return artifact;
+  }
+
+  private static final void add(final JarOutputStream jar, final Class<?> c) throws IOException {
+    jar.putNextEntry(new JarEntry(c.getName().replace('.', '/') + ".class"));
+    try (final InputStream inputStream = c.getResourceAsStream(c.getSimpleName() + ".class")) {
+      final byte[] buffer = new byte[4096];
+      int bytesRead;
+      while ((bytesRead = inputStream.read(buffer)) >= 0) {
+        jar.write(buffer, 0, bytesRead);
+      }
+    }
+    jar.closeEntry();
+  }
+  
+}
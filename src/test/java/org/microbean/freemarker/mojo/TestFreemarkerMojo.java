@@ -21,10 +21,42 @@ import java.io.IOException;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 
+import java.nio.file.Files;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import freemarker.cache.FileTemplateLoader;
+
+import freemarker.ext.util.ModelFactory;
+
+import freemarker.template.Configuration;
+import freemarker.template.ObjectWrapper;
 
+import org.apache.maven.execution.MavenSession;
+
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 
 import org.apache.maven.plugin.testing.MojoRule;
@@ -33,6 +65,12 @@ import org.apache.maven.plugin.testing.resources.TestResources;
 
 import org.apache.maven.project.MavenProject;
 
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexWriter;
+import org.jboss.jandex.Indexer;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -40,7 +78,9 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class TestFreemarkerMojo {
@@ -101,5 +141,338 @@ public class TestFreemarkerMojo {
                  properties.get("executeMethod"));
     assertEquals("test.ftl", properties.get("templateName"));
   }
+
+  @Test
+  public void testParallelExecution() throws Exception {
+    final FreemarkerMojo mojo = this.lookupConfiguredMojo("multiple");
+    mojo.setParallel(true);
+    mojo.setThreads(4);
+    mojo.execute();
+    final File outputDirectory = mojo.getOutputFile();
+    assertNotNull(outputDirectory);
+    assertTrue(outputDirectory.isDirectory());
+    for (int i = 1; i <= 8; i++) {
+      final Properties properties = load(new File(outputDirectory, "template" + i));
+      assertEquals("template" + i + ".ftl", properties.get("templateName"));
+      assertEquals("bargle", properties.get("argle"));
+    }
+  }
+
+  @Test(expected = MojoExecutionException.class)
+  public void testParallelExecutionFailsFast() throws Exception {
+    final FreemarkerMojo mojo = this.lookupConfiguredMojo("multiple");
+    mojo.setParallel(true);
+    mojo.setThreads(4);
+    mojo.setDataModel(null); // every template references the now-missing argle variable
+    mojo.execute();
+  }
+
+  @Test
+  public void testIncrementalExecution() throws Exception {
+    final FreemarkerMojo mojo = this.lookupConfiguredMojo("multiple");
+    mojo.setIncremental(true);
+    mojo.execute();
+    assertNotNull(mojo.getManifestFile());
+    assertTrue(mojo.getManifestFile().isFile());
+    final File outputDirectory = mojo.getOutputFile();
+    final File template1Output = new File(outputDirectory, "template1");
+    final File template2Output = new File(outputDirectory, "template2");
+    final File template3Output = new File(outputDirectory, "template3");
+    assertTrue(template1Output.setLastModified(0L));
+    assertTrue(template2Output.setLastModified(0L));
+    assertTrue(template3Output.isFile());
+
+    // Change one template and remove another.
+    final File templateDirectory = new File(mojo.getProject().getBasedir(), "templates");
+    try (final Writer writer = new OutputStreamWriter(new FileOutputStream(new File(templateDirectory, "template2.ftl")), "UTF-8")) {
+      writer.write("templateName=changed\n");
+    }
+    assertTrue(new File(templateDirectory, "template3.ftl").delete());
+
+    // Simulate a subsequent build.
+    final FreemarkerMojo secondMojo = this.lookupConfiguredMojo(mojo.getProject().getBasedir());
+    secondMojo.setIncremental(true);
+    secondMojo.execute();
+    assertEquals(0L, template1Output.lastModified());
+    assertEquals("changed", load(template2Output).get("templateName"));
+    assertFalse(template3Output.exists());
+  }
+
+  @Test
+  public void testTimingReportFileIsPerExecution() throws Exception {
+    final FreemarkerMojo mojo = this.lookupConfiguredMojo("multiple");
+    final File timingReportFile = mojo.getTimingReportFile();
+    assertNotNull(timingReportFile);
+    final String name = timingReportFile.getName();
+    assertFalse(name, name.contains("${"));
+    assertTrue(name, name.endsWith("-timings.json"));
+    assertEquals("default-freemarker-timings.json", name);
+  }
+
+  @Test
+  public void testIncrementalExecutionSeesProjectChanges() throws Exception {
+    final FreemarkerMojo mojo = this.lookupConfiguredMojo("multiple");
+    final File templateDirectory = new File(mojo.getProject().getBasedir(), "templates");
+    try (final Writer writer = new OutputStreamWriter(new FileOutputStream(new File(templateDirectory, "version.ftl")), "UTF-8")) {
+      writer.write("version=${project.version}\n");
+    }
+    mojo.setIncremental(true);
+    mojo.execute();
+    final File versionOutput = new File(mojo.getOutputFile(), "version");
+    assertEquals(mojo.getProject().getVersion(), load(versionOutput).get("version"));
+
+    // Simulate a subsequent build of a new version of the project.
+    final FreemarkerMojo secondMojo = this.lookupConfiguredMojo(mojo.getProject().getBasedir());
+    secondMojo.getProject().setVersion("2.0.0-changed");
+    secondMojo.setIncremental(true);
+    secondMojo.execute();
+    assertEquals("2.0.0-changed", load(versionOutput).get("version"));
+  }
+
+  @Test
+  public void testIncrementalExecutionWithSession() throws Exception {
+    final FreemarkerMojo mojo = this.lookupConfiguredMojo("multiple");
+    assertNotNull(mojo.getSession());
+    final File templateDirectory = new File(mojo.getProject().getBasedir(), "templates");
+    try (final Writer writer = new OutputStreamWriter(new FileOutputStream(new File(templateDirectory, "session.ftl")), "UTF-8")) {
+      writer.write("flavor=${session.userProperties['flavor']!'none'}\n");
+    }
+    mojo.setIncremental(true);
+    mojo.execute();
+    final File[] outputs = mojo.getOutputFile().listFiles();
+    assertNotNull(outputs);
+    assertTrue(outputs.length > 1);
+    for (final File output : outputs) {
+      assertTrue(output.setLastModified(0L));
+    }
+
+    // Simulate an identical subsequent build; nothing should be
+    // rendered again.
+    FreemarkerMojo secondMojo = this.lookupConfiguredMojo(mojo.getProject().getBasedir());
+    assertNotNull(secondMojo.getSession());
+    secondMojo.setIncremental(true);
+    secondMojo.execute();
+    for (final File output : outputs) {
+      assertEquals(output.getName(), 0L, output.lastModified());
+    }
+
+    // Simulate a subsequent build with a different user property.
+    secondMojo = this.lookupConfiguredMojo(mojo.getProject().getBasedir());
+    secondMojo.getSession().getUserProperties().setProperty("flavor", "changed");
+    secondMojo.setIncremental(true);
+    secondMojo.execute();
+    final File sessionOutput = new File(mojo.getOutputFile(), "session");
+    assertEquals("changed", load(sessionOutput).get("flavor"));
+    assertEquals(0L, new File(mojo.getOutputFile(), "template1").lastModified());
+  }
+
+  @Test
+  public void testProjectFingerprint() throws Exception {
+    final MavenProject project = this.lookupConfiguredMojo("multiple").getProject();
+    final String fingerprint = FreemarkerMojo.fingerprint(project);
+    assertEquals(fingerprint, FreemarkerMojo.fingerprint(project));
+    project.setVersion("changed");
+    final String versionFingerprint = FreemarkerMojo.fingerprint(project);
+    assertNotEquals(fingerprint, versionFingerprint);
+    project.getProperties().setProperty("changed", "true");
+    assertNotEquals(versionFingerprint, FreemarkerMojo.fingerprint(project));
+  }
+
+  @Test
+  public void testWriteIfChanged() throws Exception {
+    final FreemarkerMojo mojo = this.lookupConfiguredMojo("multiple");
+    mojo.setWriteIfChanged(true);
+    mojo.execute();
+    final File template1Output = new File(mojo.getOutputFile(), "template1");
+    assertEquals("bargle", load(template1Output).get("argle"));
+    assertTrue(template1Output.setLastModified(0L));
+
+    // Identical output must leave the file alone.
+    FreemarkerMojo secondMojo = this.lookupConfiguredMojo(mojo.getProject().getBasedir());
+    secondMojo.setWriteIfChanged(true);
+    secondMojo.execute();
+    assertEquals(0L, template1Output.lastModified());
+
+    // Different output must replace it.
+    secondMojo = this.lookupConfiguredMojo(mojo.getProject().getBasedir());
+    secondMojo.setWriteIfChanged(true);
+    secondMojo.setDataModel(Collections.singletonMap("argle", "blatz"));
+    secondMojo.execute();
+    assertFalse(0L == template1Output.lastModified());
+    assertEquals("blatz", load(template1Output).get("argle"));
+    final String[] leftovers = mojo.getOutputFile().list((d, n) -> n.endsWith(".tmp"));
+    assertNotNull(leftovers);
+    assertEquals(0, leftovers.length);
+  }
+
+  @Test
+  public void testConcurrentExecutions() throws Exception {
+    final FreemarkerMojo prototype = this.lookupConfiguredMojo("multiple");
+    final Configuration sharedConfiguration = prototype.getConfiguration();
+    assertNotNull(sharedConfiguration);
+    final ObjectWrapper originalObjectWrapper = sharedConfiguration.getObjectWrapper();
+    final Map<String, Object> sharedDataModel = new HashMap<>(prototype.getDataModel());
+    final Map<String, Object> originalDataModel = new HashMap<>(sharedDataModel);
+    final Map<String, ModelFactory> sharedModelFactories = new HashMap<>(prototype.getModelFactories());
+    final Map<String, ModelFactory> originalModelFactories = new HashMap<>(sharedModelFactories);
+
+    final int executionCount = 16;
+    final List<FreemarkerMojo> mojos = new ArrayList<>();
+    for (int i = 0; i < executionCount; i++) {
+      final FreemarkerMojo mojo = this.lookupConfiguredMojo(prototype.getProject().getBasedir());
+      mojo.setConfiguration(sharedConfiguration);
+      mojo.setDataModel(sharedDataModel);
+      mojo.setModelFactories(sharedModelFactories);
+      mojo.setOutputFile(new File(prototype.getOutputFile(), "execution" + i));
+      mojos.add(mojo);
+    }
+
+    final ExecutorService executorService = Executors.newFixedThreadPool(executionCount);
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      final List<Future<Void>> futures = new ArrayList<>();
+      for (final FreemarkerMojo mojo : mojos) {
+        futures.add(executorService.submit(() -> {
+              start.await();
+              mojo.execute();
+              return null;
+            }));
+      }
+      start.countDown();
+      for (final Future<Void> future : futures) {
+        future.get(1L, TimeUnit.MINUTES);
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    for (final FreemarkerMojo mojo : mojos) {
+      for (int i = 1; i <= 8; i++) {
+        final Properties properties = load(new File(mojo.getOutputFile(), "template" + i));
+        assertEquals("template" + i + ".ftl", properties.get("templateName"));
+        assertEquals("bargle", properties.get("argle"));
+      }
+    }
+    assertEquals(originalDataModel, sharedDataModel);
+    assertEquals(originalModelFactories, sharedModelFactories);
+    assertSame(originalObjectWrapper, sharedConfiguration.getObjectWrapper());
+  }
+
+  @Test
+  public void testRecursiveTemplateDiscovery() throws Exception {
+    final FreemarkerMojo mojo = this.lookupConfiguredMojo("multiple");
+    mojo.setIncludes(Collections.singletonList("**/*.ftl"));
+    mojo.setExcludes(Collections.singletonList("lib/**"));
+    final Set<String> templateNames = mojo.getTemplateNames(mojo.getConfiguration());
+    assertEquals(10, templateNames.size());
+    assertTrue(templateNames.contains("template1.ftl"));
+    assertTrue(templateNames.contains("sub/nested.ftl"));
+    assertTrue(templateNames.contains("sub/deeper/nested.ftl"));
+    assertFalse(templateNames.contains("lib/macros.ftl"));
+    mojo.execute();
+    final File outputDirectory = mojo.getOutputFile();
+    assertEquals("sub/nested.ftl", load(new File(outputDirectory, "sub/nested")).get("templateName"));
+    assertEquals("sub/deeper/nested.ftl", load(new File(outputDirectory, "sub/deeper/nested")).get("templateName"));
+    assertFalse(new File(outputDirectory, "lib").exists());
+  }
+
+  @Test
+  public void testDefaultIncludeIgnoresCase() throws Exception {
+    final FreemarkerMojo mojo = this.lookupConfiguredMojo("multiple");
+    final File templateDirectory = new File(this.testProjectTargetDirectory, "test-default-include");
+    new File(templateDirectory, "sub").mkdirs();
+    for (final String name : new String[] { "lower.ftl", "Upper.FTL", "other.txt", "sub/nested.ftl" }) {
+      new File(templateDirectory, name).createNewFile();
+    }
+    final Configuration configuration = new Configuration(FreemarkerMojo.FREEMARKER_VERSION);
+    configuration.setTemplateLoader(new FileTemplateLoader(templateDirectory));
+    final Set<String> templateNames = mojo.getTemplateNames(configuration);
+    assertEquals(new TreeSet<>(Arrays.asList("Upper.FTL", "lower.ftl")), new TreeSet<>(templateNames));
+  }
+
+  @Test
+  public void testFanOut() throws Exception {
+    final FreemarkerMojo mojo = this.lookupConfiguredMojo("fanout");
+    final List<FanOut> fanOuts = mojo.getFanOuts();
+    assertNotNull(fanOuts);
+    assertEquals(2, fanOuts.size());
+    assertEquals("${className?replace('.', '/')}.txt", fanOuts.get(0).getOutputPath());
+
+    // Index this plugin's own classes.
+    final Indexer indexer = new Indexer();
+    final File classesDirectory = new File(projectBuildDirectory, "classes/org/microbean/freemarker");
+    Files.walk(classesDirectory.toPath())
+      .filter(path -> path.toString().endsWith(".class"))
+      .forEach(path -> {
+          try (final InputStream inputStream = Files.newInputStream(path)) {
+            indexer.index(inputStream);
+          } catch (final IOException ioException) {
+            throw new UncheckedIOException(ioException);
+          }
+        });
+    final Index index = indexer.complete();
+    try (final OutputStream outputStream = new FileOutputStream(mojo.getJandexIndexFile())) {
+      new IndexWriter(outputStream).write(index);
+    }
+
+    mojo.setParallel(true);
+    mojo.setThreads(4);
+    mojo.execute();
+
+    final File outputDirectory = mojo.getOutputFile();
+    assertEquals("bargle", load(new File(outputDirectory, "plain")).get("argle"));
+    assertFalse(new File(outputDirectory, "describe").exists());
+    assertFalse(new File(outputDirectory, "mojo").exists());
+
+    final Properties describe = load(new File(outputDirectory, "org/microbean/freemarker/ClassModelFactory.txt"));
+    assertEquals("org.microbean.freemarker.ClassModelFactory", describe.get("className"));
+    assertEquals("bargle", describe.get("argle"));
+
+    final File[] mojos = new File(outputDirectory, "mojos").listFiles();
+    assertNotNull(mojos);
+    assertEquals(2, mojos.length);
+    final Properties mojoDescription = load(new File(outputDirectory, "mojos/FreemarkerMojo.txt"));
+    assertEquals("FreemarkerMojo", mojoDescription.get("simpleName"));
+    assertEquals("org.apache.maven.plugin.AbstractMojo", mojoDescription.get("superName"));
+    // ClassInfo's own methods remain callable.
+    final ClassInfo mojoClassInfo = index.getClassByName(DotName.createSimple(FreemarkerMojo.class.getName()));
+    assertEquals(String.valueOf(mojoClassInfo.methods().size()), mojoDescription.get("methodCount"));
+    assertEquals(String.valueOf(mojoClassInfo.fields().size()), mojoDescription.get("fieldCount"));
+    assertEquals(String.valueOf(mojoClassInfo.annotations().size()), mojoDescription.get("annotationCount"));
+    assertEquals(mojoClassInfo.methods().get(0).name(), mojoDescription.get("firstMethod"));
+    final Properties watchMojoDescription = load(new File(outputDirectory, "mojos/WatchMojo.txt"));
+    assertEquals("WatchMojo", watchMojoDescription.get("simpleName"));
+    assertEquals(FreemarkerMojo.class.getName(), watchMojoDescription.get("superName"));
+  }
+
+  private final FreemarkerMojo lookupConfiguredMojo(final String projectName) throws Exception {
+    return this.lookupConfiguredMojo(this.testResources.getBasedir(projectName));
+  }
+
+  private final FreemarkerMojo lookupConfiguredMojo(final File baseDirectory) throws Exception {
+    assertNotNull(baseDirectory);
+    assertTrue(baseDirectory.isDirectory());
+    final MavenProject mavenProject = this.mojoRule.readMavenProject(baseDirectory);
+    assertNotNull(mavenProject);
+    new File(mavenProject.getBuild().getDirectory()).mkdirs();
+    // Like Maven itself, supply an execution identifier, so that
+    // ${mojoExecution.executionId} resolves.
+    final MojoExecution prototype = this.mojoRule.newMojoExecution("freemarker");
+    final MojoExecution mojoExecution = new MojoExecution(prototype.getMojoDescriptor(), "default-freemarker");
+    mojoExecution.setConfiguration(prototype.getConfiguration());
+    final MavenSession session = this.mojoRule.newMavenSession(mavenProject);
+    final FreemarkerMojo mojo = (FreemarkerMojo)this.mojoRule.lookupConfiguredMojo(session, mojoExecution);
+    assertNotNull(mojo);
+    return mojo;
+  }
+
+  private static final Properties load(final File file) throws IOException {
+    assertTrue(file.isFile());
+    final Properties properties = new Properties();
+    try (final Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+      properties.load(reader);
+    }
+    return properties;
+  }
   
 }
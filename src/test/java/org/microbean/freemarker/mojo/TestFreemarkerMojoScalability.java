@@ -0,0 +1,250 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.TimeUnit;
+
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.testing.MojoRule;
+
+import org.apache.maven.plugin.testing.resources.TestResources;
+
+import org.apache.maven.project.MavenProject;
+
+import org.jboss.jandex.IndexWriter;
+import org.jboss.jandex.Indexer;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Drives {@link FreemarkerMojo#execute()} over synthetic projects of
+ * increasing size and records how long each execution takes, how much
+ * heap it uses and how many files it writes.
+ *
+ * <p>This test is skipped unless the {@code freemarker.scalability}
+ * system property is {@code true}, for example:</p>
+ *
+ * <pre>mvn test -Dtest=TestFreemarkerMojoScalability -Dfreemarker.scalability=true
+ *   -Dfreemarker.scalability.templateCounts=100,1000,10000,50000
+ *   -Dfreemarker.scalability.indexSizes=0,10000</pre>
+ *
+ * <p>Every combination of template count and index size is run.  An
+ * index size greater than zero indexes that many classes from the
+ * test classpath and fans a template out over all of them.  Results
+ * are printed and written to {@code
+ * target/scalability/results.csv}.</p>
+ */
+public class TestFreemarkerMojoScalability {
+
+  private static final File projectBuildDirectory = new File(System.getProperty("project.build.directory", "target"));
+
+  @Rule
+  public MojoRule mojoRule = new MojoRule();
+
+  @Rule
+  public TestResources testResources = new TestResources();
+
+  public TestFreemarkerMojoScalability() {
+    super();
+  }
+
+  @Test
+  public void testScalability() throws Exception {
+    assumeTrue(Boolean.getBoolean("freemarker.scalability"));
+    final int[] templateCounts = ints(System.getProperty("freemarker.scalability.templateCounts", "100,1000,10000"));
+    final int[] indexSizes = ints(System.getProperty("freemarker.scalability.indexSizes", "0,1000,10000"));
+    final int dataModelSize = Integer.getInteger("freemarker.scalability.dataModelSize", 1000);
+
+    final Map<String, Object> dataModel = new HashMap<>();
+    final List<String> items = new ArrayList<>(dataModelSize);
+    for (int i = 0; i < dataModelSize; i++) {
+      dataModel.put("entry" + i, "value" + i);
+      items.add("item" + i);
+    }
+    dataModel.put("items", items);
+
+    final File baseDirectory = this.testResources.getBasedir("scalability");
+    final List<String> results = new ArrayList<>();
+    results.add("templates,indexedClasses,dataModelSize,wallMillis,peakHeapBytes,filesWritten");
+    for (final int indexSize : indexSizes) {
+      for (final int templateCount : templateCounts) {
+        final File templateDirectory = new File(baseDirectory, "templates");
+        delete(templateDirectory);
+        delete(new File(baseDirectory, "target"));
+        generateTemplates(templateDirectory, templateCount, dataModelSize, indexSize > 0);
+
+        final MavenProject mavenProject = this.mojoRule.readMavenProject(baseDirectory);
+        new File(mavenProject.getBuild().getDirectory()).mkdirs();
+        final FreemarkerMojo mojo = (FreemarkerMojo)this.mojoRule.lookupConfiguredMojo(mavenProject, "freemarker");
+        assertNotNull(mojo);
+        mojo.setDataModel(dataModel);
+        final int indexedClasses;
+        if (indexSize > 0) {
+          indexedClasses = writeIndex(mojo.getJandexIndexFile(), indexSize);
+        } else {
+          indexedClasses = 0;
+          mojo.setFanOuts(Collections.emptyList());
+        }
+
+        System.gc();
+        final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+          if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()) {
+            pool.resetPeakUsage();
+            heapPools.add(pool);
+          }
+        }
+        final long start = System.nanoTime();
+        mojo.execute();
+        final long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long peakHeapBytes = 0L;
+        for (final MemoryPoolMXBean pool : heapPools) {
+          peakHeapBytes += pool.getPeakUsage().getUsed();
+        }
+
+        final long filesWritten;
+        try (final Stream<Path> paths = Files.walk(mojo.getOutputFile().toPath())) {
+          filesWritten = paths.filter(Files::isRegularFile).count();
+        }
+        // Not every indexed class is a known subclass of Object, since
+        // some superclasses may not have been indexed.
+        assertTrue(filesWritten > templateCount || (indexedClasses == 0 && filesWritten == templateCount));
+
+        final String result = templateCount + "," + indexedClasses + "," + dataModelSize + "," + wallMillis + "," + peakHeapBytes + "," + filesWritten;
+        results.add(result);
+      }
+    }
+    final File resultsFile = new File(projectBuildDirectory, "scalability/results.csv");
+    resultsFile.getParentFile().mkdirs();
+    Files.write(resultsFile.toPath(), results);
+  }
+
+  private static final void generateTemplates(final File templateDirectory, final int templateCount, final int dataModelSize, final boolean fanOut) throws IOException {
+    // Spread templates over subdirectories so that no one directory
+    // gets too large.
+    for (int i = 0; i < templateCount; i++) {
+      final File directory = new File(templateDirectory, "group" + (i / 100));
+      directory.mkdirs();
+      try (final Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, "template" + i + ".ftl")), "UTF-8")) {
+        writer.write("templateName=${.current_template_name}\n");
+        writer.write("entry=${entry" + (i % Math.max(1, dataModelSize)) + "!}\n");
+        writer.write("itemCount=${items?size}\n");
+        writer.write("<#list items as item><#if item?index == 10><#break></#if>item${item?index}=${item}\n</#list>");
+        writer.write("<#assign string = classes[\"java.lang.String\"]>\n");
+        writer.write("string=${string.simpleName} has ${string.methods?size} method names\n");
+      }
+    }
+    if (fanOut) {
+      final File fanOutDirectory = new File(templateDirectory, "fanout");
+      fanOutDirectory.mkdirs();
+      try (final Writer writer = new OutputStreamWriter(new FileOutputStream(new File(fanOutDirectory, "class.ftl")), "UTF-8")) {
+        writer.write("className=${className}\n");
+        writer.write("superName=${classInfo.superName()!}\n");
+        writer.write("methods=${classInfo.declaredMethods?size}\n");
+      }
+    }
+  }
+
+  private static final int writeIndex(final File indexFile, final int indexSize) throws IOException {
+    final List<String> jars = new ArrayList<>();
+    for (final String property : new String[] { "sun.boot.class.path", "java.class.path" }) {
+      final String path = System.getProperty(property);
+      if (path != null) {
+        for (final String element : path.split(File.pathSeparator)) {
+          if (element.endsWith(".jar") && new File(element).isFile()) {
+            jars.add(element);
+          }
+        }
+      }
+    }
+    final Indexer indexer = new Indexer();
+    int indexed = 0;
+    for (final String jar : jars) {
+      try (final JarFile jarFile = new JarFile(jar)) {
+        final Enumeration<JarEntry> entries = jarFile.entries();
+        while (indexed < indexSize && entries.hasMoreElements()) {
+          final JarEntry entry = entries.nextElement();
+          final String name = entry.getName();
+          if (name.endsWith(".class") && !name.endsWith("module-info.class") && !name.startsWith("META-INF/")) {
+            try (final InputStream inputStream = jarFile.getInputStream(entry)) {
+              indexer.index(inputStream);
+              indexed++;
+            }
+          }
+        }
+      }
+      if (indexed >= indexSize) {
+        break;
+      }
+    }
+    indexFile.getParentFile().mkdirs();
+    try (final OutputStream outputStream = new FileOutputStream(indexFile)) {
+      new IndexWriter(outputStream).write(indexer.complete());
+    }
+    return indexed;
+  }
+
+  private static final void delete(final File directory) throws IOException {
+    if (directory.exists()) {
+      try (final Stream<Path> paths = Files.walk(directory.toPath())) {
+        paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+      }
+    }
+  }
+
+  private static final int[] ints(final String commaSeparatedInts) {
+    final String[] strings = commaSeparatedInts.split(",");
+    final int[] returnValue = new int[strings.length];
+    for (int i = 0; i < strings.length; i++) {
+      returnValue[i] = Integer.parseInt(strings[i].trim());
+    }
+    return returnValue;
+  }
+
+}
@@ -0,0 +1,152 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java.util.function.Function;
+
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.IndexWriter;
+import org.jboss.jandex.Indexer;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestIndexCache {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  
+  public TestIndexCache() {
+    super();
+  }
+
+  @After
+  public void tearDown() {
+    IndexCache.clear();
+  }
+
+  @Test
+  public void testIndexIsReusedUntilFileChanges() throws IOException {
+    final File indexFile = this.temporaryFolder.newFile("jandex.idx");
+    write(indexFile, String.class);
+    final IndexView first = IndexCache.get(indexFile);
+    assertNotNull(first.getClassByName(DotName.createSimple("java.lang.String")));
+    assertSame(first, IndexCache.get(indexFile));
+
+    write(indexFile, String.class, Integer.class);
+    indexFile.setLastModified(indexFile.lastModified() + 2000L);
+    final IndexView second = IndexCache.get(indexFile);
+    assertNotSame(first, second);
+    assertNotNull(second.getClassByName(DotName.createSimple("java.lang.Integer")));
+    assertNull(first.getClassByName(DotName.createSimple("java.lang.Integer")));
+    assertSame(second, IndexCache.get(indexFile));
+  }
+
+  @Test
+  public void testSlowReadDoesNotBlockOtherFiles() throws Exception {
+    final File slowFile = this.temporaryFolder.newFile("slow.idx");
+    write(slowFile, String.class);
+    final File fastFile = this.temporaryFolder.newFile("fast.idx");
+    write(fastFile, Integer.class);
+    final CountDownLatch slowReadStarted = new CountDownLatch(1);
+    final CountDownLatch fastReadDone = new CountDownLatch(1);
+    final AtomicInteger slowReads = new AtomicInteger();
+    final Function<File, IndexView> slowReader = f -> {
+      slowReads.incrementAndGet();
+      slowReadStarted.countDown();
+      try {
+        assertTrue(fastReadDone.await(10L, TimeUnit.SECONDS));
+      } catch (final InterruptedException interruptedException) {
+        throw new IllegalStateException(interruptedException);
+      }
+      return IndexCache.read(f);
+    };
+    final ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      final Future<IndexView> first = executorService.submit(() -> IndexCache.get(slowFile, slowReader));
+      assertTrue(slowReadStarted.await(10L, TimeUnit.SECONDS));
+      final Future<IndexView> second = executorService.submit(() -> IndexCache.get(slowFile, slowReader));
+      // Every file is read while the slow read is still in progress.
+      for (int i = 0; i < 64; i++) {
+        final File file = this.temporaryFolder.newFile("other" + i + ".idx");
+        write(file, Integer.class);
+        assertNotNull(IndexCache.get(file).getClassByName(DotName.createSimple("java.lang.Integer")));
+      }
+      assertNotNull(IndexCache.get(fastFile));
+      fastReadDone.countDown();
+      assertSame(first.get(10L, TimeUnit.SECONDS), second.get(10L, TimeUnit.SECONDS));
+      assertEquals(1, slowReads.get());
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testFailedReadIsNotCached() throws IOException {
+    final File indexFile = this.temporaryFolder.newFile("failing.idx");
+    write(indexFile, String.class);
+    try {
+      IndexCache.get(indexFile, f -> {
+          throw new UncheckedIOException(new IOException("simulated"));
+        });
+      fail();
+    } catch (final UncheckedIOException expected) {
+      assertEquals("simulated", expected.getCause().getMessage());
+    }
+    assertNotNull(IndexCache.get(indexFile).getClassByName(DotName.createSimple("java.lang.String")));
+  }
+
+  private static final void write(final File indexFile, final Class<?>... classes) throws IOException {
+    final Indexer indexer = new Indexer();
+    for (final Class<?> c : classes) {
+      try (final InputStream inputStream = c.getResourceAsStream(c.getSimpleName() + ".class")) {
+        indexer.index(inputStream);
+      }
+    }
+    try (final OutputStream outputStream = new FileOutputStream(indexFile)) {
+      new IndexWriter(outputStream).write(indexer.complete());
+    }
+  }
+  
+}
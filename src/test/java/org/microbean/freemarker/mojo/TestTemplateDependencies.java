@@ -0,0 +1,138 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.File;
+import java.io.StringWriter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import freemarker.cache.StringTemplateLoader;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestTemplateDependencies {
+
+  private static final File projectBuildDirectory = new File(System.getProperty("project.build.directory", "target"));
+
+  private StringTemplateLoader templateLoader;
+
+  private Configuration configuration;
+
+  private TemplateDependencies templateDependencies;
+
+  public TestTemplateDependencies() {
+    super();
+  }
+
+  @Before
+  public void setUp() {
+    this.templateLoader = new StringTemplateLoader();
+    this.templateLoader.putTemplate("main.ftl", "<#include \"lib/macros.ftl\"><#import \"lib/functions.ftl\" as f>${f.x}<@m/>");
+    this.templateLoader.putTemplate("lib/macros.ftl", "<#macro m>m</#macro><#include \"common.ftl\">");
+    this.templateLoader.putTemplate("lib/functions.ftl", "<#assign x = \"x\">");
+    this.templateLoader.putTemplate("lib/common.ftl", "c");
+    this.templateLoader.putTemplate("solo.ftl", "solo");
+    this.configuration = new Configuration(FreemarkerMojo.FREEMARKER_VERSION);
+    this.configuration.setTemplateLoader(this.templateLoader);
+    this.templateDependencies = new TemplateDependencies();
+    this.templateDependencies.install(this.configuration);
+  }
+
+  @Test
+  public void testRecordsIncludesAndImportsEvenWhenCached() throws Exception {
+    assertSame(this.templateLoader, TemplateDependencies.unwrap(this.configuration.getTemplateLoader()));
+    final Set<String> expected = new TreeSet<>(Arrays.asList("lib/common.ftl", "lib/functions.ftl", "lib/macros.ftl"));
+    // The second time around, every template comes from the cache.
+    for (int i = 0; i < 2; i++) {
+      final StringWriter writer = new StringWriter();
+      assertEquals(expected, this.render("main.ftl", writer));
+      assertEquals("cxm", writer.toString());
+    }
+    assertEquals(Collections.emptySet(), this.render("solo.ftl", new StringWriter()));
+    assertEquals(Collections.singleton("main.ftl"), this.templateDependencies.getDependents(Collections.singleton("lib/common.ftl")));
+    assertEquals(Collections.emptySet(), this.templateDependencies.getDependents(Collections.singleton("solo.ftl")));
+  }
+
+  @Test
+  public void testReinstallationDoesNotStack() throws Exception {
+    final Configuration clone = (Configuration)this.configuration.clone();
+    final TemplateDependencies templateDependencies = new TemplateDependencies();
+    templateDependencies.install(clone);
+    assertSame(this.templateLoader, TemplateDependencies.unwrap(clone.getTemplateLoader()));
+    final Template template = clone.getTemplate("main.ftl");
+    templateDependencies.begin();
+    try {
+      template.process(Collections.emptyMap(), new StringWriter());
+    } finally {
+      assertEquals(new TreeSet<>(Arrays.asList("lib/common.ftl", "lib/functions.ftl", "lib/macros.ftl")), templateDependencies.end("main.ftl", "main.ftl"));
+    }
+    // The original TemplateDependencies saw nothing.
+    assertEquals(Collections.emptySet(), this.templateDependencies.getDependents(Collections.singleton("lib/common.ftl")));
+  }
+
+  @Test
+  public void testFingerprintCoversDependencies() throws Exception {
+    final Set<String> dependencies = Collections.singleton("lib/common.ftl");
+    final String before = this.templateDependencies.fingerprint("main.ftl", dependencies, "UTF-8");
+    assertEquals(before, this.templateDependencies.fingerprint("main.ftl", dependencies, "UTF-8"));
+    assertNotEquals(before, this.templateDependencies.fingerprint("main.ftl", Collections.emptySet(), "UTF-8"));
+    this.templateLoader.putTemplate("lib/common.ftl", "changed");
+    this.templateDependencies.clearFingerprints();
+    assertNotEquals(before, this.templateDependencies.fingerprint("main.ftl", dependencies, "UTF-8"));
+  }
+
+  @Test
+  public void testManifestPersistsDependencies() throws Exception {
+    final File file = new File(projectBuildDirectory, "test-template-dependencies/manifest.properties");
+    file.delete();
+    final StalenessManifest manifest = new StalenessManifest(file, "inputs");
+    final Set<String> dependencies = new TreeSet<>(Arrays.asList("lib/common.ftl", "lib/macros.ftl"));
+    manifest.record("main.ftl", "fingerprint", new File("main"), dependencies, Collections.emptySet());
+    manifest.record("solo.ftl", "fingerprint", new File("solo"), Collections.emptySet(), Collections.emptySet());
+    manifest.store();
+    final StalenessManifest loaded = StalenessManifest.load(file, "inputs");
+    assertEquals(dependencies, loaded.getPriorDependencies("main.ftl"));
+    assertTrue(loaded.getPriorDependencies("solo.ftl").isEmpty());
+    assertTrue(loaded.getPriorDependencies("missing.ftl").isEmpty());
+  }
+
+  private final Set<String> render(final String templateName, final StringWriter writer) throws Exception {
+    final Template template = this.configuration.getTemplate(templateName);
+    final Set<String> returnValue;
+    this.templateDependencies.begin();
+    try {
+      template.process(Collections.emptyMap(), writer);
+    } finally {
+      returnValue = this.templateDependencies.end(templateName, templateName);
+    }
+    return returnValue;
+  }
+
+}
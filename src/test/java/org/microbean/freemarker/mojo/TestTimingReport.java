@@ -0,0 +1,90 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestTimingReport {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  
+  public TestTimingReport() {
+    super();
+  }
+
+  @Test
+  public void testReports() throws IOException {
+    final TimingReport timingReport = new TimingReport();
+    assertNull(timingReport.getSummary());
+    timingReport.record("b.ftl", "b.ftl", new File("b"), "WRITTEN", 1000000L, 5000000L, 2000000L, 42L);
+    timingReport.record("a.ftl#x,y", "a.ftl", new File("x,y"), "SKIPPED", 0L, 0L, 0L, 0L);
+    timingReport.complete();
+    final long totalNanos = timingReport.getTotalNanos();
+    assertEquals(totalNanos, timingReport.getTotalNanos());
+
+    final String summary = timingReport.getSummary();
+    assertTrue(summary, summary.startsWith("Rendered 1 templates (42 bytes) in "));
+    assertTrue(summary, summary.endsWith("1 ms loading, 5 ms rendering, 2 ms writing; slowest: b.ftl (8 ms)"));
+
+    final File csvFile = new File(this.temporaryFolder.getRoot(), "reports/timings.csv");
+    timingReport.write(csvFile);
+    final List<String> csv = Files.readAllLines(csvFile.toPath(), StandardCharsets.UTF_8);
+    assertEquals(3, csv.size());
+    assertEquals("key,templateName,outputFile,result,loadNanos,renderNanos,writeNanos,bytes", csv.get(0));
+    assertEquals("\"a.ftl#x,y\",a.ftl,\"x,y\",SKIPPED,0,0,0,0", csv.get(1));
+    assertEquals("b.ftl,b.ftl,b,WRITTEN,1000000,5000000,2000000,42", csv.get(2));
+
+    final File jsonFile = new File(this.temporaryFolder.getRoot(), "reports/timings.json");
+    timingReport.write(jsonFile);
+    final String json = new String(Files.readAllBytes(jsonFile.toPath()), StandardCharsets.UTF_8);
+    assertTrue(json, json.startsWith("{\n  \"totalNanos\": " + totalNanos + ",\n  \"templates\": [\n"));
+    assertTrue(json, json.contains("{\"key\": \"b.ftl\", \"templateName\": \"b.ftl\", \"outputFile\": \"b\", \"result\": \"WRITTEN\", \"loadNanos\": 1000000, \"renderNanos\": 5000000, \"writeNanos\": 2000000, \"bytes\": 42}"));
+    assertTrue(json, json.indexOf("a.ftl#x,y") < json.indexOf("\"b.ftl\""));
+  }
+
+  @Test
+  public void testMeasuringOutputStream() throws IOException {
+    final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+    try (final TimingReport.MeasuringOutputStream outputStream = new TimingReport.MeasuringOutputStream(sink, "test.ftl")) {
+      outputStream.write('a');
+      outputStream.write("bcd".getBytes(StandardCharsets.US_ASCII), 1, 2);
+      assertEquals(3L, outputStream.getBytes());
+      assertTrue(outputStream.getNanos() >= 0L);
+    }
+    assertArrayEquals("acd".getBytes(StandardCharsets.US_ASCII), sink.toByteArray());
+  }
+  
+}
@@ -0,0 +1,175 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.freemarker.mojo;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.testing.MojoRule;
+
+import org.apache.maven.plugin.testing.resources.TestResources;
+
+import org.apache.maven.project.MavenProject;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestWatchMojo {
+
+  @Rule
+  public MojoRule mojoRule = new MojoRule();
+
+  @Rule
+  public TestResources testResources = new TestResources();
+
+  public TestWatchMojo() {
+    super();
+  }
+
+  @Test
+  public void testToTemplateName() {
+    final Path base = Paths.get("templates").toAbsolutePath();
+    assertEquals("sub/nested.ftl", WatchMojo.toTemplateName(Collections.singleton(base), base.resolve("sub").resolve("nested.ftl")));
+    assertNull(WatchMojo.toTemplateName(Collections.singleton(base), base));
+    assertNull(WatchMojo.toTemplateName(Collections.singleton(base), Paths.get("elsewhere", "x.ftl").toAbsolutePath()));
+  }
+
+  @Test
+  public void testRerendersChangedTemplate() throws Exception {
+    final File baseDirectory = this.testResources.getBasedir("multiple");
+    final MavenProject mavenProject = this.mojoRule.readMavenProject(baseDirectory);
+    assertNotNull(mavenProject);
+    new File(mavenProject.getBuild().getDirectory()).mkdirs();
+    final WatchMojo mojo = (WatchMojo)this.mojoRule.lookupConfiguredMojo(mavenProject, "watch");
+    assertNotNull(mojo);
+    mojo.setQuietPeriod(10L);
+
+    final File template = new File(baseDirectory, "templates/template1.ftl");
+    final File output = new File(mojo.getOutputFile(), "template1");
+    final File untouchedOutput = new File(mojo.getOutputFile(), "template2");
+
+    final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      final Future<?> watching = executorService.submit(() -> {
+          mojo.execute();
+          return null;
+        });
+      waitFor(output, "argle=bargle");
+      final long untouchedLastModified = untouchedOutput.lastModified();
+
+      // The watch may not be registered yet, so keep saving until the
+      // change is noticed.
+      final long deadline = System.currentTimeMillis() + 20000L;
+      while (!contains(output, "changed=true")) {
+        assertTrue(System.currentTimeMillis() < deadline);
+        Files.write(template.toPath(), Arrays.asList("templateName=${.current_template_name}", "changed=true"), StandardCharsets.UTF_8);
+        Thread.sleep(200L);
+      }
+      assertEquals(untouchedLastModified, untouchedOutput.lastModified());
+
+      watching.cancel(true);
+      executorService.shutdown();
+      assertTrue(executorService.awaitTermination(10L, TimeUnit.SECONDS));
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRemovesOutputOfDeletedTemplate() throws Exception {
+    final File baseDirectory = this.testResources.getBasedir("multiple");
+    final MavenProject mavenProject = this.mojoRule.readMavenProject(baseDirectory);
+    assertNotNull(mavenProject);
+    new File(mavenProject.getBuild().getDirectory()).mkdirs();
+    final WatchMojo mojo = (WatchMojo)this.mojoRule.lookupConfiguredMojo(mavenProject, "watch");
+    assertNotNull(mojo);
+    mojo.setQuietPeriod(10L);
+    mojo.setIncremental(true);
+
+    final File template = new File(baseDirectory, "templates/template3.ftl");
+    final File output = new File(mojo.getOutputFile(), "template3");
+    final File manifestFile = mojo.getManifestFile();
+    assertNotNull(manifestFile);
+
+    final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      final Future<?> watching = executorService.submit(() -> {
+          mojo.execute();
+          return null;
+        });
+      waitFor(output, "argle=bargle");
+      waitFor(manifestFile, "fingerprint.template3.ftl");
+
+      // The watch may not be registered yet, so keep deleting and
+      // recreating the template until the deletion is noticed.
+      final long deadline = System.currentTimeMillis() + 20000L;
+      final byte[] content = Files.readAllBytes(template.toPath());
+      while (output.exists()) {
+        assertTrue(System.currentTimeMillis() < deadline);
+        Files.deleteIfExists(template.toPath());
+        Thread.sleep(200L);
+        if (output.exists()) {
+          Files.write(template.toPath(), content);
+          Thread.sleep(200L);
+        }
+      }
+      assertTrue(!template.exists());
+      assertTrue(!contains(manifestFile, "fingerprint.template3.ftl"));
+
+      watching.cancel(true);
+      executorService.shutdown();
+      assertTrue(executorService.awaitTermination(10L, TimeUnit.SECONDS));
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private static final void waitFor(final File file, final String content) throws IOException, InterruptedException {
+    final long deadline = System.currentTimeMillis() + 20000L;
+    while (System.currentTimeMillis() < deadline) {
+      if (contains(file, content)) {
+        return;
+      }
+      Thread.sleep(20L);
+    }
+    throw new AssertionError("Timed out waiting for " + file + " to contain " + content);
+  }
+
+  private static final boolean contains(final File file, final String content) throws IOException {
+    return file.isFile() && new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).contains(content);
+  }
+
+}
@@ -0,0 +1,2 @@
+className=${className}
+argle=${argle}
@@ -0,0 +1,6 @@
+simpleName=${classInfo.name().local()}
+superName=${classInfo.superName()}
+methodCount=${classInfo.methods()?size}
+fieldCount=${classInfo.fields()?size}
+annotationCount=${classInfo.annotations()?size}
+firstMethod=${classInfo.methods()[0].name()}
@@ -0,0 +1 @@
+argle=${argle}
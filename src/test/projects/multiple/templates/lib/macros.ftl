@@ -0,0 +1 @@
+<#macro greet>hello</#macro>
@@ -0,0 +1 @@
+templateName=${.current_template_name}
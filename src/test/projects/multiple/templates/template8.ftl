@@ -0,0 +1,2 @@
+templateName=${.current_template_name}
+argle=${argle}